@@ -0,0 +1,42 @@
+package de.engehausen.treemap.benchmarks;
+
+import java.awt.image.BufferedImage;
+
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.impl.PixelRectangleIndex;
+import de.engehausen.treemap.swing.TreeMap;
+
+/**
+ * Swing tree map exposing rendering and hit-testing without
+ * a background worker, so that they can be measured directly.
+ * @param <N> the type of node
+ */
+public class BenchmarkTreeMap<N> extends TreeMap<N> {
+
+	private static final long serialVersionUID = 1L;
+
+	public BenchmarkTreeMap() {
+		super(false, false);
+	}
+
+	/**
+	 * Sets the rectangles to hit-test against.
+	 * @param rects the rectangles
+	 * @param indexed <code>true</code> to use a rectangle index,
+	 * <code>false</code> to descend the rectangle tree.
+	 */
+	public void setRectangles(final ITreeModel<IRectangle<N>> rects, final boolean indexed) {
+		rectangles = rects;
+		rectangleIndex = indexed ? new PixelRectangleIndex<>(rects) : null;
+	}
+
+	public BufferedImage render(final int width, final int height, final ITreeModel<IRectangle<N>> rects) {
+		return rebuildImage(width, height, rects);
+	}
+
+	public IRectangle<N> find(final int x, final int y) {
+		return findRectangle(x, y);
+	}
+
+}
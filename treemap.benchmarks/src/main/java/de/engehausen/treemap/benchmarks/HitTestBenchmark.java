@@ -0,0 +1,61 @@
+package de.engehausen.treemap.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.impl.SquarifiedLayout;
+
+/**
+ * Measures finding the rectangle under the mouse pointer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HitTestBenchmark extends TreeState {
+
+	private static final int POINTS = 1024;
+
+	@Param({ "true", "false" })
+	public boolean indexed;
+
+	private BenchmarkTreeMap<Integer> treeMap;
+	private int[] xs, ys;
+
+	@Setup
+	public void setup() {
+		final IWeightedTreeModel<Integer> model = tree();
+		treeMap = new BenchmarkTreeMap<>();
+		treeMap.setRectangles(new SquarifiedLayout<Integer>(Integer.MAX_VALUE).layout(model, model.getRoot(), 1920, 1080), indexed);
+		final Random rnd = new Random(4711L);
+		xs = new int[POINTS];
+		ys = new int[POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			xs[i] = rnd.nextInt(1920);
+			ys[i] = rnd.nextInt(1080);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(POINTS)
+	public void findRectangle(final Blackhole blackhole) {
+		for (int i = 0; i < POINTS; i++) {
+			blackhole.consume(treeMap.find(xs[i], ys[i]));
+		}
+	}
+
+}
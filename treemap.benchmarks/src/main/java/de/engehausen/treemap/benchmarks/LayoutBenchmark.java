@@ -0,0 +1,73 @@
+package de.engehausen.treemap.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.engehausen.treemap.IGenericWeightedTreeModel;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeMapLayout;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.SyntheticTreeModel;
+import de.engehausen.treemap.impl.BorderSquarifiedLayout;
+import de.engehausen.treemap.impl.GenericSquarifiedLayout;
+import de.engehausen.treemap.impl.SquarifiedLayout;
+
+/**
+ * Measures the layout throughput of the squarified layouts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark extends TreeState {
+
+	@Param({ "squarified", "generic", "border", "minimumArea" })
+	public String layout;
+
+	private IWeightedTreeModel<Integer> model;
+	private ITreeMapLayout<Integer> treeMapLayout;
+	private IGenericWeightedTreeModel<Integer, Double> genericModel;
+	private GenericSquarifiedLayout<Integer, Double> genericLayout;
+
+	@Setup
+	public void setup() {
+		final SyntheticTreeModel tree = tree();
+		if ("generic".equals(layout)) {
+			genericModel = tree.asGeneric();
+			genericLayout = new GenericSquarifiedLayout<>(Integer.MAX_VALUE);
+		} else {
+			model = tree;
+			switch (layout) {
+			case "border":
+				treeMapLayout = new BorderSquarifiedLayout<>(Integer.MAX_VALUE, 2);
+				break;
+			case "minimumArea":
+				treeMapLayout = new SquarifiedLayout<>(Integer.MAX_VALUE, 16);
+				break;
+			default:
+				treeMapLayout = new SquarifiedLayout<>(Integer.MAX_VALUE);
+				break;
+			}
+		}
+	}
+
+	@Benchmark
+	public ITreeModel<IRectangle<Integer>> layout() {
+		if (genericModel != null) {
+			return genericLayout.layout(genericModel, genericModel.getRoot(), 1920, 1080);
+		}
+		return treeMapLayout.layout(model, model.getRoot(), 1920, 1080);
+	}
+
+}
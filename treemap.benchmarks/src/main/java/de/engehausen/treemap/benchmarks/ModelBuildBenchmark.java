@@ -0,0 +1,65 @@
+package de.engehausen.treemap.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.SyntheticTreeModel;
+import de.engehausen.treemap.impl.CompactWeightedTreeModel;
+import de.engehausen.treemap.impl.GenericTreeModel;
+
+/**
+ * Measures the cost of building tree models from a generated tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelBuildBenchmark extends TreeState {
+
+	private SyntheticTreeModel tree;
+	private Integer[] nodeArray;
+
+	@Setup
+	public void setup() {
+		tree = tree();
+		nodeArray = new Integer[tree.size()];
+		for (int i = 0; i < nodeArray.length; i++) {
+			nodeArray[i] = Integer.valueOf(i);
+		}
+	}
+
+	@Benchmark
+	public IWeightedTreeModel<Integer> genericTreeModel() {
+		final GenericTreeModel<Integer> result = new GenericTreeModel<>();
+		result.add(nodeArray[0], ownWeight(0), null);
+		for (int i = 1; i < nodeArray.length; i++) {
+			result.add(nodeArray[i], ownWeight(i), nodeArray[tree.getParentId(i)], true);
+		}
+		return result;
+	}
+
+	@Benchmark
+	public IWeightedTreeModel<Integer> compactModel() {
+		final CompactWeightedTreeModel.Builder<Integer> builder = new CompactWeightedTreeModel.Builder<>(nodeArray.length);
+		builder.add(nodeArray[0], ownWeight(0), null);
+		for (int i = 1; i < nodeArray.length; i++) {
+			builder.add(nodeArray[i], ownWeight(i), nodeArray[tree.getParentId(i)]);
+		}
+		return builder.build(true, null);
+	}
+
+	private long ownWeight(final int id) {
+		return tree.getChildCount(id) == 0 ? tree.getWeight(id) : 0;
+	}
+
+}
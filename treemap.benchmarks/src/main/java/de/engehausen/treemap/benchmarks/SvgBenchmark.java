@@ -0,0 +1,128 @@
+package de.engehausen.treemap.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.engehausen.treemap.impl.PipelinedLayout;
+import de.engehausen.treemap.impl.SquarifiedLayout;
+import de.engehausen.treemap.svg.TreeMap;
+import de.engehausen.treemap.svg.impl.CompactRectangleRenderer;
+import de.engehausen.treemap.svg.impl.CushionRectangleRenderer;
+import de.engehausen.treemap.svg.impl.DefaultRectangleRenderer;
+import de.engehausen.treemap.svg.impl.DirectXMLStreamWriter;
+import de.engehausen.treemap.svg.impl.XMLConstants;
+
+/**
+ * Measures exporting the tree map as SVG, including the layout. The tree
+ * has a uniform fan-out of eight and only its number of nodes varies; each
+ * subclass varies one aspect of the export and fixes the others.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class SvgBenchmark {
+
+	@Param({ "10000", "200000" })
+	public int nodes;
+
+	private TreeMap<Integer> treeMap;
+	private XMLOutputFactory factory;
+	private String writer;
+
+	/**
+	 * Prepares the tree map for the export.
+	 * @param renderer the renderer, <code>default</code>, <code>cushion</code>,
+	 * <code>compact</code> or <code>compactCushion</code>
+	 * @param aWriter the writer, <code>stax</code>, <code>direct</code> or <code>svgz</code>
+	 * @param mode how the layout is computed: while writing in the same thread
+	 * (<code>streaming</code>) or in another thread (<code>pipelined</code>),
+	 * or first and then rendered in parallel parts (<code>parallel</code>)
+	 */
+	protected void configure(final String renderer, final String aWriter, final String mode) {
+		final SquarifiedLayout<Integer> squarified = new SquarifiedLayout<>(Integer.MAX_VALUE);
+		treeMap = new TreeMap<>(TreeState.tree(nodes, 8, 6, "uniform"), "pipelined".equals(mode) ? new PipelinedLayout<>(squarified) : squarified);
+		if ("parallel".equals(mode)) {
+			treeMap.setRenderPool(ForkJoinPool.commonPool());
+		} else {
+			treeMap.setStreaming(true);
+		}
+		switch (renderer) {
+		case "cushion":
+			treeMap.setRectangleRenderer(new CushionRectangleRenderer<>());
+			break;
+		case "compact":
+			treeMap.setRectangleRenderer(new CompactRectangleRenderer<>(false));
+			break;
+		case "compactCushion":
+			treeMap.setRectangleRenderer(new CompactRectangleRenderer<>(true));
+			break;
+		default:
+			treeMap.setRectangleRenderer(new DefaultRectangleRenderer<>());
+			break;
+		}
+		treeMap.setLabelProvider((model, rectangle) -> rectangle.getNode().toString());
+		factory = XMLOutputFactory.newInstance();
+		writer = aWriter;
+	}
+
+	@Benchmark
+	public long render() throws XMLStreamException, IOException {
+		final CountingOutputStream out = new CountingOutputStream();
+		final XMLStreamWriter xml;
+		switch (writer) {
+		case "direct":
+			xml = new DirectXMLStreamWriter(out);
+			break;
+		case "svgz":
+			xml = DirectXMLStreamWriter.svgz(out, Deflater.BEST_SPEED);
+			break;
+		default:
+			xml = factory.createXMLStreamWriter(out, XMLConstants.ATTR_ENCODING);
+			break;
+		}
+		treeMap.render(xml, 1920, 1080, () -> false);
+		xml.close();
+		return out.count;
+	}
+
+	/**
+	 * Discards all output, counting the bytes written.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		long count;
+
+		@Override
+		public void write(final int b) {
+			count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			count += len;
+		}
+
+	}
+
+}
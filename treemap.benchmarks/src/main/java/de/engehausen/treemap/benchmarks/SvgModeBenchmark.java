@@ -0,0 +1,25 @@
+package de.engehausen.treemap.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures exporting the tree map as SVG with the layout computed while
+ * writing, either in the same thread or in another thread, or computed
+ * first and rendered in parallel parts. The compact renderer buffers its
+ * leafs, the default renderer does not; both use the direct writer.
+ */
+public class SvgModeBenchmark extends SvgBenchmark {
+
+	@Param({ "streaming", "pipelined", "parallel" })
+	public String mode;
+
+	@Param({ "default", "compact" })
+	public String renderer;
+
+	@Setup
+	public void setup() {
+		configure(renderer, "direct", mode);
+	}
+
+}
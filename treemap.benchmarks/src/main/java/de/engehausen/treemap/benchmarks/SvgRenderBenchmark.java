@@ -0,0 +1,21 @@
+package de.engehausen.treemap.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures exporting the tree map as SVG with the different renderers,
+ * including the compact renderers batching leafs into paths. The layout
+ * is computed while writing with the direct writer.
+ */
+public class SvgRenderBenchmark extends SvgBenchmark {
+
+	@Param({ "default", "cushion", "compact", "compactCushion" })
+	public String renderer;
+
+	@Setup
+	public void setup() {
+		configure(renderer, "direct", "streaming");
+	}
+
+}
@@ -0,0 +1,21 @@
+package de.engehausen.treemap.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures exporting the tree map as SVG with the StAX writer of the
+ * platform and the direct writer, plain and compressed. The layout is
+ * computed while writing with the default renderer.
+ */
+public class SvgWriterBenchmark extends SvgBenchmark {
+
+	@Param({ "stax", "direct", "svgz" })
+	public String writer;
+
+	@Setup
+	public void setup() {
+		configure("default", writer, "streaming");
+	}
+
+}
@@ -0,0 +1,88 @@
+package de.engehausen.treemap.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.impl.SquarifiedLayout;
+import de.engehausen.treemap.swing.impl.BorderRenderer;
+import de.engehausen.treemap.swing.impl.CushionRectangleRenderer;
+import de.engehausen.treemap.swing.impl.CushionRectangleRendererEx;
+import de.engehausen.treemap.swing.impl.DefaultRectangleRenderer;
+import de.engehausen.treemap.swing.impl.HierarchicalCushionRenderer;
+import de.engehausen.treemap.swing.impl.TileRasterizer;
+
+/**
+ * Measures rendering the tree map image with the Swing renderers (headless).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SwingRenderBenchmark extends TreeState {
+
+	@Param({ "default", "cushion", "cushionEx", "hierarchical", "border", "borderExposed" })
+	public String renderer;
+
+	@Param({ "1920x1080" })
+	public String size;
+
+	@Param({ "false", "true" })
+	public boolean tiled;
+
+	private BenchmarkTreeMap<Integer> treeMap;
+	private ITreeModel<IRectangle<Integer>> rectangles;
+	private int width, height;
+
+	@Setup
+	public void setup() {
+		final String[] dimension = size.split("x");
+		width = Integer.parseInt(dimension[0]);
+		height = Integer.parseInt(dimension[1]);
+		final IWeightedTreeModel<Integer> model = tree();
+		rectangles = new SquarifiedLayout<Integer>(Integer.MAX_VALUE).layout(model, model.getRoot(), width, height);
+		treeMap = new BenchmarkTreeMap<>();
+		if (tiled) {
+			treeMap.setTileRasterizer(new TileRasterizer<>());
+		}
+		switch (renderer) {
+			case "cushion":
+				treeMap.setRectangleRenderer(new CushionRectangleRenderer<>(128));
+				break;
+			case "cushionEx":
+				treeMap.setRectangleRenderer(new CushionRectangleRendererEx<>(128));
+				break;
+			case "hierarchical":
+				treeMap.setRectangleRenderer(new HierarchicalCushionRenderer<>());
+				break;
+			case "border":
+				treeMap.setRectangleRenderer(new BorderRenderer<>(new DefaultRectangleRenderer<>()));
+				break;
+			case "borderExposed":
+				treeMap.setRectangleRenderer(new BorderRenderer<>(new DefaultRectangleRenderer<>(), true));
+				break;
+			default:
+				treeMap.setRectangleRenderer(new DefaultRectangleRenderer<>());
+				break;
+		}
+	}
+
+	@Benchmark
+	public BufferedImage rebuildImage() {
+		return treeMap.render(width, height, rectangles);
+	}
+
+}
@@ -0,0 +1,63 @@
+package de.engehausen.treemap.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import de.engehausen.treemap.SyntheticTreeModel;
+
+/**
+ * Benchmark state holding the shape of the generated tree.
+ */
+@State(Scope.Benchmark)
+public class TreeState {
+
+	@Param({ "10000", "200000" })
+	public int nodes;
+
+	/** the mean number of children of a node */
+	@Param({ "8", "64" })
+	public int fanOut;
+
+	@Param({ "6" })
+	public int depth;
+
+	@Param({ "uniform", "powerLaw", "giant" })
+	public String distribution;
+
+	/**
+	 * Generates the tree for the current parameters.
+	 * @return the tree for the current parameters.
+	 */
+	protected SyntheticTreeModel tree() {
+		return tree(nodes, fanOut, depth, distribution);
+	}
+
+	/**
+	 * Generates a tree of the given shape.
+	 * @param nodes the number of nodes
+	 * @param fanOut the mean number of children of a node
+	 * @param depth the depth of the tree
+	 * @param distribution the distribution of the number of children,
+	 * <code>uniform</code>, <code>powerLaw</code> or <code>giant</code>
+	 * @return the tree, never {@code null}.
+	 */
+	protected static SyntheticTreeModel tree(final int nodes, final int fanOut, final int depth, final String distribution) {
+		final SyntheticTreeModel.FanOut uniform = SyntheticTreeModel.uniform(0, 2*fanOut);
+		final SyntheticTreeModel.FanOut distributed;
+		if ("powerLaw".equals(distribution)) {
+			distributed = SyntheticTreeModel.powerLaw(1+1d/fanOut, nodes);
+		} else if ("giant".equals(distribution)) {
+			distributed = SyntheticTreeModel.giant(0.5, uniform);
+		} else {
+			distributed = uniform;
+		}
+		return new SyntheticTreeModel.Builder()
+			.nodes(nodes)
+			.depth(depth)
+			.fanOut(distributed)
+			.weights(SyntheticTreeModel.logNormal(4096, 2))
+			.build();
+	}
+
+}
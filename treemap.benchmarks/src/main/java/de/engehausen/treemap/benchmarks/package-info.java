@@ -0,0 +1,6 @@
+/**
+ * JMH benchmarks for the tree map library. Build the module and run
+ * <code>java -jar target/benchmarks.jar</code>; pass a benchmark name
+ * pattern and <code>-p name=value</code> options to narrow the runs.
+ */
+package de.engehausen.treemap.benchmarks;
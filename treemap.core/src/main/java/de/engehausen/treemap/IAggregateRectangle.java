@@ -0,0 +1,30 @@
+package de.engehausen.treemap;
+
+/**
+ * A rectangle standing in for several sibling nodes which are too small
+ * to be laid out on their own. The nodes of an aggregate rectangle are
+ * not laid out further.
+ * @param <N> the type of node the rectangle supports.
+ */
+public interface IAggregateRectangle<N> extends IRectangle<N> {
+
+	/**
+	 * Returns the number of nodes folded into this rectangle.
+	 * @return the number of nodes folded into this rectangle.
+	 */
+	int getCount();
+
+	/**
+	 * Returns the summed up weight of the nodes folded into this rectangle.
+	 * @return the summed up weight of the nodes folded into this rectangle.
+	 */
+	long getWeight();
+
+	/**
+	 * Returns the heaviest of the nodes folded into this rectangle.
+	 * @return the heaviest of the nodes folded into this rectangle.
+	 */
+	@Override
+	N getNode();
+
+}
@@ -0,0 +1,24 @@
+package de.engehausen.treemap;
+
+/**
+ * Rectangle renderers implementing this interface tell the area they
+ * paint into when highlighting a rectangle. A tree map uses it to
+ * repaint only this area when the highlighted rectangle changes,
+ * instead of repainting the whole tree map.
+ *
+ * @param <N> the type of node the interface supports
+ */
+public interface IHighlightBounds<N> {
+
+	/**
+	 * Returns the rectangle enclosing everything painted when highlighting
+	 * the given rectangle, including an outline drawn one pixel right of
+	 * and below the returned rectangle.
+	 * @param model the model the rectangle belongs to, never {@code null}
+	 * @param rectangle the highlighted rectangle, never {@code null}
+	 * @return the rectangle enclosing the highlight, or {@code null} if the
+	 * highlight may paint anywhere.
+	 */
+	IRectangle<N> getHighlightBounds(ITreeModel<IRectangle<N>> model, IRectangle<N> rectangle);
+
+}
@@ -0,0 +1,19 @@
+package de.engehausen.treemap;
+
+/**
+ * Index over the rectangles of a tree map layout answering point queries.
+ *
+ * @param <N> the type of node the interface supports
+ */
+public interface IRectangleIndex<N> {
+
+	/**
+	 * Returns the smallest rectangle containing the given coordinates.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return the innermost rectangle containing the coordinates, or
+	 * {@code null} if no rectangle contains them.
+	 */
+	IRectangle<N> find(int x, int y);
+
+}
@@ -0,0 +1,26 @@
+package de.engehausen.treemap;
+
+/**
+ * Receives the rectangles of a layout while the layout is computed,
+ * so that they can be processed without holding the complete layout.
+ * @param <N> the type of node the rectangles support.
+ * @see ITreeMapLayout#layout(IWeightedTreeModel, Object, int, int, IRectangleSink, ICancelable)
+ */
+public interface IRectangleSink<N> {
+
+	/**
+	 * Receives the next rectangle of the layout. The rectangles are passed
+	 * depth-first, starting with the root rectangle, and each rectangle before
+	 * its children.
+	 * @param path the rectangle model up to the given rectangle; it may only know
+	 * the ancestors of the given rectangle and the rectangle itself. It must
+	 * not be kept after the method returns.
+	 * @param parent the parent of the rectangle, or {@code null} for the root rectangle.
+	 * @param rectangle the rectangle, never {@code null}.
+	 * @param depth the depth of the rectangle, <code>0</code> for the root rectangle.
+	 * @param leaf <code>true</code> if the rectangle has no children in the layout,
+	 * <code>false</code> otherwise.
+	 */
+	void add(ITreeModel<IRectangle<N>> path, IRectangle<N> parent, IRectangle<N> rectangle, int depth, boolean leaf);
+
+}
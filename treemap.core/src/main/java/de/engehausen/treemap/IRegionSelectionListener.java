@@ -0,0 +1,23 @@
+package de.engehausen.treemap;
+
+import java.util.List;
+
+/**
+ * Listener that is to be notified when a region of the tree map
+ * is selected, e.g. by dragging the mouse.
+ *
+ * @param <N> the type of node the listener acts for
+ */
+public interface IRegionSelectionListener<N> {
+
+	/**
+	 * Indicates a change of the selected region of the tree map.
+	 *
+	 * @param model the model the rectangles come from; never {@code null}.
+	 * @param rectangles the selected rectangles: the leafs crossing the border of
+	 * the region and the outermost rectangles inside of it; never {@code null}.
+	 * @param weight the total weight of the selected rectangles.
+	 */
+	void regionSelected(ITreeModel<IRectangle<N>> model, List<IRectangle<N>> rectangles, double weight);
+
+}
@@ -1,5 +1,9 @@
 package de.engehausen.treemap;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * Tree map layout interface. The methods allow to create a layout
  * of rectangles from a given weighted tree model.
@@ -38,4 +42,53 @@ public interface ITreeMapLayout<N> {
 	 */
 	ITreeModel<IRectangle<N>> layout(IWeightedTreeModel<N> treeModel, N startingNode, int width, int height, ICancelable cancelable);
 
+	/**
+	 * Creates a layout of rectangles, starting at the current node
+	 * for the given width and height, and passes the rectangles to the
+	 * given sink. Implementations may pass the rectangles while computing
+	 * the layout, without holding them; by default the layout is computed
+	 * completely and then passed to the sink.
+	 * @param treeModel the tree model to lay out
+	 * @param startingNode the starting node in the tree model the
+	 * layout operates on; must not be {@code null}.
+	 * @param width the width to use for the layout.
+	 * @param height the height to use for the layout.
+	 * @param sink the sink receiving the rectangles, must not be {@code null}.
+	 * @param cancelable an indicator that can cancel the layout operation
+	 * if {@link ICancelable#isCanceled()} returns <code>true</code>. The
+	 * argument must not be {@code null}. If the operation is canceled,
+	 * the sink may not have received all rectangles.
+	 */
+	default void layout(final IWeightedTreeModel<N> treeModel, final N startingNode, final int width, final int height, final IRectangleSink<N> sink, final ICancelable cancelable) {
+		final ITreeModel<IRectangle<N>> rectangles = layout(treeModel, startingNode, width, height, cancelable);
+		final IRectangle<N> root = rectangles.getRoot();
+		if (root == null) {
+			return;
+		}
+		sink.add(rectangles, null, root, 0, !rectangles.hasChildren(root));
+		// the children still to pass per level, and the rectangle they belong to
+		final List<Iterator<IRectangle<N>>> levels = new ArrayList<Iterator<IRectangle<N>>>();
+		final List<IRectangle<N>> parents = new ArrayList<IRectangle<N>>();
+		if (rectangles.hasChildren(root)) {
+			levels.add(rectangles.getChildren(root));
+			parents.add(root);
+		}
+		while (!levels.isEmpty()) {
+			final int depth = levels.size();
+			final Iterator<IRectangle<N>> children = levels.get(depth-1);
+			if (children.hasNext()) {
+				final IRectangle<N> child = children.next();
+				final boolean leaf = !rectangles.hasChildren(child);
+				sink.add(rectangles, parents.get(depth-1), child, depth, leaf);
+				if (!leaf) {
+					levels.add(rectangles.getChildren(child));
+					parents.add(child);
+				}
+			} else {
+				levels.remove(depth-1);
+				parents.remove(depth-1);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,68 @@
+package de.engehausen.treemap.impl;
+
+import java.text.MessageFormat;
+
+import de.engehausen.treemap.IAggregateRectangle;
+import de.engehausen.treemap.ILabelProvider;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+/**
+ * Label provider labelling aggregate rectangles (see {@link IAggregateRectangle})
+ * with the number of nodes folded into them, e.g. "12 items". The labels of
+ * all other rectangles are provided by a delegate. This prevents an aggregate
+ * from being labelled like the heaviest of its nodes.
+ *
+ * @param <N> the type of node the provider supports
+ */
+public class AggregateLabelProvider<N> implements ILabelProvider<N> {
+
+	/** default pattern for aggregate labels, the argument is the number of nodes */
+	public static final String DEFAULT_PATTERN = "{0} items";
+
+	protected final ILabelProvider<N> delegate;
+	protected final String pattern;
+
+	/**
+	 * Creates the provider using the default pattern.
+	 * @param aDelegate the provider of all other labels, must not be {@code null}.
+	 */
+	public AggregateLabelProvider(final ILabelProvider<N> aDelegate) {
+		this(aDelegate, DEFAULT_PATTERN);
+	}
+
+	/**
+	 * Creates the provider.
+	 * @param aDelegate the provider of all other labels, must not be {@code null}.
+	 * @param aPattern the {@link MessageFormat} pattern of aggregate labels; the
+	 * argument is the number of nodes. Must not be {@code null}.
+	 */
+	public AggregateLabelProvider(final ILabelProvider<N> aDelegate, final String aPattern) {
+		if (aDelegate == null || aPattern == null) {
+			throw new IllegalArgumentException("delegate and pattern must not be null");
+		}
+		delegate = aDelegate;
+		pattern = aPattern;
+	}
+
+	/**
+	 * Returns the provider of the labels of all other rectangles.
+	 * @return the provider of the labels of all other rectangles, never {@code null}.
+	 */
+	public ILabelProvider<N> getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getLabel(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		if (rectangle instanceof IAggregateRectangle<?>) {
+			return MessageFormat.format(pattern, Integer.valueOf(((IAggregateRectangle<N>) rectangle).getCount()));
+		} else {
+			return delegate.getLabel(model, rectangle);
+		}
+	}
+
+}
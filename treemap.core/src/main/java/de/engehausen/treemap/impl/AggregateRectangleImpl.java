@@ -0,0 +1,53 @@
+package de.engehausen.treemap.impl;
+
+import de.engehausen.treemap.IAggregateRectangle;
+
+/**
+ * Rectangle implementation for several nodes folded into one rectangle.
+ * @param <N> the type of node backing the tree map.
+ */
+public class AggregateRectangleImpl<N> extends RectangleImpl<N> implements IAggregateRectangle<N> {
+
+	protected final int count;
+	protected final long weight;
+
+	/**
+	 * Creates the rectangle.
+	 * @param aNode the heaviest of the folded nodes, must not be {@code null}.
+	 * @param x the x starting position of the rectangle.
+	 * @param y the y starting position of the rectangle.
+	 * @param width the width of the rectangle.
+	 * @param height the height of the rectangle.
+	 * @param nodeCount the number of folded nodes.
+	 * @param totalWeight the summed up weight of the folded nodes.
+	 */
+	public AggregateRectangleImpl(final N aNode, final int x, final int y, final int width, final int height, final int nodeCount, final long totalWeight) {
+		super(aNode, x, y, width, height);
+		count = nodeCount;
+		weight = totalWeight;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getWeight() {
+		return weight;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder(40);
+		sb.append(super.toString()).append('+').append(count-1);
+		return sb.toString();
+	}
+
+}
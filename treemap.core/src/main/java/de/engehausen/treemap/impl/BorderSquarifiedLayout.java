@@ -20,7 +20,20 @@ public class BorderSquarifiedLayout<N> extends SquarifiedLayout<N> {
 	 * shrunk.
 	 */
 	public BorderSquarifiedLayout(final int nestingDepth, final int borderShrink) {
-		super(nestingDepth);
+		this(nestingDepth, borderShrink, 0);
+	}
+
+	/**
+	 * Creates the layout.
+	 * @param nestingDepth defines how deep the layout should go into
+	 * the tree model for layout purposes.
+	 * @param borderShrink defines how much each rectangle is to be
+	 * shrunk.
+	 * @param minimumArea the minimum area (in pixels) of a child rectangle
+	 * before shrinking; smaller children are folded into one aggregate rectangle.
+	 */
+	public BorderSquarifiedLayout(final int nestingDepth, final int borderShrink, final int minimumArea) {
+		super(nestingDepth, minimumArea);
 		shrink = borderShrink;
 	}
 
@@ -0,0 +1,358 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import de.engehausen.treemap.IAggregateRectangle;
+import de.engehausen.treemap.IIteratorSize;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+/**
+ * A memory efficient, read-only tree model holding rectangles. All
+ * rectangles are stored in primitive arrays in breadth-first order, so
+ * that the children of a rectangle occupy a contiguous range of indices.
+ * The rectangles handed out by the model are light-weight views onto
+ * these arrays; navigating the model never hashes any node. Aggregate
+ * rectangles (see {@link IAggregateRectangle}) keep their count and weight.
+ * <br>Only rectangles obtained from this model are known to it; for any
+ * other rectangle the model reports neither children nor a parent.
+ *
+ * @param <N> the type of node the rectangles use.
+ */
+public class CompactRectangleModel<N> implements ITreeModel<IRectangle<N>> {
+
+	protected final int size;
+	protected final int[] x, y, w, h;
+	protected final int[] parent;
+	protected final int[] firstChild;
+	protected final int[] childCount;
+	protected final Object[] nodes;
+	/** the number of folded nodes per rectangle, {@code null} if there are no aggregate rectangles */
+	protected final int[] aggregateCount;
+	/** the weight per aggregate rectangle, {@code null} if there are no aggregate rectangles */
+	protected final long[] aggregateWeight;
+
+	/**
+	 * Creates a compact copy of the given rectangle model.
+	 * @param source the rectangle model to copy, must not be {@code null}.
+	 */
+	public CompactRectangleModel(final ITreeModel<IRectangle<N>> source) {
+		this(source, false);
+	}
+
+	/**
+	 * Creates a compact copy of the given rectangle model.
+	 * @param source the rectangle model to copy, must not be {@code null}.
+	 * @param release <code>true</code> to empty the source model once its
+	 * structure is copied, which must then be a {@link RectangleModelImpl}.
+	 */
+	protected CompactRectangleModel(final ITreeModel<IRectangle<N>> source, final boolean release) {
+		final IRectangle<N> root = source.getRoot();
+		int capacity = 64;
+		int count = 0;
+		@SuppressWarnings("unchecked")
+		IRectangle<N>[] queue = new IRectangle[capacity];
+		int[] parents = new int[capacity];
+		int[] first = new int[capacity];
+		int[] counts = new int[capacity];
+		if (root != null) {
+			queue[count] = root;
+			parents[count++] = -1;
+		}
+		// the arrays themselves serve as the breadth-first queue
+		for (int i = 0; i < count; i++) {
+			final IRectangle<N> current = queue[i];
+			first[i] = count;
+			if (source.hasChildren(current)) {
+				for (Iterator<IRectangle<N>> children = source.getChildren(current); children.hasNext(); ) {
+					if (count == capacity) {
+						capacity += capacity >> 1;
+						queue = Arrays.copyOf(queue, capacity);
+						parents = Arrays.copyOf(parents, capacity);
+						first = Arrays.copyOf(first, capacity);
+						counts = Arrays.copyOf(counts, capacity);
+					}
+					queue[count] = children.next();
+					parents[count++] = i;
+				}
+			}
+			counts[i] = count - first[i];
+		}
+		if (release) {
+			// from here on the queue holds the only references to the rectangles
+			((RectangleModelImpl<N>) source).clear();
+		}
+		size = count;
+		parent = Arrays.copyOf(parents, count);
+		firstChild = Arrays.copyOf(first, count);
+		childCount = Arrays.copyOf(counts, count);
+		x = new int[count];
+		y = new int[count];
+		w = new int[count];
+		h = new int[count];
+		nodes = new Object[count];
+		int[] folded = null;
+		long[] weights = null;
+		for (int i = 0; i < count; i++) {
+			final IRectangle<N> rectangle = queue[i];
+			queue[i] = null;
+			x[i] = rectangle.getX();
+			y[i] = rectangle.getY();
+			w[i] = rectangle.getWidth();
+			h[i] = rectangle.getHeight();
+			nodes[i] = rectangle.getNode();
+			if (rectangle instanceof IAggregateRectangle<?>) {
+				if (folded == null) {
+					folded = new int[count];
+					weights = new long[count];
+				}
+				folded[i] = ((IAggregateRectangle<N>) rectangle).getCount();
+				weights[i] = ((IAggregateRectangle<N>) rectangle).getWeight();
+			}
+		}
+		aggregateCount = folded;
+		aggregateWeight = weights;
+	}
+
+	/**
+	 * Returns the given layout as a compact model. A {@link RectangleModelImpl}
+	 * is emptied while it is copied, so that the layout and its copy are not
+	 * held in memory at the same time; it must not be used afterwards.
+	 * @param <N> the type of node the rectangles use.
+	 * @param layout the computed layout, must not be {@code null}.
+	 * @return the layout as a compact model, never {@code null}.
+	 */
+	public static <N> ITreeModel<IRectangle<N>> compact(final ITreeModel<IRectangle<N>> layout) {
+		if (layout instanceof CompactRectangleModel<?>) {
+			return layout;
+		}
+		return new CompactRectangleModel<N>(layout, layout instanceof RectangleModelImpl<?>);
+	}
+
+	/**
+	 * Returns the number of rectangles in the model.
+	 * @return the number of rectangles in the model.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the rectangle at the given index. The root rectangle
+	 * has index zero, the remaining rectangles follow in breadth-first order.
+	 * @param index the index of the rectangle, must be between zero (inclusive)
+	 * and {@link #size()} (exclusive).
+	 * @return the rectangle at the given index, never {@code null}.
+	 */
+	public IRectangle<N> get(final int index) {
+		if (aggregateCount != null && aggregateCount[index] > 0) {
+			return new AggregateRectangle<N>(this, index);
+		} else {
+			return new Rectangle<N>(this, index);
+		}
+	}
+
+	@Override
+	public IRectangle<N> getRoot() {
+		return size > 0 ? get(0) : null;
+	}
+
+	@Override
+	public IRectangle<N> getParent(final IRectangle<N> node) {
+		final int index = indexOf(node);
+		if (index > 0) {
+			return get(parent[index]);
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public Iterator<IRectangle<N>> getChildren(final IRectangle<N> node) {
+		final int index = indexOf(node);
+		if (index >= 0) {
+			return new ChildIterator<N>(this, firstChild[index], firstChild[index]+childCount[index]);
+		} else {
+			return new ChildIterator<N>(this, 0, 0);
+		}
+	}
+
+	@Override
+	public boolean hasChildren(final IRectangle<N> node) {
+		final int index = indexOf(node);
+		return index >= 0 && childCount[index] > 0;
+	}
+
+	/**
+	 * Returns the index of the given rectangle in this model.
+	 * @param rectangle the rectangle
+	 * @return the index of the rectangle, or <code>-1</code> if the rectangle
+	 * was not obtained from this model.
+	 */
+	protected int indexOf(final IRectangle<N> rectangle) {
+		if (rectangle instanceof Rectangle<?>) {
+			final Rectangle<N> view = (Rectangle<N>) rectangle;
+			if (view.model == this) {
+				return view.index;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder(16*size+2);
+		sb.append('[');
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(get(i));
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * Rectangle view onto the arrays of the model.
+	 * @param <N> the type of node the rectangle supports.
+	 */
+	protected static class Rectangle<N> implements IRectangle<N> {
+
+		protected final CompactRectangleModel<N> model;
+		protected final int index;
+
+		protected Rectangle(final CompactRectangleModel<N> aModel, final int anIndex) {
+			model = aModel;
+			index = anIndex;
+		}
+
+		@Override
+		public int getX() {
+			return model.x[index];
+		}
+
+		@Override
+		public int getY() {
+			return model.y[index];
+		}
+
+		@Override
+		public int getWidth() {
+			return model.w[index];
+		}
+
+		@Override
+		public int getHeight() {
+			return model.h[index];
+		}
+
+		@Override
+		public boolean contains(final int px, final int py) {
+			final int wi = px-model.x[index];
+			if (wi >= 0 && wi < model.w[index]) {
+				final int he = py-model.y[index];
+				return he >= 0 && he < model.h[index];
+			} else {
+				return false;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public N getNode() {
+			return (N) model.nodes[index];
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj instanceof Rectangle<?>) {
+				final Rectangle<?> other = (Rectangle<?>) obj;
+				return index == other.index && model == other.model;
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return index;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder(32);
+			sb.append('(').append(getNode()).append(',')
+			  .append(getX()).append(',').append(getY()).append(',')
+			  .append(getWidth()).append(',').append(getHeight()).append(')');
+			return sb.toString();
+		}
+
+	}
+
+	/**
+	 * Aggregate rectangle view onto the arrays of the model.
+	 * @param <N> the type of node the rectangle supports.
+	 */
+	protected static final class AggregateRectangle<N> extends Rectangle<N> implements IAggregateRectangle<N> {
+
+		protected AggregateRectangle(final CompactRectangleModel<N> aModel, final int anIndex) {
+			super(aModel, anIndex);
+		}
+
+		@Override
+		public int getCount() {
+			return model.aggregateCount[index];
+		}
+
+		@Override
+		public long getWeight() {
+			return model.aggregateWeight[index];
+		}
+
+	}
+
+	/**
+	 * Iterator over a contiguous range of rectangles.
+	 * @param <N> the type of node the rectangles support.
+	 */
+	private static final class ChildIterator<N> implements IIteratorSize<IRectangle<N>> {
+
+		private final CompactRectangleModel<N> model;
+		private final int end;
+		private int pos;
+
+		protected ChildIterator(final CompactRectangleModel<N> aModel, final int start, final int anEnd) {
+			model = aModel;
+			pos = start;
+			end = anEnd;
+		}
+
+		@Override
+		public int size() {
+			return end-pos;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return pos < end;
+		}
+
+		@Override
+		public IRectangle<N> next() {
+			if (pos < end) {
+				return model.get(pos++);
+			} else {
+				throw new NoSuchElementException();
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,460 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.engehausen.treemap.IIteratorSize;
+import de.engehausen.treemap.IWeightedTreeModel;
+
+/**
+ * Memory efficient, read-only weighted tree model for very large trees.
+ * Each node is assigned a dense integer id; parents, weights and the children
+ * of all nodes (in compressed sparse row form) are kept in primitive arrays.
+ * Nodes are mapped to their ids by an open addressing hash table, so the
+ * nodes must implement {@link Object#equals(Object)} and {@link Object#hashCode()}
+ * consistently. The model is created using a {@link Builder}.
+ * @param <N> the type this model holds
+ */
+public class CompactWeightedTreeModel<N> implements IWeightedTreeModel<N> {
+
+	protected final int size;
+	protected final int root;
+	protected final Object[] nodes;
+	protected final int[] parents;
+	protected final long[] weights;
+	/** the children of node <code>i</code> are <code>childIds[childOffsets[i]..childOffsets[i+1]-1]</code> */
+	protected final int[] childOffsets;
+	protected final int[] childIds;
+	protected final NodeIndex index;
+
+	/**
+	 * Creates the model from the given arrays, which are taken over.
+	 * @param nodeCount the number of nodes
+	 * @param rootId the id of the root node
+	 * @param nodeArray the nodes by id, must not be {@code null}.
+	 * @param parentArray the parent ids by id, <code>-1</code> for the root node, must not be {@code null}.
+	 * @param weightArray the weights by id, must not be {@code null}.
+	 */
+	protected CompactWeightedTreeModel(final int nodeCount, final int rootId, final Object[] nodeArray, final int[] parentArray, final long[] weightArray) {
+		this(nodeCount, rootId, nodeArray, parentArray, weightArray, null, null);
+	}
+
+	/**
+	 * Creates the model from the given arrays and node index, which are taken over.
+	 * @param nodeCount the number of nodes
+	 * @param rootId the id of the root node
+	 * @param nodeArray the nodes by id, must not be {@code null}.
+	 * @param parentArray the parent ids by id, <code>-1</code> for the root node, must not be {@code null}.
+	 * @param weightArray the weights by id, must not be {@code null}.
+	 * @param nodeIndex the index of the nodes; if {@code null} the index is built.
+	 * @param sequence the ids in the order the children of a node are to be kept;
+	 * if {@code null} the children are kept in the order of their ids.
+	 */
+	CompactWeightedTreeModel(final int nodeCount, final int rootId, final Object[] nodeArray, final int[] parentArray, final long[] weightArray, final NodeIndex nodeIndex, final int[] sequence) {
+		size = nodeCount;
+		root = rootId;
+		nodes = nodeArray;
+		parents = parentArray;
+		weights = weightArray;
+		// counting sort of the nodes by parent id
+		childOffsets = new int[nodeCount+1];
+		for (int i = 0; i < nodeCount; i++) {
+			final int parent = parentArray[i];
+			if (parent >= 0) {
+				childOffsets[parent+1]++;
+			}
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			childOffsets[i+1] += childOffsets[i];
+		}
+		childIds = new int[childOffsets[nodeCount]];
+		final int[] fill = Arrays.copyOf(childOffsets, nodeCount);
+		for (int i = 0; i < nodeCount; i++) {
+			final int id = sequence != null ? sequence[i] : i;
+			final int parent = parentArray[id];
+			if (parent >= 0) {
+				childIds[fill[parent]++] = id;
+			}
+		}
+		if (nodeIndex != null) {
+			index = nodeIndex;
+		} else {
+			index = new NodeIndex(nodeCount);
+			for (int i = 0; i < nodeCount; i++) {
+				index.put(nodeArray[i], i, nodeArray);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of nodes of the model.
+	 * @return the number of nodes of the model.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the id of the given node.
+	 * @param node the node, must not be {@code null}.
+	 * @return the id of the node, or <code>-1</code> if the node is not part of the model.
+	 */
+	public int getId(final N node) {
+		return index.get(node, nodes);
+	}
+
+	/**
+	 * Returns the node with the given id.
+	 * @param id the id, must be between zero (inclusive) and {@link #size()} (exclusive).
+	 * @return the node with the given id.
+	 */
+	@SuppressWarnings("unchecked")
+	public N getNode(final int id) {
+		return (N) nodes[id];
+	}
+
+	@Override
+	public long getWeight(final N node) {
+		final int id = getId(node);
+		return id >= 0 ? weights[id] : 0;
+	}
+
+	@Override
+	public Iterator<N> getChildren(final N node) {
+		final int id = getId(node);
+		if (id >= 0) {
+			return new NodeIterator<N>(nodes, childIds, childOffsets[id], childOffsets[id+1]);
+		} else {
+			return new NodeIterator<N>(nodes, childIds, 0, 0);
+		}
+	}
+
+	@Override
+	public N getParent(final N node) {
+		final int id = getId(node);
+		if (id >= 0 && parents[id] >= 0) {
+			return getNode(parents[id]);
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public N getRoot() {
+		return root >= 0 ? getNode(root) : null;
+	}
+
+	@Override
+	public boolean hasChildren(final N node) {
+		final int id = getId(node);
+		return id >= 0 && childOffsets[id+1] > childOffsets[id];
+	}
+
+	/**
+	 * Adds the weights of all nodes to the weights of their parents, bottom-up.
+	 * The nodes are processed level by level, starting at the deepest level;
+	 * the nodes of one level may be processed in parallel, as each node
+	 * only sums up the final weights of its own children.
+	 * @param pool the pool to process large levels in, or {@code null} to
+	 * process all levels in the current thread.
+	 * @throws IllegalStateException if not all nodes are reachable from the root node
+	 */
+	protected void aggregateWeights(final ForkJoinPool pool) {
+		if (root < 0) {
+			return;
+		}
+		// breadth-first order; each level occupies a contiguous range
+		final int[] order = new int[size];
+		int[] levels = new int[16];
+		int levelCount = 0;
+		int levelEnd = 1;
+		int count = 0;
+		order[count++] = root;
+		for (int i = 0; i < count; i++) {
+			if (i == levelEnd) {
+				// first node of the next level
+				if (++levelCount == levels.length) {
+					levels = Arrays.copyOf(levels, 2*levels.length);
+				}
+				levels[levelCount] = i;
+				levelEnd = count;
+			}
+			final int id = order[i];
+			for (int j = childOffsets[id]; j < childOffsets[id+1]; j++) {
+				order[count++] = childIds[j];
+			}
+		}
+		if (++levelCount == levels.length) {
+			levels = Arrays.copyOf(levels, levels.length+1);
+		}
+		levels[levelCount] = count;
+		if (count != size) {
+			throw new IllegalStateException("nodes not reachable from the root node: "+(size-count));
+		}
+		for (int level = levelCount-1; level >= 0; level--) {
+			final int start = levels[level];
+			final int end = levels[level+1];
+			if (pool != null && end-start > Aggregation.THRESHOLD) {
+				pool.invoke(new Aggregation(this, order, start, end));
+			} else {
+				aggregate(order, start, end);
+			}
+		}
+	}
+
+	/**
+	 * Sums up the weights of the children of the given nodes into the nodes.
+	 * @param order the node ids
+	 * @param start the start offset into the node ids
+	 * @param end the end offset into the node ids
+	 */
+	protected void aggregate(final int[] order, final int start, final int end) {
+		for (int i = start; i < end; i++) {
+			final int id = order[i];
+			long sum = weights[id];
+			for (int j = childOffsets[id]; j < childOffsets[id+1]; j++) {
+				sum += weights[childIds[j]];
+			}
+			weights[id] = sum;
+		}
+	}
+
+	/**
+	 * Builder for the compact model. Nodes are added with the parent they
+	 * belong to, in any order; children keep the order in which they were
+	 * added. The model is created with either the weights
+	 * as given (the weight of a node then must already include the weights of its
+	 * children) or with aggregated weights (the weight of a node then is
+	 * its own weight, and the weights of its children are added up in one pass
+	 * when building the model).
+	 * The builder is not thread-safe.
+	 * @param <N> the type of node
+	 */
+	public static class Builder<N> {
+
+		/** parent id of a node which was so far only referenced as a parent */
+		protected static final int PENDING = -2;
+
+		protected Object[] nodes;
+		protected int[] parents;
+		protected long[] weights;
+		protected int size;
+		protected int root;
+		protected int pending;
+		/** the ids in the order in which the nodes were added */
+		protected int[] sequence;
+		protected int added;
+		protected final NodeIndex index;
+
+		/**
+		 * Creates a builder.
+		 */
+		public Builder() {
+			this(1024);
+		}
+
+		/**
+		 * Creates a builder for about the given number of nodes.
+		 * @param expectedSize the expected number of nodes
+		 */
+		public Builder(final int expectedSize) {
+			final int capacity = Math.max(16, expectedSize);
+			nodes = new Object[capacity];
+			parents = new int[capacity];
+			weights = new long[capacity];
+			sequence = new int[capacity];
+			index = new NodeIndex(capacity);
+			root = -1;
+		}
+
+		/**
+		 * Adds the given node to the parent. The parent does not need
+		 * to have been added yet.
+		 * @param node the node to add, must not be {@code null} and must not
+		 * already have been added.
+		 * @param weight the weight of the node
+		 * @param parent the parent of the node; if the parent is {@code null}
+		 * the given node will be the root node of the model.
+		 * @return this builder
+		 * @throws IllegalArgumentException if the node was already added or is its own parent
+		 * @throws IllegalStateException if a second root node is added
+		 */
+		public Builder<N> add(final N node, final long weight, final N parent) {
+			// check everything before changing the builder
+			int id = index.get(node, nodes);
+			if (id >= 0 && parents[id] != PENDING) {
+				throw new IllegalArgumentException("node already added "+node);
+			}
+			final int parentId;
+			if (parent != null) {
+				if (parent.equals(node)) {
+					throw new IllegalArgumentException("node is its own parent "+node);
+				}
+				final int pid = index.get(parent, nodes);
+				parentId = pid >= 0 ? pid : allocate(parent, PENDING);
+			} else if (root >= 0) {
+				throw new IllegalStateException("root already set");
+			} else {
+				parentId = -1;
+			}
+			if (id < 0) {
+				id = allocate(node, parentId);
+			} else {
+				parents[id] = parentId;
+				pending--;
+			}
+			weights[id] = weight;
+			sequence[added++] = id;
+			if (parentId < 0) {
+				root = id;
+			}
+			return this;
+		}
+
+		/**
+		 * Creates the model holding the nodes added to this builder, using
+		 * the weights as given. The builder must not be used afterwards.
+		 * @return the model, never {@code null}.
+		 * @throws IllegalStateException if a node was referenced as a parent, but not added
+		 */
+		public CompactWeightedTreeModel<N> build() {
+			return build(false, null);
+		}
+
+		/**
+		 * Creates the model holding the nodes added to this builder.
+		 * The builder must not be used afterwards.
+		 * @param aggregateWeights <code>true</code> to add the weights of all
+		 * nodes to their parents, <code>false</code> to use the weights as given.
+		 * @param pool the pool to aggregate the weights in parallel, or {@code null}
+		 * to aggregate them in the current thread.
+		 * @return the model, never {@code null}.
+		 * @throws IllegalStateException if a node was referenced as a parent, but not added,
+		 * or not all nodes are reachable from the root node.
+		 */
+		public CompactWeightedTreeModel<N> build(final boolean aggregateWeights, final ForkJoinPool pool) {
+			if (pending > 0) {
+				throw new IllegalStateException(pending+" parent node(s) never added");
+			}
+			trim();
+			final CompactWeightedTreeModel<N> result = new CompactWeightedTreeModel<N>(size, root, nodes, parents, weights, index, sequence);
+			sequence = null;
+			if (aggregateWeights) {
+				result.aggregateWeights(pool);
+			}
+			return result;
+		}
+
+		protected int allocate(final N node, final int parentId) {
+			final int id = size;
+			ensureCapacity(id+1);
+			nodes[id] = node;
+			parents[id] = parentId;
+			index.put(node, id, nodes);
+			size++;
+			if (parentId == PENDING) {
+				pending++;
+			}
+			return id;
+		}
+
+		protected void trim() {
+			if (size < nodes.length) {
+				nodes = Arrays.copyOf(nodes, size);
+				parents = Arrays.copyOf(parents, size);
+				weights = Arrays.copyOf(weights, size);
+			}
+		}
+
+		protected void ensureCapacity(final int capacity) {
+			if (capacity > nodes.length) {
+				final int newCapacity = (int) Math.min(Integer.MAX_VALUE-8, Math.max(capacity, nodes.length+(long) (nodes.length >> 1)));
+				nodes = Arrays.copyOf(nodes, newCapacity);
+				parents = Arrays.copyOf(parents, newCapacity);
+				weights = Arrays.copyOf(weights, newCapacity);
+				sequence = Arrays.copyOf(sequence, newCapacity);
+			}
+		}
+
+	}
+
+	/**
+	 * Aggregates the weights of a range of nodes of one level.
+	 */
+	private static final class Aggregation extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private static final int THRESHOLD = 8192;
+
+		private final CompactWeightedTreeModel<?> model;
+		private final int[] order;
+		private final int start, end;
+
+		protected Aggregation(final CompactWeightedTreeModel<?> aModel, final int[] anOrder, final int aStart, final int anEnd) {
+			model = aModel;
+			order = anOrder;
+			start = aStart;
+			end = anEnd;
+		}
+
+		@Override
+		protected void compute() {
+			if (end-start > THRESHOLD) {
+				final int middle = (start+end) >>> 1;
+				invokeAll(new Aggregation(model, order, start, middle), new Aggregation(model, order, middle, end));
+			} else {
+				model.aggregate(order, start, end);
+			}
+		}
+
+	}
+
+	/**
+	 * Iterator over a range of child ids.
+	 * @param <N> the type of node
+	 */
+	private static final class NodeIterator<N> implements IIteratorSize<N> {
+
+		private final Object[] nodes;
+		private final int[] ids;
+		private final int end;
+		private int pos;
+
+		protected NodeIterator(final Object[] nodeArray, final int[] idArray, final int start, final int anEnd) {
+			nodes = nodeArray;
+			ids = idArray;
+			pos = start;
+			end = anEnd;
+		}
+
+		@Override
+		public int size() {
+			return end-pos;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return pos < end;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public N next() {
+			if (pos < end) {
+				return (N) nodes[ids[pos++]];
+			} else {
+				throw new NoSuchElementException();
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,57 @@
+package de.engehausen.treemap.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.engehausen.treemap.IRectangle;
+
+/**
+ * Rectangle model which can be filled by several threads at once,
+ * as done by the parallel layouts. All children of one parent must
+ * be added by the same thread; the model may only be read once all
+ * threads adding to it have finished.
+ *
+ * @param <N> the type of node the rectangles use.
+ */
+class ConcurrentRectangleModelImpl<N> extends RectangleModelImpl<N> {
+
+	private IRectangle<N> root;
+
+	/**
+	 * Creates a rectangle model with one node (the root node).
+	 * @param rootRectangle the root node.
+	 */
+	ConcurrentRectangleModelImpl(final IRectangle<N> rootRectangle) {
+		super(new ConcurrentHashMap<N, List<IRectangle<N>>>(64), new ConcurrentHashMap<N, IRectangle<N>>(64));
+		root = rootRectangle;
+	}
+
+	@Override
+	void addChild(final IRectangle<N> parent, final IRectangle<N> child) {
+		if (parent != null) {
+			childToParent.put(child.getNode(), parent);
+			final N key = parent.getNode();
+			List<IRectangle<N>> list = children.get(key);
+			if (list == null) {
+				list = new ArrayList<IRectangle<N>>(5);
+				children.put(key, list);
+			}
+			list.add(child);
+		} else {
+			// root node; the concurrent maps do not allow null keys
+			root = child;
+		}
+	}
+
+	@Override
+	public IRectangle<N> getRoot() {
+		return root;
+	}
+
+	@Override
+	public int size() {
+		return root!=null?childToParent.size()+1:childToParent.size();
+	}
+
+}
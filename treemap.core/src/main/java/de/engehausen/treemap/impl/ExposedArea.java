@@ -0,0 +1,182 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.engehausen.treemap.IIteratorSize;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+/**
+ * Computes the part of a rectangle not covered by its children, e.g. the
+ * borders and gaps left by {@link BorderSquarifiedLayout}. Renderers can
+ * paint just this area for inner rectangles, so that every pixel is
+ * written only once instead of once per nesting level.
+ */
+public final class ExposedArea {
+
+	private static final int[] NONE = new int[0];
+
+	private ExposedArea() {
+		// not to be instantiated
+	}
+
+	/**
+	 * Returns the area of the given rectangle not covered by its children
+	 * as disjoint rectangles. The children must not overlap each other.
+	 * @param model the rectangle model, must not be {@code null}.
+	 * @param rectangle the rectangle, must not be {@code null}.
+	 * @param <N> the type of node the rectangles work on
+	 * @return the exposed rectangles as <code>x, y, width, height</code>
+	 * quadruples; the array is empty if the children cover the whole rectangle.
+	 */
+	public static <N> int[] compute(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		final int px0 = rectangle.getX();
+		final int py0 = rectangle.getY();
+		final int px1 = px0+rectangle.getWidth();
+		final int py1 = py0+rectangle.getHeight();
+		if (px0 >= px1 || py0 >= py1) {
+			return NONE;
+		}
+		final Iterator<IRectangle<N>> children = model.getChildren(rectangle);
+		int capacity = children instanceof IIteratorSize<?> ? Math.max(1, ((IIteratorSize<?>) children).size()) : 16;
+		// child edges, clipped to the rectangle
+		int[] x0 = new int[capacity], y0 = new int[capacity], x1 = new int[capacity], y1 = new int[capacity];
+		int count = 0;
+		while (children.hasNext()) {
+			final IRectangle<N> child = children.next();
+			final int cx0 = Math.max(px0, child.getX());
+			final int cy0 = Math.max(py0, child.getY());
+			final int cx1 = Math.min(px1, child.getX()+child.getWidth());
+			final int cy1 = Math.min(py1, child.getY()+child.getHeight());
+			if (cx0 < cx1 && cy0 < cy1) {
+				if (count == capacity) {
+					capacity *= 2;
+					x0 = Arrays.copyOf(x0, capacity);
+					y0 = Arrays.copyOf(y0, capacity);
+					x1 = Arrays.copyOf(x1, capacity);
+					y1 = Arrays.copyOf(y1, capacity);
+				}
+				x0[count] = cx0;
+				y0[count] = cy0;
+				x1[count] = cx1;
+				y1[count++] = cy1;
+			}
+		}
+		if (count == 0) {
+			return new int[] { px0, py0, px1-px0, py1-py0 };
+		}
+		// the children by their top edge and the bands between all horizontal edges
+		final long[] byTop = new long[count];
+		final int[] ys = new int[2*count+2];
+		for (int i = 0; i < count; i++) {
+			byTop[i] = ((long) y0[i]<<32)|i;
+			ys[2*i] = y0[i];
+			ys[2*i+1] = y1[i];
+		}
+		ys[2*count] = py0;
+		ys[2*count+1] = py1;
+		Arrays.sort(byTop);
+		Arrays.sort(ys);
+
+		final Result result = new Result();
+		// children covering the current band, ordered by their left edge
+		final int[] active = new int[count];
+		int activeCount = 0;
+		int next = 0;
+		// gaps of the previous band, still growing downwards: x0, x1, top
+		int[] open = new int[12];
+		int openCount = 0;
+		int[] gaps = new int[12];
+		for (int b = 0; b < ys.length-1; b++) {
+			final int top = ys[b];
+			if (top == ys[b+1]) {
+				continue;
+			}
+			// update the covering children
+			int kept = 0;
+			for (int i = 0; i < activeCount; i++) {
+				if (y1[active[i]] > top) {
+					active[kept++] = active[i];
+				}
+			}
+			activeCount = kept;
+			while (next < count && (int) (byTop[next]>>>32) <= top) {
+				final int id = (int) byTop[next++];
+				int pos = activeCount++;
+				while (pos > 0 && x0[active[pos-1]] > x0[id]) {
+					active[pos] = active[pos-1];
+					pos--;
+				}
+				active[pos] = id;
+			}
+			// the gaps of this band
+			int gapCount = 0;
+			int cursor = px0;
+			for (int i = 0; i <= activeCount; i++) {
+				final int end = i < activeCount ? x0[active[i]] : px1;
+				if (end > cursor) {
+					if (3*gapCount+3 > gaps.length) {
+						gaps = Arrays.copyOf(gaps, 2*gaps.length);
+					}
+					gaps[3*gapCount] = cursor;
+					gaps[3*gapCount+1] = end;
+					gaps[3*gapCount+2] = top;
+					gapCount++;
+				}
+				if (i < activeCount) {
+					cursor = Math.max(cursor, x1[active[i]]);
+				}
+			}
+			// continue open gaps with the same columns, close the others
+			int o = 0;
+			for (int g = 0; g < gapCount; g++) {
+				while (o < openCount && open[3*o] < gaps[3*g]) {
+					result.add(open[3*o], open[3*o+2], open[3*o+1], top);
+					o++;
+				}
+				if (o < openCount && open[3*o] == gaps[3*g] && open[3*o+1] == gaps[3*g+1]) {
+					gaps[3*g+2] = open[3*o+2];
+					o++;
+				}
+			}
+			while (o < openCount) {
+				result.add(open[3*o], open[3*o+2], open[3*o+1], top);
+				o++;
+			}
+			final int[] swap = open;
+			open = gaps;
+			gaps = swap;
+			openCount = gapCount;
+		}
+		for (int o = 0; o < openCount; o++) {
+			result.add(open[3*o], open[3*o+2], open[3*o+1], py1);
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Growable list of rectangles.
+	 */
+	private static final class Result {
+
+		private int[] values = new int[16];
+		private int size;
+
+		protected void add(final int x0, final int y0, final int x1, final int y1) {
+			if (size+4 > values.length) {
+				values = Arrays.copyOf(values, 2*values.length);
+			}
+			values[size++] = x0;
+			values[size++] = y0;
+			values[size++] = x1-x0;
+			values[size++] = y1-y0;
+		}
+
+		protected int[] toArray() {
+			return size > 0 ? Arrays.copyOf(values, size) : NONE;
+		}
+
+	}
+
+}
@@ -1,11 +1,9 @@
 package de.engehausen.treemap.impl;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.List;
 
 import de.engehausen.treemap.ICancelable;
 import de.engehausen.treemap.IGenericTreeMapLayout;
@@ -68,31 +66,15 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 		if (depth < maxDepth && !cancelable.isCanceled()) {
 			final N n = rectangle.getNode();
 			final IGenericWeightedTreeModel<N, T> model = comparator.getModel();
-			final NumberArithmetic<T> arithmetic = model.getArithmetic();
 			if (model.hasChildren(n)) {
-				T total = arithmetic.zero();
 				// get children and sort by weight
-				final Iterator<N> i = model.getChildren(n);
-				final List<N> nodes = new ArrayList<N>(i instanceof IIteratorSize<?>?((IIteratorSize<?>) i).size():16);
-				while (i.hasNext()) {
-					final N c = i.next();
-					nodes.add(c);
-					total = arithmetic.add(total, model.getWeight(c));
-				}
-				final int max = nodes.size();
+				final Children<N, T> nodes = new Children<N, T>(model, model.getChildren(n));
+				nodes.sort();
+				final int max = nodes.size;
 				if (max > 2) {
-					Collections.sort(nodes, comparator);
-					squarify(result, rectangle, rectangle, comparator, nodes, 0, max, total, depth, cancelable);
+					squarify(result, rectangle, rectangle, comparator, nodes, 0, max, nodes.total, depth, cancelable);
 				} else {
-					if (max == 2) {
-						final N one = nodes.get(0);
-						final N two = nodes.get(1);
-						if (comparator.compare(one, two) > 0) {
-							nodes.set(0, two);
-							nodes.set(1, one);
-						}
-					}
-					slice(result, rectangle, rectangle, comparator, nodes, 0, max, total, depth, cancelable);
+					slice(result, rectangle, rectangle, comparator, nodes, 0, max, nodes.total, depth, cancelable);
 				}
 			}
 		}
@@ -104,14 +86,14 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 	 * @param parent the parent rectangle holding the currently treated nodes
 	 * @param rectangle the rectangle into which to fit the given nodes
 	 * @param comparator a comparator for node weights
-	 * @param nodes the nodes to fit into the rectangle
-	 * @param start start offset in nodes list
-	 * @param end end offset in nodes list
+	 * @param nodes the nodes to fit into the rectangle, sorted by descending weight
+	 * @param start start offset in nodes
+	 * @param end end offset in nodes
 	 * @param weight the summed up weight of all nodes from start to end
 	 * @param depth the current traversal depth
 	 * @param cancelable cancel monitor
 	 */
-	protected void squarify(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final RectangleImpl<N> rectangle, final ComparatorImpl<N, T> comparator, final List<N> nodes, final int start, final int end, final T weight, final int depth, final ICancelable cancelable) {
+	protected void squarify(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final RectangleImpl<N> rectangle, final ComparatorImpl<N, T> comparator, final Children<N, T> nodes, final int start, final int end, final T weight, final int depth, final ICancelable cancelable) {
 		if (end-start > 2) {
 			final IGenericWeightedTreeModel<N, T> model = comparator.getModel();
 			final NumberArithmetic<T> arithmetic = model.getArithmetic();
@@ -120,8 +102,7 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 			T sum = arithmetic.zero();
 			final int[] rect = new int[2];
 			do {
-				final N n = nodes.get(i++);
-				final T nodeWeight = model.getWeight(n);
+				final T nodeWeight = nodes.weight(i++);
 				sum = arithmetic.add(sum, nodeWeight);
 				// TODO this must be possible in a more elegant way
 				rect[0] = rectangle.w;
@@ -131,7 +112,7 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 				last = aspectRatio;
 				aspectRatio = aspectRatio(rect[0],rect[1]);
 				if (aspectRatio > last) {
-					sum = arithmetic.sub(sum, model.getWeight(nodes.get(--i)));
+					sum = arithmetic.sub(sum, nodes.weight(--i));
 					final double frac = sum.doubleValue()/weight.doubleValue();
 					if (frac > 0 && frac < 1) {
 						final RectangleImpl<N> r[] = rectangle.split(frac);
@@ -157,14 +138,14 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 	 * @param parent the parent rectangle holding the sliced rectangles
 	 * @param r the rectangle into which to slice the given nodes
 	 * @param comparator a comparator for node weights
-	 * @param nodes the nodes to fit into the rectangle
-	 * @param start start offset in nodes list
-	 * @param max end offset in nodes list
+	 * @param nodes the nodes to fit into the rectangle, sorted by descending weight
+	 * @param start start offset in nodes
+	 * @param max end offset in nodes
 	 * @param w total weight
 	 * @param depth the current traversal depth
 	 * @param cancelable cancel monitor
 	 */
-	protected void slice(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final RectangleImpl<N> r, final ComparatorImpl<N, T> comparator, final List<N> nodes, final int start, final int max, final T w, final int depth, final ICancelable cancelable) {
+	protected void slice(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final RectangleImpl<N> r, final ComparatorImpl<N, T> comparator, final Children<N, T> nodes, final int start, final int max, final T w, final int depth, final ICancelable cancelable) {
 		if (cancelable.isCanceled()) {
 			return;
 		}
@@ -178,7 +159,7 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 			// split horizontally
 			for (int i = start; i < max && sy < maxy; i++) {
 				final N c = nodes.get(i);
-				final T wc = model.getWeight(c);
+				final T wc = nodes.weight(i);
 				// compute height according to weight, but fill anyway for last node
 				final int step = (i!=last)?(int) Math.round((r.h*wc.doubleValue())/dw):r.h-(sy-r.y);
 				if (step > 0) {
@@ -210,7 +191,7 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 			// split vertically
 			for (int i = start; i < max && sx < maxx; i++) {
 				final N c = nodes.get(i);
-				final T wc = model.getWeight(c);
+				final T wc = nodes.weight(i);
 				// compute width according to weight, but fill anyway for last node
 				final int step = (i!=last)?(int) Math.round((r.w*wc.doubleValue())/dw):r.w-(sx-r.x);
 				if (step > 0) {
@@ -271,11 +252,16 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 		}
 	}
 
-	private static class ComparatorImpl<N, T extends Number> implements Comparator<N> {
+	/**
+	 * Compares nodes by descending weight; it also carries the model
+	 * through a layout run, so subclasses may extend it to keep state
+	 * that belongs to a single layout operation.
+	 */
+	protected static class ComparatorImpl<N, T extends Number> implements Comparator<N> {
 
 		private final IGenericWeightedTreeModel<N, T> model;
 
-		public ComparatorImpl(final IGenericWeightedTreeModel<N, T> aModel) {
+		protected ComparatorImpl(final IGenericWeightedTreeModel<N, T> aModel) {
 			model = aModel;
 		}
 
@@ -291,6 +277,97 @@ public class GenericSquarifiedLayout<N, T extends Number> implements IGenericTre
 
 	}
 
+	/**
+	 * The children of a node together with their weights, which
+	 * are looked up only once per layout of the children.
+	 * @param <N> the type of node
+	 * @param <T> the weight type
+	 */
+	protected static class Children<N, T extends Number> {
+
+		protected Object[] nodes;
+		protected Object[] weights;
+		protected int size;
+		protected T total;
+
+		/**
+		 * Collects the given children and their weights.
+		 * @param model the model to get the weights from, must not be {@code null}.
+		 * @param children the children, must not be {@code null}.
+		 */
+		protected Children(final IGenericWeightedTreeModel<N, T> model, final Iterator<N> children) {
+			final NumberArithmetic<T> arithmetic = model.getArithmetic();
+			int capacity = children instanceof IIteratorSize<?>?Math.max(1, ((IIteratorSize<?>) children).size()):16;
+			nodes = new Object[capacity];
+			weights = new Object[capacity];
+			total = arithmetic.zero();
+			while (children.hasNext()) {
+				if (size == capacity) {
+					capacity += capacity >> 1;
+					nodes = Arrays.copyOf(nodes, capacity);
+					weights = Arrays.copyOf(weights, capacity);
+				}
+				final N c = children.next();
+				final T weight = model.getWeight(c);
+				nodes[size] = c;
+				weights[size++] = weight;
+				total = arithmetic.add(total, weight);
+			}
+		}
+
+		/**
+		 * Returns the node at the given index.
+		 * @param index the index
+		 * @return the node at the given index.
+		 */
+		@SuppressWarnings("unchecked")
+		protected N get(final int index) {
+			return (N) nodes[index];
+		}
+
+		/**
+		 * Returns the weight of the node at the given index.
+		 * @param index the index
+		 * @return the weight of the node at the given index.
+		 */
+		@SuppressWarnings("unchecked")
+		protected T weight(final int index) {
+			return (T) weights[index];
+		}
+
+		/**
+		 * Sorts the nodes by descending weight; nodes of the same
+		 * weight keep their order.
+		 */
+		protected void sort() {
+			if (size < 2) {
+				return;
+			}
+			final Integer[] indices = new Integer[size];
+			for (int i = size-1; i >= 0; i--) {
+				indices[i] = Integer.valueOf(i);
+			}
+			final Object[] w = weights;
+			Arrays.sort(indices, new Comparator<Integer>() {
+				@SuppressWarnings("unchecked")
+				@Override
+				public int compare(final Integer o1, final Integer o2) {
+					return ((Comparable<Object>) w[o2.intValue()]).compareTo(w[o1.intValue()]);
+				}
+			});
+			final Object[] sortedNodes = new Object[size];
+			final Object[] sortedWeights = new Object[size];
+			for (int i = size-1; i >= 0; i--) {
+				final int index = indices[i].intValue();
+				sortedNodes[i] = nodes[index];
+				sortedWeights[i] = weights[index];
+			}
+			nodes = sortedNodes;
+			weights = sortedWeights;
+		}
+
+	}
+
 	@Override
 	public final boolean isCanceled() {
 		return false;
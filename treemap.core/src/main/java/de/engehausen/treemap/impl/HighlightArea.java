@@ -0,0 +1,74 @@
+package de.engehausen.treemap.impl;
+
+import de.engehausen.treemap.IHighlightBounds;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+/**
+ * Computes the part of a tree map to repaint when the highlight moves from
+ * one rectangle to another, using the highlight bounds told by the renderer
+ * (see {@link IHighlightBounds}). The tree map image may be scaled to the
+ * size of the component showing it, e.g. when zooming.
+ */
+public final class HighlightArea {
+
+	private static final int[] NONE = new int[0];
+
+	private HighlightArea() {
+		// not to be instantiated
+	}
+
+	/**
+	 * Returns the area covering the highlights of the previously and the
+	 * currently selected rectangle, scaled from the image to the component.
+	 * @param renderer the rectangle renderer, may be {@code null}.
+	 * @param model the rectangle model, must not be {@code null}.
+	 * @param previous the previously selected rectangle, may be {@code null}.
+	 * @param current the currently selected rectangle, may be {@code null}.
+	 * @param imageWidth the width of the tree map image
+	 * @param imageHeight the height of the tree map image
+	 * @param width the width of the component
+	 * @param height the height of the component
+	 * @param <N> the type of node the rectangles work on
+	 * @return the area as <code>x, y, width, height</code>, an empty array if
+	 * nothing is highlighted or {@code null} if the area is unknown, i.e. if the
+	 * renderer does not tell the bounds of a highlight.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <N> int[] compute(final Object renderer, final ITreeModel<IRectangle<N>> model, final IRectangle<N> previous, final IRectangle<N> current, final int imageWidth, final int imageHeight, final int width, final int height) {
+		final IHighlightBounds<N> highlight = renderer instanceof IHighlightBounds<?> ? (IHighlightBounds<N>) renderer : null;
+		final int[] area = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+		if (!add(highlight, model, previous, area) || !add(highlight, model, current, area)) {
+			return null;
+		}
+		if (area[0] >= area[2]) {
+			return NONE;
+		}
+		final double sx = width/(double) imageWidth;
+		final double sy = height/(double) imageHeight;
+		final int x = (int) Math.floor(area[0]*sx);
+		final int y = (int) Math.floor(area[1]*sy);
+		return new int[] { x, y, (int) Math.ceil(area[2]*sx)-x, (int) Math.ceil(area[3]*sy)-y };
+	}
+
+	/**
+	 * Adds the area of the highlight of the given rectangle to the given area.
+	 * @return <code>false</code> if the area of the highlight is unknown.
+	 */
+	private static <N> boolean add(final IHighlightBounds<N> highlight, final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle, final int[] area) {
+		if (rectangle == null) {
+			return true;
+		}
+		final IRectangle<N> bounds = highlight != null ? highlight.getHighlightBounds(model, rectangle) : null;
+		if (bounds == null) {
+			return false;
+		}
+		area[0] = Math.min(area[0], bounds.getX());
+		area[1] = Math.min(area[1], bounds.getY());
+		// outlines may be drawn one pixel right of and below the bounds
+		area[2] = Math.max(area[2], bounds.getX()+bounds.getWidth()+1);
+		area[3] = Math.max(area[3], bounds.getY()+bounds.getHeight()+1);
+		return true;
+	}
+
+}
@@ -0,0 +1,206 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import de.engehausen.treemap.IAggregateRectangle;
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+
+/**
+ * Squarified tree map layout which can update a previously computed layout.
+ * Given the nodes whose weight or children changed, only the subtrees
+ * containing these nodes are squarified again; all other subtrees whose
+ * rectangle keeps its size are taken over from the previous layout.
+ * The previous layout must have been computed with the same nesting depth.
+ * @param <N> the type of node the layout operates on.
+ */
+public class IncrementalSquarifiedLayout<N> extends SquarifiedLayout<N> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Creates the layout engine for the given model.
+	 *
+	 * @param nestingDepth the maximum nesting depth
+	 */
+	public IncrementalSquarifiedLayout(final int nestingDepth) {
+		super(nestingDepth);
+	}
+
+	/**
+	 * Creates the layout engine for the given model.
+	 *
+	 * @param nestingDepth the maximum nesting depth
+	 * @param minimumArea the minimum area (in pixels) of a child rectangle;
+	 * smaller children are folded into one aggregate rectangle.
+	 */
+	public IncrementalSquarifiedLayout(final int nestingDepth, final int minimumArea) {
+		super(nestingDepth, minimumArea);
+	}
+
+	/**
+	 * Updates the given layout for the given changed nodes. The start node and
+	 * size are the ones of the root rectangle of the previous layout.
+	 *
+	 * @param model the weighted tree model, must not be {@code null}.
+	 * @param previous the previous layout of the model, must not be {@code null}.
+	 * @param dirty the nodes whose weight or children changed, must not be {@code null}.
+	 * @param cancelable cancel monitor, must not be {@code null}.
+	 * @return the updated layout, never {@code null}.
+	 */
+	public ITreeModel<IRectangle<N>> relayout(final IWeightedTreeModel<N> model, final ITreeModel<IRectangle<N>> previous, final Collection<N> dirty, final ICancelable cancelable) {
+		final IRectangle<N> root = previous.getRoot();
+		if (root == null) {
+			return RectangleModelImpl.emptyModel();
+		}
+		return relayout(model, previous, dirty, root.getNode(), root.getWidth(), root.getHeight(), cancelable);
+	}
+
+	/**
+	 * Updates the given layout for the given changed nodes.
+	 *
+	 * @param model the weighted tree model, must not be {@code null}.
+	 * @param previous the previous layout of the model, must not be {@code null}.
+	 * @param dirty the nodes whose weight or children changed, must not be {@code null}.
+	 * @param startNode the node to start the layout with, must not be {@code null}.
+	 * @param width the width of the layout
+	 * @param height the height of the layout
+	 * @param cancelable cancel monitor, must not be {@code null}.
+	 * @return the updated layout, never {@code null}.
+	 */
+	public ITreeModel<IRectangle<N>> relayout(final IWeightedTreeModel<N> model, final ITreeModel<IRectangle<N>> previous, final Collection<N> dirty, final N startNode, final int width, final int height, final ICancelable cancelable) {
+		final Set<N> affected = new HashSet<N>(2*dirty.size()+16);
+		for (N node : dirty) {
+			// a change below a node changes the weight of all its ancestors
+			while (node != null && affected.add(node)) {
+				node = model.getParent(node);
+			}
+		}
+		final IncrementalContext<N> context = new IncrementalContext<N>(model, previous, affected);
+		final IRectangle<N> oldRoot = previous.getRoot();
+		if (oldRoot != null && startNode.equals(oldRoot.getNode())) {
+			context.register(oldRoot);
+		}
+		final RectangleImpl<N> root = new RectangleImpl<N>(startNode, 0, 0, width, height);
+		final RectangleModelImpl<N> result = new RectangleModelImpl<N>(root);
+		squarify(result, root, context, 0, cancelable);
+		if (cancelable.isCanceled()) {
+			return RectangleModelImpl.emptyModel();
+		} else {
+			return result;
+		}
+	}
+
+	/**
+	 * Squarifies the rectangles' model children, taking over the
+	 * children of the previous layout where possible.
+	 *
+	 * @param result the tree result object
+	 * @param rectangle the rectangle into which to fit its children
+	 * @param comparator a comparator for node weights
+	 * @param depth the current traversal depth
+	 * @param cancelable cancel monitor
+	 */
+	@Override
+	protected void squarify(final RectangleModelImpl<N> result, final RectangleImpl<N> rectangle, final ComparatorImpl<N> comparator, final int depth, final ICancelable cancelable) {
+		if (comparator instanceof IncrementalContext<?>) {
+			final IncrementalContext<N> context = (IncrementalContext<N>) comparator;
+			final N node = rectangle.getNode();
+			final IRectangle<N> old = context.lookup(node);
+			if (old != null) {
+				if (context.affected.contains(node)) {
+					// children may keep their size although the node changed
+					context.register(old);
+				} else if (old.getWidth() == rectangle.w && old.getHeight() == rectangle.h) {
+					// the layout does not depend on the position of the rectangle
+					copy(result, rectangle, old, context.previous, rectangle.x-old.getX(), rectangle.y-old.getY(), cancelable);
+					return;
+				}
+			}
+		}
+		super.squarify(result, rectangle, comparator, depth, cancelable);
+	}
+
+	/**
+	 * Copies the children of a rectangle of the previous layout into the result.
+	 * @param result the tree result object
+	 * @param parent the parent rectangle in the result
+	 * @param old the corresponding rectangle of the previous layout
+	 * @param previous the previous layout
+	 * @param dx the horizontal offset of the new rectangle to the old one
+	 * @param dy the vertical offset of the new rectangle to the old one
+	 * @param cancelable cancel monitor
+	 */
+	protected void copy(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final IRectangle<N> old, final ITreeModel<IRectangle<N>> previous, final int dx, final int dy, final ICancelable cancelable) {
+		if (previous.hasChildren(old) && !cancelable.isCanceled()) {
+			for (Iterator<IRectangle<N>> i = previous.getChildren(old); i.hasNext(); ) {
+				final IRectangle<N> oldChild = i.next();
+				final RectangleImpl<N> child;
+				if (dx == 0 && dy == 0 && oldChild instanceof RectangleImpl<?>) {
+					child = (RectangleImpl<N>) oldChild;
+				} else if (oldChild instanceof IAggregateRectangle<?>) {
+					final IAggregateRectangle<N> aggregate = (IAggregateRectangle<N>) oldChild;
+					child = new AggregateRectangleImpl<N>(aggregate.getNode(), aggregate.getX()+dx, aggregate.getY()+dy, aggregate.getWidth(), aggregate.getHeight(), aggregate.getCount(), aggregate.getWeight());
+				} else {
+					child = new RectangleImpl<N>(oldChild.getNode(), oldChild.getX()+dx, oldChild.getY()+dy, oldChild.getWidth(), oldChild.getHeight());
+				}
+				result.addChild(parent, child);
+				copy(result, child, oldChild, previous, dx, dy, cancelable);
+			}
+		}
+	}
+
+	/**
+	 * Carries the previous layout and the changed nodes through a layout run.
+	 * @param <N> the type of node
+	 */
+	protected static class IncrementalContext<N> extends ComparatorImpl<N> {
+
+		protected final ITreeModel<IRectangle<N>> previous;
+		protected final Set<N> affected;
+		/** rectangles of the previous layout whose parent was changed */
+		protected final Map<N, IRectangle<N>> rectangles;
+
+		protected IncrementalContext(final IWeightedTreeModel<N> aModel, final ITreeModel<IRectangle<N>> previousLayout, final Set<N> affectedNodes) {
+			super(aModel);
+			previous = previousLayout;
+			affected = affectedNodes;
+			rectangles = new HashMap<N, IRectangle<N>>();
+		}
+
+		/**
+		 * Makes the rectangle and its children of the previous layout known.
+		 * @param rectangle a rectangle of the previous layout
+		 */
+		protected void register(final IRectangle<N> rectangle) {
+			rectangles.put(rectangle.getNode(), rectangle);
+			if (previous.hasChildren(rectangle)) {
+				for (Iterator<IRectangle<N>> i = previous.getChildren(rectangle); i.hasNext(); ) {
+					final IRectangle<N> child = i.next();
+					if (!(child instanceof IAggregateRectangle<?>)) {
+						// the node of an aggregate may be laid out on its own now
+						rectangles.put(child.getNode(), child);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the rectangle of the given node in the previous layout.
+		 * @param node the node
+		 * @return the rectangle of the previous layout, or {@code null}
+		 */
+		protected IRectangle<N> lookup(final N node) {
+			return rectangles.get(node);
+		}
+
+	}
+
+}
@@ -0,0 +1,325 @@
+package de.engehausen.treemap.impl;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IGenericTreeMapLayout;
+import de.engehausen.treemap.IGenericWeightedTreeModel;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleIndex;
+import de.engehausen.treemap.ITreeMapLayout;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+
+/**
+ * Cache for computed layouts. Layouts are cached per model and layout
+ * instance, start node and size; the least recently used layouts are
+ * evicted when the cache exceeds its number of entries or its total
+ * number of rectangles. Cached layouts are only softly referenced and
+ * may be reclaimed by the garbage collector if memory gets low.
+ * Computed layouts are copied into a {@link CompactRectangleModel}, which
+ * retains less memory and is navigated without hashing nodes. The rectangle
+ * index of a cached layout is kept next to it, see {@link #index(ITreeModel, ICancelable)}.
+ * <br>The cache does not notice changes to a model; after changing a model
+ * its layouts must be removed using {@link #invalidate(ITreeModel)}.
+ * The cache is thread-safe.
+ *
+ * @param <N> the type of node the layouts operate on.
+ */
+public class LayoutCache<N> {
+
+	/** default maximum number of cached layouts */
+	public static final int DEFAULT_MAX_ENTRIES = 16;
+	/** default maximum number of rectangles of all cached layouts */
+	public static final long DEFAULT_MAX_RECTANGLES = 1L<<20;
+
+	protected final int maxEntries;
+	protected final long maxRectangles;
+	protected final Map<Key<N>, Entry<N>> entries;
+	protected long rectangles;
+	protected long hits, misses, evictions;
+
+	/**
+	 * Creates a cache with default limits.
+	 */
+	public LayoutCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_RECTANGLES);
+	}
+
+	/**
+	 * Creates a cache with the given limits.
+	 * @param maximumEntries the maximum number of cached layouts, must be positive
+	 * @param maximumRectangles the maximum number of rectangles of all cached layouts, must be positive
+	 */
+	public LayoutCache(final int maximumEntries, final long maximumRectangles) {
+		if (maximumEntries <= 0 || maximumRectangles <= 0) {
+			throw new IllegalArgumentException("limits must be positive");
+		}
+		maxEntries = maximumEntries;
+		maxRectangles = maximumRectangles;
+		entries = new LinkedHashMap<Key<N>, Entry<N>>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the layout of the given model, computing it with the given layout
+	 * if it is not cached. Canceled layout computations are not cached.
+	 * @param layout the layout to use, must not be {@code null}.
+	 * @param model the model to lay out, must not be {@code null}; this must be
+	 * an {@link IGenericWeightedTreeModel} for an {@link IGenericTreeMapLayout}
+	 * and an {@link IWeightedTreeModel} otherwise.
+	 * @param startNode the node to start the layout with, must not be {@code null}.
+	 * @param width the width of the layout
+	 * @param height the height of the layout
+	 * @param cancelable cancel monitor, must not be {@code null}.
+	 * @return the layout, never {@code null}.
+	 */
+	@SuppressWarnings("unchecked")
+	public ITreeModel<IRectangle<N>> layout(final ITreeMapLayout<N> layout, final ITreeModel<N> model, final N startNode, final int width, final int height, final ICancelable cancelable) {
+		final Key<N> key = new Key<N>(model, layout, startNode, width, height);
+		ITreeModel<IRectangle<N>> result = get(key);
+		if (result == null) {
+			if (layout instanceof IGenericTreeMapLayout) {
+				result = ((IGenericTreeMapLayout<N, Number>) layout).layout((IGenericWeightedTreeModel<N, Number>) model, startNode, width, height, cancelable);
+			} else {
+				result = layout.layout((IWeightedTreeModel<N>) model, startNode, width, height, cancelable);
+			}
+			if (!cancelable.isCanceled() && result.getRoot() != null) {
+				result = compact(result);
+				put(key, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the rectangle index of the given layout. If the layout is cached,
+	 * its index is built once and kept (softly referenced) with the layout.
+	 * @param layout the layout to index, must not be {@code null}.
+	 * @param cancelable cancel monitor, must not be {@code null}.
+	 * @return the index of the layout, never {@code null}; if the operation is
+	 * canceled, the index is incomplete and must not be used.
+	 */
+	public IRectangleIndex<N> index(final ITreeModel<IRectangle<N>> layout, final ICancelable cancelable) {
+		final Entry<N> entry = find(layout);
+		final SoftReference<IRectangleIndex<N>> ref = entry != null ? entry.index : null;
+		IRectangleIndex<N> result = ref != null ? ref.get() : null;
+		if (result == null) {
+			result = new PixelRectangleIndex<N>(layout, cancelable);
+			if (entry != null && !cancelable.isCanceled()) {
+				entry.index = new SoftReference<IRectangleIndex<N>>(result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all cached layouts of the given model.
+	 * @param model the model whose layouts to remove
+	 */
+	public synchronized void invalidate(final ITreeModel<N> model) {
+		for (Iterator<Map.Entry<Key<N>, Entry<N>>> i = entries.entrySet().iterator(); i.hasNext(); ) {
+			final Map.Entry<Key<N>, Entry<N>> entry = i.next();
+			if (entry.getKey().model == model) {
+				rectangles -= entry.getValue().size;
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached layouts.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		rectangles = 0;
+	}
+
+	/**
+	 * Returns the number of cached layouts.
+	 * @return the number of cached layouts.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of layouts found in the cache.
+	 * @return the number of cache hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of layouts not found in the cache.
+	 * @return the number of cache misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of layouts removed from the cache to respect
+	 * its limits or because they were reclaimed by the garbage collector.
+	 * @return the number of evictions.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		final StringBuilder sb = new StringBuilder(64);
+		sb.append("LayoutCache[entries=").append(entries.size())
+		  .append(",rectangles=").append(rectangles)
+		  .append(",hits=").append(hits)
+		  .append(",misses=").append(misses)
+		  .append(",evictions=").append(evictions).append(']');
+		return sb.toString();
+	}
+
+	protected synchronized ITreeModel<IRectangle<N>> get(final Key<N> key) {
+		final Entry<N> entry = entries.get(key);
+		if (entry != null) {
+			final ITreeModel<IRectangle<N>> result = entry.get();
+			if (result != null) {
+				hits++;
+				return result;
+			}
+			// reclaimed by the garbage collector
+			entries.remove(key);
+			rectangles -= entry.size;
+			evictions++;
+		}
+		misses++;
+		return null;
+	}
+
+	protected synchronized Entry<N> find(final ITreeModel<IRectangle<N>> layout) {
+		for (Entry<N> entry : entries.values()) {
+			if (entry.get() == layout) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	protected synchronized void put(final Key<N> key, final ITreeModel<IRectangle<N>> layout) {
+		final int size = sizeOf(layout);
+		if (size > maxRectangles) {
+			return;
+		}
+		final Entry<N> old = entries.put(key, new Entry<N>(layout, size));
+		if (old != null) {
+			rectangles -= old.size;
+		}
+		rectangles += size;
+		for (Iterator<Entry<N>> i = entries.values().iterator(); i.hasNext() && (entries.size() > maxEntries || rectangles > maxRectangles); ) {
+			final Entry<N> eldest = i.next();
+			rectangles -= eldest.size;
+			i.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Returns the layout to cache for a computed layout.
+	 * The computed layout is consumed, see {@link CompactRectangleModel#compact(ITreeModel)}.
+	 * @param layout the computed layout, never {@code null}.
+	 * @return the layout as a {@link CompactRectangleModel}, never {@code null}.
+	 */
+	protected ITreeModel<IRectangle<N>> compact(final ITreeModel<IRectangle<N>> layout) {
+		return CompactRectangleModel.compact(layout);
+	}
+
+	/**
+	 * Returns the number of rectangles of the given layout.
+	 * @param layout the layout
+	 * @return the number of rectangles of the layout.
+	 */
+	protected int sizeOf(final ITreeModel<IRectangle<N>> layout) {
+		if (layout instanceof RectangleModelImpl<?>) {
+			return ((RectangleModelImpl<N>) layout).size();
+		} else if (layout instanceof CompactRectangleModel<?>) {
+			return ((CompactRectangleModel<N>) layout).size();
+		}
+		int result = 0;
+		final FIFO<IRectangle<N>> queue = new FIFO<IRectangle<N>>();
+		queue.push(layout.getRoot());
+		while (queue.notEmpty()) {
+			final IRectangle<N> rectangle = queue.pull();
+			result++;
+			if (layout.hasChildren(rectangle)) {
+				for (Iterator<IRectangle<N>> i = layout.getChildren(rectangle); i.hasNext(); ) {
+					queue.push(i.next());
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Cache key; models and layouts are compared by identity.
+	 * @param <N> the type of node
+	 */
+	protected static final class Key<N> {
+
+		protected final ITreeModel<N> model;
+		protected final ITreeMapLayout<N> layout;
+		protected final N startNode;
+		protected final int width, height;
+		private final int hash;
+
+		protected Key(final ITreeModel<N> aModel, final ITreeMapLayout<N> aLayout, final N aStartNode, final int aWidth, final int aHeight) {
+			model = aModel;
+			layout = aLayout;
+			startNode = aStartNode;
+			width = aWidth;
+			height = aHeight;
+			int h = System.identityHashCode(aModel);
+			h = 31*h+System.identityHashCode(aLayout);
+			h = 31*h+(aStartNode!=null?aStartNode.hashCode():0);
+			h = 31*h+aWidth;
+			hash = 31*h+aHeight;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (obj instanceof Key<?>) {
+				final Key<?> other = (Key<?>) obj;
+				return model == other.model && layout == other.layout &&
+					width == other.width && height == other.height &&
+					(startNode != null ? startNode.equals(other.startNode) : other.startNode == null);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+	/**
+	 * Softly referenced cached layout with its rectangle index.
+	 * @param <N> the type of node
+	 */
+	protected static final class Entry<N> extends SoftReference<ITreeModel<IRectangle<N>>> {
+
+		protected final int size;
+		/** the index references the layout, so it must not be strongly held */
+		protected volatile SoftReference<IRectangleIndex<N>> index;
+
+		protected Entry(final ITreeModel<IRectangle<N>> layout, final int rectangleCount) {
+			super(layout);
+			size = rectangleCount;
+		}
+
+	}
+
+}
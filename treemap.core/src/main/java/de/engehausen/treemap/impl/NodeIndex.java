@@ -0,0 +1,98 @@
+package de.engehausen.treemap.impl;
+
+/**
+ * Open addressing hash table mapping nodes to dense integer ids.
+ * The nodes themselves are not held by the table; they are looked up
+ * by id in the array passed to each operation, which avoids an entry
+ * object per node.
+ */
+final class NodeIndex {
+
+	private int[] table; // id+1 per slot, zero marks a free slot
+	private int size;
+
+	/**
+	 * Creates an index for the given number of nodes.
+	 * @param expectedSize the expected number of nodes
+	 */
+	NodeIndex(final int expectedSize) {
+		table = new int[capacity(expectedSize)];
+	}
+
+	/**
+	 * Returns the number of nodes in the index.
+	 * @return the number of nodes in the index.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the id of the given node.
+	 * @param node the node to look up, must not be {@code null}.
+	 * @param nodes the nodes by id, must not be {@code null}.
+	 * @return the id of the node, or <code>-1</code> if the node is unknown.
+	 */
+	int get(final Object node, final Object[] nodes) {
+		final int[] t = table;
+		final int length = t.length;
+		int slot = slot(node.hashCode(), length);
+		int entry;
+		while ((entry = t[slot]) != 0) {
+			final Object candidate = nodes[entry-1];
+			if (candidate == node || node.equals(candidate)) {
+				return entry-1;
+			}
+			if (++slot == length) {
+				slot = 0;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Adds the given node with the given id. The node must not already be contained.
+	 * @param node the node to add, must not be {@code null}.
+	 * @param id the id of the node
+	 * @param nodes the nodes by id, must not be {@code null}; the array must
+	 * contain the node at the given id.
+	 */
+	void put(final Object node, final int id, final Object[] nodes) {
+		if (4L*(size+1) > 3L*table.length) {
+			final int[] old = table;
+			table = new int[capacity(2*(size+1))];
+			for (int i = old.length-1; i >= 0; i--) {
+				final int entry = old[i];
+				if (entry != 0) {
+					insert(nodes[entry-1].hashCode(), entry);
+				}
+			}
+		}
+		insert(node.hashCode(), id+1);
+		size++;
+	}
+
+	private void insert(final int hash, final int entry) {
+		final int[] t = table;
+		final int length = t.length;
+		int slot = slot(hash, length);
+		while (t[slot] != 0) {
+			if (++slot == length) {
+				slot = 0;
+			}
+		}
+		t[slot] = entry;
+	}
+
+	private static int capacity(final int expectedSize) {
+		// keep the load factor at about three quarters
+		return (int) Math.min(Integer.MAX_VALUE-8, Math.max(16L, expectedSize+(expectedSize/3L)+1));
+	}
+
+	private static int slot(final int hash, final int length) {
+		// spread the hash, then map it onto the table without requiring a power of two
+		final int h = hash*0x9e3779b9;
+		return (int) (((h^(h>>>16))&0xffffffffL)*length>>>32);
+	}
+
+}
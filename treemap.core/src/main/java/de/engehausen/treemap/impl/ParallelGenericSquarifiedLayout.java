@@ -0,0 +1,114 @@
+package de.engehausen.treemap.impl;
+
+import java.util.concurrent.ForkJoinPool;
+
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IGenericWeightedTreeModel;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+/**
+ * Squarified tree map layout for weighted tree models using any kind of
+ * number-based weight, which lays out sibling subtrees concurrently.
+ * Subtrees of rectangles which are at least as large as a given threshold
+ * are forked as tasks of a fork/join pool.
+ * <br>The weighted tree model must support concurrent reads.
+ * @param <N> the type of node the layout operates on.
+ * @param <T> the weight type.
+ * @see ParallelSquarifiedLayout
+ */
+public class ParallelGenericSquarifiedLayout<N, T extends Number> extends GenericSquarifiedLayout<N, T> {
+
+	private static final long serialVersionUID = 1L;
+
+	protected final int threshold;
+	protected transient ForkJoinPool pool;
+
+	/**
+	 * Creates the layout engine using the common fork/join pool
+	 * and the default threshold.
+	 *
+	 * @param nestingDepth the maximum nesting depth
+	 * @see ParallelSquarifiedLayout#DEFAULT_THRESHOLD
+	 */
+	public ParallelGenericSquarifiedLayout(final int nestingDepth) {
+		this(nestingDepth, ParallelSquarifiedLayout.DEFAULT_THRESHOLD, null);
+	}
+
+	/**
+	 * Creates the layout engine.
+	 *
+	 * @param nestingDepth the maximum nesting depth
+	 * @param forkThreshold the minimum area (in pixels) of a rectangle
+	 * for its subtree to be laid out in a separate task
+	 * @param forkJoinPool the pool to run the layout in; if {@code null}
+	 * the common pool is used.
+	 */
+	public ParallelGenericSquarifiedLayout(final int nestingDepth, final int forkThreshold, final ForkJoinPool forkJoinPool) {
+		super(nestingDepth);
+		threshold = forkThreshold;
+		pool = forkJoinPool;
+	}
+
+	@Override
+	public ITreeModel<IRectangle<N>> layout(final IGenericWeightedTreeModel<N, T> model, final N startNode, final int width, final int height, final ICancelable cancelable) {
+		final RectangleImpl<N> root = new RectangleImpl<N>(startNode, 0, 0, width, height);
+		final RectangleModelImpl<N> result = new ConcurrentRectangleModelImpl<N>(root);
+		final ForkContext<N, T> context = new ForkContext<N, T>(model);
+		context.forks.invoke(pool, new Runnable() {
+			@Override
+			public void run() {
+				ParallelGenericSquarifiedLayout.super.squarify(result, root, context, 0, cancelable);
+			}
+		});
+		if (cancelable.isCanceled()) {
+			return RectangleModelImpl.emptyModel();
+		} else {
+			return result;
+		}
+	}
+
+	/**
+	 * Squarifies the rectangles' model children; if the rectangle is large
+	 * enough, this is done in a forked task.
+	 *
+	 * @param result the tree result object
+	 * @param rectangle the rectangle into which to fit its children
+	 * @param comparator a comparator for node weights
+	 * @param depth the current traversal depth
+	 * @param cancelable cancel monitor
+	 */
+	@Override
+	protected void squarify(final RectangleModelImpl<N> result, final RectangleImpl<N> rectangle, final ComparatorImpl<N, T> comparator, final int depth, final ICancelable cancelable) {
+		if (depth > 0 && rectangle.area() >= threshold && comparator instanceof ForkContext<?, ?>) {
+			if (depth < maxDepth && !cancelable.isCanceled()) {
+				((ForkContext<N, T>) comparator).forks.fork(new Runnable() {
+					@Override
+					public void run() {
+						ParallelGenericSquarifiedLayout.super.squarify(result, rectangle, comparator, depth, cancelable);
+					}
+				});
+			}
+		} else {
+			super.squarify(result, rectangle, comparator, depth, cancelable);
+		}
+	}
+
+	/**
+	 * Layout state of a single layout operation, holding all forked
+	 * tasks which still need to be joined.
+	 * @param <N> the type of node the layout operates on.
+	 * @param <T> the weight type.
+	 */
+	protected static class ForkContext<N, T extends Number> extends ComparatorImpl<N, T> {
+
+		final SubtreeForks forks;
+
+		protected ForkContext(final IGenericWeightedTreeModel<N, T> aModel) {
+			super(aModel);
+			forks = new SubtreeForks();
+		}
+
+	}
+
+}
@@ -0,0 +1,132 @@
+package de.engehausen.treemap.impl;
+
+import java.util.concurrent.ForkJoinPool;
+
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+
+/**
+ * Squarified tree map layout which lays out sibling subtrees concurrently.
+ * Once the rectangle of a node is known, its subtree is independent of
+ * its siblings; subtrees of rectangles which are at least as large as a
+ * given threshold are forked as tasks of a fork/join pool.
+ * <br>The weighted tree model must support concurrent reads.
+ * @param <N> the type of node the layout operates on.
+ * @see ParallelGenericSquarifiedLayout
+ */
+public class ParallelSquarifiedLayout<N> extends SquarifiedLayout<N> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The default minimum area (in pixels) of a rectangle for its subtree to
+	 * be laid out in a separate task.
+	 */
+	public static final int DEFAULT_THRESHOLD = 64*64;
+
+	protected final int threshold;
+	protected transient ForkJoinPool pool;
+
+	/**
+	 * Creates the layout engine using the common fork/join pool
+	 * and the default threshold.
+	 *
+	 * @param nestingDepth the maximum nesting depth
+	 */
+	public ParallelSquarifiedLayout(final int nestingDepth) {
+		this(nestingDepth, DEFAULT_THRESHOLD, null);
+	}
+
+	/**
+	 * Creates the layout engine.
+	 *
+	 * @param nestingDepth the maximum nesting depth
+	 * @param forkThreshold the minimum area (in pixels) of a rectangle
+	 * for its subtree to be laid out in a separate task
+	 * @param forkJoinPool the pool to run the layout in; if {@code null}
+	 * the common pool is used.
+	 */
+	public ParallelSquarifiedLayout(final int nestingDepth, final int forkThreshold, final ForkJoinPool forkJoinPool) {
+		this(nestingDepth, 0, forkThreshold, forkJoinPool);
+	}
+
+	/**
+	 * Creates the layout engine.
+	 *
+	 * @param nestingDepth the maximum nesting depth
+	 * @param minimumArea the minimum area (in pixels) of a child rectangle;
+	 * smaller children are folded into one aggregate rectangle.
+	 * @param forkThreshold the minimum area (in pixels) of a rectangle
+	 * for its subtree to be laid out in a separate task
+	 * @param forkJoinPool the pool to run the layout in; if {@code null}
+	 * the common pool is used.
+	 */
+	public ParallelSquarifiedLayout(final int nestingDepth, final int minimumArea, final int forkThreshold, final ForkJoinPool forkJoinPool) {
+		super(nestingDepth, minimumArea);
+		threshold = forkThreshold;
+		pool = forkJoinPool;
+	}
+
+	@Override
+	public ITreeModel<IRectangle<N>> layout(final IWeightedTreeModel<N> model, final N startNode, final int width, final int height, final ICancelable cancelable) {
+		final RectangleImpl<N> root = new RectangleImpl<N>(startNode, 0, 0, width, height);
+		final RectangleModelImpl<N> result = new ConcurrentRectangleModelImpl<N>(root);
+		final ForkContext<N> context = new ForkContext<N>(model);
+		context.forks.invoke(pool, new Runnable() {
+			@Override
+			public void run() {
+				ParallelSquarifiedLayout.super.squarify(result, root, context, 0, cancelable);
+			}
+		});
+		if (cancelable.isCanceled()) {
+			return RectangleModelImpl.emptyModel();
+		} else {
+			return result;
+		}
+	}
+
+	/**
+	 * Squarifies the rectangles' model children; if the rectangle is large
+	 * enough, this is done in a forked task.
+	 *
+	 * @param result the tree result object
+	 * @param rectangle the rectangle into which to fit its children
+	 * @param comparator a comparator for node weights
+	 * @param depth the current traversal depth
+	 * @param cancelable cancel monitor
+	 */
+	@Override
+	protected void squarify(final RectangleModelImpl<N> result, final RectangleImpl<N> rectangle, final ComparatorImpl<N> comparator, final int depth, final ICancelable cancelable) {
+		if (depth > 0 && rectangle.area() >= threshold && comparator instanceof ForkContext<?>) {
+			if (depth < maxDepth && !cancelable.isCanceled()) {
+				((ForkContext<N>) comparator).forks.fork(new Runnable() {
+					@Override
+					public void run() {
+						ParallelSquarifiedLayout.super.squarify(result, rectangle, comparator, depth, cancelable);
+					}
+				});
+			}
+		} else {
+			super.squarify(result, rectangle, comparator, depth, cancelable);
+		}
+	}
+
+	/**
+	 * Layout state of a single layout operation, holding all forked
+	 * tasks which still need to be joined.
+	 * @param <N> the type of node the layout operates on.
+	 */
+	protected static class ForkContext<N> extends ComparatorImpl<N> {
+
+		final SubtreeForks forks;
+
+		protected ForkContext(final IWeightedTreeModel<N> aModel) {
+			super(aModel);
+			forks = new SubtreeForks();
+		}
+
+	}
+
+}
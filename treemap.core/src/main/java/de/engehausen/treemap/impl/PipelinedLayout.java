@@ -0,0 +1,336 @@
+package de.engehausen.treemap.impl;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleSink;
+import de.engehausen.treemap.ITreeMapLayout;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+
+/**
+ * Layout which, when passing the rectangles to a sink, computes the layout
+ * of another layout in a separate thread. The rectangles are handed over to
+ * the calling thread through a bounded queue, so that the sink can process
+ * them, e.g. write them, while the layout is still being computed. If the
+ * other layout passes its rectangles while computing them (like
+ * {@link SquarifiedLayout}), the memory used is bounded by the capacity
+ * of the queue.
+ * <br>The weighted tree model must support reads from another thread.
+ * @param <N> the type of node the layout operates on.
+ */
+public class PipelinedLayout<N> implements ITreeMapLayout<N>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** the default number of rectangles the queue holds */
+	public static final int DEFAULT_CAPACITY = 64*1024;
+
+	/** the number of rectangles handed over at once */
+	protected static final int CHUNK_SIZE = 1024;
+
+	protected final ITreeMapLayout<N> layout;
+	protected final int capacity;
+	protected transient Executor executor;
+
+	/**
+	 * Creates the layout with the default capacity, computing
+	 * the layout in a new thread.
+	 * @param aLayout the layout to compute, must not be {@code null}.
+	 */
+	public PipelinedLayout(final ITreeMapLayout<N> aLayout) {
+		this(aLayout, DEFAULT_CAPACITY, null);
+	}
+
+	/**
+	 * Creates the layout.
+	 * @param aLayout the layout to compute, must not be {@code null}.
+	 * @param queueCapacity the number of rectangles the queue holds, must be positive.
+	 * @param anExecutor the executor to compute the layout with; if {@code null}
+	 * a new thread is started for each layout.
+	 */
+	public PipelinedLayout(final ITreeMapLayout<N> aLayout, final int queueCapacity, final Executor anExecutor) {
+		if (aLayout == null) {
+			throw new IllegalArgumentException("layout must not be null");
+		}
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("invalid capacity "+queueCapacity);
+		}
+		layout = aLayout;
+		capacity = queueCapacity;
+		executor = anExecutor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The layout is computed in the calling thread.
+	 */
+	@Override
+	public ITreeModel<IRectangle<N>> layout(final IWeightedTreeModel<N> model, final N startNode, final int width, final int height) {
+		return layout.layout(model, startNode, width, height);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The layout is computed in the calling thread.
+	 */
+	@Override
+	public ITreeModel<IRectangle<N>> layout(final IWeightedTreeModel<N> model, final N startNode, final int width, final int height, final ICancelable cancelable) {
+		return layout.layout(model, startNode, width, height, cancelable);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The layout is computed in another thread, the sink is called in the
+	 * calling thread. The path model passed to the sink knows the ancestors of
+	 * the passed rectangle. Exceptions of the layout are rethrown in the calling
+	 * thread; if the sink throws an exception, the layout is stopped. If either
+	 * thread is interrupted, an {@link IllegalStateException} is thrown in the
+	 * calling thread, so that an incomplete layout is never taken for a complete one.
+	 */
+	@Override
+	public void layout(final IWeightedTreeModel<N> model, final N startNode, final int width, final int height, final IRectangleSink<N> sink, final ICancelable cancelable) {
+		final Pipe<N> pipe = new Pipe<N>(Math.min(capacity, CHUNK_SIZE), Math.max(1, capacity/CHUNK_SIZE), cancelable);
+		final Runnable producer = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					layout.layout(model, startNode, width, height, pipe, pipe);
+				} catch (RuntimeException e) {
+					pipe.failure = e;
+				} catch (Error e) {
+					pipe.failure = e;
+				} finally {
+					pipe.close();
+				}
+			}
+		};
+		if (executor != null) {
+			executor.execute(producer);
+		} else {
+			final Thread thread = new Thread(producer, "treemap-layout");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		pipe.drain(sink);
+	}
+
+	/**
+	 * Bounded queue of rectangles between the thread computing the layout
+	 * and the thread calling the sink. The rectangles are handed over in
+	 * chunks to keep the synchronization cost low.
+	 * @param <N> the type of node the rectangles use.
+	 */
+	protected static class Pipe<N> implements IRectangleSink<N>, ICancelable {
+
+		private static final long POLL_MILLIS = 10;
+
+		protected final int chunkSize;
+		protected final BlockingQueue<Chunk<N>> queue;
+		protected final ICancelable cancelable;
+		/** set when the sink failed or either thread was interrupted */
+		protected volatile boolean aborted;
+		/** the exception thrown by the layout, if any */
+		protected volatile Throwable failure;
+		/** set when the layout thread is done, after the end of the layout was handed over or a failure was recorded */
+		protected volatile boolean finished;
+		protected Chunk<N> chunk;
+
+		protected Pipe(final int aChunkSize, final int chunks, final ICancelable aCancelable) {
+			chunkSize = aChunkSize;
+			queue = new ArrayBlockingQueue<Chunk<N>>(chunks);
+			cancelable = aCancelable;
+			chunk = new Chunk<N>(chunkSize);
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return aborted || cancelable.isCanceled();
+		}
+
+		@Override
+		public void add(final ITreeModel<IRectangle<N>> path, final IRectangle<N> parent, final IRectangle<N> rectangle, final int depth, final boolean leaf) {
+			chunk.rectangles[chunk.size] = rectangle;
+			chunk.depths[chunk.size++] = leaf ? -depth-1 : depth;
+			if (chunk.size == chunkSize) {
+				put(chunk);
+				chunk = new Chunk<N>(chunkSize);
+			}
+		}
+
+		/**
+		 * Hands over the remaining rectangles and signals the end of the layout.
+		 */
+		protected void close() {
+			try {
+				if (chunk.size > 0) {
+					put(chunk);
+				}
+				chunk = null;
+				put(new Chunk<N>(0));
+			} finally {
+				finished = true;
+			}
+		}
+
+		/**
+		 * Passes the rectangles to the sink until the layout is done.
+		 * @param sink the sink, must not be {@code null}.
+		 */
+		protected void drain(final IRectangleSink<N> sink) {
+			final PathModel<N> path = new PathModel<N>();
+			boolean done = false;
+			try {
+				Chunk<N> next;
+				while ((next = take()) != null && next.size > 0) {
+					for (int i = 0; i < next.size; i++) {
+						final int code = next.depths[i];
+						final boolean leaf = code < 0;
+						final int depth = leaf ? -code-1 : code;
+						path.set(next.rectangles[i], depth, leaf);
+						sink.add(path, depth > 0 ? path.path[depth-1] : null, next.rectangles[i], depth, leaf);
+					}
+				}
+				if (next == null && failure == null) {
+					failure = new IllegalStateException("layout ended without handing over all rectangles");
+				}
+				done = true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for the layout", e);
+			} finally {
+				if (!done) {
+					aborted = true;
+					queue.clear();
+				}
+			}
+			final Throwable t = failure;
+			if (t instanceof RuntimeException) {
+				throw (RuntimeException) t;
+			} else if (t instanceof Error) {
+				throw (Error) t;
+			}
+		}
+
+		/**
+		 * Returns the next chunk, waiting for the layout thread.
+		 * @return the next chunk, or {@code null} if the layout thread is done
+		 * without having handed over the end of the layout.
+		 * @throws InterruptedException if the calling thread is interrupted
+		 */
+		private Chunk<N> take() throws InterruptedException {
+			Chunk<N> result;
+			while ((result = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+				if (finished) {
+					// the end of the layout is handed over before finishing
+					return queue.poll();
+				}
+			}
+			return result;
+		}
+
+		private void put(final Chunk<N> aChunk) {
+			try {
+				while (!queue.offer(aChunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+					if (aborted) {
+						return;
+					}
+				}
+			} catch (InterruptedException e) {
+				if (!aborted && failure == null) {
+					failure = new IllegalStateException("layout interrupted", e);
+				}
+				aborted = true;
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+	/**
+	 * Rectangles with their depth, which is negative (<code>-depth-1</code>)
+	 * for leafs.
+	 * @param <N> the type of node the rectangles use.
+	 */
+	protected static class Chunk<N> {
+
+		protected final IRectangle<N>[] rectangles;
+		protected final int[] depths;
+		protected int size;
+
+		@SuppressWarnings("unchecked")
+		protected Chunk(final int aCapacity) {
+			rectangles = new IRectangle[aCapacity];
+			depths = new int[aCapacity];
+		}
+
+	}
+
+	/**
+	 * Rectangle model knowing the path from the root to the rectangle passed last.
+	 * @param <N> the type of node the rectangles use.
+	 */
+	protected static class PathModel<N> implements ITreeModel<IRectangle<N>> {
+
+		protected IRectangle<N>[] path;
+		protected int depth;
+		protected boolean leaf;
+
+		@SuppressWarnings("unchecked")
+		protected PathModel() {
+			path = new IRectangle[16];
+		}
+
+		protected void set(final IRectangle<N> rectangle, final int aDepth, final boolean isLeaf) {
+			if (aDepth == path.length) {
+				path = Arrays.copyOf(path, 2*aDepth);
+			}
+			path[aDepth] = rectangle;
+			depth = aDepth;
+			leaf = isLeaf;
+		}
+
+		@Override
+		public IRectangle<N> getRoot() {
+			return path[0];
+		}
+
+		@Override
+		public IRectangle<N> getParent(final IRectangle<N> node) {
+			for (int i = depth; i > 0; i--) {
+				if (path[i] == node) {
+					return path[i-1];
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public Iterator<IRectangle<N>> getChildren(final IRectangle<N> node) {
+			return Collections.<IRectangle<N>>emptyList().iterator();
+		}
+
+		@Override
+		public boolean hasChildren(final IRectangle<N> node) {
+			if (path[depth] == node) {
+				return !leaf;
+			}
+			for (int i = depth-1; i >= 0; i--) {
+				if (path[i] == node) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+}
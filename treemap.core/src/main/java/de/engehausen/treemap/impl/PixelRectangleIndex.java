@@ -0,0 +1,101 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleIndex;
+import de.engehausen.treemap.ITreeModel;
+
+/**
+ * Rectangle index holding the innermost rectangle of every pixel covered
+ * by the root rectangle. Point queries are answered by a single array
+ * access, at the cost of four bytes per pixel.
+ *
+ * @param <N> the type of node the rectangles use.
+ */
+public class PixelRectangleIndex<N> implements IRectangleIndex<N> {
+
+	protected final int x, y, width, height;
+	protected final IRectangle<N>[] rectangles;
+	/** index into the rectangles per pixel, or <code>-1</code> */
+	protected final int[] pixels;
+
+	/**
+	 * Creates the index for the given rectangles.
+	 * @param model the rectangles to index, must not be {@code null}.
+	 */
+	public PixelRectangleIndex(final ITreeModel<IRectangle<N>> model) {
+		this(model, new BuildControl());
+	}
+
+	/**
+	 * Creates the index for the given rectangles. If the operation is canceled,
+	 * the index is incomplete and must not be used.
+	 * @param model the rectangles to index, must not be {@code null}.
+	 * @param cancelable cancel monitor, must not be {@code null}.
+	 */
+	@SuppressWarnings("unchecked")
+	public PixelRectangleIndex(final ITreeModel<IRectangle<N>> model, final ICancelable cancelable) {
+		final IRectangle<N> root = model.getRoot();
+		if (root != null) {
+			x = root.getX();
+			y = root.getY();
+			width = root.getWidth();
+			height = root.getHeight();
+		} else {
+			x = y = width = height = 0;
+		}
+		pixels = new int[width*height];
+		Arrays.fill(pixels, -1);
+		IRectangle<N>[] list = new IRectangle[64];
+		int count = 0;
+		if (root != null) {
+			// breadth-first, so that inner rectangles overwrite their ancestors
+			final FIFO<IRectangle<N>> queue = new FIFO<IRectangle<N>>();
+			queue.push(root);
+			while (queue.notEmpty() && !cancelable.isCanceled()) {
+				final IRectangle<N> rectangle = queue.pull();
+				if (count == list.length) {
+					list = Arrays.copyOf(list, count+(count >> 1));
+				}
+				list[count] = rectangle;
+				fill(rectangle, count++);
+				if (model.hasChildren(rectangle)) {
+					for (Iterator<IRectangle<N>> i = model.getChildren(rectangle); i.hasNext(); ) {
+						queue.push(i.next());
+					}
+				}
+			}
+		}
+		rectangles = Arrays.copyOf(list, count);
+	}
+
+	@Override
+	public IRectangle<N> find(final int px, final int py) {
+		final int dx = px-x;
+		final int dy = py-y;
+		if (dx >= 0 && dx < width && dy >= 0 && dy < height) {
+			final int id = pixels[dy*width+dx];
+			return id >= 0 ? rectangles[id] : null;
+		} else {
+			return null;
+		}
+	}
+
+	private void fill(final IRectangle<N> rectangle, final int id) {
+		// clip against the root rectangle
+		final int x0 = Math.max(0, rectangle.getX()-x);
+		final int y0 = Math.max(0, rectangle.getY()-y);
+		final int x1 = Math.min(width, rectangle.getX()-x+rectangle.getWidth());
+		final int y1 = Math.min(height, rectangle.getY()-y+rectangle.getHeight());
+		if (x0 < x1) {
+			for (int row = y0; row < y1; row++) {
+				final int offset = row*width;
+				Arrays.fill(pixels, offset+x0, offset+x1, id);
+			}
+		}
+	}
+
+}
@@ -34,8 +34,17 @@ public class RectangleModelImpl<N> implements ITreeModel<IRectangle<N>> {
 	 * Creates an empty rectangle model.
 	 */
 	public RectangleModelImpl() {
-		children = new HashMap<N, List<IRectangle<N>>>(64, 1);
-		childToParent = new HashMap<N, IRectangle<N>>(64, 1);
+		this(new HashMap<N, List<IRectangle<N>>>(64, 1), new HashMap<N, IRectangle<N>>(64, 1));
+	}
+
+	/**
+	 * Creates a rectangle model using the given maps.
+	 * @param childMap mappings "parent node to child rectangles", must not be {@code null}.
+	 * @param parentMap mappings "child node to parent rectangle", must not be {@code null}.
+	 */
+	protected RectangleModelImpl(final Map<N, List<IRectangle<N>>> childMap, final Map<N, IRectangle<N>> parentMap) {
+		children = childMap;
+		childToParent = parentMap;
 	}
 
 	/**
@@ -90,6 +99,22 @@ public class RectangleModelImpl<N> implements ITreeModel<IRectangle<N>> {
 		return children.containsKey(node.getNode());
 	}
 
+	/**
+	 * Returns the number of rectangles in the model.
+	 * @return the number of rectangles in the model.
+	 */
+	public int size() {
+		return childToParent.size();
+	}
+
+	/**
+	 * Removes all rectangles from the model.
+	 */
+	/*package protected*/ void clear() {
+		children.clear();
+		childToParent.clear();
+	}
+
 	/**
 	 * Returns all nodes of the model as a list.
 	 * @return all nodes of the model as a list, never {@code null}.
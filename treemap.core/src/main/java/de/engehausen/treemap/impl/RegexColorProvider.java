@@ -0,0 +1,288 @@
+package de.engehausen.treemap.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.ILabelProvider;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+/**
+ * Color provider mapping the text of a node to a color using a list of
+ * rules. A rule is a regular expression (see {@link Pattern}) with a color;
+ * the color of the first rule whose expression matches the whole text is
+ * used, and a default color if none matches.
+ * <br>The rules are compiled into a single expression, so that the text is
+ * matched once instead of once per rule. The color of a node is computed
+ * once and remembered until the rules change; nodes are compared by identity
+ * and are only weakly referenced. The text of a node must therefore not
+ * depend on the rectangle or model it is shown in. Colors can be computed
+ * in advance and in parallel using {@link #precompute(ITreeModel, ForkJoinPool)}.
+ * <br>The provider is thread-safe.
+ *
+ * @param <N> the type of node the provider supports
+ * @param <C> the color type, e.g for Swing {@link java.awt.Color}.
+ */
+public class RegexColorProvider<N, C> implements IColorProvider<N, C> {
+
+	/** the number of rectangles below which precomputing does not fork */
+	protected static final int FORK_THRESHOLD = 1024;
+
+	private static final Pattern BACK_REFERENCE = Pattern.compile(".*\\\\[1-9].*", Pattern.DOTALL);
+
+	protected final ILabelProvider<N> textProvider;
+	protected final C defaultColor;
+	protected volatile Rules<C> rules;
+
+	/**
+	 * Creates the provider without any rules.
+	 * @param aTextProvider the provider of the text to match, must not be {@code null}.
+	 * @param aDefaultColor the color of nodes not matched by any rule, must not be {@code null}.
+	 */
+	public RegexColorProvider(final ILabelProvider<N> aTextProvider, final C aDefaultColor) {
+		if (aTextProvider == null || aDefaultColor == null) {
+			throw new IllegalArgumentException("text provider and default color must not be null");
+		}
+		textProvider = aTextProvider;
+		defaultColor = aDefaultColor;
+		rules = new Rules<C>(Collections.<String>emptyList(), Collections.<C>emptyList());
+	}
+
+	/**
+	 * Sets the rules, replacing all colors computed so far.
+	 * @param expressions the regular expressions of the rules in the order of their
+	 * precedence, must not be {@code null}.
+	 * @param colors the colors of the rules, must not be {@code null} and must be
+	 * of the same size as the expressions.
+	 * @throws PatternSyntaxException if an expression is invalid
+	 */
+	public void setRules(final List<String> expressions, final List<C> colors) {
+		if (expressions.size() != colors.size()) {
+			throw new IllegalArgumentException("got "+expressions.size()+" expressions, but "+colors.size()+" colors");
+		}
+		rules = new Rules<C>(expressions, colors);
+	}
+
+	/**
+	 * Forgets all colors computed so far. This is needed if the text of
+	 * nodes has changed.
+	 */
+	public void invalidate() {
+		final Rules<C> current = rules;
+		rules = new Rules<C>(current);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public C getColor(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		final Rules<C> current = rules;
+		final N node = rectangle.getNode();
+		C result = current.cache.get(new WeakKey(node, null));
+		if (result == null) {
+			final String text = textProvider.getLabel(model, rectangle);
+			result = text != null ? current.match(text) : null;
+			if (result == null) {
+				result = defaultColor;
+			}
+			current.put(node, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the colors of all rectangles of the given model, so that
+	 * rendering the model does not need to match any text.
+	 * @param model the model to compute the colors for, must not be {@code null}.
+	 * @param pool the pool to compute the colors with; if {@code null}
+	 * the common pool is used.
+	 */
+	public void precompute(final ITreeModel<IRectangle<N>> model, final ForkJoinPool pool) {
+		final IRectangle<N> root = model.getRoot();
+		if (root != null) {
+			final List<IRectangle<N>> list = new ArrayList<IRectangle<N>>();
+			collect(model, root, list);
+			(pool != null ? pool : ForkJoinPool.commonPool()).invoke(new Precompute(model, list, 0, list.size()));
+		}
+	}
+
+	private void collect(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle, final List<IRectangle<N>> list) {
+		list.add(rectangle);
+		if (model.hasChildren(rectangle)) {
+			for (Iterator<IRectangle<N>> i = model.getChildren(rectangle); i.hasNext(); ) {
+				collect(model, i.next(), list);
+			}
+		}
+	}
+
+	/**
+	 * Computes the colors of a range of rectangles, splitting it if it is large.
+	 */
+	protected class Precompute extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final ITreeModel<IRectangle<N>> model;
+		protected final List<IRectangle<N>> rectangles;
+		protected final int from, to;
+
+		protected Precompute(final ITreeModel<IRectangle<N>> aModel, final List<IRectangle<N>> someRectangles, final int start, final int end) {
+			model = aModel;
+			rectangles = someRectangles;
+			from = start;
+			to = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (to-from <= FORK_THRESHOLD) {
+				for (int i = from; i < to; i++) {
+					getColor(model, rectangles.get(i));
+				}
+			} else {
+				final int middle = (from+to) >>> 1;
+				invokeAll(new Precompute(model, rectangles, from, middle), new Precompute(model, rectangles, middle, to));
+			}
+		}
+
+	}
+
+	/**
+	 * Compiled rules with the colors computed using them.
+	 * @param <C> the color type
+	 */
+	protected static class Rules<C> {
+
+		/** the combined expression, {@code null} if the rules must be matched one by one */
+		protected final Pattern combined;
+		/** the group of the combined expression matching each rule */
+		protected final int[] groups;
+		protected final Pattern[] patterns;
+		protected final List<C> colors;
+		protected final ConcurrentMap<WeakKey, C> cache;
+		protected final ReferenceQueue<Object> queue;
+
+		protected Rules(final List<String> expressions, final List<C> someColors) {
+			final int max = expressions.size();
+			patterns = new Pattern[max];
+			groups = new int[max];
+			colors = new ArrayList<C>(someColors);
+			final StringBuilder sb = new StringBuilder("(?:");
+			boolean combine = max > 1;
+			int group = 1;
+			for (int i = 0; i < max; i++) {
+				final String expression = expressions.get(i);
+				patterns[i] = Pattern.compile(expression);
+				// group numbers change when combining, so back references would break
+				combine &= !BACK_REFERENCE.matcher(expression).matches();
+				if (i > 0) {
+					sb.append('|');
+				}
+				sb.append('(').append(expression).append(')');
+				groups[i] = group;
+				group += 1+patterns[i].matcher("").groupCount();
+			}
+			Pattern pattern = null;
+			if (combine) {
+				try {
+					pattern = Pattern.compile(sb.append(')').toString());
+				} catch (PatternSyntaxException e) {
+					// e.g. a named group used by several rules, match one by one
+					pattern = null;
+				}
+			}
+			combined = pattern;
+			cache = new ConcurrentHashMap<WeakKey, C>();
+			queue = new ReferenceQueue<Object>();
+		}
+
+		protected Rules(final Rules<C> other) {
+			combined = other.combined;
+			groups = other.groups;
+			patterns = other.patterns;
+			colors = other.colors;
+			cache = new ConcurrentHashMap<WeakKey, C>();
+			queue = new ReferenceQueue<Object>();
+		}
+
+		/**
+		 * Returns the color of the first rule matching the given text.
+		 * @param text the text to match, must not be {@code null}.
+		 * @return the color of the first matching rule, {@code null} if no rule matches.
+		 */
+		protected C match(final String text) {
+			if (combined != null) {
+				final Matcher m = combined.matcher(text);
+				if (m.matches()) {
+					for (int i = 0; i < groups.length; i++) {
+						if (m.start(groups[i]) >= 0) {
+							return colors.get(i);
+						}
+					}
+				}
+			} else {
+				for (int i = 0; i < patterns.length; i++) {
+					if (patterns[i].matcher(text).matches()) {
+						return colors.get(i);
+					}
+				}
+			}
+			return null;
+		}
+
+		protected void put(final Object node, final C color) {
+			Reference<?> ref;
+			while ((ref = queue.poll()) != null) {
+				cache.remove(ref);
+			}
+			cache.put(new WeakKey(node, queue), color);
+		}
+
+	}
+
+	/**
+	 * Weak reference to a node, comparing the node by identity.
+	 */
+	protected static class WeakKey extends WeakReference<Object> {
+
+		private final int hash;
+
+		protected WeakKey(final Object node, final ReferenceQueue<Object> queue) {
+			super(node, queue);
+			hash = System.identityHashCode(node);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (obj instanceof WeakKey) {
+				final Object node = get();
+				return node != null && node == ((WeakKey) obj).get();
+			} else {
+				return false;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,139 @@
+package de.engehausen.treemap.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import de.engehausen.treemap.IAggregateRectangle;
+import de.engehausen.treemap.IGenericWeightedTreeModel;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+
+/**
+ * Region query over the rectangles of a tree map layout. A query returns
+ * the rectangles intersecting an area, where a rectangle lying completely
+ * inside of the area stands for its whole subtree. Subtrees outside of the
+ * area and inside of it are not descended into, so the cost of a query
+ * depends on the number of rectangles crossing the border of the area,
+ * not on the number of rectangles inside of it. The weight of the area is
+ * the sum of the weights of the nodes of the returned rectangles.
+ * <br>The query does not change any state and can be used concurrently.
+ *
+ * @param <N> the type of node the rectangles use.
+ */
+public class RegionQuery<N> {
+
+	protected final ITreeModel<IRectangle<N>> rectangles;
+	protected final ITreeModel<N> model;
+
+	/**
+	 * Creates the query.
+	 * @param aRectangleModel the rectangles of the layout, must not be {@code null}.
+	 * @param aModel the model the layout was computed for, either an
+	 * {@link IWeightedTreeModel} or an {@link IGenericWeightedTreeModel}.
+	 * Must not be {@code null}.
+	 */
+	public RegionQuery(final ITreeModel<IRectangle<N>> aRectangleModel, final ITreeModel<N> aModel) {
+		if (!(aModel instanceof IWeightedTreeModel<?>) && !(aModel instanceof IGenericWeightedTreeModel<?, ?>)) {
+			throw new IllegalArgumentException("model without weights: "+aModel);
+		}
+		rectangles = aRectangleModel;
+		model = aModel;
+	}
+
+	/**
+	 * Returns the rectangles intersecting the given area.
+	 * @param x the horizontal position of the area
+	 * @param y the vertical position of the area
+	 * @param width the width of the area
+	 * @param height the height of the area
+	 * @return the region, never {@code null}.
+	 */
+	public Region<N> query(final int x, final int y, final int width, final int height) {
+		final Region<N> result = new Region<N>();
+		final IRectangle<N> root = rectangles.getRoot();
+		if (root != null && width > 0 && height > 0) {
+			collect(root, x, y, x+width, y+height, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the weight of the subtree of the given rectangle.
+	 * @param rectangle the rectangle, never {@code null}.
+	 * @return the weight of the subtree of the rectangle.
+	 */
+	@SuppressWarnings("unchecked")
+	protected double getWeight(final IRectangle<N> rectangle) {
+		if (rectangle instanceof IAggregateRectangle<?>) {
+			return ((IAggregateRectangle<N>) rectangle).getWeight();
+		} else if (model instanceof IWeightedTreeModel<?>) {
+			return ((IWeightedTreeModel<N>) model).getWeight(rectangle.getNode());
+		} else {
+			return ((IGenericWeightedTreeModel<N, ?>) model).getWeight(rectangle.getNode()).doubleValue();
+		}
+	}
+
+	private void collect(final IRectangle<N> rectangle, final int x0, final int y0, final int x1, final int y1, final Region<N> result) {
+		final int rx0 = rectangle.getX();
+		final int ry0 = rectangle.getY();
+		final int rx1 = rx0+rectangle.getWidth();
+		final int ry1 = ry0+rectangle.getHeight();
+		if (rx1 <= x0 || rx0 >= x1 || ry1 <= y0 || ry0 >= y1) {
+			// the children lie inside of the rectangle, so they are outside of the area as well
+			return;
+		}
+		if ((rx0 >= x0 && rx1 <= x1 && ry0 >= y0 && ry1 <= y1) || !rectangles.hasChildren(rectangle)) {
+			result.rectangles.add(rectangle);
+			result.weight += getWeight(rectangle);
+		} else {
+			for (Iterator<IRectangle<N>> i = rectangles.getChildren(rectangle); i.hasNext(); ) {
+				collect(i.next(), x0, y0, x1, y1, result);
+			}
+		}
+	}
+
+	/**
+	 * The result of a region query.
+	 * @param <N> the type of node the rectangles use.
+	 */
+	public static class Region<N> {
+
+		protected final List<IRectangle<N>> rectangles;
+		protected double weight;
+
+		protected Region() {
+			rectangles = new ArrayList<IRectangle<N>>();
+		}
+
+		/**
+		 * Returns the rectangles of the region: the leafs crossing the border
+		 * of the area and the outermost rectangles lying inside of it, in
+		 * depth-first order.
+		 * @return the rectangles of the region, never {@code null}.
+		 */
+		public List<IRectangle<N>> getRectangles() {
+			return Collections.unmodifiableList(rectangles);
+		}
+
+		/**
+		 * Returns the total weight of the region.
+		 * @return the total weight of the region.
+		 */
+		public double getWeight() {
+			return weight;
+		}
+
+		/**
+		 * Checks if the region contains any rectangles.
+		 * @return <code>true</code> if the region contains no rectangles.
+		 */
+		public boolean isEmpty() {
+			return rectangles.isEmpty();
+		}
+
+	}
+
+}
@@ -1,21 +1,25 @@
 package de.engehausen.treemap.impl;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
-import java.util.List;
 
+import de.engehausen.treemap.IAggregateRectangle;
 import de.engehausen.treemap.ICancelable;
 import de.engehausen.treemap.IIteratorSize;
 import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleSink;
 import de.engehausen.treemap.ITreeMapLayout;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.IWeightedTreeModel;
 
 /**
  * Squarified tree map layout, used by various implementations such as the SWT and the Swing versions.
+ * <br>Optionally children whose rectangle would be smaller than a given area are
+ * folded into one {@link IAggregateRectangle} per parent, which is not laid out further.
+ * This bounds the cost of the layout and of rendering by the size of the
+ * tree map instead of by the size of the tree.
  * @param <N> the type of node the layout operates on.
  * @see GenericSquarifiedLayout
  */
@@ -24,6 +28,7 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 	private static final long serialVersionUID = 1L;
 
 	protected final int maxDepth;
+	protected final int minArea;
 
 	/**
 	 * Creates the layout engine for the given model.
@@ -31,7 +36,20 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 	 * @param nestingDepth the maximum nesting depth
 	 */
 	public SquarifiedLayout(final int nestingDepth) {
+		this(nestingDepth, 0);
+	}
+
+	/**
+	 * Creates the layout engine for the given model.
+	 *
+	 * @param nestingDepth the maximum nesting depth
+	 * @param minimumArea the minimum area (in pixels) of a child rectangle;
+	 * smaller children are folded into one aggregate rectangle. Use zero to
+	 * lay out all children.
+	 */
+	public SquarifiedLayout(final int nestingDepth, final int minimumArea) {
 		maxDepth = nestingDepth;
+		minArea = minimumArea;
 	}
 
 	@Override
@@ -51,6 +69,19 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The rectangles are passed to the sink while they are computed; the layout
+	 * runs in the calling thread.
+	 */
+	@Override
+	public void layout(final IWeightedTreeModel<N> model, final N startNode, final int width, final int height, final IRectangleSink<N> sink, final ICancelable cancelable) {
+		final RectangleImpl<N> root = new RectangleImpl<N>(startNode, 0, 0, width, height);
+		final StreamingRectangleModel<N> result = new StreamingRectangleModel<N>(root, sink);
+		squarify(result, root, new ComparatorImpl<N>(model), 0, cancelable);
+		result.flush();
+	}
+
 	/**
 	 * Squarifies the rectangles' model children.
 	 *
@@ -65,29 +96,18 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 			final N n = rectangle.getNode();
 			final IWeightedTreeModel<N> model = comparator.getModel();
 			if (model.hasChildren(n)) {
-				long total = 0;
 				// get children and sort by weight
-				final Iterator<N> i = model.getChildren(n);
-				final List<N> nodes = new ArrayList<N>(i instanceof IIteratorSize<?>?((IIteratorSize<?>) i).size():16);
-				while (i.hasNext()) {
-					final N c = i.next();
-					nodes.add(c);
-					total += model.getWeight(c);
+				final Children<N> nodes = new Children<N>(model, model.getChildren(n));
+				nodes.sort();
+				if (minArea > 0) {
+					// the weight a child needs for a rectangle of the minimum area
+					nodes.fold(minArea*(double) nodes.total/((double) rectangle.w*rectangle.h));
 				}
-				final int max = nodes.size();
+				final int max = nodes.size;
 				if (max > 2) {
-					Collections.sort(nodes, comparator);
-					squarify(result, rectangle, rectangle, comparator, nodes, 0, max, total, depth, cancelable);
+					squarify(result, rectangle, rectangle, comparator, nodes, 0, max, nodes.total, depth, cancelable);
 				} else {
-					if (max == 2) {
-						final N one = nodes.get(0);
-						final N two = nodes.get(1);
-						if (comparator.compare(one, two) > 0) {
-							nodes.set(0, two);
-							nodes.set(1, one);
-						}
-					}
-					slice(result, rectangle, rectangle, comparator, nodes, 0, max, total, depth, cancelable);
+					slice(result, rectangle, rectangle, comparator, nodes, 0, max, nodes.total, depth, cancelable);
 				}
 			}
 		}
@@ -99,23 +119,22 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 	 * @param parent the parent rectangle holding the currently treated nodes
 	 * @param rectangle the rectangle into which to fit the given nodes
 	 * @param comparator a comparator for node weights
-	 * @param nodes the nodes to fit into the rectangle
-	 * @param start start offset in nodes list
-	 * @param end end offset in nodes list
+	 * @param nodes the nodes to fit into the rectangle, sorted by descending weight
+	 * @param start start offset in nodes
+	 * @param end end offset in nodes
 	 * @param weight the summed up weight of all nodes from start to end
 	 * @param depth the current traversal depth
 	 * @param cancelable cancel monitor
 	 */
-	protected void squarify(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final RectangleImpl<N> rectangle, final ComparatorImpl<N> comparator, final List<N> nodes, final int start, final int end, final long weight, final int depth, final ICancelable cancelable) {
+	protected void squarify(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final RectangleImpl<N> rectangle, final ComparatorImpl<N> comparator, final Children<N> nodes, final int start, final int end, final long weight, final int depth, final ICancelable cancelable) {
 		if (end-start > 2) {
-			final IWeightedTreeModel<N> model = comparator.getModel();
+			final long[] weights = nodes.weights;
 			float aspectRatio = Float.MAX_VALUE, last;
 			int i = start;
 			long sum = 0;
 			final int[] rect = new int[2];
 			do {
-				final N n = nodes.get(i++);
-				final long nodeWeight = model.getWeight(n);
+				final long nodeWeight = weights[i++];
 				sum += nodeWeight;
 				// TODO this must be possible in a more elegant way
 				rect[0] = rectangle.w;
@@ -125,7 +144,7 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 				last = aspectRatio;
 				aspectRatio = aspectRatio(rect[0],rect[1]);
 				if (aspectRatio > last) {
-					sum -= model.getWeight(nodes.get(--i));
+					sum -= weights[--i];
 					final double frac = sum/(double) weight;
 					if (frac > 0 && frac < 1) {
 						final RectangleImpl<N> r[] = rectangle.split(frac);
@@ -151,14 +170,14 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 	 * @param parent the parent rectangle holding the sliced rectangles
 	 * @param r the rectangle into which to slice the given nodes
 	 * @param comparator a comparator for node weights
-	 * @param nodes the nodes to fit into the rectangle
-	 * @param start start offset in nodes list
-	 * @param max end offset in nodes list
+	 * @param nodes the nodes to fit into the rectangle, sorted by descending weight
+	 * @param start start offset in nodes
+	 * @param max end offset in nodes
 	 * @param w total weight
 	 * @param depth the current traversal depth
 	 * @param cancelable cancel monitor
 	 */
-	protected void slice(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final RectangleImpl<N> r, final ComparatorImpl<N> comparator, final List<N> nodes, final int start, final int max, final long w, final int depth, final ICancelable cancelable) {
+	protected void slice(final RectangleModelImpl<N> result, final RectangleImpl<N> parent, final RectangleImpl<N> r, final ComparatorImpl<N> comparator, final Children<N> nodes, final int start, final int max, final long w, final int depth, final ICancelable cancelable) {
 		if (cancelable.isCanceled()) {
 			return;
 		}
@@ -172,14 +191,14 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 			// split horizontally
 			for (int i = start; i < max && sy < maxy; i++) {
 				final N c = nodes.get(i);
-				final long wc = model.getWeight(c);
+				final long wc = nodes.weights[i];
 				// compute height according to weight, but fill anyway for last node
 				final int step = (i!=last)?(int) Math.round((r.h*wc)/dw):r.h-(sy-r.y);
 				if (step > 0) {
-					final RectangleImpl<N> child = createRectangle(c, sx, sy, r.w, step);
+					final RectangleImpl<N> child = createRectangle(nodes, i, sx, sy, r.w, step);
 					if (child != null) {
 						result.addChild(parent, child);
-						if (model.hasChildren(c)) {
+						if (i != nodes.aggregate && model.hasChildren(c)) {
 							squarify(result, child, comparator, depth+1, cancelable);
 						}
 						sy += step;
@@ -189,7 +208,7 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 					// dropping the rest children; they will not be displayable
 					final int rest = r.h-(sy-r.y);
 					if (rest > 0) {
-						final RectangleImpl<N> child = createRectangle(c, sx, sy, r.w, 1);
+						final RectangleImpl<N> child = createRectangle(nodes, i, sx, sy, r.w, 1);
 						if (child != null) {
 							result.addChild(parent, child);
 							sy++;
@@ -204,14 +223,14 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 			// split vertically
 			for (int i = start; i < max && sx < maxx; i++) {
 				final N c = nodes.get(i);
-				final long wc = model.getWeight(c);
+				final long wc = nodes.weights[i];
 				// compute width according to weight, but fill anyway for last node
 				final int step = (i!=last)?(int) Math.round((r.w*wc)/dw):r.w-(sx-r.x);
 				if (step > 0) {
-					final RectangleImpl<N> child = createRectangle(c, sx, sy, step, r.h);
+					final RectangleImpl<N> child = createRectangle(nodes, i, sx, sy, step, r.h);
 					if (child != null) {
 						result.addChild(parent, child);
-						if (model.hasChildren(c)) {
+						if (i != nodes.aggregate && model.hasChildren(c)) {
 							squarify(result, child, comparator, depth+1, cancelable);
 						}
 						sx += step;
@@ -221,7 +240,7 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 					// dropping the rest children; they will not be displayable
 					final int rest = r.w-(sx-r.x);
 					if (rest > 0) {
-						final RectangleImpl<N> child = createRectangle(c, sx, sy, 1, r.h);
+						final RectangleImpl<N> child = createRectangle(nodes, i, sx, sy, 1, r.h);
 						if (child != null) {
 							result.addChild(parent, child);
 							sx++;
@@ -232,6 +251,26 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 		}
 	}
 
+	/**
+	 * Returns the rectangle for the node at the given index of the
+	 * children; this is an aggregate rectangle for folded nodes.
+	 * @param nodes the children
+	 * @param index the index of the node in the children
+	 * @param x starting x coordinate
+	 * @param y starting y coordinate
+	 * @param w width
+	 * @param h height
+	 * @return the rectangle, or {@code null} if the rectangle
+	 * cannot be built due to constraints.
+	 */
+	protected RectangleImpl<N> createRectangle(final Children<N> nodes, final int index, final int x, final int y, final int w, final int h) {
+		final RectangleImpl<N> result = createRectangle(nodes.get(index), x, y, w, h);
+		if (result != null && index == nodes.aggregate) {
+			return new AggregateRectangleImpl<N>(result.node, result.x, result.y, result.w, result.h, nodes.aggregateCount, nodes.weights[index]);
+		}
+		return result;
+	}
+
 	/**
 	 * Returns the given rectangle.
 	 * @param n the node of the rectangle, must not be {@code null}
@@ -265,11 +304,16 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 		}
 	}
 
-	private static class ComparatorImpl<N> implements Comparator<N> {
+	/**
+	 * Compares nodes by descending weight; it also carries the model
+	 * through a layout run, so subclasses may extend it to keep state
+	 * that belongs to a single layout operation.
+	 */
+	protected static class ComparatorImpl<N> implements Comparator<N> {
 
 		private final IWeightedTreeModel<N> model;
 
-		public ComparatorImpl(final IWeightedTreeModel<N> aModel) {
+		protected ComparatorImpl(final IWeightedTreeModel<N> aModel) {
 			model = aModel;
 		}
 
@@ -279,7 +323,144 @@ public class SquarifiedLayout<N> implements ITreeMapLayout<N>, ICancelable, Seri
 
 		@Override
 		public int compare(final N o1, final N o2) {
-			return (int) (model.getWeight(o2)-model.getWeight(o1));
+			return Long.compare(model.getWeight(o2), model.getWeight(o1));
+		}
+
+	}
+
+	/**
+	 * The children of a node together with their weights, which
+	 * are looked up only once per layout of the children.
+	 * @param <N> the type of node
+	 */
+	protected static class Children<N> {
+
+		protected Object[] nodes;
+		protected long[] weights;
+		protected int size;
+		protected long total;
+		/** the index of the folded nodes, or <code>-1</code> if none are folded */
+		protected int aggregate = -1;
+		protected int aggregateCount;
+
+		/**
+		 * Collects the given children and their weights.
+		 * @param model the model to get the weights from, must not be {@code null}.
+		 * @param children the children, must not be {@code null}.
+		 */
+		protected Children(final IWeightedTreeModel<N> model, final Iterator<N> children) {
+			int capacity = children instanceof IIteratorSize<?>?Math.max(1, ((IIteratorSize<?>) children).size()):16;
+			nodes = new Object[capacity];
+			weights = new long[capacity];
+			while (children.hasNext()) {
+				if (size == capacity) {
+					capacity += capacity >> 1;
+					nodes = Arrays.copyOf(nodes, capacity);
+					weights = Arrays.copyOf(weights, capacity);
+				}
+				final N c = children.next();
+				final long weight = model.getWeight(c);
+				nodes[size] = c;
+				weights[size++] = weight;
+				total += weight;
+			}
+		}
+
+		/**
+		 * Returns the node at the given index.
+		 * @param index the index
+		 * @return the node at the given index.
+		 */
+		@SuppressWarnings("unchecked")
+		protected N get(final int index) {
+			return (N) nodes[index];
+		}
+
+		/**
+		 * Sorts the nodes by descending weight; nodes of the same
+		 * weight keep their order.
+		 */
+		protected void sort() {
+			if (size < 2) {
+				return;
+			}
+			long max = 0;
+			for (int i = size-1; i >= 0; i--) {
+				final long weight = weights[i];
+				if (weight < 0) {
+					max = Long.MAX_VALUE;
+					break;
+				} else if (weight > max) {
+					max = weight;
+				}
+			}
+			final int bits = 32-Integer.numberOfLeadingZeros(size-1);
+			final Object[] sortedNodes = new Object[size];
+			final long[] sortedWeights = new long[size];
+			if (max < (1L<<(63-bits))) {
+				// pack weight and reversed index into one key, so that a primitive sort
+				// is stable; the reversed index puts the earlier node last for equal weights
+				final long mask = (1L<<bits)-1;
+				final int last = size-1;
+				final long[] keys = new long[size];
+				for (int i = last; i >= 0; i--) {
+					keys[i] = (weights[i]<<bits) | (last-i);
+				}
+				Arrays.sort(keys);
+				for (int i = last; i >= 0; i--) {
+					final long key = keys[last-i];
+					final int index = last-(int) (key&mask);
+					sortedNodes[i] = nodes[index];
+					sortedWeights[i] = weights[index];
+				}
+			} else {
+				final Integer[] indices = new Integer[size];
+				for (int i = size-1; i >= 0; i--) {
+					indices[i] = Integer.valueOf(i);
+				}
+				final long[] w = weights;
+				Arrays.sort(indices, new Comparator<Integer>() {
+					@Override
+					public int compare(final Integer o1, final Integer o2) {
+						return Long.compare(w[o2.intValue()], w[o1.intValue()]);
+					}
+				});
+				for (int i = size-1; i >= 0; i--) {
+					final int index = indices[i].intValue();
+					sortedNodes[i] = nodes[index];
+					sortedWeights[i] = weights[index];
+				}
+			}
+			nodes = sortedNodes;
+			weights = sortedWeights;
+		}
+
+		/**
+		 * Folds the sorted nodes lighter than the given weight into one entry.
+		 * The entry is represented by the heaviest of the folded nodes and placed
+		 * according to the summed up weight of the folded nodes.
+		 * @param minWeight the minimum weight of a node to be kept
+		 */
+		protected void fold(final double minWeight) {
+			int first = size;
+			long rest = 0;
+			while (first > 0 && weights[first-1] < minWeight) {
+				rest += weights[--first];
+			}
+			if (first < size) {
+				final Object node = nodes[first];
+				int index = first;
+				while (index > 0 && weights[index-1] < rest) {
+					nodes[index] = nodes[index-1];
+					weights[index] = weights[index-1];
+					index--;
+				}
+				nodes[index] = node;
+				weights[index] = rest;
+				aggregate = index;
+				aggregateCount = size-first;
+				size = first+1;
+			}
 		}
 
 	}
@@ -0,0 +1,113 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleSink;
+import de.engehausen.treemap.ITreeModel;
+
+/**
+ * Rectangle model which passes the rectangles added by a layout to a sink
+ * instead of holding them. The layout must add the rectangles depth-first,
+ * each rectangle before its children. A rectangle is passed on once the next
+ * rectangle is added, because only then it is known whether it has children.
+ * As a tree model, it only knows the path of rectangles from the root to the
+ * rectangle passed last.
+ * @param <N> the type of node the rectangles use.
+ */
+class StreamingRectangleModel<N> extends RectangleModelImpl<N> {
+
+	protected final IRectangleSink<N> sink;
+	/** the rectangles from the root to the rectangle passed last */
+	protected IRectangle<N>[] path;
+	/** the number of ancestors of the rectangle to pass next */
+	protected int depth;
+	/** the rectangle to pass next */
+	protected IRectangle<N> pending;
+	protected boolean pendingLeaf;
+
+	/**
+	 * Creates the model with the given root rectangle.
+	 * @param root the root rectangle, must not be {@code null}.
+	 * @param aSink the sink to pass the rectangles to, must not be {@code null}.
+	 */
+	@SuppressWarnings("unchecked")
+	protected StreamingRectangleModel(final IRectangle<N> root, final IRectangleSink<N> aSink) {
+		super(Collections.<N, List<IRectangle<N>>>emptyMap(), Collections.<N, IRectangle<N>>emptyMap());
+		sink = aSink;
+		path = new IRectangle[16];
+		pending = root;
+	}
+
+	@Override
+	void addChild(final IRectangle<N> parent, final IRectangle<N> child) {
+		if (pending == parent) {
+			pass(false);
+			depth++;
+		} else {
+			pass(true);
+			// the parent is an ancestor of the rectangle passed last
+			while (depth > 0 && path[depth-1] != parent) {
+				depth--;
+			}
+		}
+		pending = child;
+	}
+
+	/**
+	 * Passes the last rectangle to the sink; must be called when the layout is done.
+	 */
+	protected void flush() {
+		if (pending != null) {
+			pass(true);
+		}
+	}
+
+	private void pass(final boolean leaf) {
+		if (depth == path.length) {
+			path = Arrays.copyOf(path, 2*depth);
+		}
+		path[depth] = pending;
+		pendingLeaf = leaf;
+		final IRectangle<N> rectangle = pending;
+		pending = null;
+		sink.add(this, depth > 0 ? path[depth-1] : null, rectangle, depth, leaf);
+	}
+
+	@Override
+	public Iterator<IRectangle<N>> getChildren(final IRectangle<N> node) {
+		return Collections.<IRectangle<N>>emptyList().iterator();
+	}
+
+	@Override
+	public IRectangle<N> getParent(final IRectangle<N> node) {
+		for (int i = depth; i > 0; i--) {
+			if (path[i] == node) {
+				return path[i-1];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public IRectangle<N> getRoot() {
+		return path[0];
+	}
+
+	@Override
+	public boolean hasChildren(final IRectangle<N> node) {
+		if (path[depth] == node) {
+			return !pendingLeaf;
+		}
+		for (int i = depth-1; i >= 0; i--) {
+			if (path[i] == node) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,53 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Forks the subtrees of a single run of {@link ParallelSquarifiedLayout}
+ * or {@link ParallelGenericSquarifiedLayout} and waits for all of them.
+ */
+/*package protected*/ class SubtreeForks {
+
+	protected final Queue<ForkJoinTask<?>> pending;
+
+	SubtreeForks() {
+		pending = new ConcurrentLinkedQueue<ForkJoinTask<?>>();
+	}
+
+	/**
+	 * Lays out a subtree in a forked task. Must be called from
+	 * within {@link #invoke(ForkJoinPool, Runnable)}.
+	 * @param subtree the layout of the subtree
+	 */
+	void fork(final Runnable subtree) {
+		final ForkJoinTask<?> task = ForkJoinTask.adapt(subtree);
+		pending.add(task);
+		task.fork();
+	}
+
+	/**
+	 * Lays out the tree in the given pool and waits for all forked subtrees.
+	 * @param pool the pool to use, or {@code null} to use the common pool.
+	 * @param root the layout of the tree from its root
+	 */
+	void invoke(final ForkJoinPool pool, final Runnable root) {
+		(pool != null ? pool : ForkJoinPool.commonPool()).invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void compute() {
+				root.run();
+				// a task is queued before it is forked, so once the queue
+				// is drained all subtrees have been laid out
+				ForkJoinTask<?> task;
+				while ((task = pending.poll()) != null) {
+					task.join();
+				}
+			}
+		});
+	}
+
+}
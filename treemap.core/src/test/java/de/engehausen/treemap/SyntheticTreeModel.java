@@ -0,0 +1,477 @@
+package de.engehausen.treemap;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import de.engehausen.treemap.impl.DefaultArithmetics;
+
+/**
+ * Reproducible, randomly generated weighted tree model for benchmarks and scale tests.
+ * The nodes are the integer ids <code>0..size()-1</code>, the root is <code>0</code>
+ * and each node has a smaller id than its children. The structure is kept in
+ * primitive arrays (about 20 bytes per node), so trees with tens of millions of nodes
+ * can be generated. Leaves have a weight drawn from a {@link Weights} distribution,
+ * inner nodes the sum of the weights of their children. Models are created using
+ * a {@link Builder}; the same builder settings always yield the same tree.
+ */
+public class SyntheticTreeModel implements IWeightedTreeModel<Integer> {
+
+	/**
+	 * Distribution of the number of children of a node.
+	 */
+	public interface FanOut {
+		/**
+		 * Returns the number of children for the next node.
+		 * @param rnd the random generator to use
+		 * @return the number of children, zero or more.
+		 */
+		int next(Random rnd);
+	}
+
+	/**
+	 * Distribution of the weights of the leaves.
+	 */
+	public interface Weights {
+		/**
+		 * Returns the weight for the next leaf.
+		 * @param rnd the random generator to use
+		 * @return the weight, zero or more.
+		 */
+		long next(Random rnd);
+	}
+
+	/**
+	 * Returns a fan-out distribution uniform in the given range.
+	 * @param min the minimum number of children, zero or more
+	 * @param max the maximum number of children, at least one and not less than <code>min</code>
+	 * @return a uniform fan-out distribution.
+	 */
+	public static FanOut uniform(final int min, final int max) {
+		if (min < 0 || max < 1 || max < min) {
+			throw new IllegalArgumentException("invalid range "+min+".."+max);
+		}
+		return new FanOut() {
+			@Override
+			public int next(final Random rnd) {
+				return min+rnd.nextInt(max-min+1);
+			}
+		};
+	}
+
+	/**
+	 * Returns a power-law fan-out distribution: most nodes have few children, few nodes
+	 * have very many. The probability of having <code>k</code> or more children is
+	 * <code>(k+1)<sup>-alpha</sup></code>; for <code>alpha &gt; 1</code> the mean
+	 * is about <code>1/(alpha-1)</code>.
+	 * @param alpha the exponent, must be positive
+	 * @param max the maximum number of children, must be positive
+	 * @return a power-law fan-out distribution.
+	 */
+	public static FanOut powerLaw(final double alpha, final int max) {
+		if (alpha <= 0 || max < 1) {
+			throw new IllegalArgumentException("invalid power-law "+alpha+", "+max);
+		}
+		return new FanOut() {
+			@Override
+			public int next(final Random rnd) {
+				final double k = Math.floor(Math.pow(1-rnd.nextDouble(), -1/alpha))-1;
+				return k < max ? (int) k : max;
+			}
+		};
+	}
+
+	/**
+	 * Returns a fan-out distribution which puts the given fraction of all nodes as
+	 * leaves into a single directory (the first child of the root), the other nodes
+	 * are distributed using the given fan-out.
+	 * @param fraction the fraction of nodes in the giant directory, between zero and one
+	 * @param others the fan-out of all other nodes, must not be {@code null}.
+	 * @return a fan-out distribution with a giant directory.
+	 */
+	public static FanOut giant(final double fraction, final FanOut others) {
+		if (fraction < 0 || fraction > 1) {
+			throw new IllegalArgumentException("invalid fraction "+fraction);
+		}
+		return new Giant(fraction, others);
+	}
+
+	/**
+	 * Returns a constant weight distribution.
+	 * @param weight the weight of all leaves
+	 * @return a constant weight distribution.
+	 */
+	public static Weights constant(final long weight) {
+		return new Weights() {
+			@Override
+			public long next(final Random rnd) {
+				return weight;
+			}
+		};
+	}
+
+	/**
+	 * Returns a weight distribution uniform in the given range.
+	 * @param min the minimum weight, zero or more
+	 * @param max the maximum weight, not less than <code>min</code>
+	 * @return a uniform weight distribution.
+	 */
+	public static Weights uniformWeights(final long min, final long max) {
+		if (min < 0 || max < min) {
+			throw new IllegalArgumentException("invalid range "+min+".."+max);
+		}
+		return new Weights() {
+			@Override
+			public long next(final Random rnd) {
+				return min+(long) (rnd.nextDouble()*(max-min+1));
+			}
+		};
+	}
+
+	/**
+	 * Returns a log-normal weight distribution, which resembles the distribution
+	 * of file sizes.
+	 * @param median the median weight, must be positive
+	 * @param sigma the standard deviation of the logarithm of the weights
+	 * @return a log-normal weight distribution.
+	 */
+	public static Weights logNormal(final double median, final double sigma) {
+		if (median <= 0 || sigma < 0) {
+			throw new IllegalArgumentException("invalid log-normal "+median+", "+sigma);
+		}
+		return new Weights() {
+			@Override
+			public long next(final Random rnd) {
+				return 1+(long) (median*Math.exp(sigma*rnd.nextGaussian()));
+			}
+		};
+	}
+
+	protected final int[] parents;
+	protected final long[] weights;
+	/** the children of node <code>i</code> are <code>childIds[childOffsets[i]..childOffsets[i+1]-1]</code> */
+	protected final int[] childOffsets;
+	protected final int[] childIds;
+
+	protected SyntheticTreeModel(final Builder builder) {
+		final int size = builder.nodes;
+		final Random rnd = new Random(builder.seed);
+		parents = new int[size];
+		weights = new long[size];
+		// the depth of each node; giant directory entries are marked as leaves
+		final byte[] levels = new byte[size];
+		int giantSize = builder.fanOut instanceof Giant && builder.depth > 1 ? (int) (((Giant) builder.fanOut).fraction*(size-2)) : -1;
+		final FanOut fanOut = builder.fanOut instanceof Giant ? ((Giant) builder.fanOut).others : builder.fanOut;
+		parents[0] = -1;
+		int next = 1;
+		int cursor = 0;
+		while (next < size) {
+			if (cursor == next) {
+				// all nodes were expanded; give the inner levels more children
+				cursor = 0;
+			}
+			final int parent = cursor++;
+			if (levels[parent] < builder.depth) {
+				final int count;
+				final byte level;
+				if (parent == 1 && giantSize >= 0) {
+					// the first child of the root becomes the giant directory
+					count = Math.min(size-next, giantSize);
+					level = (byte) builder.depth;
+					levels[parent] = level;
+					giantSize = -1;
+				} else {
+					count = Math.min(size-next, fanOut.next(rnd));
+					level = (byte) (levels[parent]+1);
+				}
+				for (int i = count; i > 0; i--) {
+					parents[next] = parent;
+					levels[next++] = level;
+				}
+			}
+		}
+		// counting sort of the nodes by parent id
+		childOffsets = new int[size+1];
+		for (int i = 1; i < size; i++) {
+			childOffsets[parents[i]+1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			childOffsets[i+1] += childOffsets[i];
+		}
+		childIds = new int[Math.max(0, size-1)];
+		final int[] fill = Arrays.copyOf(childOffsets, size);
+		for (int i = 1; i < size; i++) {
+			childIds[fill[parents[i]]++] = i;
+		}
+		for (int i = 0; i < size; i++) {
+			if (childOffsets[i] == childOffsets[i+1]) {
+				weights[i] = builder.weights.next(rnd);
+			}
+		}
+		// parents have smaller ids than their children
+		for (int i = size-1; i > 0; i--) {
+			weights[parents[i]] += weights[i];
+		}
+	}
+
+	/**
+	 * Returns the number of nodes.
+	 * @return the number of nodes.
+	 */
+	public int size() {
+		return parents.length;
+	}
+
+	/**
+	 * Returns the id of the parent of the given node.
+	 * @param id the node id
+	 * @return the parent id, or <code>-1</code> for the root.
+	 */
+	public int getParentId(final int id) {
+		return parents[id];
+	}
+
+	/**
+	 * Returns the weight of the given node.
+	 * @param id the node id
+	 * @return the weight of the node.
+	 */
+	public long getWeight(final int id) {
+		return weights[id];
+	}
+
+	/**
+	 * Returns the number of children of the given node.
+	 * @param id the node id
+	 * @return the number of children of the node.
+	 */
+	public int getChildCount(final int id) {
+		return childOffsets[id+1]-childOffsets[id];
+	}
+
+	/**
+	 * Returns the depth of the tree, i.e. the maximum depth of any node.
+	 * @return the depth of the tree, zero if only the root exists.
+	 */
+	public int getDepth() {
+		final int[] depths = new int[parents.length];
+		int result = 0;
+		for (int i = 1; i < parents.length; i++) {
+			depths[i] = depths[parents[i]]+1;
+			result = Math.max(result, depths[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a view of this model with <code>Double</code> weights.
+	 * @return a view of this model with <code>Double</code> weights.
+	 */
+	public IGenericWeightedTreeModel<Integer, Double> asGeneric() {
+		return new GenericView();
+	}
+
+	@Override
+	public long getWeight(final Integer node) {
+		return contains(node) ? weights[node.intValue()] : 0;
+	}
+
+	@Override
+	public Iterator<Integer> getChildren(final Integer node) {
+		if (contains(node)) {
+			return new ChildIterator(childIds, childOffsets[node.intValue()], childOffsets[node.intValue()+1]);
+		} else {
+			return new ChildIterator(childIds, 0, 0);
+		}
+	}
+
+	@Override
+	public Integer getParent(final Integer node) {
+		return contains(node) && node.intValue() > 0 ? Integer.valueOf(parents[node.intValue()]) : null;
+	}
+
+	@Override
+	public Integer getRoot() {
+		return Integer.valueOf(0);
+	}
+
+	@Override
+	public boolean hasChildren(final Integer node) {
+		return contains(node) && childOffsets[node.intValue()] < childOffsets[node.intValue()+1];
+	}
+
+	protected boolean contains(final Integer node) {
+		return node != null && node.intValue() >= 0 && node.intValue() < parents.length;
+	}
+
+	/**
+	 * Builder for synthetic tree models. By default it generates
+	 * 10000 nodes with a depth of at most eight, a uniform fan-out
+	 * of zero to eight children and uniform weights between 1 and 1000.
+	 */
+	public static class Builder {
+
+		protected int nodes = 10000;
+		protected int depth = 8;
+		protected FanOut fanOut = uniform(0, 8);
+		protected Weights weights = uniformWeights(1, 1000);
+		protected long seed = 2010;
+
+		/**
+		 * Sets the number of nodes.
+		 * @param count the number of nodes, must be positive
+		 * @return this builder
+		 */
+		public Builder nodes(final int count) {
+			if (count < 1) {
+				throw new IllegalArgumentException("invalid node count "+count);
+			}
+			nodes = count;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum depth of the tree. If the fan-out distribution cannot
+		 * produce the requested number of nodes within this depth, nodes above the
+		 * maximum depth receive additional children.
+		 * @param max the maximum depth, between 1 and 127
+		 * @return this builder
+		 */
+		public Builder depth(final int max) {
+			if (max < 1 || max > Byte.MAX_VALUE) {
+				throw new IllegalArgumentException("invalid depth "+max);
+			}
+			depth = max;
+			return this;
+		}
+
+		/**
+		 * Sets the fan-out distribution.
+		 * @param distribution the fan-out distribution, must not be {@code null}.
+		 * @return this builder
+		 */
+		public Builder fanOut(final FanOut distribution) {
+			fanOut = distribution;
+			return this;
+		}
+
+		/**
+		 * Sets the weight distribution of the leaves.
+		 * @param distribution the weight distribution, must not be {@code null}.
+		 * @return this builder
+		 */
+		public Builder weights(final Weights distribution) {
+			weights = distribution;
+			return this;
+		}
+
+		/**
+		 * Sets the random seed.
+		 * @param value the seed
+		 * @return this builder
+		 */
+		public Builder seed(final long value) {
+			seed = value;
+			return this;
+		}
+
+		/**
+		 * Generates the tree model.
+		 * @return the tree model.
+		 */
+		public SyntheticTreeModel build() {
+			return new SyntheticTreeModel(this);
+		}
+
+	}
+
+	protected static class Giant implements FanOut {
+
+		protected final double fraction;
+		protected final FanOut others;
+
+		protected Giant(final double fraction, final FanOut others) {
+			this.fraction = fraction;
+			this.others = others;
+		}
+
+		@Override
+		public int next(final Random rnd) {
+			return others.next(rnd);
+		}
+
+	}
+
+	protected static class ChildIterator implements IIteratorSize<Integer> {
+
+		private final int[] ids;
+		private final int end;
+		private int position;
+
+		protected ChildIterator(final int[] ids, final int start, final int end) {
+			this.ids = ids;
+			this.end = end;
+			position = start;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return position < end;
+		}
+
+		@Override
+		public Integer next() {
+			if (position < end) {
+				return Integer.valueOf(ids[position++]);
+			}
+			throw new NoSuchElementException();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int size() {
+			return end-position;
+		}
+
+	}
+
+	protected class GenericView implements IGenericWeightedTreeModel<Integer, Double> {
+
+		@Override
+		public Double getWeight(final Integer node) {
+			return Double.valueOf(SyntheticTreeModel.this.getWeight(node));
+		}
+
+		@Override
+		public NumberArithmetic<Double> getArithmetic() {
+			return DefaultArithmetics.doubles();
+		}
+
+		@Override
+		public Iterator<Integer> getChildren(final Integer node) {
+			return SyntheticTreeModel.this.getChildren(node);
+		}
+
+		@Override
+		public Integer getParent(final Integer node) {
+			return SyntheticTreeModel.this.getParent(node);
+		}
+
+		@Override
+		public Integer getRoot() {
+			return SyntheticTreeModel.this.getRoot();
+		}
+
+		@Override
+		public boolean hasChildren(final Integer node) {
+			return SyntheticTreeModel.this.hasChildren(node);
+		}
+
+	}
+
+}
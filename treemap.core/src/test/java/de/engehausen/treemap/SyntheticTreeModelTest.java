@@ -0,0 +1,110 @@
+package de.engehausen.treemap;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.impl.GenericSquarifiedLayout;
+import de.engehausen.treemap.impl.SquarifiedLayout;
+
+public class SyntheticTreeModelTest {
+
+	/**
+	 * Tests that the same settings generate the same tree.
+	 */
+	@Test
+	public void testReproducible() {
+		final SyntheticTreeModel a = new SyntheticTreeModel.Builder().nodes(5000).seed(7).build();
+		final SyntheticTreeModel b = new SyntheticTreeModel.Builder().nodes(5000).seed(7).build();
+		final SyntheticTreeModel c = new SyntheticTreeModel.Builder().nodes(5000).seed(8).build();
+		boolean different = false;
+		for (int i = 0; i < a.size(); i++) {
+			Assert.assertEquals(a.getParentId(i), b.getParentId(i));
+			Assert.assertEquals(a.getWeight(i), b.getWeight(i));
+			different |= a.getParentId(i) != c.getParentId(i) || a.getWeight(i) != c.getWeight(i);
+		}
+		Assert.assertTrue(different);
+	}
+
+	/**
+	 * Tests the structure of generated trees for the fan-out distributions.
+	 */
+	@Test
+	public void testStructure() {
+		check(new SyntheticTreeModel.Builder().nodes(1).build(), 1, 0);
+		check(new SyntheticTreeModel.Builder().nodes(20000).depth(3).fanOut(SyntheticTreeModel.uniform(0, 4)).build(), 20000, 3);
+		check(new SyntheticTreeModel.Builder().nodes(20000).depth(12).fanOut(SyntheticTreeModel.powerLaw(1.2, 10000)).weights(SyntheticTreeModel.logNormal(4096, 2)).build(), 20000, 12);
+		final SyntheticTreeModel giant = new SyntheticTreeModel.Builder().nodes(20002).depth(12).fanOut(SyntheticTreeModel.giant(0.5, SyntheticTreeModel.uniform(1, 3))).weights(SyntheticTreeModel.constant(1)).build();
+		check(giant, 20002, 12);
+		Assert.assertEquals(10000, giant.getChildCount(1));
+		Assert.assertEquals(10000, giant.getWeight(1));
+		Assert.assertEquals(giant.size()-countInner(giant), giant.getWeight(0));
+	}
+
+	/**
+	 * Tests the view with <code>Double</code> weights.
+	 */
+	@Test
+	public void testGeneric() {
+		final SyntheticTreeModel model = new SyntheticTreeModel.Builder().nodes(1000).build();
+		final IGenericWeightedTreeModel<Integer, Double> generic = model.asGeneric();
+		Assert.assertEquals(model.getRoot(), generic.getRoot());
+		for (int i = 0; i < model.size(); i++) {
+			final Integer node = Integer.valueOf(i);
+			Assert.assertEquals((double) model.getWeight(i), generic.getWeight(node).doubleValue(), 0);
+			Assert.assertEquals(model.getParent(node), generic.getParent(node));
+			Assert.assertEquals(model.hasChildren(node), generic.hasChildren(node));
+		}
+		Assert.assertEquals(generic.getRoot(), new GenericSquarifiedLayout<Integer, Double>(Integer.MAX_VALUE).layout(generic, generic.getRoot(), 100, 100).getRoot().getNode());
+	}
+
+	/**
+	 * Tests a larger tree with a layout.
+	 */
+	@Test
+	public void testScale() {
+		final SyntheticTreeModel model = new SyntheticTreeModel.Builder().nodes(2000000).depth(10).fanOut(SyntheticTreeModel.powerLaw(1.1, 100000)).build();
+		Assert.assertEquals(2000000, model.size());
+		final ITreeModel<IRectangle<Integer>> rects = new SquarifiedLayout<Integer>(Integer.MAX_VALUE).layout(model, model.getRoot(), 1920, 1080);
+		Assert.assertEquals(model.getRoot(), rects.getRoot().getNode());
+	}
+
+	private static void check(final SyntheticTreeModel model, final int size, final int maxDepth) {
+		Assert.assertEquals(size, model.size());
+		Assert.assertTrue(model.getDepth() <= maxDepth);
+		Assert.assertEquals(Integer.valueOf(0), model.getRoot());
+		Assert.assertNull(model.getParent(model.getRoot()));
+		int count = 1;
+		for (int i = 0; i < size; i++) {
+			final Integer node = Integer.valueOf(i);
+			long sum = 0;
+			int children = 0;
+			for (final Iterator<Integer> c = model.getChildren(node); c.hasNext(); ) {
+				final Integer child = c.next();
+				Assert.assertEquals(node, model.getParent(child));
+				Assert.assertTrue(child.intValue() > i);
+				sum += model.getWeight(child);
+				children++;
+			}
+			Assert.assertEquals(children, model.getChildCount(i));
+			Assert.assertEquals(children > 0, model.hasChildren(node));
+			if (children > 0) {
+				Assert.assertEquals(sum, model.getWeight(node));
+			}
+			count += children;
+		}
+		Assert.assertEquals(size, count);
+	}
+
+	private static int countInner(final SyntheticTreeModel model) {
+		int result = 0;
+		for (int i = 0; i < model.size(); i++) {
+			if (model.getChildCount(i) > 0) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+}
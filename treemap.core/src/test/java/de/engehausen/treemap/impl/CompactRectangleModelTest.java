@@ -0,0 +1,127 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IAggregateRectangle;
+import de.engehausen.treemap.IIteratorSize;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.Node;
+import de.engehausen.treemap.SyntheticTreeModel;
+import de.engehausen.treemap.TreeModel;
+
+public class CompactRectangleModelTest {
+
+	/**
+	 * Tests that the compact model holds the same rectangles
+	 * in the same order as the model it was copied from.
+	 */
+	@Test
+	public void testCopy() {
+		final IWeightedTreeModel<Node> model = TreeModel.DEEP_UNBALANCED;
+		final RectangleModelImpl<Node> source = (RectangleModelImpl<Node>) new SquarifiedLayout<Node>(Integer.MAX_VALUE).layout(model, model.getRoot(), 1920, 1080);
+		final CompactRectangleModel<Node> compact = new CompactRectangleModel<Node>(source);
+		final List<IRectangle<Node>> expected = source.toList();
+		Assert.assertEquals(expected.size(), compact.size());
+		for (int i = 0; i < expected.size(); i++) {
+			final IRectangle<Node> r1 = expected.get(i);
+			final IRectangle<Node> r2 = compact.get(i);
+			Assert.assertSame(r1.getNode(), r2.getNode());
+			Assert.assertEquals(r1.getX(), r2.getX());
+			Assert.assertEquals(r1.getY(), r2.getY());
+			Assert.assertEquals(r1.getWidth(), r2.getWidth());
+			Assert.assertEquals(r1.getHeight(), r2.getHeight());
+			Assert.assertEquals(r1.contains(r1.getX(), r1.getY()), r2.contains(r2.getX(), r2.getY()));
+		}
+		Assert.assertEquals(source.toString(), compact.toString());
+	}
+
+	/**
+	 * Tests parent and child navigation.
+	 */
+	@Test
+	public void testNavigation() {
+		final IWeightedTreeModel<Node> model = TreeModel.DEEP_BINARY;
+		final ITreeModel<IRectangle<Node>> source = new SquarifiedLayout<Node>(3).layout(model, model.getRoot(), 512, 512);
+		final CompactRectangleModel<Node> compact = new CompactRectangleModel<Node>(source);
+		Assert.assertEquals(15, compact.size());
+		final IRectangle<Node> root = compact.getRoot();
+		Assert.assertEquals(compact.get(0), root);
+		Assert.assertNull(compact.getParent(root));
+		for (int i = 1; i < compact.size(); i++) {
+			final IRectangle<Node> rectangle = compact.get(i);
+			final IRectangle<Node> parent = compact.getParent(rectangle);
+			Assert.assertEquals(rectangle.getNode().getParent(), parent.getNode());
+			boolean found = false;
+			for (Iterator<IRectangle<Node>> children = compact.getChildren(parent); children.hasNext(); ) {
+				found |= rectangle.equals(children.next());
+			}
+			Assert.assertTrue(found);
+		}
+		final Iterator<IRectangle<Node>> children = compact.getChildren(root);
+		Assert.assertEquals(2, ((IIteratorSize<IRectangle<Node>>) children).size());
+		Assert.assertTrue(compact.hasChildren(root));
+		Assert.assertFalse(compact.hasChildren(compact.get(compact.size()-1)));
+		// rectangles of other models are unknown
+		final IRectangle<Node> foreign = source.getRoot();
+		Assert.assertFalse(compact.hasChildren(foreign));
+		Assert.assertFalse(compact.getChildren(foreign).hasNext());
+		Assert.assertNull(compact.getParent(foreign));
+	}
+
+	/**
+	 * Tests that aggregate rectangles keep their count and weight.
+	 */
+	@Test
+	public void testAggregates() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(50000).depth(6).build();
+		final RectangleModelImpl<Integer> source = (RectangleModelImpl<Integer>) new SquarifiedLayout<Integer>(Integer.MAX_VALUE, 16).layout(tree, tree.getRoot(), 640, 480);
+		final CompactRectangleModel<Integer> compact = new CompactRectangleModel<Integer>(source);
+		final List<IRectangle<Integer>> expected = source.toList();
+		int aggregates = 0;
+		for (int i = 0; i < expected.size(); i++) {
+			final IRectangle<Integer> r1 = expected.get(i);
+			final IRectangle<Integer> r2 = compact.get(i);
+			Assert.assertEquals(r1 instanceof IAggregateRectangle<?>, r2 instanceof IAggregateRectangle<?>);
+			if (r1 instanceof IAggregateRectangle<?>) {
+				Assert.assertEquals(((IAggregateRectangle<Integer>) r1).getCount(), ((IAggregateRectangle<Integer>) r2).getCount());
+				Assert.assertEquals(((IAggregateRectangle<Integer>) r1).getWeight(), ((IAggregateRectangle<Integer>) r2).getWeight());
+				aggregates++;
+			}
+		}
+		Assert.assertTrue(aggregates > 0);
+	}
+
+	/**
+	 * Tests that compacting a computed layout empties it, and
+	 * that a compact layout is returned as it is.
+	 */
+	@Test
+	public void testCompact() {
+		final IWeightedTreeModel<Node> model = TreeModel.DEEP_UNBALANCED;
+		final SquarifiedLayout<Node> layout = new SquarifiedLayout<Node>(Integer.MAX_VALUE);
+		final String expected = layout.layout(model, model.getRoot(), 1920, 1080).toString();
+		final RectangleModelImpl<Node> source = (RectangleModelImpl<Node>) layout.layout(model, model.getRoot(), 1920, 1080);
+		final ITreeModel<IRectangle<Node>> compact = CompactRectangleModel.compact(source);
+		Assert.assertEquals(expected, compact.toString());
+		Assert.assertEquals(0, source.size());
+		Assert.assertNull(source.getRoot());
+		Assert.assertSame(compact, CompactRectangleModel.compact(compact));
+	}
+
+	/**
+	 * Tests copying an empty model.
+	 */
+	@Test
+	public void testEmpty() {
+		final CompactRectangleModel<Node> compact = new CompactRectangleModel<Node>(new RectangleModelImpl<Node>());
+		Assert.assertEquals(0, compact.size());
+		Assert.assertNull(compact.getRoot());
+	}
+
+}
@@ -0,0 +1,215 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IIteratorSize;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+public class CompactWeightedTreeModelTest {
+
+	/**
+	 * Tests an empty model.
+	 */
+	@Test
+	public void testEmpty() {
+		final CompactWeightedTreeModel<String> model = new CompactWeightedTreeModel.Builder<String>().build();
+		Assert.assertNull(model.getRoot());
+		Assert.assertEquals(0, model.size());
+		Assert.assertFalse(model.hasChildren("a"));
+		Assert.assertEquals(0, model.getWeight("a"));
+	}
+
+	/**
+	 * Tests a small model.
+	 */
+	@Test
+	public void testSmall() {
+		final CompactWeightedTreeModel<String> model = new CompactWeightedTreeModel.Builder<String>()
+			.add("root", 3L, null)
+			.add("a", 1L, "root")
+			.add("b", 2L, "root")
+			.build();
+		Assert.assertEquals("root", model.getRoot());
+		Assert.assertTrue(model.hasChildren("root"));
+		Assert.assertFalse(model.hasChildren("a"));
+		Assert.assertEquals("root", model.getParent("a"));
+		Assert.assertEquals("root", model.getParent("b"));
+		Assert.assertNull(model.getParent("root"));
+		Assert.assertEquals(3L, model.getWeight("root"));
+		Assert.assertEquals(2L, model.getWeight("b"));
+		final Iterator<String> i = model.getChildren("root");
+		Assert.assertEquals(2, ((IIteratorSize<?>) i).size());
+		Assert.assertEquals("a", i.next());
+		Assert.assertEquals("b", i.next());
+		Assert.assertFalse(i.hasNext());
+		Assert.assertEquals("b", model.getNode(model.getId("b")));
+		Assert.assertEquals(-1, model.getId("c"));
+	}
+
+	/**
+	 * Tests that the builder rejects inconsistent input.
+	 */
+	@Test
+	public void testBuilderErrors() {
+		final CompactWeightedTreeModel.Builder<String> builder = new CompactWeightedTreeModel.Builder<String>();
+		builder.add("root", 0L, null);
+		try {
+			builder.add("root", 0L, "root");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			builder.add("other", 0L, null);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that rejected nodes leave the builder unchanged, so that
+	 * the model can still be built.
+	 */
+	@Test
+	public void testRejectedAdd() {
+		final CompactWeightedTreeModel.Builder<String> builder = new CompactWeightedTreeModel.Builder<String>()
+			.add("root", 0L, null)
+			.add("a", 1L, "root");
+		try {
+			builder.add("a", 2L, "missing");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			builder.add("b", 3L, "b");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		final CompactWeightedTreeModel<String> model = builder.build();
+		Assert.assertEquals(2, model.size());
+		Assert.assertEquals(1L, model.getWeight("a"));
+		Assert.assertEquals("root", model.getParent("a"));
+		Assert.assertFalse(model.hasChildren("a"));
+	}
+
+	/**
+	 * Tests adding nodes before their parents and aggregating the weights.
+	 */
+	@Test
+	public void testAnyOrder() {
+		final CompactWeightedTreeModel<String> model = new CompactWeightedTreeModel.Builder<String>()
+			.add("a1", 1L, "a")
+			.add("b", 2L, "root")
+			.add("a2", 3L, "a")
+			.add("root", 0L, null)
+			.add("a", 0L, "root")
+			.build(true, null);
+		Assert.assertEquals(6L, model.getWeight("root"));
+		Assert.assertEquals(4L, model.getWeight("a"));
+		Assert.assertEquals(2L, model.getWeight("b"));
+		Assert.assertEquals("a", model.getParent("a1"));
+		final Iterator<String> i = model.getChildren("root");
+		Assert.assertEquals("b", i.next());
+		Assert.assertEquals("a", i.next());
+	}
+
+	/**
+	 * Tests that parents which were never added and nodes
+	 * not reachable from the root are rejected.
+	 */
+	@Test
+	public void testIncomplete() {
+		try {
+			new CompactWeightedTreeModel.Builder<String>().add("root", 0L, null).add("a", 0L, "missing").build();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			new CompactWeightedTreeModel.Builder<String>().add("root", 0L, null).add("a", 0L, "b").add("b", 0L, "a").build(true, null);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Tests that aggregating weights in parallel gives the
+	 * same weights as propagating them on each insert.
+	 */
+	@Test
+	public void testParallelAggregation() {
+		final Random rnd = new Random(4711);
+		final GenericTreeModel<Integer> generic = new GenericTreeModel<Integer>();
+		final CompactWeightedTreeModel.Builder<Integer> builder = new CompactWeightedTreeModel.Builder<Integer>();
+		generic.add(Integer.valueOf(0), 0, null);
+		builder.add(Integer.valueOf(0), 0, null);
+		final int count = 100000;
+		for (int i = 1; i < count; i++) {
+			// wide levels, so that they are split up
+			final Integer parent = Integer.valueOf(i < 30000 ? 0 : rnd.nextInt(i));
+			final long weight = rnd.nextInt(1000);
+			generic.add(Integer.valueOf(i), weight, parent, true);
+			builder.add(Integer.valueOf(i), weight, parent);
+		}
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final CompactWeightedTreeModel<Integer> compact = builder.build(true, pool);
+			for (int i = 0; i < count; i++) {
+				final Integer node = Integer.valueOf(i);
+				Assert.assertEquals(generic.getWeight(node), compact.getWeight(node));
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Tests that a large compact model is laid out the same
+	 * as the equivalent generic tree model.
+	 */
+	@Test
+	public void testSameAsGeneric() {
+		final Random rnd = new Random(2010);
+		final GenericTreeModel<Integer> generic = new GenericTreeModel<Integer>();
+		final CompactWeightedTreeModel.Builder<Integer> builder = new CompactWeightedTreeModel.Builder<Integer>(16);
+		final Integer root = Integer.valueOf(0);
+		generic.add(root, 0, null);
+		final int count = 20000;
+		for (int i = 1; i < count; i++) {
+			generic.add(Integer.valueOf(i), 1+rnd.nextInt(100), Integer.valueOf(rnd.nextInt(i)), true);
+		}
+		// parents always precede their children
+		builder.add(root, generic.getWeight(root), null);
+		for (int i = 1; i < count; i++) {
+			final Integer node = Integer.valueOf(i);
+			builder.add(node, generic.getWeight(node), generic.getParent(node));
+		}
+		final CompactWeightedTreeModel<Integer> compact = builder.build();
+		Assert.assertEquals(count, compact.size());
+		final SquarifiedLayout<Integer> layout = new SquarifiedLayout<Integer>(Integer.MAX_VALUE);
+		final ITreeModel<IRectangle<Integer>> expected = layout.layout(generic, root, 1920, 1080);
+		final ITreeModel<IRectangle<Integer>> actual = layout.layout(compact, root, 1920, 1080);
+		final List<IRectangle<Integer>> list1 = ((RectangleModelImpl<Integer>) expected).toList();
+		final List<IRectangle<Integer>> list2 = ((RectangleModelImpl<Integer>) actual).toList();
+		Assert.assertEquals(list1.size(), list2.size());
+		for (int i = list1.size()-1; i >= 0; i--) {
+			final IRectangle<Integer> r1 = list1.get(i);
+			final IRectangle<Integer> r2 = list2.get(i);
+			Assert.assertEquals(r1, r2);
+			Assert.assertEquals(r1.getX(), r2.getX());
+			Assert.assertEquals(r1.getY(), r2.getY());
+		}
+	}
+
+}
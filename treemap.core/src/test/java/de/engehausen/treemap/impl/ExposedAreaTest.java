@@ -0,0 +1,87 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.Node;
+import de.engehausen.treemap.TreeModel;
+
+public class ExposedAreaTest {
+
+	/**
+	 * Tests that the exposed area and the children cover each
+	 * inner rectangle exactly once.
+	 */
+	@Test
+	public void testCoverage() {
+		final IWeightedTreeModel<Node> model = TreeModel.DEEP_UNBALANCED;
+		check(new BorderSquarifiedLayout<Node>(4, 2).layout(model, model.getRoot(), 640, 480));
+		check(new BorderSquarifiedLayout<Node>(16, 1).layout(model, model.getRoot(), 333, 211));
+	}
+
+	/**
+	 * Tests simple cases.
+	 */
+	@Test
+	public void testSimple() {
+		final RectangleImpl<String> root = new RectangleImpl<String>("root", 0, 0, 10, 10);
+		final RectangleModelImpl<String> model = new RectangleModelImpl<String>(root);
+		Assert.assertArrayEquals(new int[] { 0, 0, 10, 10 }, ExposedArea.compute(model, root));
+		final RectangleImpl<String> child = new RectangleImpl<String>("child", 2, 2, 6, 6);
+		model.addChild(root, child);
+		// frame around the child: top, left, right, bottom
+		Assert.assertArrayEquals(new int[] { 0, 0, 10, 2, 0, 2, 2, 6, 8, 2, 2, 6, 0, 8, 10, 2 }, ExposedArea.compute(model, root));
+		Assert.assertArrayEquals(new int[] { 2, 2, 6, 6 }, ExposedArea.compute(model, child));
+		final RectangleImpl<String> full = new RectangleImpl<String>("full", 0, 0, 10, 10);
+		final RectangleModelImpl<String> fullModel = new RectangleModelImpl<String>(root);
+		fullModel.addChild(root, full);
+		Assert.assertEquals(0, ExposedArea.compute(fullModel, root).length);
+	}
+
+	private static void check(final ITreeModel<IRectangle<Node>> rectangles) {
+		final FIFO<IRectangle<Node>> queue = new FIFO<IRectangle<Node>>();
+		queue.push(rectangles.getRoot());
+		int exposed = 0;
+		while (queue.notEmpty()) {
+			final IRectangle<Node> rect = queue.pull();
+			if (rectangles.hasChildren(rect)) {
+				// the exposed area and the children, clipped to the rectangle, cover it exactly once
+				final int[] counts = new int[rect.getWidth()*rect.getHeight()];
+				final int[] area = ExposedArea.compute(rectangles, rect);
+				Assert.assertEquals(0, area.length%4);
+				for (int i = 0; i < area.length; i += 4) {
+					Assert.assertTrue(area[i+2] > 0 && area[i+3] > 0);
+					fill(counts, rect, area[i], area[i+1], area[i+2], area[i+3]);
+					exposed++;
+				}
+				for (Iterator<IRectangle<Node>> i = rectangles.getChildren(rect); i.hasNext(); ) {
+					final IRectangle<Node> child = i.next();
+					fill(counts, rect, child.getX(), child.getY(), child.getWidth(), child.getHeight());
+					queue.push(child);
+				}
+				for (int i = 0; i < counts.length; i++) {
+					Assert.assertEquals(rect+" pixel "+i, 1, counts[i]);
+				}
+			}
+		}
+		Assert.assertTrue(exposed > 0);
+	}
+
+	private static void fill(final int[] counts, final IRectangle<Node> clip, final int x, final int y, final int width, final int height) {
+		final int x0 = Math.max(x, clip.getX());
+		final int x1 = Math.min(x+width, clip.getX()+clip.getWidth());
+		final int y0 = Math.max(y, clip.getY());
+		final int y1 = Math.min(y+height, clip.getY()+clip.getHeight());
+		for (int j = y0; j < y1; j++) {
+			for (int i = x0; i < x1; i++) {
+				counts[(j-clip.getY())*clip.getWidth()+i-clip.getX()]++;
+			}
+		}
+	}
+
+}
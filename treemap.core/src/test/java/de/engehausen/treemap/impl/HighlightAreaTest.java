@@ -0,0 +1,73 @@
+package de.engehausen.treemap.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IHighlightBounds;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+public class HighlightAreaTest {
+
+	private static final IHighlightBounds<String> RECTANGLE = new IHighlightBounds<String>() {
+		@Override
+		public IRectangle<String> getHighlightBounds(final ITreeModel<IRectangle<String>> model, final IRectangle<String> rectangle) {
+			return rectangle;
+		}
+	};
+
+	private static final IHighlightBounds<String> UNKNOWN = new IHighlightBounds<String>() {
+		@Override
+		public IRectangle<String> getHighlightBounds(final ITreeModel<IRectangle<String>> model, final IRectangle<String> rectangle) {
+			return null;
+		}
+	};
+
+	private final RectangleImpl<String> root = new RectangleImpl<String>("root", 0, 0, 100, 50);
+	private final RectangleImpl<String> left = new RectangleImpl<String>("left", 10, 5, 20, 10);
+	private final RectangleImpl<String> right = new RectangleImpl<String>("right", 60, 30, 15, 7);
+	private final RectangleModelImpl<String> model = new RectangleModelImpl<String>(root);
+
+	public HighlightAreaTest() {
+		model.addChild(root, left);
+		model.addChild(root, right);
+	}
+
+	/**
+	 * Tests that the area covers both highlights including their outlines.
+	 */
+	@Test
+	public void testUnion() {
+		Assert.assertArrayEquals(new int[] { 10, 5, 21, 11 }, HighlightArea.compute(RECTANGLE, model, null, left, 100, 50, 100, 50));
+		Assert.assertArrayEquals(new int[] { 10, 5, 21, 11 }, HighlightArea.compute(RECTANGLE, model, left, null, 100, 50, 100, 50));
+		Assert.assertArrayEquals(new int[] { 10, 5, 66, 33 }, HighlightArea.compute(RECTANGLE, model, left, right, 100, 50, 100, 50));
+		Assert.assertEquals(0, HighlightArea.compute(RECTANGLE, model, null, null, 100, 50, 100, 50).length);
+	}
+
+	/**
+	 * Tests that the area is scaled from the image to the component,
+	 * enclosing all partially covered pixels.
+	 */
+	@Test
+	public void testZoom() {
+		Assert.assertArrayEquals(new int[] { 20, 10, 42, 22 }, HighlightArea.compute(RECTANGLE, model, null, left, 100, 50, 200, 100));
+		// 1.5 times: 15..46.5 and 7.5..24
+		Assert.assertArrayEquals(new int[] { 15, 7, 32, 17 }, HighlightArea.compute(RECTANGLE, model, null, left, 100, 50, 150, 75));
+		// half: 5..15.5 and 2.5..8
+		Assert.assertArrayEquals(new int[] { 5, 2, 11, 6 }, HighlightArea.compute(RECTANGLE, model, null, left, 100, 50, 50, 25));
+	}
+
+	/**
+	 * Tests that the area is unknown if the renderer does not tell
+	 * the bounds of a highlight.
+	 */
+	@Test
+	public void testUnknown() {
+		Assert.assertNull(HighlightArea.compute(UNKNOWN, model, null, left, 100, 50, 100, 50));
+		Assert.assertNull(HighlightArea.compute(null, model, left, right, 100, 50, 100, 50));
+		Assert.assertNull(HighlightArea.compute(new Object(), model, left, null, 100, 50, 100, 50));
+		// nothing is highlighted
+		Assert.assertEquals(0, HighlightArea.compute(UNKNOWN, model, null, null, 100, 50, 100, 50).length);
+	}
+
+}
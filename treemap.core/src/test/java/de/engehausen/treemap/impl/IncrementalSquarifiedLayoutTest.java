@@ -0,0 +1,124 @@
+package de.engehausen.treemap.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IAggregateRectangle;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+
+public class IncrementalSquarifiedLayoutTest {
+
+	/**
+	 * Tests that an incremental layout produces the same rectangles
+	 * as a full layout after changing some leaf weights.
+	 */
+	@Test
+	public void testSameAsFull() {
+		assertSameAsFull(new IncrementalSquarifiedLayout<String>(Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Tests that an incremental layout folding small children produces
+	 * the same rectangles as a full layout.
+	 */
+	@Test
+	public void testSameAsFullWithMinimumArea() {
+		assertSameAsFull(new IncrementalSquarifiedLayout<String>(Integer.MAX_VALUE, 4000));
+	}
+
+	private static void assertSameAsFull(final IncrementalSquarifiedLayout<String> layout) {
+		final Random rnd = new Random(2010);
+		final GenericTreeModel<String> model = new GenericTreeModel<String>();
+		final List<String> leafs = new ArrayList<String>();
+		model.add("root", 0, null);
+		addNodes(model, "root", 0, 4, rnd, leafs);
+		ITreeModel<IRectangle<String>> previous = layout.layout(model, "root", 1920, 1080);
+		for (int round = 0; round < 5; round++) {
+			final List<String> dirty = new ArrayList<String>();
+			for (int i = 0; i < 3; i++) {
+				final String leaf = leafs.get(rnd.nextInt(leafs.size()));
+				addWeight(model, leaf, 1+rnd.nextInt(50));
+				dirty.add(leaf);
+			}
+			final ITreeModel<IRectangle<String>> incremental = layout.relayout(model, previous, dirty, new BuildControl());
+			final ITreeModel<IRectangle<String>> full = layout.layout(model, "root", 1920, 1080);
+			assertSame(full, incremental);
+			previous = incremental;
+		}
+	}
+
+	/**
+	 * Tests that rectangles of unchanged subtrees are taken over.
+	 */
+	@Test
+	public void testReuse() {
+		final GenericTreeModel<String> model = new GenericTreeModel<String>();
+		model.add("root", 0, null);
+		model.add("a", 0, "root");
+		model.add("b", 0, "root");
+		model.add("a1", 30, "a", true);
+		model.add("a2", 20, "a", true);
+		model.add("b1", 20, "b", true);
+		model.add("b2", 10, "b", true);
+		final IncrementalSquarifiedLayout<String> layout = new IncrementalSquarifiedLayout<String>(Integer.MAX_VALUE);
+		final ITreeModel<IRectangle<String>> previous = layout.layout(model, "root", 400, 300);
+		final IRectangle<String> a1 = find(previous, "a1");
+		addWeight(model, "b2", 5);
+		addWeight(model, "b1", -5);
+		final ITreeModel<IRectangle<String>> next = layout.relayout(model, previous, Arrays.asList("b1", "b2"), new BuildControl());
+		Assert.assertSame(a1, find(next, "a1"));
+		assertSame(layout.layout(model, "root", 400, 300), next);
+	}
+
+	private static void addWeight(final GenericTreeModel<String> model, final String leaf, final long delta) {
+		String node = leaf;
+		while (node != null) {
+			model.weights.get(node).add(delta);
+			node = model.getParent(node);
+		}
+	}
+
+	private static IRectangle<String> find(final ITreeModel<IRectangle<String>> rectangles, final String node) {
+		for (IRectangle<String> rectangle : ((RectangleModelImpl<String>) rectangles).toList()) {
+			if (node.equals(rectangle.getNode())) {
+				return rectangle;
+			}
+		}
+		return null;
+	}
+
+	private static void addNodes(final GenericTreeModel<String> model, final String parent, final int depth, final int max, final Random rnd, final List<String> leafs) {
+		final int count = 2+rnd.nextInt(8);
+		for (int i = 0; i < count; i++) {
+			final String node = parent+"."+i;
+			if (depth < max && rnd.nextBoolean()) {
+				model.add(node, 0, parent);
+				addNodes(model, node, depth+1, max, rnd, leafs);
+			} else {
+				model.add(node, 1+rnd.nextInt(1000), parent, true);
+				leafs.add(node);
+			}
+		}
+	}
+
+	protected static void assertSame(final ITreeModel<IRectangle<String>> expected, final ITreeModel<IRectangle<String>> actual) {
+		final List<IRectangle<String>> list1 = ((RectangleModelImpl<String>) expected).toList();
+		final List<IRectangle<String>> list2 = ((RectangleModelImpl<String>) actual).toList();
+		Assert.assertEquals(list1.size(), list2.size());
+		for (int i = list1.size()-1; i >= 0; i--) {
+			final IRectangle<String> r1 = list1.get(i);
+			final IRectangle<String> r2 = list2.get(i);
+			Assert.assertEquals(r1, r2);
+			Assert.assertEquals(r1.getX(), r2.getX());
+			Assert.assertEquals(r1.getY(), r2.getY());
+			Assert.assertEquals(r1 instanceof IAggregateRectangle<?>, r2 instanceof IAggregateRectangle<?>);
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package de.engehausen.treemap.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleIndex;
+import de.engehausen.treemap.ITreeMapLayout;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.Node;
+import de.engehausen.treemap.NodeEx;
+import de.engehausen.treemap.TreeModel;
+import de.engehausen.treemap.TreeModelEx;
+
+public class LayoutCacheTest {
+
+	/**
+	 * Tests that cached layouts are returned on subsequent calls.
+	 */
+	@Test
+	public void testHit() {
+		final LayoutCache<Node> cache = new LayoutCache<Node>();
+		final ITreeMapLayout<Node> layout = new SquarifiedLayout<Node>(2);
+		final ITreeModel<IRectangle<Node>> first = cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl());
+		final ITreeModel<IRectangle<Node>> second = cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl());
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+		// different size, layout or start node
+		Assert.assertNotSame(first, cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 101, new BuildControl()));
+		Assert.assertNotSame(first, cache.layout(new SquarifiedLayout<Node>(2), TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl()));
+		Assert.assertNotSame(first, cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getChildren(TreeModel.DEFAULT.getRoot()).next(), 100, 100, new BuildControl()));
+		Assert.assertEquals(4, cache.getMisses());
+		Assert.assertEquals(4, cache.size());
+	}
+
+	/**
+	 * Tests the generic layout.
+	 */
+	@Test
+	public void testGeneric() {
+		final LayoutCache<NodeEx<Double>> cache = new LayoutCache<NodeEx<Double>>();
+		final GenericSquarifiedLayout<NodeEx<Double>, Double> layout = new GenericSquarifiedLayout<NodeEx<Double>, Double>(2);
+		final TreeModelEx model = TreeModelEx.DEFAULT;
+		final ITreeModel<IRectangle<NodeEx<Double>>> first = cache.layout(layout, model, model.getRoot(), 100, 100, new BuildControl());
+		Assert.assertNotNull(first.getRoot());
+		Assert.assertSame(first, cache.layout(layout, model, model.getRoot(), 100, 100, new BuildControl()));
+	}
+
+	/**
+	 * Tests eviction by number of entries and by number of rectangles.
+	 */
+	@Test
+	public void testEviction() {
+		final ITreeMapLayout<Node> layout = new SquarifiedLayout<Node>(Integer.MAX_VALUE);
+		final LayoutCache<Node> cache = new LayoutCache<Node>(2, Long.MAX_VALUE);
+		final ITreeModel<IRectangle<Node>> first = cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl());
+		cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 200, 100, new BuildControl());
+		// access the first to make the second one the eldest
+		Assert.assertSame(first, cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl()));
+		cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 300, 100, new BuildControl());
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertSame(first, cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl()));
+
+		final LayoutCache<Node> small = new LayoutCache<Node>(16, 12);
+		small.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl());
+		Assert.assertEquals(1, small.size());
+		small.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 200, 100, new BuildControl());
+		Assert.assertEquals(1, small.size());
+		Assert.assertEquals(1, small.getEvictions());
+	}
+
+	/**
+	 * Tests invalidating the layouts of a model and that canceled
+	 * layouts are not cached.
+	 */
+	@Test
+	public void testInvalidate() {
+		final ITreeMapLayout<Node> layout = new SquarifiedLayout<Node>(2);
+		final LayoutCache<Node> cache = new LayoutCache<Node>();
+		cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl());
+		cache.layout(layout, TreeModel.SMALL, TreeModel.SMALL.getRoot(), 100, 100, new BuildControl());
+		cache.invalidate(TreeModel.DEFAULT);
+		Assert.assertEquals(1, cache.size());
+		final BuildControl control = new BuildControl();
+		control.cancel();
+		cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, control);
+		Assert.assertEquals(1, cache.size());
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+	}
+
+	/**
+	 * Tests that the index of a cached layout is built once.
+	 */
+	@Test
+	public void testIndex() {
+		final ITreeMapLayout<Node> layout = new SquarifiedLayout<Node>(2);
+		final LayoutCache<Node> cache = new LayoutCache<Node>();
+		final ITreeModel<IRectangle<Node>> rectangles = cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl());
+		final IRectangleIndex<Node> index = cache.index(rectangles, new BuildControl());
+		Assert.assertNotNull(index.find(0, 0));
+		Assert.assertSame(index, cache.index(cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100, new BuildControl()), new BuildControl()));
+		// canceled indexes are not kept
+		final ITreeModel<IRectangle<Node>> other = cache.layout(layout, TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 200, 100, new BuildControl());
+		final BuildControl control = new BuildControl();
+		control.cancel();
+		Assert.assertNotSame(cache.index(other, control), cache.index(other, new BuildControl()));
+		// layouts not in the cache are indexed every time
+		final ITreeModel<IRectangle<Node>> uncached = layout.layout(TreeModel.DEFAULT, TreeModel.DEFAULT.getRoot(), 100, 100);
+		Assert.assertNotSame(cache.index(uncached, new BuildControl()), cache.index(uncached, new BuildControl()));
+		cache.clear();
+		Assert.assertNotSame(index, cache.index(rectangles, new BuildControl()));
+	}
+
+}
@@ -0,0 +1,148 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IGenericWeightedTreeModel;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.Node;
+import de.engehausen.treemap.NodeEx;
+import de.engehausen.treemap.TreeModel;
+import de.engehausen.treemap.TreeModelEx;
+
+/**
+ * Tests {@link ParallelSquarifiedLayout} and {@link ParallelGenericSquarifiedLayout}.
+ */
+@RunWith(Parameterized.class)
+public class ParallelLayoutTest {
+
+	/**
+	 * Lays out the test models with the layouts of one kind of weight.
+	 */
+	protected interface Layouts {
+
+		ITreeModel<Object> model(boolean binary);
+
+		ITreeModel<IRectangle<Object>> sequential(ITreeModel<Object> model, int nestingDepth, int width, int height);
+
+		ITreeModel<IRectangle<Object>> parallel(ITreeModel<Object> model, int nestingDepth, ForkJoinPool pool, int width, int height, ICancelable cancelable);
+
+	}
+
+	@Parameters(name = "{0}")
+	public static Collection<Object[]> layouts() {
+		return Arrays.asList(new Object[][] {
+			{ "ParallelSquarifiedLayout", new Layouts() {
+				@Override
+				public ITreeModel<Object> model(final boolean binary) {
+					return cast(binary ? TreeModel.DEEP_BINARY : TreeModel.DEEP_UNBALANCED);
+				}
+				@Override
+				public ITreeModel<IRectangle<Object>> sequential(final ITreeModel<Object> model, final int nestingDepth, final int width, final int height) {
+					final IWeightedTreeModel<Node> weighted = cast(model);
+					return cast(new SquarifiedLayout<Node>(nestingDepth).layout(weighted, weighted.getRoot(), width, height));
+				}
+				@Override
+				public ITreeModel<IRectangle<Object>> parallel(final ITreeModel<Object> model, final int nestingDepth, final ForkJoinPool pool, final int width, final int height, final ICancelable cancelable) {
+					final IWeightedTreeModel<Node> weighted = cast(model);
+					return cast(new ParallelSquarifiedLayout<Node>(nestingDepth, 1, pool).layout(weighted, weighted.getRoot(), width, height, cancelable));
+				}
+			} },
+			{ "ParallelGenericSquarifiedLayout", new Layouts() {
+				@Override
+				public ITreeModel<Object> model(final boolean binary) {
+					return cast(binary ? TreeModelEx.DEEP_BINARY : TreeModelEx.DEEP_UNBALANCED);
+				}
+				@Override
+				public ITreeModel<IRectangle<Object>> sequential(final ITreeModel<Object> model, final int nestingDepth, final int width, final int height) {
+					final IGenericWeightedTreeModel<NodeEx<Double>, Double> weighted = cast(model);
+					return cast(new GenericSquarifiedLayout<NodeEx<Double>, Double>(nestingDepth).layout(weighted, weighted.getRoot(), width, height));
+				}
+				@Override
+				public ITreeModel<IRectangle<Object>> parallel(final ITreeModel<Object> model, final int nestingDepth, final ForkJoinPool pool, final int width, final int height, final ICancelable cancelable) {
+					final IGenericWeightedTreeModel<NodeEx<Double>, Double> weighted = cast(model);
+					return cast(new ParallelGenericSquarifiedLayout<NodeEx<Double>, Double>(nestingDepth, 1, pool).layout(weighted, weighted.getRoot(), width, height, cancelable));
+				}
+			} }
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T cast(final Object object) {
+		return (T) object;
+	}
+
+	private final Layouts layouts;
+
+	public ParallelLayoutTest(final String name, final Layouts someLayouts) {
+		layouts = someLayouts;
+	}
+
+	/**
+	 * Tests that the parallel layout produces the same rectangles
+	 * as the sequential layout.
+	 */
+	@Test
+	public void testSameAsSequential() {
+		final ITreeModel<Object> model = layouts.model(false);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final ITreeModel<IRectangle<Object>> expected = layouts.sequential(model, Integer.MAX_VALUE, 4000, 3000);
+			final ITreeModel<IRectangle<Object>> actual = layouts.parallel(model, Integer.MAX_VALUE, pool, 4000, 3000, new BuildControl());
+			assertSame(expected, actual);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Tests <i>canceling</i> a parallel layout computation.
+	 */
+	@Test
+	public void testCancelation() {
+		final BuildControl control = new BuildControl();
+		control.cancel();
+		final ITreeModel<IRectangle<Object>> rectangles = layouts.parallel(layouts.model(false), Integer.MAX_VALUE, null, 1920, 1080, control);
+		Assert.assertNull(rectangles.getRoot());
+	}
+
+	/**
+	 * Tests that parent and child relations are kept.
+	 */
+	@Test
+	public void testParents() {
+		final ITreeModel<Object> model = layouts.model(true);
+		final ITreeModel<IRectangle<Object>> rectangles = layouts.parallel(model, 4, null, 512, 512, new BuildControl());
+		final List<IRectangle<Object>> list = ((RectangleModelImpl<Object>) rectangles).toList();
+		Assert.assertEquals((int) (Math.pow(2, 4+1)-1), list.size());
+		Assert.assertNull(rectangles.getParent(rectangles.getRoot()));
+		for (IRectangle<Object> rectangle : list.subList(1, list.size())) {
+			Assert.assertEquals(model.getParent(rectangle.getNode()), rectangles.getParent(rectangle).getNode());
+		}
+	}
+
+	protected void assertSame(final ITreeModel<IRectangle<Object>> expected, final ITreeModel<IRectangle<Object>> actual) {
+		final List<IRectangle<Object>> list1 = ((RectangleModelImpl<Object>) expected).toList();
+		final List<IRectangle<Object>> list2 = ((RectangleModelImpl<Object>) actual).toList();
+		Assert.assertEquals(list1.size(), list2.size());
+		for (int i = list1.size()-1; i >= 0; i--) {
+			final IRectangle<Object> r1 = list1.get(i);
+			final IRectangle<Object> r2 = list2.get(i);
+			Assert.assertEquals(r1, r2);
+			Assert.assertEquals(r1.getX(), r2.getX());
+			Assert.assertEquals(r1.getY(), r2.getY());
+		}
+	}
+
+}
@@ -0,0 +1,143 @@
+package de.engehausen.treemap.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleSink;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.SyntheticTreeModel;
+
+public class PipelinedLayoutTest {
+
+	private static final ICancelable NEVER = new ICancelable() {
+		@Override
+		public boolean isCanceled() {
+			return false;
+		}
+	};
+
+	/**
+	 * Tests that the sink receives the same rectangles as from the
+	 * layout computed in the calling thread.
+	 */
+	@Test
+	public void testSameAsSequential() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(20000).depth(8).build();
+		final SquarifiedLayout<Integer> layout = new SquarifiedLayout<Integer>(Integer.MAX_VALUE);
+		final List<String> expected = new ArrayList<String>();
+		layout.layout(tree, tree.getRoot(), 800, 600, new SquarifiedLayoutTest.Collector(expected), NEVER);
+		final List<String> pipelined = new ArrayList<String>();
+		new PipelinedLayout<Integer>(layout).layout(tree, tree.getRoot(), 800, 600, new SquarifiedLayoutTest.Collector(pipelined), NEVER);
+		Assert.assertEquals(expected, pipelined);
+		final List<String> single = new ArrayList<String>();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			new PipelinedLayout<Integer>(layout, 1, executor).layout(tree, tree.getRoot(), 800, 600, new SquarifiedLayoutTest.Collector(single), NEVER);
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertEquals(expected, single);
+	}
+
+	/**
+	 * Tests that an exception of the layout is thrown in the calling thread.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void testLayoutFailure() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(1000).build();
+		final SquarifiedLayout<Integer> layout = new SquarifiedLayout<Integer>(Integer.MAX_VALUE) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void squarify(final RectangleModelImpl<Integer> result, final RectangleImpl<Integer> rectangle, final ComparatorImpl<Integer> comparator, final int depth, final ICancelable cancelable) {
+				throw new IllegalStateException("failed");
+			}
+		};
+		new PipelinedLayout<Integer>(layout).layout(tree, tree.getRoot(), 800, 600, new SquarifiedLayoutTest.Collector(new ArrayList<String>()), NEVER);
+	}
+
+	/**
+	 * Tests that the layout stops if the sink fails.
+	 */
+	@Test
+	public void testSinkFailure() throws InterruptedException {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(200000).build();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			new PipelinedLayout<Integer>(new SquarifiedLayout<Integer>(Integer.MAX_VALUE), 16, executor).layout(tree, tree.getRoot(), 800, 600, new IRectangleSink<Integer>() {
+				@Override
+				public void add(final ITreeModel<IRectangle<Integer>> path, final IRectangle<Integer> parent, final IRectangle<Integer> rectangle, final int depth, final boolean leaf) {
+					throw new IllegalStateException("failed");
+				}
+			}, NEVER);
+			Assert.fail("exception expected");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("failed", e.getMessage());
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests that interrupting the layout thread fails the layout instead
+	 * of blocking the calling thread.
+	 */
+	@Test(timeout = 30000)
+	public void testProducerInterrupted() throws InterruptedException {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(200000).build();
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		final AtomicInteger count = new AtomicInteger();
+		try {
+			new PipelinedLayout<Integer>(new SquarifiedLayout<Integer>(Integer.MAX_VALUE), 16, executor).layout(tree, tree.getRoot(), 800, 600, new IRectangleSink<Integer>() {
+				@Override
+				public void add(final ITreeModel<IRectangle<Integer>> path, final IRectangle<Integer> parent, final IRectangle<Integer> rectangle, final int depth, final boolean leaf) {
+					if (count.getAndIncrement() == 0) {
+						// the layout thread waits for the full queue when it is interrupted
+						executor.shutdownNow();
+						try {
+							Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+						} catch (InterruptedException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+				}
+			}, NEVER);
+			Assert.fail("exception expected");
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getCause() instanceof InterruptedException);
+		}
+		Assert.assertTrue(count.get() > 0);
+	}
+
+	/**
+	 * Tests that interrupting the calling thread fails the layout
+	 * and keeps the thread interrupted.
+	 */
+	@Test(timeout = 30000)
+	public void testConsumerInterrupted() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(200000).build();
+		try {
+			new PipelinedLayout<Integer>(new SquarifiedLayout<Integer>(Integer.MAX_VALUE), 16, null).layout(tree, tree.getRoot(), 800, 600, new IRectangleSink<Integer>() {
+				@Override
+				public void add(final ITreeModel<IRectangle<Integer>> path, final IRectangle<Integer> parent, final IRectangle<Integer> rectangle, final int depth, final boolean leaf) {
+					Thread.currentThread().interrupt();
+				}
+			}, NEVER);
+			Assert.fail("exception expected");
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getCause() instanceof InterruptedException);
+		} finally {
+			Assert.assertTrue(Thread.interrupted());
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleIndex;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.Node;
+import de.engehausen.treemap.TreeModel;
+
+public class PixelRectangleIndexTest {
+
+	/**
+	 * Tests that the index finds the same rectangles as
+	 * descending the rectangle tree.
+	 */
+	@Test
+	public void testSameAsDescent() {
+		final IWeightedTreeModel<Node> model = TreeModel.DEEP_UNBALANCED;
+		final ITreeModel<IRectangle<Node>> rectangles = new BorderSquarifiedLayout<Node>(4, 2).layout(model, model.getRoot(), 640, 480);
+		final IRectangleIndex<Node> index = new PixelRectangleIndex<Node>(rectangles);
+		for (int y = -1; y <= 480; y++) {
+			for (int x = -1; x <= 640; x++) {
+				Assert.assertSame(descend(rectangles, x, y), index.find(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Tests an empty model.
+	 */
+	@Test
+	public void testEmpty() {
+		final IRectangleIndex<Node> index = new PixelRectangleIndex<Node>(new RectangleModelImpl<Node>());
+		Assert.assertNull(index.find(0, 0));
+	}
+
+	private static IRectangle<Node> descend(final ITreeModel<IRectangle<Node>> rectangles, final int x, final int y) {
+		IRectangle<Node> result = rectangles.getRoot();
+		if (!result.contains(x, y)) {
+			return null;
+		}
+		boolean found = true;
+		while (found && rectangles.hasChildren(result)) {
+			found = false;
+			for (Iterator<IRectangle<Node>> i = rectangles.getChildren(result); i.hasNext(); ) {
+				final IRectangle<Node> candidate = i.next();
+				if (candidate.contains(x, y)) {
+					result = candidate;
+					found = true;
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+}
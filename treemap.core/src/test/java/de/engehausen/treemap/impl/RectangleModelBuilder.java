@@ -0,0 +1,42 @@
+package de.engehausen.treemap.impl;
+
+import de.engehausen.treemap.IRectangle;
+
+/**
+ * Builds rectangle models with explicit coordinates, e.g. for
+ * tests outside of this package.
+ *
+ * @param <N> the type of node the rectangles work on
+ */
+public class RectangleModelBuilder<N> {
+
+	protected final RectangleModelImpl<N> model;
+
+	/**
+	 * Creates the builder.
+	 * @param root the root rectangle, must not be {@code null}.
+	 */
+	public RectangleModelBuilder(final IRectangle<N> root) {
+		model = new RectangleModelImpl<N>(root);
+	}
+
+	/**
+	 * Adds a child rectangle.
+	 * @param parent the parent rectangle, must already be part of the model
+	 * @param child the child rectangle, must not be {@code null}.
+	 * @return this builder
+	 */
+	public RectangleModelBuilder<N> add(final IRectangle<N> parent, final IRectangle<N> child) {
+		model.addChild(parent, child);
+		return this;
+	}
+
+	/**
+	 * Returns the rectangle model.
+	 * @return the rectangle model.
+	 */
+	public RectangleModelImpl<N> build() {
+		return model;
+	}
+
+}
@@ -0,0 +1,113 @@
+package de.engehausen.treemap.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.ILabelProvider;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.SyntheticTreeModel;
+
+public class RegexColorProviderTest {
+
+	private static final String DEFAULT = "default";
+
+	/**
+	 * Tests that the combined rules give the same colors as
+	 * matching the rules one by one.
+	 */
+	@Test
+	public void testSameAsSequential() {
+		final List<String> expressions = Arrays.asList("1.*7", "(?i)(\\d)(\\d)3", ".*(?<twos>22).*", "\\d{4}", "(\\d)\\1.*", "5");
+		final List<String> colors = Arrays.asList("a", "b", "c", "d", "e", "f");
+		check(expressions, colors);
+		// without the back reference the rules are combined
+		check(expressions.subList(0, 4), colors.subList(0, 4));
+		// a group name used twice cannot be combined
+		check(Arrays.asList("(?<x>1).*", ".*(?<x>2)"), Arrays.asList("a", "b"));
+	}
+
+	/**
+	 * Tests that colors are computed once per node until the rules change.
+	 */
+	@Test
+	public void testCache() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(5000).depth(6).build();
+		final ITreeModel<IRectangle<Integer>> rectangles = new SquarifiedLayout<Integer>(Integer.MAX_VALUE).layout(tree, tree.getRoot(), 800, 600);
+		final AtomicInteger calls = new AtomicInteger();
+		final RegexColorProvider<Integer, String> provider = new RegexColorProvider<Integer, String>(new ILabelProvider<Integer>() {
+			@Override
+			public String getLabel(final ITreeModel<IRectangle<Integer>> model, final IRectangle<Integer> rectangle) {
+				calls.incrementAndGet();
+				return rectangle.getNode().toString();
+			}
+		}, DEFAULT);
+		provider.setRules(Arrays.asList(".*1"), Arrays.asList("one"));
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			provider.precompute(rectangles, pool);
+		} finally {
+			pool.shutdown();
+		}
+		final int count = calls.get();
+		Assert.assertTrue(count > 0);
+		final IRectangle<Integer> root = rectangles.getRoot();
+		for (Iterator<IRectangle<Integer>> i = rectangles.getChildren(root); i.hasNext(); ) {
+			final IRectangle<Integer> rectangle = i.next();
+			Assert.assertEquals(rectangle.getNode().toString().endsWith("1") ? "one" : DEFAULT, provider.getColor(rectangles, rectangle));
+		}
+		Assert.assertEquals(count, calls.get());
+		provider.setRules(Arrays.asList(".*"), Arrays.asList("all"));
+		Assert.assertEquals("all", provider.getColor(rectangles, root));
+		Assert.assertEquals(count+1, calls.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRules() {
+		new RegexColorProvider<Integer, String>(new NameProvider(), DEFAULT).setRules(Arrays.asList("a", "b"), Arrays.asList("a"));
+	}
+
+	private void check(final List<String> expressions, final List<String> colors) {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(3000).build();
+		final ITreeModel<IRectangle<Integer>> rectangles = new SquarifiedLayout<Integer>(Integer.MAX_VALUE).layout(tree, tree.getRoot(), 800, 600);
+		final RegexColorProvider<Integer, String> provider = new RegexColorProvider<Integer, String>(new NameProvider(), DEFAULT);
+		provider.setRules(expressions, colors);
+		final Pattern[] patterns = new Pattern[expressions.size()];
+		for (int i = 0; i < patterns.length; i++) {
+			patterns[i] = Pattern.compile(expressions.get(i));
+		}
+		check(rectangles, rectangles.getRoot(), provider, patterns, colors);
+	}
+
+	private void check(final ITreeModel<IRectangle<Integer>> rectangles, final IRectangle<Integer> rectangle, final RegexColorProvider<Integer, String> provider, final Pattern[] patterns, final List<String> colors) {
+		String expected = DEFAULT;
+		final String name = rectangle.getNode().toString();
+		for (int i = 0; i < patterns.length; i++) {
+			if (patterns[i].matcher(name).matches()) {
+				expected = colors.get(i);
+				break;
+			}
+		}
+		Assert.assertEquals(name, expected, provider.getColor(rectangles, rectangle));
+		for (Iterator<IRectangle<Integer>> i = rectangles.getChildren(rectangle); i.hasNext(); ) {
+			check(rectangles, i.next(), provider, patterns, colors);
+		}
+	}
+
+	private static class NameProvider implements ILabelProvider<Integer> {
+
+		@Override
+		public String getLabel(final ITreeModel<IRectangle<Integer>> model, final IRectangle<Integer> rectangle) {
+			return rectangle.getNode().toString();
+		}
+
+	}
+
+}
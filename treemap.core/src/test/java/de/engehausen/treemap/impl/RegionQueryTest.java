@@ -0,0 +1,113 @@
+package de.engehausen.treemap.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.SyntheticTreeModel;
+
+public class RegionQueryTest {
+
+	/**
+	 * Tests random regions against checking all leafs.
+	 */
+	@Test
+	public void testSameAsAllLeafs() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(20000).depth(8).build();
+		final ITreeModel<IRectangle<Integer>> rectangles = new SquarifiedLayout<Integer>(Integer.MAX_VALUE).layout(tree, tree.getRoot(), 800, 600);
+		final List<IRectangle<Integer>> leafs = new ArrayList<IRectangle<Integer>>();
+		collectLeafs(rectangles, rectangles.getRoot(), leafs);
+		final RegionQuery<Integer> query = new RegionQuery<Integer>(rectangles, tree);
+		final Random random = new Random(3);
+		for (int i = 0; i < 200; i++) {
+			final int x = random.nextInt(900)-50;
+			final int y = random.nextInt(700)-50;
+			final int w = random.nextInt(400);
+			final int h = random.nextInt(300);
+			final RegionQuery.Region<Integer> region = query.query(x, y, w, h);
+			// the leafs below the returned rectangles, which are disjoint
+			final Set<IRectangle<Integer>> covered = new HashSet<IRectangle<Integer>>();
+			double weight = 0;
+			for (IRectangle<Integer> rectangle : region.getRectangles()) {
+				final boolean inside = rectangle.getX() >= x && rectangle.getY() >= y && rectangle.getX()+rectangle.getWidth() <= x+w && rectangle.getY()+rectangle.getHeight() <= y+h;
+				Assert.assertTrue(inside || !rectangles.hasChildren(rectangle));
+				weight += tree.getWeight(rectangle.getNode().intValue());
+				final List<IRectangle<Integer>> below = new ArrayList<IRectangle<Integer>>();
+				collectLeafs(rectangles, rectangle, below);
+				for (IRectangle<Integer> leaf : below) {
+					Assert.assertTrue(covered.add(leaf));
+				}
+			}
+			Assert.assertEquals(weight, region.getWeight(), 0);
+			for (IRectangle<Integer> leaf : leafs) {
+				final boolean intersects = w > 0 && h > 0 && leaf.getX() < x+w && x < leaf.getX()+leaf.getWidth() && leaf.getY() < y+h && y < leaf.getY()+leaf.getHeight();
+				// leafs without area may be part of a selected subtree
+				Assert.assertTrue(intersects == covered.contains(leaf) || (leaf.getWidth() == 0 || leaf.getHeight() == 0));
+			}
+			Assert.assertEquals(covered.isEmpty(), region.isEmpty());
+		}
+		// the whole map is the root
+		final RegionQuery.Region<Integer> all = query.query(0, 0, 800, 600);
+		Assert.assertEquals(1, all.getRectangles().size());
+		Assert.assertSame(rectangles.getRoot(), all.getRectangles().get(0));
+		Assert.assertEquals(tree.getWeight(0), all.getWeight(), 0);
+	}
+
+	/**
+	 * Tests that aggregate rectangles contribute their weight.
+	 */
+	@Test
+	public void testAggregates() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(20000).depth(8).build();
+		final ITreeModel<IRectangle<Integer>> rectangles = new SquarifiedLayout<Integer>(Integer.MAX_VALUE, 64).layout(tree, tree.getRoot(), 800, 600);
+		final RegionQuery<Integer> query = new RegionQuery<Integer>(rectangles, tree);
+		double sum = 0;
+		for (Iterator<IRectangle<Integer>> i = rectangles.getChildren(rectangles.getRoot()); i.hasNext(); ) {
+			final IRectangle<Integer> child = i.next();
+			sum += query.query(child.getX(), child.getY(), child.getWidth(), child.getHeight()).getWeight();
+		}
+		Assert.assertEquals(tree.getWeight(0), sum, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnweightedModel() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(10).build();
+		new RegionQuery<Integer>(new SquarifiedLayout<Integer>(2).layout(tree, tree.getRoot(), 10, 10), new ITreeModel<Integer>() {
+			@Override
+			public Integer getRoot() {
+				return tree.getRoot();
+			}
+			@Override
+			public Integer getParent(final Integer node) {
+				return tree.getParent(node);
+			}
+			@Override
+			public Iterator<Integer> getChildren(final Integer node) {
+				return tree.getChildren(node);
+			}
+			@Override
+			public boolean hasChildren(final Integer node) {
+				return tree.hasChildren(node);
+			}
+		});
+	}
+
+	private static void collectLeafs(final ITreeModel<IRectangle<Integer>> rectangles, final IRectangle<Integer> rectangle, final List<IRectangle<Integer>> result) {
+		if (rectangles.hasChildren(rectangle)) {
+			for (Iterator<IRectangle<Integer>> i = rectangles.getChildren(rectangle); i.hasNext(); ) {
+				collectLeafs(rectangles, i.next(), result);
+			}
+		} else {
+			result.add(rectangle);
+		}
+	}
+
+}
@@ -1,6 +1,7 @@
 package de.engehausen.treemap.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -10,11 +11,15 @@ import java.util.Map;
 import org.junit.Assert;
 import org.junit.Test;
 
+import de.engehausen.treemap.IAggregateRectangle;
 import de.engehausen.treemap.ICancelable;
 import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleSink;
+import de.engehausen.treemap.ITreeMapLayout;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.IWeightedTreeModel;
 import de.engehausen.treemap.Node;
+import de.engehausen.treemap.SyntheticTreeModel;
 import de.engehausen.treemap.TreeModel;
 
 public class SquarifiedLayoutTest {
@@ -58,6 +63,39 @@ public class SquarifiedLayoutTest {
 		Assert.assertTrue(list1.size() < list2.size());
 	}
 
+	/**
+	 * Tests that children are ordered by descending weight, keeping
+	 * the order of children with the same weight.
+	 */
+	@Test
+	public void testChildOrder() {
+		final GenericTreeModel<String> model = new GenericTreeModel<String>();
+		model.add("root", 0, null);
+		model.add("a", 3, "root");
+		model.add("b", 5, "root");
+		model.add("c", 3, "root");
+		model.add("d", 7, "root");
+		model.add("e", 3, "root");
+		assertOrder(model, "d", "b", "a", "c", "e");
+		// weights too large to be packed with the index, and differences overflowing an int
+		final GenericTreeModel<String> big = new GenericTreeModel<String>();
+		big.add("root", 0, null, false);
+		big.add("a", Long.MAX_VALUE/16, "root", false);
+		big.add("b", Long.MAX_VALUE/4, "root", false);
+		big.add("c", Long.MAX_VALUE/8, "root", false);
+		big.add("d", Long.MAX_VALUE/4, "root", false);
+		assertOrder(big, "b", "d", "c", "a");
+	}
+
+	private void assertOrder(final IWeightedTreeModel<String> model, final String... expected) {
+		final ITreeModel<IRectangle<String>> rectangles = new SquarifiedLayout<String>(Integer.MAX_VALUE).layout(model, model.getRoot(), 600, 400);
+		final List<String> actual = new ArrayList<String>(expected.length);
+		for (Iterator<IRectangle<String>> i = rectangles.getChildren(rectangles.getRoot()); i.hasNext(); ) {
+			actual.add(i.next().getNode());
+		}
+		Assert.assertEquals(Arrays.asList(expected), actual);
+	}
+
 	/**
 	 * Tests layout with the layout given in the <a href="http://www.win.tue.nl/~vanwijk/stm.pdf">Wijk paper</a>.
 	 */
@@ -130,6 +168,103 @@ public class SquarifiedLayoutTest {
 		Assert.assertEquals("node0", i.next().getNode().getName());
 	}
 
+	/**
+	 * Tests folding children which are too small into an aggregate rectangle.
+	 */
+	@Test
+	public void testMinimumArea() {
+		final IWeightedTreeModel<Node> model = TreeModel.MANY;
+		// 100 pixels of 300*200 need a weight of 75.25 at a total of 45150
+		final ITreeModel<IRectangle<Node>> result = new SquarifiedLayout<Node>(Integer.MAX_VALUE, 100).layout(model, model.getRoot(), 300, 200);
+		final List<IRectangle<Node>> list = toList(result);
+		Assert.assertEquals(1+225+1, list.size());
+		final IRectangle<Node> first = result.getChildren(result.getRoot()).next();
+		Assert.assertTrue(first instanceof IAggregateRectangle<?>);
+		final IAggregateRectangle<Node> aggregate = (IAggregateRectangle<Node>) first;
+		// nodes of the weights 75 down to 1 are folded; their sum is heavier than any node
+		Assert.assertEquals("node225", aggregate.getNode().getName());
+		Assert.assertEquals(75, aggregate.getCount());
+		Assert.assertEquals(75*76/2, aggregate.getWeight());
+		for (IRectangle<Node> rectangle : list.subList(2, list.size())) {
+			Assert.assertFalse(rectangle instanceof IAggregateRectangle<?>);
+			Assert.assertTrue(model.getWeight(rectangle.getNode()) > 75);
+		}
+
+		// aggregates are not laid out any further
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(50000).depth(6).build();
+		final ITreeModel<IRectangle<Integer>> full = new SquarifiedLayout<Integer>(Integer.MAX_VALUE).layout(tree, tree.getRoot(), 640, 480);
+		final ITreeModel<IRectangle<Integer>> pruned = new SquarifiedLayout<Integer>(Integer.MAX_VALUE, 16).layout(tree, tree.getRoot(), 640, 480);
+		int aggregates = 0;
+		for (IRectangle<Integer> rectangle : ((RectangleModelImpl<Integer>) pruned).toList()) {
+			if (rectangle instanceof IAggregateRectangle<?>) {
+				Assert.assertFalse(pruned.hasChildren(rectangle));
+				aggregates++;
+			}
+		}
+		Assert.assertTrue(aggregates > 0);
+		Assert.assertTrue(((RectangleModelImpl<Integer>) pruned).toList().size() < ((RectangleModelImpl<Integer>) full).toList().size());
+	}
+
+	/**
+	 * Tests that streaming a layout into a sink passes the same rectangles,
+	 * in the same order, as a computed layout.
+	 */
+	@Test
+	public void testSink() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(20000).depth(8).build();
+		assertSink(tree, new SquarifiedLayout<Integer>(Integer.MAX_VALUE));
+		assertSink(tree, new SquarifiedLayout<Integer>(3));
+		assertSink(tree, new BorderSquarifiedLayout<Integer>(Integer.MAX_VALUE, 2, 64));
+		assertSink(tree, new ParallelSquarifiedLayout<Integer>(Integer.MAX_VALUE));
+		final SyntheticTreeModel single = new SyntheticTreeModel.Builder().nodes(1).build();
+		assertSink(single, new SquarifiedLayout<Integer>(Integer.MAX_VALUE));
+	}
+
+	private void assertSink(final IWeightedTreeModel<Integer> model, final SquarifiedLayout<Integer> layout) {
+		final List<String> streamed = new ArrayList<String>();
+		layout.layout(model, model.getRoot(), 800, 600, new Collector(streamed), layout);
+		// the default implementation passes the rectangles of the computed layout
+		final ITreeMapLayout<Integer> computed = new ITreeMapLayout<Integer>() {
+			@Override
+			public ITreeModel<IRectangle<Integer>> layout(final IWeightedTreeModel<Integer> treeModel, final Integer startingNode, final int width, final int height) {
+				return layout.layout(treeModel, startingNode, width, height);
+			}
+			@Override
+			public ITreeModel<IRectangle<Integer>> layout(final IWeightedTreeModel<Integer> treeModel, final Integer startingNode, final int width, final int height, final ICancelable cancelable) {
+				return layout.layout(treeModel, startingNode, width, height, cancelable);
+			}
+		};
+		final List<String> expected = new ArrayList<String>();
+		computed.layout(model, model.getRoot(), 800, 600, new Collector(expected), layout);
+		Assert.assertEquals(expected, streamed);
+	}
+
+	/**
+	 * Records the rectangles passed to the sink together with the
+	 * information about their position in the tree.
+	 */
+	static class Collector implements IRectangleSink<Integer> {
+
+		private final List<String> list;
+
+		protected Collector(final List<String> aList) {
+			list = aList;
+		}
+
+		@Override
+		public void add(final ITreeModel<IRectangle<Integer>> path, final IRectangle<Integer> parent, final IRectangle<Integer> rectangle, final int depth, final boolean leaf) {
+			Assert.assertSame(parent, path.getParent(rectangle));
+			Assert.assertEquals(!leaf, path.hasChildren(rectangle));
+			if (parent != null) {
+				Assert.assertTrue(path.hasChildren(parent));
+			} else {
+				Assert.assertSame(rectangle, path.getRoot());
+			}
+			list.add(rectangle+"@"+depth+(leaf ? "" : "+")+" in "+parent);
+		}
+
+	}
+
 	/**
 	 * Tests layout with a non-root node.
 	 */
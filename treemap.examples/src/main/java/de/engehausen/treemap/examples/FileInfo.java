@@ -61,6 +61,17 @@ public class FileInfo {
 	 * @return the file size as a human-readable string
 	 */
 	public String getSizeAsString() {
+		return getSizeAsString(size);
+	}
+
+	/**
+	 * Returns the given size as a human-readable string, formatted
+	 * to power of two byte units (byte, kilobyte, etc.).
+	 *
+	 * @param size the size in bytes
+	 * @return the size as a human-readable string
+	 */
+	public static String getSizeAsString(final long size) {
 		if (size > 0) {
 			final StringBuilder sb = new StringBuilder(32);
 			final int idx = (int) (Math.log((double) size) / Math.log(2))/10;
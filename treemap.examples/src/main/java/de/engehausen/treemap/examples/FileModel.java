@@ -1,13 +1,29 @@
 package de.engehausen.treemap.examples;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.impl.CompactWeightedTreeModel;
 import de.engehausen.treemap.impl.GenericTreeModel;
 
 /**
  * A weighted tree model of files and directories. The model can be built
  * from a given starting point and will recursive into all sub-directories.
+ * Directories are scanned in parallel; symbolic links are not followed.
+ * The directory sizes are summed up once after all files have been collected.
+ * <br>The models created by {@link #createFileModel(String)} are compact,
+ * read-only models; the class itself remains a {@link GenericTreeModel}
+ * for subclasses building their own models.
  */
 public class FileModel extends GenericTreeModel<FileInfo> {
 
@@ -19,43 +35,92 @@ public class FileModel extends GenericTreeModel<FileInfo> {
 	 * @throws IllegalArgumentException if the root directory is not valid.
 	 */
 	public static IWeightedTreeModel<FileInfo> createFileModel(final String rootDir) {
+		// scanning is bound by I/O latency rather than CPU, so use more threads than cores
+		final ForkJoinPool pool = new ForkJoinPool(Math.max(8, 4*Runtime.getRuntime().availableProcessors()));
+		try {
+			return createFileModel(rootDir, pool);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Creates a file model starting at the given "root" directory, scanning
+	 * the directories in the given pool.
+	 * @param rootDir the starting directory for building the model,
+	 * must not be {@code null} and must be a valid directory.
+	 * @param pool the pool to scan the directories in, must not be {@code null}.
+	 * @return a file model starting at the given "root" directory.
+	 * @throws IllegalArgumentException if the root directory is not valid.
+	 */
+	public static IWeightedTreeModel<FileInfo> createFileModel(final String rootDir, final ForkJoinPool pool) {
 		final File dir = new File(rootDir);
 		if (dir.isDirectory()) {
-			final FileModel result = new FileModel();
-			traverse(null, dir, result);
-			return result;
+			final CompactWeightedTreeModel.Builder<FileInfo> builder = new CompactWeightedTreeModel.Builder<FileInfo>(4096);
+			final FileInfo root = new FileInfo(dir.getAbsolutePath(), 0);
+			builder.add(root, 0, null);
+			pool.invoke(new DirectoryScan(dir.toPath().toAbsolutePath(), root, builder));
+			return builder.build(true, pool);
 		} else {
 			throw new IllegalArgumentException(rootDir+" not a directory");
 		}
 	}
 
+	protected FileModel() {
+		super();
+	}
+
 	/**
-	 * Recursively traverses directories.
-	 *
-	 * @param parent the parent file information
-	 * @param f the current file or directory
-	 * @param model the current file model being built
+	 * Scans one directory and forks the scans of its sub-directories.
+	 * The entries of the directory are added to the (shared) builder in one go.
 	 */
-    private static void traverse(final FileInfo parent, final File f, final FileModel model) {
-		if (f.isDirectory()) {
-			final String node = f.getAbsolutePath();
-			final FileInfo info = new FileInfo(node, 0);
-			model.add(info, 0, parent);
-			final File[] files = f.listFiles();
-			if (files != null) {
-				for (int i = files.length - 1; i >= 0; i--) {
-					traverse(info, files[i], model);
+	private static class DirectoryScan extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path dir;
+		private final FileInfo info;
+		private final CompactWeightedTreeModel.Builder<FileInfo> builder;
+
+		public DirectoryScan(final Path aDir, final FileInfo anInfo, final CompactWeightedTreeModel.Builder<FileInfo> aBuilder) {
+			dir = aDir;
+			info = anInfo;
+			builder = aBuilder;
+		}
+
+		@Override
+		protected void compute() {
+			final List<FileInfo> entries = new ArrayList<FileInfo>();
+			final List<DirectoryScan> scans = new ArrayList<DirectoryScan>();
+			try (final DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path path : stream) {
+					final BasicFileAttributes attributes;
+					try {
+						attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (IOException e) {
+						// vanished or not accessible, skip it
+						continue;
+					}
+					if (attributes.isDirectory()) {
+						final FileInfo child = new FileInfo(path.toString(), 0);
+						entries.add(child);
+						scans.add(new DirectoryScan(path, child, builder));
+					} else {
+						entries.add(new FileInfo(path.toString(), attributes.size()));
+					}
 				}
+			} catch (IOException e) {
+				// not readable, treat as empty like File.listFiles() does
 			}
-		} else {
-			final long size = f.length();
-			final FileInfo info = new FileInfo(f.getAbsolutePath(), size);
-			model.add(info, size, parent);
+			synchronized (builder) {
+				for (int i = entries.size()-1; i >= 0; i--) {
+					final FileInfo entry = entries.get(i);
+					builder.add(entry, entry.getSize(), info);
+				}
+			}
+			invokeAll(scans);
 		}
-	}
 
-	protected FileModel() {
-		super();
 	}
 
 }
@@ -0,0 +1,22 @@
+package de.engehausen.treemap.svg;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes buffered XML elements after the last rectangle.
+ * Optional interface for a rectangle renderer.
+ * If implemented, the renderer may buffer the output for rectangles
+ * and write it when the last rectangle has been rendered, before the
+ * element grouping the rectangles is closed.
+ */
+public interface IBuffering {
+
+	/**
+	 * Outputs the SVG elements buffered by the renderer.
+	 * @param writer the writer to write to, never {@code null}.
+	 * @throws XMLStreamException in case of error
+	 */
+	void flush(final XMLStreamWriter writer) throws XMLStreamException;
+
+}
@@ -0,0 +1,26 @@
+package de.engehausen.treemap.svg;
+
+import javax.xml.stream.XMLStreamWriter;
+
+import de.engehausen.treemap.IRectangleRenderer;
+
+/**
+ * Rectangle renderer supporting concurrent rendering of different parts
+ * of a tree map document. Each part is rendered with its own instance.
+ *
+ * @param <N> the type of node the renderer supports
+ */
+public interface IParallelRenderer<N> extends IRectangleRenderer<N, XMLStreamWriter, String> {
+
+	/**
+	 * Returns a renderer with the same settings as this renderer, to be
+	 * used for one part of the document. Thread-safe renderers may return
+	 * themselves. The prologue and epilogue are only rendered by this
+	 * renderer; a returned renderer implementing {@link IBuffering} is
+	 * flushed at the end of its part.
+	 * @return a renderer with the same settings, or {@code null} if the
+	 * renderer cannot be used concurrently.
+	 */
+	IRectangleRenderer<N, XMLStreamWriter, String> newInstance();
+
+}
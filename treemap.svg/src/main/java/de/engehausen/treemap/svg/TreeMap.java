@@ -1,9 +1,15 @@
 package de.engehausen.treemap.svg;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
@@ -12,14 +18,17 @@ import de.engehausen.treemap.ICancelable;
 import de.engehausen.treemap.IColorProvider;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleSink;
 import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.ITreeMapLayout;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.IWeightedTreeModel;
 import de.engehausen.treemap.impl.FIFO;
+import de.engehausen.treemap.impl.LayoutCache;
 import de.engehausen.treemap.impl.SquarifiedLayout;
 import de.engehausen.treemap.svg.impl.DefaultColorProvider;
 import de.engehausen.treemap.svg.impl.DefaultRectangleRenderer;
+import de.engehausen.treemap.svg.impl.RecordingXMLStreamWriter;
 import de.engehausen.treemap.svg.impl.XMLConstants;
 
 /**
@@ -45,10 +54,13 @@ public class TreeMap<N> {
 
 	protected ITreeModel<N> model;
 	protected ITreeMapLayout<N> layout;
+	protected LayoutCache<N> layoutCache;
 	protected IRectangleRenderer<N, XMLStreamWriter, String> renderer;
 	protected ILabelProvider<N> labelProvider;
 	protected IColorProvider<N, String> colorProvider;
 	protected Map<String, String> graphicsAttributes;
+	protected ForkJoinPool renderPool;
+	protected boolean streaming;
 
 	/**
 	 * Creates the tree map with a squarified layout.
@@ -92,6 +104,9 @@ public class TreeMap<N> {
 	 */
 	public void setModel(final ITreeModel<N> model) {
 		notNull(model, "model");
+		if (layoutCache != null) {
+			layoutCache.invalidate(this.model);
+		}
 		this.model = model;
 	}
 
@@ -104,6 +119,16 @@ public class TreeMap<N> {
 		this.layout = layout;
 	}
 
+	/**
+	 * Sets the cache for computed layouts. Rendering the same model
+	 * with the same size again then reuses the previously computed layout.
+	 * Setting a model removes the layouts of the previous model from the cache.
+	 * @param layoutCache the layout cache to use, may be {@code null} to not cache layouts.
+	 */
+	public void setLayoutCache(final LayoutCache<N> layoutCache) {
+		this.layoutCache = layoutCache;
+	}
+
 	/**
 	 * Sets the rectangle renderer the tree map will use. If no renderer
 	 * is set, a default will be used.
@@ -143,8 +168,40 @@ public class TreeMap<N> {
 		this.graphicsAttributes = graphicsAttributes;
 	}
 
+	/**
+	 * Sets the pool to render parts of the tree map concurrently with. The parts
+	 * are subtrees of the layout, each rendered into its own buffer with its own
+	 * renderer instance, and written in a fixed order. This is only done if the
+	 * renderer is an {@link IParallelRenderer} providing instances; the color
+	 * and label providers must then be thread-safe. The complete layout and
+	 * all rendered parts are held in memory when rendering concurrently; the
+	 * parts are only written once all of them are complete, so that a canceled
+	 * rendering does not write anything.
+	 * @param renderPool the pool to use, may be {@code null} to render in the calling thread.
+	 */
+	public void setRenderPool(final ForkJoinPool renderPool) {
+		this.renderPool = renderPool;
+	}
+
+	/**
+	 * Sets whether the rectangles are written while the layout is computed, so
+	 * that the layout is not held in memory; with a {@link de.engehausen.treemap.impl.PipelinedLayout}
+	 * the layout is computed in another thread, overlapping with the writing.
+	 * Streaming is not done with a layout cache or when rendering concurrently.
+	 * <br>Unlike a regular rendering, a streamed rendering which is canceled after
+	 * the first rectangle has been written leaves a truncated document: the
+	 * closing elements are not written, so that the output cannot be mistaken
+	 * for a complete tree map. By default, the rectangles are not streamed.
+	 * @param streaming <code>true</code> to write the rectangles while the layout is computed.
+	 */
+	public void setStreaming(final boolean streaming) {
+		this.streaming = streaming;
+	}
+
 	/**
 	 * Renders the tree map as SVG using the given writer and dimension.
+	 * If the control is canceled, nothing is written, unless the rendering is
+	 * streamed (see {@link #setStreaming(boolean)}).
 	 * @param writer the writer to write to, must not be {@code null}
 	 * @param width the image width
 	 * @param height the image height
@@ -153,28 +210,52 @@ public class TreeMap<N> {
 	 */
 	public void render(final XMLStreamWriter writer, final int width, final int height, final ICancelable control) throws XMLStreamException {
 		notNull(writer, "writer");
-		final ITreeModel<IRectangle<N>> rectangles = layout.layout((IWeightedTreeModel<N>) model, model.getRoot(), width, height, control);
+		try {
+			renderDocument(writer, width, height, control);
+		} catch (IllegalStateException e) {
+			// sinks and renderers cannot throw the checked exception
+			if (e.getCause() instanceof XMLStreamException) {
+				throw (XMLStreamException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	private void renderDocument(final XMLStreamWriter writer, final int width, final int height, final ICancelable control) throws XMLStreamException {
+		if (colorProvider == null) {
+			colorProvider = new DefaultColorProvider<>();
+		}
+		final IRectangleRenderer<N, XMLStreamWriter, String> partRenderer = renderPool != null && renderer instanceof IParallelRenderer ? ((IParallelRenderer<N>) renderer).newInstance() : null;
+		final boolean parallel = partRenderer != null;
+		if (streaming && layoutCache == null && !parallel) {
+			final RectangleWriter sink = new RectangleWriter(writer, width, height, control);
+			layout.layout((IWeightedTreeModel<N>) model, model.getRoot(), width, height, sink, control);
+			if (sink.started && !control.isCanceled()) {
+				endDocument(writer);
+			}
+			return;
+		}
+		final ITreeModel<IRectangle<N>> rectangles = layoutCache != null ? layoutCache.layout(layout, model, model.getRoot(), width, height, control) : layout.layout((IWeightedTreeModel<N>) model, model.getRoot(), width, height, control);
 		final IRectangle<N> root = rectangles.getRoot();
-		if (root != null) {
-			if (colorProvider == null) {
-				colorProvider = new DefaultColorProvider<>();
+		if (root == null || control.isCanceled()) {
+			return;
+		}
+		if (parallel) {
+			final List<RecordingXMLStreamWriter> fragments = renderParts(rectangles, partRenderer, control);
+			if (control.isCanceled()) {
+				// the fragments may be incomplete
+				return;
 			}
-			writer.writeStartDocument(XMLConstants.ATTR_ENCODING, null);
-			renderPrologue(writer, width, height);
-			if (renderer instanceof IPrologue) {
-				((IPrologue) renderer).prologue(writer);
+			startDocument(writer, width, height);
+			renderer.render(writer, rectangles, root, colorProvider, labelProvider);
+			for (RecordingXMLStreamWriter fragment : fragments) {
+				fragment.replay(writer);
 			}
-			writer.writeStartElement(XMLConstants.ELEMENT_G);
-			graphicsAttributes.forEach((name, value) -> {
-				try {
-					writer.writeAttribute(name, value);
-				} catch (XMLStreamException e) {
-					throw new IllegalStateException(e);
-				}
-			});
+		} else {
+			startDocument(writer, width, height);
+			renderer.render(writer, rectangles, root, colorProvider, labelProvider);
 			final FIFO<IRectangle<N>> queue = new FIFO<IRectangle<N>>();
-			queue.push(rectangles.getRoot());
-			renderer.render(writer, rectangles, rectangles.getRoot(), colorProvider, labelProvider);
+			queue.push(root);
 			while (queue.notEmpty()) {
 				final IRectangle<N> node = queue.pull();
 				if (rectangles.hasChildren(node)) {
@@ -185,13 +266,8 @@ public class TreeMap<N> {
 					renderer.render(writer, rectangles, node, colorProvider, labelProvider);
 				}
 			}
-			writer.writeEndElement();
-			if (renderer instanceof IEpilogue) {
-				((IEpilogue) renderer).epilogue(writer);
-			}
-			renderEpilogue(writer);
-			writer.writeEndDocument();
 		}
+		endDocument(writer);
 	}
 
 	/**
@@ -218,10 +294,156 @@ public class TreeMap<N> {
 		writer.writeEndElement();
 	}
 
+	/**
+	 * Renders the subtrees of the root concurrently and returns them in
+	 * depth-first order. The subtrees are split into their children until
+	 * there are enough parts for the pool; runs of adjacent parts are then
+	 * rendered together, so that a wide tree does not result in one task per
+	 * subtree. The given renderer is used for the first run. If the control
+	 * is canceled, the returned parts may be incomplete.
+	 */
+	private List<RecordingXMLStreamWriter> renderParts(final ITreeModel<IRectangle<N>> rectangles, final IRectangleRenderer<N, XMLStreamWriter, String> partRenderer, final ICancelable control) {
+		final int target = 4*renderPool.getParallelism();
+		List<IRectangle<N>> parts = Collections.singletonList(rectangles.getRoot());
+		boolean split = true;
+		while (split && parts.size() < target) {
+			split = false;
+			final List<IRectangle<N>> next = new ArrayList<>();
+			for (IRectangle<N> part : parts) {
+				if (rectangles.hasChildren(part)) {
+					for (Iterator<IRectangle<N>> child = rectangles.getChildren(part); child.hasNext(); ) {
+						next.add(child.next());
+					}
+					split = true;
+				} else if (part != rectangles.getRoot()) {
+					next.add(part);
+				}
+			}
+			parts = next;
+		}
+		final int size = (parts.size()+target-1)/target;
+		final List<ForkJoinTask<RecordingXMLStreamWriter>> tasks = new ArrayList<>(target);
+		for (int i = 0; i < parts.size(); i += size) {
+			final List<IRectangle<N>> run = parts.subList(i, Math.min(i+size, parts.size()));
+			final IRectangleRenderer<N, XMLStreamWriter, String> runRenderer = i == 0 ? partRenderer : ((IParallelRenderer<N>) renderer).newInstance();
+			tasks.add(renderPool.submit(() -> renderPart(rectangles, run, runRenderer, control)));
+		}
+		final List<RecordingXMLStreamWriter> result = new ArrayList<>(tasks.size());
+		try {
+			for (int i = 0; i < tasks.size(); i++) {
+				result.add(tasks.get(i).join());
+				tasks.set(i, null);
+			}
+		} finally {
+			for (ForkJoinTask<RecordingXMLStreamWriter> task : tasks) {
+				if (task != null) {
+					task.cancel(false);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Renders the leafs of adjacent subtrees depth-first, using the given renderer instance.
+	 */
+	private RecordingXMLStreamWriter renderPart(final ITreeModel<IRectangle<N>> rectangles, final List<IRectangle<N>> run, final IRectangleRenderer<N, XMLStreamWriter, String> partRenderer, final ICancelable control) throws XMLStreamException {
+		final RecordingXMLStreamWriter fragment = new RecordingXMLStreamWriter();
+		final Deque<IRectangle<N>> stack = new ArrayDeque<>();
+		final List<IRectangle<N>> children = new ArrayList<>();
+		for (int i = run.size()-1; i >= 0; i--) {
+			stack.push(run.get(i));
+		}
+		while (!stack.isEmpty() && !control.isCanceled()) {
+			final IRectangle<N> node = stack.pop();
+			if (rectangles.hasChildren(node)) {
+				for (Iterator<IRectangle<N>> child = rectangles.getChildren(node); child.hasNext(); ) {
+					children.add(child.next());
+				}
+				for (int i = children.size()-1; i >= 0; i--) {
+					stack.push(children.get(i));
+				}
+				children.clear();
+			} else {
+				partRenderer.render(fragment, rectangles, node, colorProvider, labelProvider);
+			}
+		}
+		if (partRenderer instanceof IBuffering) {
+			((IBuffering) partRenderer).flush(fragment);
+		}
+		return fragment;
+	}
+
+	private void startDocument(final XMLStreamWriter writer, final int width, final int height) throws XMLStreamException {
+		writer.writeStartDocument(XMLConstants.ATTR_ENCODING, null);
+		renderPrologue(writer, width, height);
+		if (renderer instanceof IPrologue) {
+			((IPrologue) renderer).prologue(writer);
+		}
+		writer.writeStartElement(XMLConstants.ELEMENT_G);
+		graphicsAttributes.forEach((name, value) -> {
+			try {
+				writer.writeAttribute(name, value);
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private void endDocument(final XMLStreamWriter writer) throws XMLStreamException {
+		if (renderer instanceof IBuffering) {
+			((IBuffering) renderer).flush(writer);
+		}
+		writer.writeEndElement();
+		if (renderer instanceof IEpilogue) {
+			((IEpilogue) renderer).epilogue(writer);
+		}
+		renderEpilogue(writer);
+		writer.writeEndDocument();
+	}
+
 	private static void notNull(final Object arg, final String param) {
 		if (arg == null) {
 			throw new IllegalArgumentException(String.format(NOT_NULL, param));
 		}
 	}
 
+	/**
+	 * Writes the rectangles passed by the layout: the root rectangle,
+	 * which starts the document, and the leafs.
+	 */
+	private class RectangleWriter implements IRectangleSink<N> {
+
+		private final XMLStreamWriter writer;
+		private final int width;
+		private final int height;
+		private final ICancelable control;
+		private boolean started;
+
+		RectangleWriter(final XMLStreamWriter writer, final int width, final int height, final ICancelable control) {
+			this.writer = writer;
+			this.width = width;
+			this.height = height;
+			this.control = control;
+		}
+
+		@Override
+		public void add(final ITreeModel<IRectangle<N>> path, final IRectangle<N> parent, final IRectangle<N> rectangle, final int depth, final boolean leaf) {
+			try {
+				if (parent == null) {
+					if (!control.isCanceled()) {
+						startDocument(writer, width, height);
+						started = true;
+						renderer.render(writer, path, rectangle, colorProvider, labelProvider);
+					}
+				} else if (leaf && started) {
+					renderer.render(writer, path, rectangle, colorProvider, labelProvider);
+				}
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
 }
\ No newline at end of file
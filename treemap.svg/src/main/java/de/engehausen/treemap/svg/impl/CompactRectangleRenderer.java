@@ -0,0 +1,310 @@
+package de.engehausen.treemap.svg.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.ILabelProvider;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleRenderer;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.svg.IBuffering;
+import de.engehausen.treemap.svg.IEpilogue;
+import de.engehausen.treemap.svg.IPrologue;
+
+/**
+ * Rectangle renderer producing compact SVG. Instead of one element per leaf,
+ * the leafs of the same color are batched into one path using relative
+ * commands, and each color is written only once, as a CSS class; the classes
+ * of all colors are defined in one style element after the rectangles. The optional
+ * cushion overlay refers to one shared rectangle with <code>use</code>
+ * elements. The root rectangle is rendered like by the default renderer.
+ * <br>Up to a given number of leafs is buffered before the paths are written,
+ * followed by the overlays and labels of these leafs. The renderer is
+ * therefore not thread-safe and must only be used by one tree map at a time;
+ * the instances for concurrent rendering share the class names with it.
+ * <br>The labels are computed when a leaf is rendered, but written when the
+ * leafs are flushed. The rectangle model given to {@link #render(XMLStreamWriter, ITreeModel, IRectangle, IColorProvider, ILabelProvider) render}
+ * may only be valid during the call (see {@link de.engehausen.treemap.IRectangleSink}),
+ * so it is not kept and {@link #label(XMLStreamWriter, ITreeModel, IRectangle, String) label}
+ * is called with a {@code null} model.
+ *
+ * @param <N> the type of node the renderer supports
+ */
+public class CompactRectangleRenderer<N> extends DefaultRectangleRenderer<N> implements IPrologue, IEpilogue, IBuffering {
+
+	/** the default number of leafs buffered before writing them */
+	public static final int DEFAULT_BATCH_SIZE = 4096;
+
+	protected static final String CLASS_PREFIX = "tm";
+	protected static final String CUSHION_RECT_ID = "cu";
+
+	protected final boolean cushion;
+	protected final int batchSize;
+	/** the class names by color, shared with the instances for concurrent rendering */
+	protected final Map<String, String> classes;
+	protected final AtomicInteger classCount;
+	/** the batches by color, in the order of their creation */
+	protected final Map<String, Batch> batches;
+	/** the buffered overlays as <code>x, y, width, height</code> quadruples */
+	protected int[] overlays;
+	protected int overlayCount;
+	protected final List<IRectangle<N>> labelRectangles;
+	protected final List<String> labels;
+	protected int pending;
+
+	/**
+	 * Creates the renderer without cushions.
+	 */
+	public CompactRectangleRenderer() {
+		this(false);
+	}
+
+	/**
+	 * Creates the renderer.
+	 * @param cushions <code>true</code> to add the cushion overlay to the rectangles.
+	 */
+	public CompactRectangleRenderer(final boolean cushions) {
+		this(cushions, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Creates the renderer.
+	 * @param cushions <code>true</code> to add the cushion overlay to the rectangles.
+	 * @param leafsPerBatch the number of leafs to buffer before writing them, must be positive.
+	 */
+	public CompactRectangleRenderer(final boolean cushions, final int leafsPerBatch) {
+		if (leafsPerBatch < 1) {
+			throw new IllegalArgumentException("invalid batch size "+leafsPerBatch);
+		}
+		cushion = cushions;
+		batchSize = leafsPerBatch;
+		classes = new ConcurrentHashMap<>();
+		classCount = new AtomicInteger();
+		batches = new LinkedHashMap<>();
+		overlays = new int[64];
+		labelRectangles = new ArrayList<>();
+		labels = new ArrayList<>();
+	}
+
+	/**
+	 * Creates a renderer for concurrent rendering with the settings and
+	 * the class names of the given renderer.
+	 * @param renderer the renderer to share the class names with, must not be {@code null}.
+	 */
+	protected CompactRectangleRenderer(final CompactRectangleRenderer<N> renderer) {
+		cushion = renderer.cushion;
+		batchSize = renderer.batchSize;
+		classes = renderer.classes;
+		classCount = renderer.classCount;
+		batches = new LinkedHashMap<>();
+		overlays = new int[64];
+		labelRectangles = new ArrayList<>();
+		labels = new ArrayList<>();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Defines the shared cushion rectangle and resets the state of the renderer.
+	 */
+	@Override
+	public void prologue(final XMLStreamWriter writer) throws XMLStreamException {
+		batches.clear();
+		clear();
+		if (cushion) {
+			writer.writeStartElement(XMLConstants.ELEMENT_DEFS);
+			writer.writeStartElement(XMLConstants.ELEMENT_RADIAL_GRADIENT);
+			writer.writeAttribute(XMLConstants.ATTR_ID, CushionRectangleRenderer.GRADIENT_ID);
+			writer.writeAttribute(XMLConstants.ATTR_SPREAD_METHOD, XMLConstants.VALUE_REFLECT);
+			stop(writer, "0%", "0");
+			stop(writer, "100%", "0.5");
+			writer.writeEndElement();
+			// the gradient scales with the bounding box of the referring element
+			writer.writeStartElement(XMLConstants.ELEMENT_RECT);
+			writer.writeAttribute(XMLConstants.ATTR_ID, CUSHION_RECT_ID);
+			writeAttribute(writer, XMLConstants.ATTR_WIDTH, 1);
+			writeAttribute(writer, XMLConstants.ATTR_HEIGHT, 1);
+			writer.writeAttribute(XMLConstants.ATTR_FILL, "url('#"+CushionRectangleRenderer.GRADIENT_ID+"')");
+			writer.writeEndElement();
+			writer.writeEndElement();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Defines the CSS classes of all colors used by this renderer and
+	 * the instances for concurrent rendering, then resets the class names.
+	 * The class names are not reset in the prologue, because concurrently
+	 * rendered parts are complete before the prologue is written.
+	 */
+	@Override
+	public void epilogue(final XMLStreamWriter writer) throws XMLStreamException {
+		if (classes.isEmpty()) {
+			return;
+		}
+		// order the rules by class number, independent of the rendering threads
+		final String[] rules = new String[classCount.get()];
+		for (Map.Entry<String, String> entry : classes.entrySet()) {
+			final String name = entry.getValue();
+			rules[Integer.parseInt(name.substring(CLASS_PREFIX.length()))] = "."+name+"{fill:"+entry.getKey()+"}";
+		}
+		writer.writeStartElement(XMLConstants.ELEMENT_STYLE);
+		writer.writeCharacters(String.join("", rules));
+		writer.writeEndElement();
+		classes.clear();
+		classCount.set(0);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Subclasses must override this method to support concurrent rendering.
+	 */
+	@Override
+	public IRectangleRenderer<N, XMLStreamWriter, String> newInstance() {
+		return getClass() == CompactRectangleRenderer.class ? new CompactRectangleRenderer<>(this) : null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void render(final XMLStreamWriter writer, final ITreeModel<IRectangle<N>> rectangles, final IRectangle<N> node, final IColorProvider<N, String> colorProvider, final ILabelProvider<N> labelProvider) {
+		try {
+			if (rectangles.getParent(node) == null) {
+				super.render(writer, rectangles, node, colorProvider, labelProvider);
+				if (cushion) {
+					use(writer, node.getX(), node.getY(), node.getWidth(), node.getHeight());
+				}
+				return;
+			}
+			final String color = colorProvider.getColor(rectangles, node);
+			Batch batch = batches.get(color);
+			if (batch == null) {
+				batch = new Batch(classes.computeIfAbsent(color, key -> CLASS_PREFIX+classCount.getAndIncrement()));
+				batches.put(color, batch);
+			}
+			batch.add(node.getX(), node.getY(), node.getWidth(), node.getHeight());
+			if (cushion) {
+				if (overlayCount+4 > overlays.length) {
+					overlays = Arrays.copyOf(overlays, 2*overlays.length);
+				}
+				overlays[overlayCount++] = node.getX();
+				overlays[overlayCount++] = node.getY();
+				overlays[overlayCount++] = node.getWidth();
+				overlays[overlayCount++] = node.getHeight();
+			}
+			final String label = labelProvider.getLabel(rectangles, node);
+			if (label != null) {
+				labelRectangles.add(node);
+				labels.add(label);
+			}
+			if (++pending >= batchSize) {
+				flush(writer);
+			}
+		} catch (XMLStreamException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Writes the paths of the buffered leafs, followed by their overlays and labels.
+	 */
+	@Override
+	public void flush(final XMLStreamWriter writer) throws XMLStreamException {
+		for (Batch batch : batches.values()) {
+			if (batch.data.length() > 0) {
+				writer.writeStartElement(XMLConstants.ELEMENT_PATH);
+				writer.writeAttribute(XMLConstants.ATTR_CLASS, batch.name);
+				writer.writeAttribute(XMLConstants.ATTR_D, batch.data.toString());
+				writer.writeEndElement();
+				batch.data.setLength(0);
+			}
+		}
+		for (int i = 0; i < overlayCount; i += 4) {
+			use(writer, overlays[i], overlays[i+1], overlays[i+2], overlays[i+3]);
+		}
+		for (int i = 0; i < labels.size(); i++) {
+			label(writer, null, labelRectangles.get(i), labels.get(i));
+		}
+		clear();
+	}
+
+	protected void stop(final XMLStreamWriter writer, final String offset, final String opacity) throws XMLStreamException {
+		writer.writeStartElement(XMLConstants.ELEMENT_STOP);
+		writer.writeAttribute(XMLConstants.ATTR_OFFSET, offset);
+		writer.writeAttribute(XMLConstants.ATTR_STOP_OPACITY, opacity);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Renders the cushion overlay by scaling the shared unit rectangle.
+	 * @param writer the writer to write to, must not be {@code null}.
+	 * @param x the horizontal position of the rectangle
+	 * @param y the vertical position of the rectangle
+	 * @param w the width of the rectangle
+	 * @param h the height of the rectangle
+	 * @throws XMLStreamException in case of error
+	 */
+	protected void use(final XMLStreamWriter writer, final int x, final int y, final int w, final int h) throws XMLStreamException {
+		writer.writeStartElement(XMLConstants.ELEMENT_USE);
+		writer.writeAttribute(XMLConstants.ATTR_HREF, "#"+CUSHION_RECT_ID);
+		writer.writeAttribute(XMLConstants.ATTR_TRANSFORM, "matrix(" + w + " 0 0 " + h + " " + x + " " + y + ")");
+		writer.writeEndElement();
+	}
+
+	private void clear() {
+		overlayCount = 0;
+		labelRectangles.clear();
+		labels.clear();
+		pending = 0;
+	}
+
+	/**
+	 * The path data of the buffered leafs of one color.
+	 */
+	protected static class Batch {
+
+		protected final String name;
+		protected final StringBuilder data;
+		protected int lastX, lastY;
+
+		protected Batch(final String className) {
+			name = className;
+			data = new StringBuilder(256);
+		}
+
+		/**
+		 * Adds a rectangle to the path; after closing a rectangle the current point
+		 * is its origin, so the next rectangle is moved to relatively.
+		 * @param x the horizontal position of the rectangle
+		 * @param y the vertical position of the rectangle
+		 * @param w the width of the rectangle
+		 * @param h the height of the rectangle
+		 */
+		protected void add(final int x, final int y, final int w, final int h) {
+			if (data.length() == 0) {
+				data.append('M').append(x).append(' ').append(y);
+			} else {
+				data.append('m').append(x-lastX);
+				if (y >= lastY) {
+					data.append(' ');
+				}
+				data.append(y-lastY);
+			}
+			data.append('h').append(w).append('v').append(h).append('h').append(-w).append('z');
+			lastX = x;
+			lastY = y;
+		}
+
+	}
+
+}
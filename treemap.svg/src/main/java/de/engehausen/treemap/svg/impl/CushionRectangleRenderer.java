@@ -4,6 +4,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
 import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.svg.IPrologue;
 
@@ -38,6 +39,14 @@ public class CushionRectangleRenderer<N> extends DefaultRectangleRenderer<N> imp
 		writer.writeEndElement();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IRectangleRenderer<N, XMLStreamWriter, String> newInstance() {
+		return getClass() == CushionRectangleRenderer.class ? this : null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -46,10 +55,10 @@ public class CushionRectangleRenderer<N> extends DefaultRectangleRenderer<N> imp
 		try {
 			super.rect(writer, model, node, color);
 			writer.writeStartElement("rect");
-			writer.writeAttribute(XMLConstants.ATTR_X, Integer.toString(node.getX()));
-			writer.writeAttribute(XMLConstants.ATTR_Y, Integer.toString(node.getY()));
-			writer.writeAttribute(XMLConstants.ATTR_WIDTH, Integer.toString(node.getWidth()));
-			writer.writeAttribute(XMLConstants.ATTR_HEIGHT, Integer.toString(node.getHeight()));
+			writeAttribute(writer, XMLConstants.ATTR_X, node.getX());
+			writeAttribute(writer, XMLConstants.ATTR_Y, node.getY());
+			writeAttribute(writer, XMLConstants.ATTR_WIDTH, node.getWidth());
+			writeAttribute(writer, XMLConstants.ATTR_HEIGHT, node.getHeight());
 			writer.writeAttribute(XMLConstants.ATTR_FILL, "url('#cushion')");
 			writer.writeEndElement();
 		} catch (XMLStreamException e) {
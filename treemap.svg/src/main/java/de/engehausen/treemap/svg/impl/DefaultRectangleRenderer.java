@@ -8,6 +8,7 @@ import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.svg.IParallelRenderer;
 
 /**
  * The default rectangle renderer simply renders the given
@@ -17,7 +18,7 @@ import de.engehausen.treemap.ITreeModel;
  *
  * @param <N> the type of node being operated on
  */
-public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, XMLStreamWriter , String> {
+public class DefaultRectangleRenderer<N> implements IParallelRenderer<N> {
 
 	private static final IRectangleRenderer<Object, XMLStreamWriter, String> DEFAULT = new DefaultRectangleRenderer<>();
 
@@ -47,6 +48,16 @@ public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, XMLStr
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The renderer is thread-safe and returns itself.
+	 * Subclasses must override this method to support concurrent rendering.
+	 */
+	@Override
+	public IRectangleRenderer<N, XMLStreamWriter, String> newInstance() {
+		return getClass() == DefaultRectangleRenderer.class ? this : null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -65,10 +76,10 @@ public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, XMLStr
 	 */
 	protected void rect(final XMLStreamWriter writer, final ITreeModel<IRectangle<N>> model, final IRectangle<N> node, final String color) throws XMLStreamException {
 		writer.writeStartElement(XMLConstants.ELEMENT_RECT);
-		writer.writeAttribute(XMLConstants.ATTR_X, Integer.toString(node.getX()));
-		writer.writeAttribute(XMLConstants.ATTR_Y, Integer.toString(node.getY()));
-		writer.writeAttribute(XMLConstants.ATTR_WIDTH, Integer.toString(node.getWidth()));
-		writer.writeAttribute(XMLConstants.ATTR_HEIGHT, Integer.toString(node.getHeight()));
+		writeAttribute(writer, XMLConstants.ATTR_X, node.getX());
+		writeAttribute(writer, XMLConstants.ATTR_Y, node.getY());
+		writeAttribute(writer, XMLConstants.ATTR_WIDTH, node.getWidth());
+		writeAttribute(writer, XMLConstants.ATTR_HEIGHT, node.getHeight());
 		writer.writeAttribute(XMLConstants.ATTR_FILL, color);
 		writer.writeEndElement();
 	}
@@ -76,7 +87,8 @@ public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, XMLStr
 	/**
 	 * Renders the label for a rectangle.
 	 * @param writer the writer to write to to write to, must not be {@code null}.
-	 * @param model the rectangle model, must not be {@code null}.
+	 * @param model the rectangle model, {@code null} if the label was buffered
+	 * (see {@link CompactRectangleRenderer}).
 	 * @param node the node to render, must not be {@code null}.
 	 * @param label the label to render, must not be {@code null}.
 	 * @throws XMLStreamException in case of error
@@ -86,9 +98,20 @@ public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, XMLStr
 		final int cy = node.getY() + node.getHeight() / 2;
 		final String rotate = node.getWidth() / node.getHeight() < 1 ? " rotate(270)" : "";
 		writer.writeStartElement(XMLConstants.ELEMENT_TEXT);
-		writer.writeAttribute(XMLConstants.ATTR_TRANSFORM, String.format("translate(%d,%d)%s", cx, cy, rotate));
+		writer.writeAttribute(XMLConstants.ATTR_TRANSFORM, "translate(" + cx + "," + cy + ")" + rotate);
 		writer.writeCharacters(label);
 		writer.writeEndElement();
 	}
 
+	/**
+	 * Writes an attribute with an integer value, see {@link XMLWriters#writeAttribute(XMLStreamWriter, String, int)}.
+	 * @param writer the writer to write to, must not be {@code null}.
+	 * @param name the name of the attribute, must not be {@code null}.
+	 * @param value the value of the attribute
+	 * @throws XMLStreamException in case of error
+	 */
+	protected static void writeAttribute(final XMLStreamWriter writer, final String name, final int value) throws XMLStreamException {
+		XMLWriters.writeAttribute(writer, name, value);
+	}
+
 }
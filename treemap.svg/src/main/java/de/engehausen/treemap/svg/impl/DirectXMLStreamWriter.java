@@ -0,0 +1,532 @@
+package de.engehausen.treemap.svg.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Lean XML stream writer which encodes the document as UTF-8 into a reusable
+ * byte buffer, which is written to the underlying stream when it is full.
+ * Integer attribute values can be written without creating strings, see
+ * {@link #writeAttribute(String, int)}. Use {@link #svgz(OutputStream, int)}
+ * to write a compressed document.
+ * <br>The writer only checks that elements are properly closed; it does not
+ * repair namespaces but writes prefixes as given. Elements without content
+ * are written as empty elements. The writer is not thread-safe.
+ */
+public class DirectXMLStreamWriter implements XMLStreamWriter {
+
+	/** the default size of the buffer in bytes */
+	public static final int DEFAULT_BUFFER_SIZE = 64*1024;
+
+	private static final String ENCODING = "UTF-8";
+	private static final int TEXT = 1;
+	private static final int ATTRIBUTE = 2;
+
+	protected final OutputStream out;
+	/** the compressing stream to finish on close, or {@code null} */
+	protected final DeflaterOutputStream deflater;
+	protected final byte[] buffer;
+	/** the position in the buffer after which a flush is required before writing a character */
+	protected final int limit;
+	protected int position;
+	/** the names of the open elements */
+	protected String[] elements;
+	protected int depth;
+	/** <code>true</code> while attributes may be added to the element written last */
+	protected boolean startTagOpen;
+	/** <code>true</code> if the element written last was written as an empty element */
+	protected boolean emptyElement;
+	protected NamespaceContext namespaceContext;
+
+	/**
+	 * Creates a writer for the given stream.
+	 * @param stream the stream to write to, must not be {@code null}.
+	 */
+	public DirectXMLStreamWriter(final OutputStream stream) {
+		this(stream, null, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a writer for the given channel.
+	 * @param channel the channel to write to, must not be {@code null}
+	 * and must be in blocking mode.
+	 */
+	public DirectXMLStreamWriter(final WritableByteChannel channel) {
+		this(Channels.newOutputStream(channel), null, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates the writer.
+	 * @param stream the stream to write to, must not be {@code null}.
+	 * @param compressor the compressing stream to finish on close, or {@code null}.
+	 * @param bufferSize the size of the buffer, at least <code>64</code> bytes.
+	 */
+	protected DirectXMLStreamWriter(final OutputStream stream, final DeflaterOutputStream compressor, final int bufferSize) {
+		if (bufferSize < 64) {
+			throw new IllegalArgumentException("buffer too small: "+bufferSize);
+		}
+		out = stream;
+		deflater = compressor;
+		buffer = new byte[bufferSize];
+		// room for the longest entity or an integer
+		limit = bufferSize-12;
+		elements = new String[16];
+	}
+
+	/**
+	 * Creates a writer producing a gzip compressed document (<code>.svgz</code>).
+	 * Closing the writer finishes the compressed data, but does not close the stream.
+	 * @param stream the stream to write to, must not be {@code null}.
+	 * @param level the compression level (<code>0-9</code>); low levels are faster.
+	 * @return the writer, never {@code null}.
+	 * @throws IOException in case of error
+	 */
+	public static DirectXMLStreamWriter svgz(final OutputStream stream, final int level) throws IOException {
+		final GZIPOutputStream gzip = new GZIPOutputStream(stream, DEFAULT_BUFFER_SIZE) {
+			{
+				def.setLevel(level);
+			}
+		};
+		return new DirectXMLStreamWriter(gzip, gzip, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a writer producing a gzip compressed document (<code>.svgz</code>)
+	 * with the default compression level.
+	 * @param stream the stream to write to, must not be {@code null}.
+	 * @return the writer, never {@code null}.
+	 * @throws IOException in case of error
+	 */
+	public static DirectXMLStreamWriter svgz(final OutputStream stream) throws IOException {
+		return svgz(stream, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a writer producing a gzip compressed document (<code>.svgz</code>)
+	 * with the default compression level.
+	 * @param channel the channel to write to, must not be {@code null}
+	 * and must be in blocking mode.
+	 * @return the writer, never {@code null}.
+	 * @throws IOException in case of error
+	 */
+	public static DirectXMLStreamWriter svgz(final WritableByteChannel channel) throws IOException {
+		return svgz(Channels.newOutputStream(channel));
+	}
+
+	/**
+	 * Writes an attribute with an integer value.
+	 * @param localName the name of the attribute, must not be {@code null}.
+	 * @param value the value of the attribute
+	 * @throws XMLStreamException in case of error
+	 */
+	public void writeAttribute(final String localName, final int value) throws XMLStreamException {
+		if (!startTagOpen) {
+			throw new XMLStreamException("no start tag to add attribute "+localName+" to");
+		}
+		put(' ');
+		put(localName, 0);
+		put('=');
+		put('"');
+		put(value);
+		put('"');
+	}
+
+	@Override
+	public void writeStartElement(final String localName) throws XMLStreamException {
+		closeStartTag();
+		if (depth == elements.length) {
+			elements = Arrays.copyOf(elements, 2*depth);
+		}
+		elements[depth++] = localName;
+		put('<');
+		put(localName, 0);
+		startTagOpen = true;
+	}
+
+	@Override
+	public void writeStartElement(final String namespaceURI, final String localName) throws XMLStreamException {
+		writeStartElement(localName);
+	}
+
+	@Override
+	public void writeStartElement(final String prefix, final String localName, final String namespaceURI) throws XMLStreamException {
+		writeStartElement(qualify(prefix, localName));
+	}
+
+	@Override
+	public void writeEmptyElement(final String localName) throws XMLStreamException {
+		closeStartTag();
+		put('<');
+		put(localName, 0);
+		startTagOpen = true;
+		emptyElement = true;
+	}
+
+	@Override
+	public void writeEmptyElement(final String namespaceURI, final String localName) throws XMLStreamException {
+		writeEmptyElement(localName);
+	}
+
+	@Override
+	public void writeEmptyElement(final String prefix, final String localName, final String namespaceURI) throws XMLStreamException {
+		writeEmptyElement(qualify(prefix, localName));
+	}
+
+	@Override
+	public void writeEndElement() throws XMLStreamException {
+		if (startTagOpen && !emptyElement) {
+			// no content, write an empty element
+			depth--;
+			put('/');
+			put('>');
+			startTagOpen = false;
+			return;
+		}
+		closeStartTag();
+		if (depth == 0) {
+			throw new XMLStreamException("no element to end");
+		}
+		put('<');
+		put('/');
+		put(elements[--depth], 0);
+		put('>');
+	}
+
+	@Override
+	public void writeEndDocument() throws XMLStreamException {
+		while (depth > 0) {
+			writeEndElement();
+		}
+		closeStartTag();
+	}
+
+	@Override
+	public void close() throws XMLStreamException {
+		try {
+			flushBuffer();
+			if (deflater != null) {
+				deflater.finish();
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void flush() throws XMLStreamException {
+		try {
+			flushBuffer();
+			out.flush();
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	@Override
+	public void writeAttribute(final String localName, final String value) throws XMLStreamException {
+		if (!startTagOpen) {
+			throw new XMLStreamException("no start tag to add attribute "+localName+" to");
+		}
+		put(' ');
+		put(localName, 0);
+		put('=');
+		put('"');
+		put(value, ATTRIBUTE);
+		put('"');
+	}
+
+	@Override
+	public void writeAttribute(final String prefix, final String namespaceURI, final String localName, final String value) throws XMLStreamException {
+		writeAttribute(qualify(prefix, localName), value);
+	}
+
+	@Override
+	public void writeAttribute(final String namespaceURI, final String localName, final String value) throws XMLStreamException {
+		writeAttribute(localName, value);
+	}
+
+	@Override
+	public void writeNamespace(final String prefix, final String namespaceURI) throws XMLStreamException {
+		if (prefix == null || prefix.isEmpty() || "xmlns".equals(prefix)) {
+			writeDefaultNamespace(namespaceURI);
+		} else {
+			writeAttribute("xmlns:"+prefix, namespaceURI);
+		}
+	}
+
+	@Override
+	public void writeDefaultNamespace(final String namespaceURI) throws XMLStreamException {
+		writeAttribute("xmlns", namespaceURI);
+	}
+
+	@Override
+	public void writeComment(final String data) throws XMLStreamException {
+		closeStartTag();
+		put("<!--", 0);
+		put(data, 0);
+		put("-->", 0);
+	}
+
+	@Override
+	public void writeProcessingInstruction(final String target) throws XMLStreamException {
+		writeProcessingInstruction(target, null);
+	}
+
+	@Override
+	public void writeProcessingInstruction(final String target, final String data) throws XMLStreamException {
+		closeStartTag();
+		put('<');
+		put('?');
+		put(target, 0);
+		if (data != null) {
+			put(' ');
+			put(data, 0);
+		}
+		put('?');
+		put('>');
+	}
+
+	@Override
+	public void writeCData(final String data) throws XMLStreamException {
+		closeStartTag();
+		put("<![CDATA[", 0);
+		put(data, 0);
+		put("]]>", 0);
+	}
+
+	@Override
+	public void writeDTD(final String dtd) throws XMLStreamException {
+		put(dtd, 0);
+	}
+
+	@Override
+	public void writeEntityRef(final String name) throws XMLStreamException {
+		closeStartTag();
+		put('&');
+		put(name, 0);
+		put(';');
+	}
+
+	@Override
+	public void writeStartDocument() throws XMLStreamException {
+		writeStartDocument(ENCODING, null);
+	}
+
+	@Override
+	public void writeStartDocument(final String version) throws XMLStreamException {
+		writeStartDocument(ENCODING, version);
+	}
+
+	@Override
+	public void writeStartDocument(final String encoding, final String version) throws XMLStreamException {
+		if (encoding != null && !ENCODING.equalsIgnoreCase(encoding)) {
+			throw new XMLStreamException("unsupported encoding "+encoding);
+		}
+		put("<?xml version=\"", 0);
+		put(version != null ? version : "1.0", 0);
+		put("\" encoding=\"UTF-8\"?>", 0);
+	}
+
+	@Override
+	public void writeCharacters(final String text) throws XMLStreamException {
+		closeStartTag();
+		put(text, TEXT);
+	}
+
+	@Override
+	public void writeCharacters(final char[] text, final int start, final int len) throws XMLStreamException {
+		writeCharacters(new String(text, start, len));
+	}
+
+	@Override
+	public String getPrefix(final String uri) throws XMLStreamException {
+		return namespaceContext != null ? namespaceContext.getPrefix(uri) : null;
+	}
+
+	/**
+	 * Does nothing, prefixes are written as given.
+	 * @param prefix ignored
+	 * @param uri ignored
+	 */
+	@Override
+	public void setPrefix(final String prefix, final String uri) throws XMLStreamException {
+		// namespaces are not repaired
+	}
+
+	/**
+	 * Does nothing, prefixes are written as given.
+	 * @param uri ignored
+	 */
+	@Override
+	public void setDefaultNamespace(final String uri) throws XMLStreamException {
+		// namespaces are not repaired
+	}
+
+	@Override
+	public void setNamespaceContext(final NamespaceContext context) throws XMLStreamException {
+		namespaceContext = context;
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext() {
+		return namespaceContext;
+	}
+
+	@Override
+	public Object getProperty(final String name) {
+		throw new IllegalArgumentException("unsupported property "+name);
+	}
+
+	protected void closeStartTag() throws XMLStreamException {
+		if (startTagOpen) {
+			if (emptyElement) {
+				put('/');
+				emptyElement = false;
+			}
+			put('>');
+			startTagOpen = false;
+		}
+	}
+
+	/**
+	 * Writes the buffered bytes to the stream.
+	 * @throws IOException in case of error
+	 */
+	protected void flushBuffer() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+
+	private void ensureRoom() throws XMLStreamException {
+		if (position > limit) {
+			try {
+				flushBuffer();
+			} catch (IOException e) {
+				throw new XMLStreamException(e);
+			}
+		}
+	}
+
+	/**
+	 * Puts an ASCII character into the buffer.
+	 * @param c the character
+	 */
+	private void put(final char c) throws XMLStreamException {
+		ensureRoom();
+		buffer[position++] = (byte) c;
+	}
+
+	/**
+	 * Puts the decimal digits of the value into the buffer.
+	 * @param value the value
+	 */
+	private void put(final int value) throws XMLStreamException {
+		if (value == Integer.MIN_VALUE) {
+			put(Integer.toString(value), 0);
+			return;
+		}
+		ensureRoom();
+		int v = value;
+		if (v < 0) {
+			buffer[position++] = '-';
+			v = -v;
+		}
+		int digits = 1;
+		for (int rest = v; rest >= 10; rest /= 10) {
+			digits++;
+		}
+		int pos = position+digits;
+		position = pos;
+		do {
+			buffer[--pos] = (byte) ('0'+v%10);
+			v /= 10;
+		} while (v != 0);
+	}
+
+	/**
+	 * Puts the UTF-8 encoding of the string into the buffer. Surrogates
+	 * not forming a pair cannot be encoded and are replaced by <code>?</code>.
+	 * Tabs and line breaks in attribute values are written as character
+	 * references, as they would be normalized to spaces otherwise.
+	 * @param s the string
+	 * @param escape <code>0</code> to not escape, {@link #TEXT} to escape
+	 * text and {@link #ATTRIBUTE} to escape an attribute value.
+	 */
+	private void put(final String s, final int escape) throws XMLStreamException {
+		final int length = s.length();
+		for (int i = 0; i < length; i++) {
+			ensureRoom();
+			final char c = s.charAt(i);
+			if (c < 0x80) {
+				if (escape != 0 && (c == '&' || c == '<' || c == '>' || (escape == ATTRIBUTE && (c == '"' || c == '\t' || c == '\n' || c == '\r')))) {
+					entity(c);
+				} else {
+					buffer[position++] = (byte) c;
+				}
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xc0 | c>>6);
+				buffer[position++] = (byte) (0x80 | c&0x3f);
+			} else if (Character.isHighSurrogate(c) && i+1 < length && Character.isLowSurrogate(s.charAt(i+1))) {
+				final int cp = Character.toCodePoint(c, s.charAt(++i));
+				buffer[position++] = (byte) (0xf0 | cp>>18);
+				buffer[position++] = (byte) (0x80 | (cp>>12)&0x3f);
+				buffer[position++] = (byte) (0x80 | (cp>>6)&0x3f);
+				buffer[position++] = (byte) (0x80 | cp&0x3f);
+			} else if (Character.isSurrogate(c)) {
+				buffer[position++] = '?';
+			} else {
+				buffer[position++] = (byte) (0xe0 | c>>12);
+				buffer[position++] = (byte) (0x80 | (c>>6)&0x3f);
+				buffer[position++] = (byte) (0x80 | c&0x3f);
+			}
+		}
+	}
+
+	private void entity(final char c) {
+		final String entity;
+		switch (c) {
+		case '&':
+			entity = "&amp;";
+			break;
+		case '<':
+			entity = "&lt;";
+			break;
+		case '>':
+			entity = "&gt;";
+			break;
+		case '\t':
+			entity = "&#9;";
+			break;
+		case '\n':
+			entity = "&#10;";
+			break;
+		case '\r':
+			entity = "&#13;";
+			break;
+		default:
+			entity = "&quot;";
+			break;
+		}
+		for (int i = 0; i < entity.length(); i++) {
+			buffer[position++] = (byte) entity.charAt(i);
+		}
+	}
+
+	private static String qualify(final String prefix, final String localName) {
+		return prefix == null || prefix.isEmpty() ? localName : prefix+':'+localName;
+	}
+
+}
@@ -0,0 +1,351 @@
+package de.engehausen.treemap.svg.impl;
+
+import java.util.Arrays;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writer which records a fragment of a document, so that it can be written
+ * to another writer later on. This allows to produce fragments concurrently,
+ * each with its own writer, and write them in a fixed order. Methods
+ * concerning the document as a whole, like {@link #writeStartDocument()},
+ * are not supported. The writer is not thread-safe.
+ */
+public class RecordingXMLStreamWriter implements XMLStreamWriter {
+
+	private static final byte START = 0;
+	private static final byte START_NS = 1;
+	private static final byte START_PREFIX = 2;
+	private static final byte EMPTY = 3;
+	private static final byte EMPTY_NS = 4;
+	private static final byte EMPTY_PREFIX = 5;
+	private static final byte END = 6;
+	private static final byte ATTRIBUTE = 7;
+	private static final byte ATTRIBUTE_INT = 8;
+	private static final byte ATTRIBUTE_NS = 9;
+	private static final byte ATTRIBUTE_PREFIX = 10;
+	private static final byte NAMESPACE = 11;
+	private static final byte DEFAULT_NAMESPACE = 12;
+	private static final byte COMMENT = 13;
+	private static final byte INSTRUCTION = 14;
+	private static final byte INSTRUCTION_DATA = 15;
+	private static final byte CDATA = 16;
+	private static final byte ENTITY = 17;
+	private static final byte CHARACTERS = 18;
+	private static final byte PREFIX = 19;
+	private static final byte DEFAULT_PREFIX = 20;
+
+	protected byte[] operations;
+	protected int operationCount;
+	protected String[] arguments;
+	protected int argumentCount;
+	protected int[] values;
+	protected int valueCount;
+
+	/**
+	 * Creates an empty recording.
+	 */
+	public RecordingXMLStreamWriter() {
+		operations = new byte[256];
+		arguments = new String[512];
+		values = new int[256];
+	}
+
+	/**
+	 * Writes the recorded fragment to the given writer.
+	 * @param writer the writer to write to, must not be {@code null}.
+	 * @throws XMLStreamException in case of error
+	 */
+	public void replay(final XMLStreamWriter writer) throws XMLStreamException {
+		int a = 0;
+		int v = 0;
+		for (int i = 0; i < operationCount; i++) {
+			switch (operations[i]) {
+			case START:
+				writer.writeStartElement(arguments[a++]);
+				break;
+			case START_NS:
+				writer.writeStartElement(arguments[a++], arguments[a++]);
+				break;
+			case START_PREFIX:
+				writer.writeStartElement(arguments[a++], arguments[a++], arguments[a++]);
+				break;
+			case EMPTY:
+				writer.writeEmptyElement(arguments[a++]);
+				break;
+			case EMPTY_NS:
+				writer.writeEmptyElement(arguments[a++], arguments[a++]);
+				break;
+			case EMPTY_PREFIX:
+				writer.writeEmptyElement(arguments[a++], arguments[a++], arguments[a++]);
+				break;
+			case END:
+				writer.writeEndElement();
+				break;
+			case ATTRIBUTE:
+				writer.writeAttribute(arguments[a++], arguments[a++]);
+				break;
+			case ATTRIBUTE_INT:
+				XMLWriters.writeAttribute(writer, arguments[a++], values[v++]);
+				break;
+			case ATTRIBUTE_NS:
+				writer.writeAttribute(arguments[a++], arguments[a++], arguments[a++]);
+				break;
+			case ATTRIBUTE_PREFIX:
+				writer.writeAttribute(arguments[a++], arguments[a++], arguments[a++], arguments[a++]);
+				break;
+			case NAMESPACE:
+				writer.writeNamespace(arguments[a++], arguments[a++]);
+				break;
+			case DEFAULT_NAMESPACE:
+				writer.writeDefaultNamespace(arguments[a++]);
+				break;
+			case COMMENT:
+				writer.writeComment(arguments[a++]);
+				break;
+			case INSTRUCTION:
+				writer.writeProcessingInstruction(arguments[a++]);
+				break;
+			case INSTRUCTION_DATA:
+				writer.writeProcessingInstruction(arguments[a++], arguments[a++]);
+				break;
+			case CDATA:
+				writer.writeCData(arguments[a++]);
+				break;
+			case ENTITY:
+				writer.writeEntityRef(arguments[a++]);
+				break;
+			case CHARACTERS:
+				writer.writeCharacters(arguments[a++]);
+				break;
+			case PREFIX:
+				writer.setPrefix(arguments[a++], arguments[a++]);
+				break;
+			case DEFAULT_PREFIX:
+				writer.setDefaultNamespace(arguments[a++]);
+				break;
+			default:
+				throw new IllegalStateException("unknown operation "+operations[i]);
+			}
+		}
+	}
+
+	/**
+	 * Removes the recorded fragment.
+	 */
+	public void clear() {
+		Arrays.fill(arguments, 0, argumentCount, null);
+		operationCount = 0;
+		argumentCount = 0;
+		valueCount = 0;
+	}
+
+	/**
+	 * Records an attribute with an integer value.
+	 * @param localName the name of the attribute, must not be {@code null}.
+	 * @param value the value of the attribute
+	 */
+	public void writeAttribute(final String localName, final int value) {
+		record(ATTRIBUTE_INT, localName);
+		if (valueCount == values.length) {
+			values = Arrays.copyOf(values, 2*valueCount);
+		}
+		values[valueCount++] = value;
+	}
+
+	@Override
+	public void writeStartElement(final String localName) {
+		record(START, localName);
+	}
+
+	@Override
+	public void writeStartElement(final String namespaceURI, final String localName) {
+		record(START_NS, namespaceURI, localName);
+	}
+
+	@Override
+	public void writeStartElement(final String prefix, final String localName, final String namespaceURI) {
+		record(START_PREFIX, prefix, localName, namespaceURI);
+	}
+
+	@Override
+	public void writeEmptyElement(final String localName) {
+		record(EMPTY, localName);
+	}
+
+	@Override
+	public void writeEmptyElement(final String namespaceURI, final String localName) {
+		record(EMPTY_NS, namespaceURI, localName);
+	}
+
+	@Override
+	public void writeEmptyElement(final String prefix, final String localName, final String namespaceURI) {
+		record(EMPTY_PREFIX, prefix, localName, namespaceURI);
+	}
+
+	@Override
+	public void writeEndElement() {
+		operation(END);
+	}
+
+	@Override
+	public void writeAttribute(final String localName, final String value) {
+		record(ATTRIBUTE, localName, value);
+	}
+
+	@Override
+	public void writeAttribute(final String prefix, final String namespaceURI, final String localName, final String value) {
+		record(ATTRIBUTE_PREFIX, prefix, namespaceURI, localName);
+		argument(value);
+	}
+
+	@Override
+	public void writeAttribute(final String namespaceURI, final String localName, final String value) {
+		record(ATTRIBUTE_NS, namespaceURI, localName, value);
+	}
+
+	@Override
+	public void writeNamespace(final String prefix, final String namespaceURI) {
+		record(NAMESPACE, prefix, namespaceURI);
+	}
+
+	@Override
+	public void writeDefaultNamespace(final String namespaceURI) {
+		record(DEFAULT_NAMESPACE, namespaceURI);
+	}
+
+	@Override
+	public void writeComment(final String data) {
+		record(COMMENT, data);
+	}
+
+	@Override
+	public void writeProcessingInstruction(final String target) {
+		record(INSTRUCTION, target);
+	}
+
+	@Override
+	public void writeProcessingInstruction(final String target, final String data) {
+		record(INSTRUCTION_DATA, target, data);
+	}
+
+	@Override
+	public void writeCData(final String data) {
+		record(CDATA, data);
+	}
+
+	@Override
+	public void writeEntityRef(final String name) {
+		record(ENTITY, name);
+	}
+
+	@Override
+	public void writeCharacters(final String text) {
+		record(CHARACTERS, text);
+	}
+
+	@Override
+	public void writeCharacters(final char[] text, final int start, final int len) {
+		record(CHARACTERS, new String(text, start, len));
+	}
+
+	@Override
+	public void setPrefix(final String prefix, final String uri) {
+		record(PREFIX, prefix, uri);
+	}
+
+	@Override
+	public void setDefaultNamespace(final String uri) {
+		record(DEFAULT_PREFIX, uri);
+	}
+
+	@Override
+	public void writeDTD(final String dtd) throws XMLStreamException {
+		throw new XMLStreamException("not supported in a fragment");
+	}
+
+	@Override
+	public void writeStartDocument() throws XMLStreamException {
+		throw new XMLStreamException("not supported in a fragment");
+	}
+
+	@Override
+	public void writeStartDocument(final String version) throws XMLStreamException {
+		throw new XMLStreamException("not supported in a fragment");
+	}
+
+	@Override
+	public void writeStartDocument(final String encoding, final String version) throws XMLStreamException {
+		throw new XMLStreamException("not supported in a fragment");
+	}
+
+	@Override
+	public void writeEndDocument() throws XMLStreamException {
+		throw new XMLStreamException("not supported in a fragment");
+	}
+
+	@Override
+	public void close() {
+		// nothing to do
+	}
+
+	@Override
+	public void flush() {
+		// nothing to do
+	}
+
+	@Override
+	public String getPrefix(final String uri) {
+		return null;
+	}
+
+	@Override
+	public void setNamespaceContext(final NamespaceContext context) throws XMLStreamException {
+		throw new XMLStreamException("not supported in a fragment");
+	}
+
+	@Override
+	public NamespaceContext getNamespaceContext() {
+		return null;
+	}
+
+	@Override
+	public Object getProperty(final String name) {
+		throw new IllegalArgumentException("unsupported property "+name);
+	}
+
+	private void record(final byte operation, final String argument) {
+		operation(operation);
+		argument(argument);
+	}
+
+	private void record(final byte operation, final String first, final String second) {
+		operation(operation);
+		argument(first);
+		argument(second);
+	}
+
+	private void record(final byte operation, final String first, final String second, final String third) {
+		operation(operation);
+		argument(first);
+		argument(second);
+		argument(third);
+	}
+
+	private void operation(final byte operation) {
+		if (operationCount == operations.length) {
+			operations = Arrays.copyOf(operations, 2*operationCount);
+		}
+		operations[operationCount++] = operation;
+	}
+
+	private void argument(final String argument) {
+		if (argumentCount == arguments.length) {
+			arguments = Arrays.copyOf(arguments, 2*argumentCount);
+		}
+		arguments[argumentCount++] = argument;
+	}
+
+}
@@ -2,11 +2,14 @@ package de.engehausen.treemap.svg.impl;
 
 public interface XMLConstants {
 
+	String ATTR_CLASS = "class";
+	String ATTR_D = "d";
 	String ATTR_DOMINANT_BASELINE = "dominant-baseline";
 	String ATTR_ENCODING = "UTF-8";
 	String ATTR_FILL = "fill";
 	String ATTR_FONT_SIZE = "font-size";
 	String ATTR_HEIGHT = "height";
+	String ATTR_HREF = "href";
 	String ATTR_ID = "id";
 	String ATTR_OFFSET = "offset";
 	String ATTR_SPREAD_METHOD = "spreadMethod";
@@ -20,11 +23,14 @@ public interface XMLConstants {
 	String ATTR_Y = "y";
 	String ELEMENT_DEFS = "defs";
 	String ELEMENT_G = "g";
+	String ELEMENT_PATH = "path";
 	String ELEMENT_RADIAL_GRADIENT = "radialGradient";
 	String ELEMENT_RECT = "rect";
 	String ELEMENT_STOP = "stop";
+	String ELEMENT_STYLE = "style";
 	String ELEMENT_SVG = "svg";
 	String ELEMENT_TEXT = "text";
+	String ELEMENT_USE = "use";
 	String VALUE_LARGE = "large";
 	String VALUE_MIDDLE = "middle";
 	String VALUE_REFLECT = "reflect";
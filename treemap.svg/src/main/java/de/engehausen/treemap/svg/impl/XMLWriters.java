@@ -0,0 +1,34 @@
+package de.engehausen.treemap.svg.impl;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Helpers for the XML stream writers of this package.
+ */
+public final class XMLWriters {
+
+	private XMLWriters() {
+		// static helpers only
+	}
+
+	/**
+	 * Writes an attribute with an integer value; a {@link DirectXMLStreamWriter}
+	 * writes and a {@link RecordingXMLStreamWriter} records the value without
+	 * creating a string.
+	 * @param writer the writer to write to, must not be {@code null}.
+	 * @param name the name of the attribute, must not be {@code null}.
+	 * @param value the value of the attribute
+	 * @throws XMLStreamException in case of error
+	 */
+	public static void writeAttribute(final XMLStreamWriter writer, final String name, final int value) throws XMLStreamException {
+		if (writer instanceof DirectXMLStreamWriter) {
+			((DirectXMLStreamWriter) writer).writeAttribute(name, value);
+		} else if (writer instanceof RecordingXMLStreamWriter) {
+			((RecordingXMLStreamWriter) writer).writeAttribute(name, value);
+		} else {
+			writer.writeAttribute(name, Integer.toString(value));
+		}
+	}
+
+}
@@ -3,8 +3,15 @@ package de.engehausen.treemap.svg;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.stream.XMLEventReader;
@@ -19,9 +26,16 @@ import javax.xml.stream.events.XMLEvent;
 import org.junit.Assert;
 import org.junit.Test;
 
+import de.engehausen.treemap.ICancelable;
+import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.Node;
+import de.engehausen.treemap.SyntheticTreeModel;
 import de.engehausen.treemap.TreeModel;
+import de.engehausen.treemap.impl.LayoutCache;
+import de.engehausen.treemap.impl.PipelinedLayout;
+import de.engehausen.treemap.impl.SquarifiedLayout;
 import de.engehausen.treemap.svg.impl.CushionRectangleRenderer;
+import de.engehausen.treemap.svg.impl.DefaultRectangleRenderer;
 import de.engehausen.treemap.svg.impl.XMLConstants;
 
 public class TreeMapTest {
@@ -57,6 +71,164 @@ public class TreeMapTest {
 		expect(XMLConstants.ELEMENT_TEXT, 8, counts);
 	}
 
+	@Test
+	public void testStreaming() throws XMLStreamException {
+		final TreeMap<Node> map = new TreeMap<Node>(TreeModel.DEEP_UNBALANCED, new SquarifiedLayout<>(Integer.MAX_VALUE));
+		map.setLabelProvider((nodes, node) -> node.getNode().getName());
+		final List<String> expected = rectangles(map);
+		Assert.assertTrue(expected.size() > 1000);
+		map.setStreaming(true);
+		final List<String> streamed = rectangles(map);
+		Assert.assertEquals(expected, streamed);
+		map.setLayoutCache(new LayoutCache<>());
+		Assert.assertEquals(rectangles(map), streamed);
+		// the same with the layout computed in another thread
+		map.setLayoutCache(null);
+		map.setLayout(new PipelinedLayout<>(new SquarifiedLayout<>(Integer.MAX_VALUE), 64, null));
+		Assert.assertEquals(rectangles(map), streamed);
+		// a canceled layout does not write anything
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		map.render(XMLOutputFactory.newInstance().createXMLStreamWriter(out, XMLConstants.ATTR_ENCODING), 1280, 720, () -> true);
+		Assert.assertEquals(0, out.size());
+	}
+
+	@Test
+	public void testCancelStreaming() throws XMLStreamException {
+		final TreeMap<Node> map = new TreeMap<Node>(TreeModel.DEEP_UNBALANCED, new SquarifiedLayout<>(Integer.MAX_VALUE));
+		final AtomicInteger checks = new AtomicInteger();
+		render(map, () -> checks.incrementAndGet() < 0);
+		final int half = checks.get()/2;
+		Assert.assertTrue(half > 0);
+		checks.set(0);
+		// canceled in the middle of the layout, nothing is written by default
+		Assert.assertEquals("", render(map, () -> checks.incrementAndGet() > half));
+		// a streamed document is not closed
+		map.setStreaming(true);
+		checks.set(0);
+		final String svg = render(map, () -> checks.incrementAndGet() > half);
+		Assert.assertTrue(svg.contains("<"+XMLConstants.ELEMENT_RECT));
+		Assert.assertFalse(svg.contains("</"+XMLConstants.ELEMENT_SVG+">"));
+	}
+
+	@Test
+	public void testWriterFailure() {
+		final TreeMap<Node> map = new TreeMap<Node>(TreeModel.WIJK);
+		final XMLStreamWriter failing = (XMLStreamWriter) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { XMLStreamWriter.class }, (proxy, method, args) -> {
+			throw new XMLStreamException("failed");
+		});
+		for (boolean streaming : new boolean[] { false, true }) {
+			map.setStreaming(streaming);
+			try {
+				map.render(failing, 1280, 720, () -> false);
+				Assert.fail("exception expected");
+			} catch (XMLStreamException e) {
+				Assert.assertEquals("failed", e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testParallel() throws XMLStreamException {
+		final TreeMap<Node> map = new TreeMap<Node>(TreeModel.DEEP_UNBALANCED, new SquarifiedLayout<>(Integer.MAX_VALUE));
+		map.setLabelProvider((nodes, node) -> node.getNode().getName());
+		map.setRectangleRenderer(new CushionRectangleRenderer<>());
+		final List<String> expected = rectangles(map);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			map.setRenderPool(pool);
+			Assert.assertEquals(expected, rectangles(map));
+			map.setLayoutCache(new LayoutCache<>());
+			Assert.assertEquals(expected, rectangles(map));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testParallelFanOut() throws XMLStreamException {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(20000).depth(1).build();
+		final AtomicInteger instances = new AtomicInteger();
+		final TreeMap<Integer> map = new TreeMap<Integer>(tree, new SquarifiedLayout<>(Integer.MAX_VALUE));
+		map.setRectangleRenderer(new DefaultRectangleRenderer<Integer>() {
+			@Override
+			public IRectangleRenderer<Integer, XMLStreamWriter, String> newInstance() {
+				instances.incrementAndGet();
+				return new DefaultRectangleRenderer<>();
+			}
+		});
+		final List<String> expected = rectangles(map);
+		Assert.assertTrue(expected.size() > 10000);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			map.setRenderPool(pool);
+			Assert.assertEquals(expected, rectangles(map));
+			// one instance per run of adjacent subtrees
+			Assert.assertTrue(instances.get() > 1);
+			Assert.assertTrue(instances.get() <= 4*pool.getParallelism());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCancelParallel() throws XMLStreamException {
+		final SquarifiedLayout<Node> layout = new SquarifiedLayout<>(Integer.MAX_VALUE);
+		final TreeMap<Node> map = new TreeMap<Node>(TreeModel.DEEP_UNBALANCED, layout);
+		map.setRectangleRenderer(new CushionRectangleRenderer<>());
+		final AtomicInteger checks = new AtomicInteger();
+		layout.layout(TreeModel.DEEP_UNBALANCED, TreeModel.DEEP_UNBALANCED.getRoot(), 1280, 720, () -> checks.incrementAndGet() < 0);
+		// the layout and the check after it
+		final int layoutChecks = checks.get()+1;
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			map.setRenderPool(pool);
+			checks.set(0);
+			Assert.assertTrue(render(map, () -> checks.incrementAndGet() < 0).endsWith("</"+XMLConstants.ELEMENT_SVG+">"));
+			Assert.assertTrue(checks.get() > layoutChecks);
+			// canceled while the parts are rendered, nothing is written
+			checks.set(0);
+			Assert.assertEquals("", render(map, () -> checks.incrementAndGet() > layoutChecks));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Renders the tree map and returns the sorted rectangle and text elements.
+	 */
+	private static <N> List<String> rectangles(final TreeMap<N> map) throws XMLStreamException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final XMLStreamWriter writer = XMLOutputFactory
+			.newInstance()
+			.createXMLStreamWriter(out, XMLConstants.ATTR_ENCODING);
+		map.render(writer, 1280, 720, () -> false);
+		final XMLEventReader reader = XMLInputFactory.newInstance().createXMLEventReader(new ByteArrayInputStream(out.toByteArray()));
+		final List<String> result = new ArrayList<>();
+		while (reader.hasNext()) {
+			final XMLEvent event = reader.nextEvent();
+			if (event.getEventType() == XMLStreamConstants.START_ELEMENT) {
+				final StartElement element = (StartElement) event;
+				final StringBuilder sb = new StringBuilder(element.getName().getLocalPart());
+				for (Iterator<?> i = element.getAttributes(); i.hasNext(); ) {
+					sb.append(' ').append(i.next());
+				}
+				result.add(sb.toString());
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static String render(final TreeMap<Node> map, final ICancelable control) throws XMLStreamException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final XMLStreamWriter writer = XMLOutputFactory
+			.newInstance()
+			.createXMLStreamWriter(out, XMLConstants.ATTR_ENCODING);
+		map.render(writer, 1280, 720, control);
+		writer.flush();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
 	private void expect(final String element, final int count, final Map<String, AtomicInteger> counts) {
 		final AtomicInteger integer = counts.computeIfAbsent(element, key -> new AtomicInteger());
 		Assert.assertEquals(count, integer.get());
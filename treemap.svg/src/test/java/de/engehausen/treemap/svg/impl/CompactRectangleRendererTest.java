@@ -0,0 +1,169 @@
+package de.engehausen.treemap.svg.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IRectangleRenderer;
+import de.engehausen.treemap.SyntheticTreeModel;
+import de.engehausen.treemap.impl.SquarifiedLayout;
+import de.engehausen.treemap.svg.TreeMap;
+
+public class CompactRectangleRendererTest {
+
+	private static final Pattern STYLE = Pattern.compile("\\.(\\w+)\\{fill:([^}]*)\\}");
+	private static final Pattern RECTANGLE = Pattern.compile("([Mm])(-?\\d+) ?(-?\\d+)h(\\d+)v(\\d+)h-(\\d+)z");
+
+	/**
+	 * Tests that the paths cover the same rectangles with the same colors
+	 * as the cushion renderer, with the same labels and a cushion per rectangle.
+	 */
+	@Test
+	public void testSameRectangles() throws XMLStreamException {
+		final Document expected = render(new CushionRectangleRenderer<>(), null);
+		final Document compact = render(new CompactRectangleRenderer<>(true, 100), null);
+		Assert.assertTrue(expected.rectangles.size() > 1000);
+		Assert.assertEquals(expected.rectangles, compact.rectangles);
+		Assert.assertEquals(expected.labels, compact.labels);
+		Assert.assertEquals(expected.rectangles.size()+1, compact.uses);
+		// each color is defined once, and there are far fewer paths than rectangles
+		Assert.assertEquals(1, compact.styles);
+		Assert.assertEquals(DefaultColorProvider.COLORS.length, compact.rules);
+		Assert.assertTrue(compact.paths < expected.rectangles.size()/10);
+		Assert.assertTrue(compact.size < expected.size);
+	}
+
+	/**
+	 * Tests that the renderer instances for concurrent rendering
+	 * produce the same rectangles and labels, and share the color definitions.
+	 */
+	@Test
+	public void testParallel() throws XMLStreamException {
+		final Document expected = render(new CompactRectangleRenderer<>(true, 100), null);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final Document parallel = render(new CompactRectangleRenderer<>(true, 100), pool);
+			Assert.assertEquals(expected.rectangles, parallel.rectangles);
+			Assert.assertEquals(expected.labels, parallel.labels);
+			Assert.assertEquals(expected.uses, parallel.uses);
+			Assert.assertEquals(1, parallel.styles);
+			Assert.assertEquals(expected.rules, parallel.rules);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static Document render(final IRectangleRenderer<Integer, XMLStreamWriter, String> renderer, final ForkJoinPool pool) throws XMLStreamException {
+		final SyntheticTreeModel model = new SyntheticTreeModel.Builder().nodes(5000).build();
+		final TreeMap<Integer> map = new TreeMap<>(model, new SquarifiedLayout<>(Integer.MAX_VALUE));
+		map.setRectangleRenderer(renderer);
+		map.setRenderPool(pool);
+		map.setColorProvider(new DefaultColorProvider<>());
+		map.setLabelProvider((rectangles, rectangle) -> rectangle.getWidth() > 50 && rectangle.getHeight() > 20 ? rectangle.getNode().toString() : null);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final DirectXMLStreamWriter writer = new DirectXMLStreamWriter(out);
+		map.render(writer, 1280, 720, () -> false);
+		writer.close();
+		return new Document(out.toByteArray());
+	}
+
+	/**
+	 * The rectangles, labels and element counts of a document; the
+	 * first rectangle, which is the root, is not included.
+	 */
+	private static class Document {
+
+		final List<String> rectangles = new ArrayList<>();
+		final List<String> labels = new ArrayList<>();
+		final int size;
+		int styles, rules, paths, uses;
+
+		Document(final byte[] data) throws XMLStreamException {
+			size = data.length;
+			final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(data));
+			final Map<String, String> classes = new HashMap<>();
+			// the classes are defined after the paths
+			final List<String[]> pathData = new ArrayList<>();
+			boolean root = true;
+			while (reader.hasNext()) {
+				if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+				switch (reader.getLocalName()) {
+				case XMLConstants.ELEMENT_RECT:
+					final String fill = reader.getAttributeValue(null, XMLConstants.ATTR_FILL);
+					if (reader.getAttributeValue(null, XMLConstants.ATTR_ID) == null && fill.startsWith("#")) {
+						if (!root) {
+							rectangles.add(reader.getAttributeValue(null, XMLConstants.ATTR_X)+","+reader.getAttributeValue(null, XMLConstants.ATTR_Y)+","
+								+reader.getAttributeValue(null, XMLConstants.ATTR_WIDTH)+","+reader.getAttributeValue(null, XMLConstants.ATTR_HEIGHT)+","+fill);
+						}
+						root = false;
+					}
+					break;
+				case XMLConstants.ELEMENT_STYLE:
+					final String text = reader.getElementText();
+					final Matcher style = STYLE.matcher(text);
+					int ruleEnd = 0;
+					while (style.find()) {
+						Assert.assertEquals(ruleEnd, style.start());
+						Assert.assertNull(classes.put(style.group(1), style.group(2)));
+						ruleEnd = style.end();
+						rules++;
+					}
+					Assert.assertEquals(text.length(), ruleEnd);
+					styles++;
+					break;
+				case XMLConstants.ELEMENT_PATH:
+					pathData.add(new String[] { reader.getAttributeValue(null, XMLConstants.ATTR_CLASS), reader.getAttributeValue(null, XMLConstants.ATTR_D) });
+					paths++;
+					break;
+				case XMLConstants.ELEMENT_USE:
+					uses++;
+					break;
+				case XMLConstants.ELEMENT_TEXT:
+					labels.add(reader.getElementText());
+					break;
+				default:
+					break;
+				}
+			}
+			for (String[] path : pathData) {
+				final String color = classes.get(path[0]);
+				Assert.assertNotNull(color);
+				final Matcher matcher = RECTANGLE.matcher(path[1]);
+				int x = 0, y = 0, end = 0;
+				while (matcher.find()) {
+					Assert.assertEquals(end, matcher.start());
+					final int dx = Integer.parseInt(matcher.group(2));
+					final int dy = Integer.parseInt(matcher.group(3));
+					x = "M".equals(matcher.group(1)) ? dx : x+dx;
+					y = "M".equals(matcher.group(1)) ? dy : y+dy;
+					Assert.assertEquals(matcher.group(4), matcher.group(6));
+					rectangles.add(x+","+y+","+matcher.group(4)+","+matcher.group(5)+","+color);
+					end = matcher.end();
+				}
+				Assert.assertEquals(path[1].length(), end);
+			}
+			Collections.sort(rectangles);
+			Collections.sort(labels);
+		}
+
+	}
+
+}
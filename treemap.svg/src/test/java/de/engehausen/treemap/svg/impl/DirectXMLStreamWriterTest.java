@@ -0,0 +1,176 @@
+package de.engehausen.treemap.svg.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.impl.GenericTreeModel;
+import de.engehausen.treemap.svg.TreeMap;
+
+public class DirectXMLStreamWriterTest {
+
+	private static final String[] NAMES = { "a&b", "<c>", "\"d\"", "größe", "€", "𝄞", "plain" };
+
+	/**
+	 * Tests that the writer produces the same document as the StAX writer.
+	 */
+	@Test
+	public void testSameAsStax() throws XMLStreamException, IOException {
+		final TreeMap<String> map = createTreeMap();
+		final ByteArrayOutputStream stax = new ByteArrayOutputStream();
+		final XMLStreamWriter staxWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(stax, XMLConstants.ATTR_ENCODING);
+		map.render(staxWriter, 640, 480, () -> false);
+		staxWriter.close();
+		final List<String> expected = read(new ByteArrayInputStream(stax.toByteArray()));
+		Assert.assertTrue(expected.size() > 3*NAMES.length);
+
+		final ByteArrayOutputStream direct = new ByteArrayOutputStream();
+		final DirectXMLStreamWriter directWriter = new DirectXMLStreamWriter(direct);
+		map.render(directWriter, 640, 480, () -> false);
+		directWriter.close();
+		Assert.assertEquals(expected, read(new ByteArrayInputStream(direct.toByteArray())));
+
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		final DirectXMLStreamWriter svgz = DirectXMLStreamWriter.svgz(Channels.newChannel(compressed));
+		map.render(svgz, 640, 480, () -> false);
+		svgz.close();
+		Assert.assertTrue(compressed.size() < direct.size());
+		Assert.assertEquals(expected, read(new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))));
+	}
+
+	/**
+	 * Tests the encoding of elements and text, with a buffer
+	 * which must be flushed several times.
+	 */
+	@Test
+	public void testEncoding() throws XMLStreamException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final DirectXMLStreamWriter writer = new DirectXMLStreamWriter(out, null, 64);
+		writer.writeStartDocument();
+		writer.writeStartElement("svg");
+		writer.writeNamespace("xmlns", XMLConstants.VALUE_SVGNS);
+		writer.writeEmptyElement("rect");
+		writer.writeAttribute("x", -2147483648);
+		writer.writeAttribute("y", 0);
+		writer.writeAttribute("width", 1234567890);
+		writer.writeStartElement("g");
+		writer.writeEndElement();
+		writer.writeComment("note");
+		writer.writeStartElement("text");
+		for (String name : NAMES) {
+			writer.writeCharacters(name);
+		}
+		writer.writeEndDocument();
+		writer.close();
+		final StringBuilder text = new StringBuilder();
+		for (String name : NAMES) {
+			text.append(name.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;"));
+		}
+		Assert.assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><svg xmlns=\"http://www.w3.org/2000/svg\">"
+			+"<rect x=\"-2147483648\" y=\"0\" width=\"1234567890\"/><g/><!--note--><text>"+text+"</text></svg>",
+			new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Tests that tabs and line breaks in attribute values are kept
+	 * and that surrogates not forming a pair are replaced.
+	 */
+	@Test
+	public void testEscaping() throws XMLStreamException {
+		final String value = "a\tb\nc\r\nd";
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final DirectXMLStreamWriter writer = new DirectXMLStreamWriter(out);
+		writer.writeStartDocument();
+		writer.writeStartElement("text");
+		writer.writeAttribute("title", value);
+		writer.writeCharacters("x\uD834y\uDD1Ez\uD834");
+		writer.writeEndDocument();
+		writer.close();
+		Assert.assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><text title=\"a&#9;b&#10;c&#13;&#10;d\">x?y?z?</text>",
+			new String(out.toByteArray(), StandardCharsets.UTF_8));
+		final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(out.toByteArray()));
+		Assert.assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+		Assert.assertEquals(value, reader.getAttributeValue(null, "title"));
+	}
+
+	/**
+	 * Tests that misplaced calls are reported.
+	 */
+	@Test
+	public void testErrors() throws XMLStreamException {
+		final DirectXMLStreamWriter writer = new DirectXMLStreamWriter(new ByteArrayOutputStream());
+		try {
+			writer.writeEndElement();
+			Assert.fail();
+		} catch (XMLStreamException e) {
+			// expected
+		}
+		writer.writeStartElement("a");
+		writer.writeCharacters("b");
+		try {
+			writer.writeAttribute("c", 1);
+			Assert.fail();
+		} catch (XMLStreamException e) {
+			// expected
+		}
+	}
+
+	private static TreeMap<String> createTreeMap() {
+		final GenericTreeModel<String> model = new GenericTreeModel<>();
+		model.add("root", 0, null);
+		for (int i = 0; i < NAMES.length; i++) {
+			model.add(NAMES[i], 10+i, "root", true);
+		}
+		final TreeMap<String> map = new TreeMap<>(model);
+		map.setRectangleRenderer(new CushionRectangleRenderer<>());
+		map.setLabelProvider((rectangles, rectangle) -> rectangle.getNode());
+		return map;
+	}
+
+	/**
+	 * Reads the document into a list of its elements, attributes and text.
+	 */
+	private static List<String> read(final InputStream in) throws XMLStreamException {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		final XMLStreamReader reader = factory.createXMLStreamReader(in);
+		final List<String> result = new ArrayList<>();
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				final StringBuilder sb = new StringBuilder("<").append(reader.getLocalName());
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					sb.append(' ').append(reader.getAttributeLocalName(i)).append('=').append(reader.getAttributeValue(i));
+				}
+				result.add(sb.toString());
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				result.add("</"+reader.getLocalName());
+				break;
+			case XMLStreamConstants.CHARACTERS:
+				result.add(reader.getText());
+				break;
+			default:
+				break;
+			}
+		}
+		return result;
+	}
+
+}
@@ -7,6 +7,7 @@ import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
+import java.util.List;
 
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
@@ -17,8 +18,10 @@ import javax.swing.JMenuItem;
 import javax.swing.JSeparator;
 import javax.swing.SwingUtilities;
 
+import de.engehausen.treemap.IAggregateRectangle;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRegionSelectionListener;
 import de.engehausen.treemap.ISelectionChangeListener;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.examples.FileInfo;
@@ -26,6 +29,7 @@ import de.engehausen.treemap.examples.FileModel;
 import de.engehausen.treemap.examples.Messages;
 import de.engehausen.treemap.impl.SquarifiedLayout;
 import de.engehausen.treemap.swing.TreeMap;
+import de.engehausen.treemap.swing.TreeMapMouseController;
 import de.engehausen.treemap.swing.impl.CushionRectangleRendererEx;
 
 /**
@@ -71,12 +75,20 @@ public class FileViewer extends JFrame implements ActionListener, ISelectionChan
 	    colorDialog = new FilterDialog(this, Messages.getString("fv.colors"));
 
 	    // the tree map
-		treeMap = new TreeMap<FileInfo>();
+		treeMap = new TreeMap<FileInfo>(false);
+		new TreeMapMouseController<FileInfo>(treeMap, true);
 		treeMap.setRectangleRenderer(new CushionRectangleRendererEx<FileInfo>(160));
 		// the frame acts as a selection change listener; when
 		// the selection (i.e. rectangle) has changed, the status
 		// bar is updated to show the selected items' label
 		treeMap.addSelectionChangeListener(this);
+		// dragging the mouse shows the total size of the selected region
+		treeMap.addRegionSelectionListener(new IRegionSelectionListener<FileInfo>() {
+			@Override
+			public void regionSelected(final ITreeModel<IRectangle<FileInfo>> model, final List<IRectangle<FileInfo>> rectangles, final double weight) {
+				selectionTitle.setText(Messages.getString("fv.region")+" "+new FileInfo("", (long) weight).getSizeAsString());
+			}
+		});
 		treeMap.setLabelProvider(this);
 		treeMap.setColorProvider(colorDialog);
 		treeMap.setTreeMapLayout(new SquarifiedLayout<FileInfo>(16));
@@ -108,8 +120,9 @@ public class FileViewer extends JFrame implements ActionListener, ISelectionChan
 	public void selectionChanged(final ITreeModel<IRectangle<FileInfo>> model, final IRectangle<FileInfo> rectangle, final String text) {
 		if (text != null) {
 			selectionTitle.setText(text);
-			final FileInfo info = rectangle.getNode();
-			treeMap.setToolTipText(info.getSize()>0?info.getSizeAsString():null);
+			// an aggregate weighs as much as all of its files, not only its heaviest one
+			final long size = rectangle instanceof IAggregateRectangle<?> ? ((IAggregateRectangle<FileInfo>) rectangle).getWeight() : rectangle.getNode().getSize();
+			treeMap.setToolTipText(size>0?FileInfo.getSizeAsString(size):null);
 		}
 	}
 
@@ -39,10 +39,12 @@ import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
 
 import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.examples.FileInfo;
 import de.engehausen.treemap.examples.Messages;
+import de.engehausen.treemap.impl.RegexColorProvider;
 
 /**
  * Color dialog used in {@link FileViewer} which allows to map colors to file names and
@@ -64,6 +66,7 @@ public class FilterDialog extends JDialog implements IColorProvider<FileInfo, Co
 	protected final JButton color;
 	protected final JTextField input;
 	protected final TableModelImpl model;
+	protected final RegexColorProvider<FileInfo, Color> colors;
 
 	/**
 	 * Creates the dialog for the given file viewer.
@@ -74,6 +77,13 @@ public class FilterDialog extends JDialog implements IColorProvider<FileInfo, Co
 		super(parent, title, true);
 		viewer = parent;
 		model = createTableModel();
+		colors = new RegexColorProvider<FileInfo, Color>(new ILabelProvider<FileInfo>() {
+			@Override
+			public String getLabel(final ITreeModel<IRectangle<FileInfo>> treeModel, final IRectangle<FileInfo> rectangle) {
+				return rectangle.getNode().getName();
+			}
+		}, Color.GRAY);
+		updateRules();
 		filters = new JTable(model);
 		filters.getColumnModel().getColumn(1).setCellRenderer(new ColorCellRenderer());
 		filters.addKeyListener(this);
@@ -111,6 +121,7 @@ public class FilterDialog extends JDialog implements IColorProvider<FileInfo, Co
 			if (exp != null && exp.length()>0) {
 				final TableModelImpl tableModel = (TableModelImpl) filters.getModel();
 				tableModel.addEntry(exp, color.getBackground());
+				updateRules();
 			}
 		}
 	}
@@ -133,6 +144,7 @@ public class FilterDialog extends JDialog implements IColorProvider<FileInfo, Co
 			if (idxs != null && idxs.length>0) {
 				final TableModelImpl tableModel = (TableModelImpl) filters.getModel();
 				tableModel.removeEntries(idxs);
+				updateRules();
 			}
 		}
 	}
@@ -150,20 +162,22 @@ public class FilterDialog extends JDialog implements IColorProvider<FileInfo, Co
 	 */
 	@Override
 	public Color getColor(final ITreeModel<IRectangle<FileInfo>> treeModel, final IRectangle<FileInfo> rectangle) {
-		Color result = Color.GRAY;
+		return colors.getColor(treeModel, rectangle);
+	}
+
+	/**
+	 * Passes the regular expressions and colors of the table
+	 * to the color provider.
+	 */
+	protected void updateRules() {
 		final List<ModelEntry> list = model.entries;
-		final int max = list.size();
-		final String name = rectangle.getNode().getName();
-		for (int i = 0; i < max; i++) {
-			final ModelEntry entry = list.get(i);
-			final Matcher m = entry.matcher;
-			m.reset(name);
-			if (m.matches()) {
-				result = entry.color;
-				break;
-			}
+		final List<String> expressions = new ArrayList<String>(list.size());
+		final List<Color> ruleColors = new ArrayList<Color>(list.size());
+		for (ModelEntry entry : list) {
+			expressions.add(entry.expression);
+			ruleColors.add(entry.color);
 		}
-		return result;
+		colors.setRules(expressions, ruleColors);
 	}
 
 	/**
@@ -0,0 +1,24 @@
+package de.engehausen.treemap.swing;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+
+import de.engehausen.treemap.IRectangleRenderer;
+
+/**
+ * Rectangle renderer supporting concurrent rendering of different parts
+ * of a tree map image. Each rendering thread uses its own instance.
+ *
+ * @param <N> the type of node the renderer supports
+ */
+public interface IParallelRenderer<N> extends IRectangleRenderer<N, Graphics2D, Color> {
+
+	/**
+	 * Returns a renderer with the same settings as this renderer, to be
+	 * used by one thread. Stateless renderers may return themselves.
+	 * @return a renderer with the same settings, or {@code null} if the
+	 * renderer cannot be used concurrently.
+	 */
+	IRectangleRenderer<N, Graphics2D, Color> newInstance();
+
+}
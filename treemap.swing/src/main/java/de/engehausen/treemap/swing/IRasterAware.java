@@ -0,0 +1,23 @@
+package de.engehausen.treemap.swing;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Rectangle renderers implementing this interface are told about the image
+ * the tree map renders into, so that they can write pixels directly into
+ * its raster instead of going through the graphics context.
+ */
+public interface IRasterAware {
+
+	/**
+	 * Sets the image the subsequent rendering calls paint into. The user space
+	 * coordinates of the graphics contexts passed to these calls are image
+	 * coordinates; their clip is honoured. Renderers paint through the graphics
+	 * context if it is scaled, rotated or sheared.
+	 * @param image the target image, or {@code null} when rendering is done.
+	 * @param clip the area of the image that may be painted, {@code null} for the whole image.
+	 */
+	void setTarget(BufferedImage image, Rectangle clip);
+
+}
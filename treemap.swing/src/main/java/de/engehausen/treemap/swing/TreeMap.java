@@ -1,6 +1,8 @@
 package de.engehausen.treemap.swing;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Cursor;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
@@ -8,6 +10,7 @@ import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.geom.AffineTransform;
@@ -23,19 +26,29 @@ import javax.swing.SwingWorker;
 import de.engehausen.treemap.IColorProvider;
 import de.engehausen.treemap.IGenericTreeMapLayout;
 import de.engehausen.treemap.IGenericWeightedTreeModel;
+import de.engehausen.treemap.IHighlightBounds;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleIndex;
 import de.engehausen.treemap.IRectangleRenderer;
+import de.engehausen.treemap.IRegionSelectionListener;
 import de.engehausen.treemap.ISelectionChangeListener;
 import de.engehausen.treemap.ITreeMapLayout;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.impl.AggregateLabelProvider;
 import de.engehausen.treemap.impl.BuildControl;
+import de.engehausen.treemap.impl.CompactRectangleModel;
 import de.engehausen.treemap.impl.FIFO;
 import de.engehausen.treemap.impl.GenericSquarifiedLayout;
+import de.engehausen.treemap.impl.HighlightArea;
+import de.engehausen.treemap.impl.LayoutCache;
+import de.engehausen.treemap.impl.PixelRectangleIndex;
+import de.engehausen.treemap.impl.RegionQuery;
 import de.engehausen.treemap.impl.SquarifiedLayout;
 import de.engehausen.treemap.swing.impl.DefaultColorProvider;
 import de.engehausen.treemap.swing.impl.DefaultRectangleRenderer;
+import de.engehausen.treemap.swing.impl.TileRasterizer;
 
 /**
  * Tree map UI widget. It displays information represented in a {@link IWeightedTreeModel}
@@ -49,7 +62,10 @@ public class TreeMap<N> extends JPanel {
 
 	protected ITreeModel<N> model;
 	protected ITreeMapLayout<N> layout;
+	protected LayoutCache<N> layoutCache;
 	protected ITreeModel<IRectangle<N>> rectangles;
+	protected IRectangleIndex<N> rectangleIndex;
+	protected TileRasterizer<N> rasterizer;
 	protected IRectangle<N> selected;
 	protected N currentRoot;
 	protected BufferedImage image;
@@ -58,6 +74,10 @@ public class TreeMap<N> extends JPanel {
 	protected ILabelProvider<N> labelProvider;
 	protected IColorProvider<N, Color> colorProvider;
 	protected List<ISelectionChangeListener<N>> listeners;
+	protected List<IRegionSelectionListener<N>> regionListeners;
+	/** the selected area, or {@code null} */
+	protected Rectangle region;
+	protected List<IRectangle<N>> regionRectangles;
 	protected GraphicsConfiguration gc;
 
 	/**
@@ -135,11 +155,12 @@ public class TreeMap<N> extends JPanel {
 
 	/**
 	 * Sets the label provider the tree map will use during rendering.
-	 * If no provider is set no labels are displayed.
+	 * If no provider is set no labels are displayed. Aggregate rectangles
+	 * are labelled with their number of nodes, see {@link AggregateLabelProvider}.
 	 * @param aProvider the label provider; may be {@code null}.
 	 */
 	public void setLabelProvider(final ILabelProvider<N> aProvider) {
-		labelProvider = aProvider;
+		labelProvider = aProvider != null ? new AggregateLabelProvider<N>(aProvider) : null;
 	}
 
 	/**
@@ -147,7 +168,7 @@ public class TreeMap<N> extends JPanel {
 	 * @return the currently active label provider of this tree map.
 	 */
 	public ILabelProvider<N> getLabelProvider() {
-		return labelProvider;
+		return labelProvider instanceof AggregateLabelProvider<?> ? ((AggregateLabelProvider<N>) labelProvider).getDelegate() : labelProvider;
 	}
 
 	/**
@@ -185,10 +206,16 @@ public class TreeMap<N> extends JPanel {
 		if (layout == null) {
 			layout = new SquarifiedLayout<N>(2);
 		}
+		if (layoutCache != null && model != null) {
+			layoutCache.invalidate(model);
+		}
 		model = aModel;
 		currentRoot = aModel.getRoot();
 		selected = null;
+		region = null;
+		regionRectangles = null;
 		rectangles = null;
+		rectangleIndex = null;
 		image = null;
 		recalculate();
 	}
@@ -202,10 +229,16 @@ public class TreeMap<N> extends JPanel {
 		if (layout == null) {
 			layout = new GenericSquarifiedLayout<N, T>(2);
 		}
+		if (layoutCache != null && model != null) {
+			layoutCache.invalidate(model);
+		}
 		model = aModel;
 		currentRoot = aModel.getRoot();
 		selected = null;
+		region = null;
+		regionRectangles = null;
 		rectangles = null;
+		rectangleIndex = null;
 		image = null;
 		recalculate();
 	}
@@ -255,6 +288,32 @@ public class TreeMap<N> extends JPanel {
 		}
 	}
 
+	/**
+	 * Adds the given listener for region selection events. Regions are selected
+	 * by dragging the mouse if the mouse controller supports it.
+	 *
+	 * @param aListener the listener to add, must not be {@code null}
+	 * and must not already have been added.
+	 * @see TreeMapMouseController#TreeMapMouseController(TreeMap, boolean)
+	 */
+	public void addRegionSelectionListener(final IRegionSelectionListener<N> aListener) {
+		if (regionListeners == null) {
+			regionListeners = new ArrayList<IRegionSelectionListener<N>>(2);
+		}
+		regionListeners.add(aListener);
+	}
+
+	/**
+	 * Removes the given region selection listener.
+	 *
+	 * @param aListener the listener to remove
+	 */
+	public void removeRegionSelectionListener(final IRegionSelectionListener<N> aListener) {
+		if (regionListeners != null) {
+			regionListeners.remove(aListener);
+		}
+	}
+
 	/**
 	 * Sets the layout for the tree map. If this method is not called,
 	 * a default squarified layout with maximum nesting level two is used
@@ -264,6 +323,42 @@ public class TreeMap<N> extends JPanel {
 		layout = aLayout;
 	}
 
+	/**
+	 * Sets the cache for computed layouts. Zooming back to a previously
+	 * shown node then reuses its layout instead of computing it again.
+	 * Setting a model removes the layouts of the previous model from the cache.
+	 * @param aCache the layout cache to use, may be {@code null} to not cache layouts.
+	 */
+	public void setLayoutCache(final LayoutCache<N> aCache) {
+		layoutCache = aCache;
+	}
+
+	/**
+	 * Returns the cache for computed layouts.
+	 * @return the cache for computed layouts, may be {@code null}.
+	 */
+	public LayoutCache<N> getLayoutCache() {
+		return layoutCache;
+	}
+
+	/**
+	 * Sets the rasterizer for rendering the tree map image concurrently.
+	 * It is used if the rectangle renderer implements {@link IParallelRenderer};
+	 * the color and label providers must then be thread safe.
+	 * @param aRasterizer the rasterizer to use, may be {@code null} to render on the calling thread.
+	 */
+	public void setTileRasterizer(final TileRasterizer<N> aRasterizer) {
+		rasterizer = aRasterizer;
+	}
+
+	/**
+	 * Returns the rasterizer for rendering the tree map image concurrently.
+	 * @return the rasterizer, may be {@code null}.
+	 */
+	public TileRasterizer<N> getTileRasterizer() {
+		return rasterizer;
+	}
+
 	@Override
 	public void paintComponent(final Graphics gr) {
 		final Graphics2D g = (Graphics2D) gr;
@@ -273,7 +368,7 @@ public class TreeMap<N> extends JPanel {
 			// tree map image available; render it, regardless
 			// of potential sizing issues
 			g.drawImage(image, 0, 0, w, h, null);
-			if (selected != null) {
+			if (selected != null || region != null) {
 				final int imgw = image.getWidth();
 				final int imgh = image.getHeight();
 				if (imgw != w || imgh != h) {
@@ -281,13 +376,40 @@ public class TreeMap<N> extends JPanel {
 					transform.scale(w/(double) imgw, h/(double) imgh);
 					g.setTransform(transform);
 				}
-				renderer.highlight(g, rectangles, selected, colorProvider, labelProvider);
+				if (region != null) {
+					drawRegion(g);
+				} else {
+					renderer.highlight(g, rectangles, selected, colorProvider, labelProvider);
+				}
 			}
 		} else {
 			drawBusy(g);
 		}
 	}
 
+	/**
+	 * Draws the selected region: the selected rectangles are brightened
+	 * and the selected area is outlined.
+	 * @param gr the graphics object used for rendering.
+	 */
+	protected void drawRegion(final Graphics2D gr) {
+		final Composite oldComposite = gr.getComposite();
+		try {
+			gr.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.35f));
+			gr.setColor(Color.WHITE);
+			if (regionRectangles != null) {
+				for (int i = regionRectangles.size()-1; i >= 0; i--) {
+					final IRectangle<N> rectangle = regionRectangles.get(i);
+					gr.fillRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+				}
+			}
+		} finally {
+			gr.setComposite(oldComposite);
+		}
+		gr.setColor(Color.BLACK);
+		gr.drawRect(region.x, region.y, region.width-1, region.height-1);
+	}
+
 	/**
 	 * Called when the tree map is busy during rendering.
 	 * @param gr the graphics object used for rendering.
@@ -354,6 +476,46 @@ public class TreeMap<N> extends JPanel {
 		}
 	}
 
+	/**
+	 * Repaints the parts of the tree map changed by selecting another
+	 * rectangle, i.e. the highlights of the previously and the currently
+	 * selected rectangle. If the renderer does not tell the area of its
+	 * highlights (see {@link IHighlightBounds}), the whole tree map is repainted.
+	 * @param previous the previously selected rectangle, may be {@code null}.
+	 */
+	protected void repaintSelection(final IRectangle<N> previous) {
+		// the image is scaled to the size of the tree map
+		final int[] area = image != null ? HighlightArea.compute(renderer, rectangles, previous, selected, image.getWidth(), image.getHeight(), getWidth(), getHeight()) : null;
+		if (area == null) {
+			repaint();
+		} else if (area.length > 0) {
+			repaint(area[0], area[1], area[2], area[3]);
+		}
+	}
+
+	/**
+	 * Selects the rectangles intersecting the given area (which is relative
+	 * to the widget) and notifies the region selection listeners. Rectangles
+	 * lying completely inside of the area are selected as a whole, with the
+	 * weight of their subtree.
+	 * @param area the area to select, or {@code null} to remove the selection.
+	 */
+	protected void selectRegion(final Rectangle area) {
+		if (area == null || rectangles == null || model == null) {
+			region = null;
+			regionRectangles = null;
+			return;
+		}
+		region = area;
+		final RegionQuery.Region<N> result = new RegionQuery<N>(rectangles, model).query(area.x, area.y, area.width, area.height);
+		regionRectangles = result.getRectangles();
+		if (regionListeners != null) {
+			for (int i = regionListeners.size()-1; i >= 0; i--) {
+				regionListeners.get(i).regionSelected(rectangles, regionRectangles, result.getWeight());
+			}
+		}
+	}
+
 	/**
 	 * Find the smallest rectangle in the model containing the given
 	 * coordinates.
@@ -364,7 +526,9 @@ public class TreeMap<N> extends JPanel {
 	 */
 	protected IRectangle<N> findRectangle(final int x, final int y) {
 		IRectangle<N> result;
-		if (rectangles != null) {
+		if (rectangleIndex != null) {
+			result = rectangleIndex.find(x, y);
+		} else if (rectangles != null) {
 			result = rectangles.getRoot();
 			if (result.contains(x, y)) {
 				while (rectangles.hasChildren(result)) {
@@ -434,10 +598,23 @@ public class TreeMap<N> extends JPanel {
 				// see https://www.java.net/node/693786
 				result = gc.createCompatibleImage(width, height);
 			}
+			if (colorProvider == null) {
+				colorProvider = new DefaultColorProvider<N>();
+			}
+			if (rasterizer != null && rasterizer.render(result, rects, renderer, colorProvider, labelProvider)) {
+				return result;
+			}
 			final Graphics2D g = result.createGraphics();
+			final IRasterAware rasterAware = renderer instanceof IRasterAware ? (IRasterAware) renderer : null;
 			try {
+				if (rasterAware != null) {
+					rasterAware.setTarget(result, null);
+				}
 				render(g, rects);
 			} finally {
+				if (rasterAware != null) {
+					rasterAware.setTarget(null, null);
+				}
 				g.dispose();
 			}
 			return result;
@@ -456,6 +633,7 @@ public class TreeMap<N> extends JPanel {
 		private final TreeMap<N> treeMap;
 		private final int width, height;
 		private BufferedImage image;
+		private IRectangleIndex<N> index;
 
 		public Worker(final TreeMap<N> aMap, final BuildControl aControl) {
 			super();
@@ -468,16 +646,24 @@ public class TreeMap<N> extends JPanel {
 		@SuppressWarnings("unchecked")
 		@Override
 		protected ITreeModel<IRectangle<N>> doInBackground() throws Exception {
-			final ITreeModel<IRectangle<N>> result;
-			if (treeMap.layout instanceof IGenericTreeMapLayout) {
+			ITreeModel<IRectangle<N>> result;
+			if (treeMap.layoutCache != null) {
+				result = treeMap.layoutCache.layout(treeMap.layout, treeMap.model, treeMap.currentRoot, width, height, buildControl);
+			} else if (treeMap.layout instanceof IGenericTreeMapLayout) {
 				result = ((IGenericTreeMapLayout<N, Number>) treeMap.layout).layout((IGenericWeightedTreeModel<N, Number>) treeMap.model, treeMap.currentRoot, width, height, buildControl);
 			} else if (treeMap.layout instanceof ITreeMapLayout) {
 				result = treeMap.layout.layout((IWeightedTreeModel<N>) treeMap.model, treeMap.currentRoot, width, height, buildControl);
 			} else {
 				throw new IllegalStateException("cannot handle model with layout "+treeMap.layout);
 			}
+			if (!buildControl.isCanceled()) {
+				// a compact copy retains less memory and is navigated without hashing nodes;
+				// the computed layout is emptied while copying, so both are not held at once
+				result = CompactRectangleModel.compact(result);
+			}
 			if (!buildControl.isCanceled()) {
 				image = treeMap.rebuildImage(width, height, result);
+				index = treeMap.layoutCache != null ? treeMap.layoutCache.index(result, buildControl) : new PixelRectangleIndex<N>(result, buildControl);
 			}
 			return result;
 		}
@@ -489,6 +675,7 @@ public class TreeMap<N> extends JPanel {
 				if (!buildControl.isCanceled()) {
 					synchronized (treeMap) {
 						treeMap.rectangles = newRects;
+						treeMap.rectangleIndex = index;
 						final IRectangle<N> root = newRects.getRoot();
 						if (root != null) {
 							treeMap.currentRoot = root.getNode();
@@ -499,6 +686,8 @@ public class TreeMap<N> extends JPanel {
 						}
 						treeMap.image = image;
 						treeMap.selected = null;
+						treeMap.region = null;
+						treeMap.regionRectangles = null;
 						treeMap.buildControl = null;
 
 						// check the mouse only if it isn't headless
@@ -1,20 +1,34 @@
 package de.engehausen.treemap.swing;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 
+import de.engehausen.treemap.IAggregateRectangle;
+import de.engehausen.treemap.IRectangle;
+
 /**
  * This class registers mouse and mouse motion listeners with the tree map to be able
  * to handle desired mouse events (i.e mouse move for tooltips &amp; highlighting,
- * mouse released and so on).
+ * mouse released and so on). Optionally, regions can be selected by dragging
+ * the mouse with the left button pressed.
  *
  * @author Sorinel Cristescu
  * @param <N> the type of node of the model used for the tree map
  */
 public class TreeMapMouseController<N> implements MouseListener, MouseMotionListener {
 
+	/** the distance in pixels the mouse must be dragged to start selecting a region */
+	protected static final int DRAG_THRESHOLD = 3;
+
 	protected final TreeMap<N> treemap;
+	protected final boolean selectRegions;
+	/** the position the left button was pressed at, or {@code null} */
+	protected Point dragStart;
+	/** <code>true</code> if the pressed button removed the region selection */
+	protected boolean dismissed;
 
 	/**
 	 * Creates a controller object that will register the mouse and mouse motion
@@ -22,7 +36,19 @@ public class TreeMapMouseController<N> implements MouseListener, MouseMotionList
 	 * @param aTreeMap the tree map used by the mouse controller, must not be {@code null} 
 	 */
 	public TreeMapMouseController(final TreeMap<N> aTreeMap) {
+		this(aTreeMap, false);
+	}
+
+	/**
+	 * Creates a controller object that will register the mouse and mouse motion
+	 * listeners to the treemap.
+	 * @param aTreeMap the tree map used by the mouse controller, must not be {@code null}
+	 * @param regionSelection <code>true</code> to select regions by dragging the mouse,
+	 * see {@link TreeMap#addRegionSelectionListener(de.engehausen.treemap.IRegionSelectionListener)}
+	 */
+	public TreeMapMouseController(final TreeMap<N> aTreeMap, final boolean regionSelection) {
 		treemap = aTreeMap;
+		selectRegions = regionSelection;
 
 		treemap.addMouseMotionListener(this);
 		treemap.addMouseListener(this);
@@ -30,11 +56,21 @@ public class TreeMapMouseController<N> implements MouseListener, MouseMotionList
 
 	@Override
 	public void mouseReleased(final MouseEvent mouseevent) {
+		dragStart = null;
+		if (treemap.region != null || dismissed) {
+			// a region selection stays visible until the next click, which only removes it
+			dismissed = false;
+			return;
+		}
 		if (treemap.model != null && treemap.currentRoot != null) {
 			switch (mouseevent.getButton()) {
 				case MouseEvent.BUTTON1:
 					if (treemap.selected != null) {
 						N runner = treemap.selected.getNode();
+						if (treemap.selected instanceof IAggregateRectangle<?>) {
+							// the heaviest node stands in for the aggregate, zoom at most into the parent
+							runner = treemap.model.getParent(runner);
+						}
 						if (!runner.equals(treemap.currentRoot)) {
 							N last;
 							do {
@@ -68,15 +104,27 @@ public class TreeMapMouseController<N> implements MouseListener, MouseMotionList
 			notBuilding = treemap.buildControl == null;
 		}
 		if (notBuilding) {
+			final IRectangle<N> previous = treemap.selected;
 			if (treemap.selectRectangle(event.getX(), event.getY())) {
-				treemap.repaint();
+				treemap.repaintSelection(previous);
 			}
 		}
 	}
 
 	@Override
 	public void mouseDragged(final MouseEvent event) {
-		// don't care
+		if (dragStart != null && (treemap.region != null || Math.abs(event.getX()-dragStart.x) >= DRAG_THRESHOLD || Math.abs(event.getY()-dragStart.y) >= DRAG_THRESHOLD)) {
+			final boolean notBuilding;
+			synchronized (this) {
+				notBuilding = treemap.buildControl == null;
+			}
+			if (notBuilding) {
+				final int x = Math.min(dragStart.x, event.getX());
+				final int y = Math.min(dragStart.y, event.getY());
+				treemap.selectRegion(new Rectangle(x, y, Math.abs(event.getX()-dragStart.x)+1, Math.abs(event.getY()-dragStart.y)+1));
+				treemap.repaint();
+			}
+		}
 	}
 
 	@Override
@@ -96,7 +144,14 @@ public class TreeMapMouseController<N> implements MouseListener, MouseMotionList
 
 	@Override
 	public void mousePressed(final MouseEvent mouseevent) {
-		// don't care
+		if (treemap.region != null) {
+			treemap.selectRegion(null);
+			treemap.repaint();
+			dismissed = true;
+		}
+		if (selectRegions && mouseevent.getButton() == MouseEvent.BUTTON1) {
+			dragStart = mouseevent.getPoint();
+		}
 	}
 
 }
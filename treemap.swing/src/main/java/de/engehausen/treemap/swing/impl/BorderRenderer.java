@@ -4,24 +4,59 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 
 import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.IHighlightBounds;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.impl.ExposedArea;
+import de.engehausen.treemap.swing.IParallelRenderer;
 
 /**
  * A rectangle renderer which only renders non-leaf rectangles.
  * The leafs are rendered by delegation to a renderer supporting
- * rendering leafs.
+ * rendering leafs. Optionally only the parts of non-leaf rectangles
+ * not covered by their children are painted, so that each pixel is
+ * painted once instead of once per nesting level.
  *
  * @param <N> the type of node the renderer supports.
  */
-public class BorderRenderer<N> implements IRectangleRenderer<N, Graphics2D, Color> {
+public class BorderRenderer<N> implements IParallelRenderer<N>, IHighlightBounds<N> {
 
 	protected final IRectangleRenderer<N, Graphics2D, Color> leafRenderer;
+	protected final boolean exposedOnly;
 
 	public BorderRenderer(final IRectangleRenderer<N, Graphics2D, Color> aLeafRenderer) {
+		this(aLeafRenderer, false);
+	}
+
+	/**
+	 * Creates the renderer.
+	 * @param aLeafRenderer the renderer for the leafs, must not be {@code null}.
+	 * @param paintExposedOnly <code>true</code> to only paint the parts of non-leaf
+	 * rectangles not covered by their children; the leaf renderer must then paint
+	 * the whole area of the leafs.
+	 */
+	public BorderRenderer(final IRectangleRenderer<N, Graphics2D, Color> aLeafRenderer, final boolean paintExposedOnly) {
 		leafRenderer = aLeafRenderer;
+		exposedOnly = paintExposedOnly;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Concurrent rendering is supported if the leaf renderer supports it.
+	 */
+	@Override
+	public IRectangleRenderer<N, Graphics2D, Color> newInstance() {
+		if (leafRenderer instanceof IParallelRenderer<?>) {
+			final IRectangleRenderer<N, Graphics2D, Color> leafInstance = ((IParallelRenderer<N>) leafRenderer).newInstance();
+			if (leafInstance == leafRenderer) {
+				return this;
+			} else if (leafInstance != null) {
+				return new BorderRenderer<N>(leafInstance, exposedOnly);
+			}
+		}
+		return null;
 	}
 
 	@Override
@@ -40,10 +75,36 @@ public class BorderRenderer<N> implements IRectangleRenderer<N, Graphics2D, Colo
 		if (model.hasChildren(rectangle)) {
 			final Color c = colorProvider.getColor(model, rectangle);
 			graphics.setColor(c);
-			graphics.fillRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+			if (exposedOnly) {
+				final int[] area = ExposedArea.compute(model, rectangle);
+				for (int i = 0; i < area.length; i += 4) {
+					graphics.fillRect(area[i], area[i+1], area[i+2], area[i+3]);
+				}
+			} else {
+				graphics.fillRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+			}
 		} else {
 			leafRenderer.render(graphics, model, rectangle, colorProvider, labelProvider);
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * For leafs the bounds are told by the leaf renderer, if it supports this.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		if (getClass() != BorderRenderer.class) {
+			return null;
+		} else if (model.hasChildren(rectangle)) {
+			return rectangle;
+		} else if (leafRenderer instanceof IHighlightBounds<?>) {
+			return ((IHighlightBounds<N>) leafRenderer).getHighlightBounds(model, rectangle);
+		} else {
+			return null;
+		}
+	}
+
 }
@@ -4,30 +4,38 @@ import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Composite;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
 import java.util.Map;
 import java.util.WeakHashMap;
 
 import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.IHighlightBounds;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.swing.IParallelRenderer;
+import de.engehausen.treemap.swing.IRasterAware;
 
 /**
  * Rectangle renderer that attempts to produce a "cushion effect" for
  * the rectangles. It does not paint any labels. The renderer is not
  * thread safe and cannot be shared between different threads.
+ * When told about the target image (see {@link IRasterAware}) the
+ * cushions are shaded directly into its pixels.
  *
  * @param <N> the type of node the renderer supports
  */
-public class CushionRectangleRenderer<N> implements IRectangleRenderer<N, Graphics2D, Color> {
+public class CushionRectangleRenderer<N> implements IParallelRenderer<N>, IRasterAware, IHighlightBounds<N> {
 
-	private static Boolean fastRenderingSupported = Boolean.FALSE;
+	private static Boolean fastRenderingSupported;
 	protected final Map<Color, int[]> colorMappingRGB;
 	protected final Map<Color, Color> colorMappingColor;
 	protected final int len;
+	/** the target image, or {@code null} if rendering through the graphics context */
+	protected RasterTarget target;
 
 	/**
 	 * TODO puh, maybe don't offer the size option
@@ -39,6 +47,25 @@ public class CushionRectangleRenderer<N> implements IRectangleRenderer<N, Graphi
 		len = colorRangeSize;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * Only images storing opaque or alpha RGB pixels in a single <code>int</code>
+	 * are painted into directly; for other images the graphics context is used.
+	 */
+	@Override
+	public void setTarget(final BufferedImage image, final Rectangle clip) {
+		target = RasterTarget.create(image, clip);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Subclasses must override this method to support concurrent rendering.
+	 */
+	@Override
+	public IRectangleRenderer<N, Graphics2D, Color> newInstance() {
+		return getClass() == CushionRectangleRenderer.class ? new CushionRectangleRenderer<N>(len) : null;
+	}
+
 	@Override
 	public void render(final Graphics2D graphics, final ITreeModel<IRectangle<N>> model,
 			final IRectangle<N> rectangle, final IColorProvider<N, Color> colorProvider,
@@ -73,7 +100,10 @@ public class CushionRectangleRenderer<N> implements IRectangleRenderer<N, Graphi
 	protected void paintCushion(final Graphics2D graphics, final Color color, final IRectangle<N> rectangle) {
 		final int w = rectangle.getWidth();
 		final int h = rectangle.getHeight();
-		if (w*h > 1) {
+		final RasterTarget t = target != null ? target.restrict(graphics) : null;
+		if (t != null) {
+			paintCushion(t, color, rectangle.getX(), rectangle.getY(), w, h);
+		} else if (w*h > 1) {
 			graphics.drawImage(createCushion(rectangle, getColorRange(color), w, h), rectangle.getX(), rectangle.getY(), null);
 		} else {
 			// single pixel, so don't go through the normal cushion process
@@ -88,30 +118,110 @@ public class CushionRectangleRenderer<N> implements IRectangleRenderer<N, Graphi
 		}
 	}
 
+	/**
+	 * Shades the cushion directly into the pixels of the target image,
+	 * within its clip area.
+	 * @param t the target image
+	 * @param color the color of the rectangle
+	 * @param rx the x coordinate of the rectangle
+	 * @param ry the y coordinate of the rectangle
+	 * @param w the width of the rectangle
+	 * @param h the height of the rectangle
+	 */
+	protected void paintCushion(final RasterTarget t, final Color color, final int rx, final int ry, final int w, final int h) {
+		if (w*h > 1) {
+			// only shade the part inside of the clip area
+			final int x0 = Math.max(0, t.minX-rx);
+			final int x1 = Math.min(w, t.maxX-rx);
+			final int y0 = Math.max(0, t.minY-ry);
+			final int y1 = Math.min(h, t.maxY-ry);
+			if (x0 < x1 && y0 < y1) {
+				shade(t.pixels, t.offset+ry*t.stride+rx, t.stride, w, h, x0, y0, x1, y1, getColorRange(color), 0xff000000);
+			}
+		} else if (w*h == 1 && rx >= t.minX && ry >= t.minY && rx < t.maxX && ry < t.maxY) {
+			// single pixel, so don't go through the normal cushion process
+			t.pixels[t.offset+ry*t.stride+rx] = 0xff000000 | ((rx+ry)%2==0 ? color : getDarker(color)).getRGB();
+		}
+	}
+
 	protected BufferedImage createCushion(final IRectangle<N> r, final int[] range, final int w, final int h) {
 		final BufferedImage result = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
 		if (fastRenderingSupported == null) {
 			fastRenderingSupported = Boolean.valueOf(result.getRaster().getDataBuffer() instanceof DataBufferInt);
 		}
 		if (fastRenderingSupported.booleanValue()) {
-			final double m = w>h?w:h;
-			final int hw = w>>1; // that's the center
-			final int hh = h>>1;
-			final int[] pixels = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
-			for (int y = 0; y < h; y++) {
-				final double dy = (hh-y)*(hh-y);
-				int pos = y*w;
-				for (int x = 0; x < w; x++) {
-					final int idx = (int) (range.length * Math.sqrt((hw-x)*(hw-x)+dy)/m);
-					pixels[pos+x] = range[idx];
-				}
-			}
+			shade(((DataBufferInt) result.getRaster().getDataBuffer()).getData(), 0, w, w, h, 0, 0, w, h, range, 0);
 		} else {
 			renderSlow(result, w, h, range);
 		}
 		return result;
 	}
 
+	/**
+	 * Shades a cushion into the given pixels. The color of a pixel is
+	 * <code>range[range.length*distance/max(w, h)]</code>, with the distance
+	 * measured from the center of the cushion. Instead of taking a square root
+	 * per pixel, each row walks outwards from the center and steps the color
+	 * index whenever the squared distance passes the next squared threshold,
+	 * using integer arithmetic only. Both halves of a row are written at once
+	 * and rows below the center are copied from their mirror row above it.
+	 * @param pixels the pixels to shade
+	 * @param offset the index of the top left pixel of the cushion
+	 * @param stride the scanline stride of the pixels
+	 * @param w the width of the cushion
+	 * @param h the height of the cushion
+	 * @param x0 the first column to shade, relative to the cushion
+	 * @param y0 the first row to shade, relative to the cushion
+	 * @param x1 the column after the last column to shade
+	 * @param y1 the row after the last row to shade
+	 * @param range the colors of the cushion, from the center outwards
+	 * @param mask the bits to set in each pixel, e.g. an opaque alpha value
+	 */
+	protected void shade(final int[] pixels, final int offset, final int stride, final int w, final int h,
+			final int x0, final int y0, final int x1, final int y1, final int[] range, final int mask) {
+		final int m = w>h?w:h;
+		final int hw = w>>1; // that's the center
+		final int hh = h>>1;
+		final int last = range.length-1;
+		final long mm = (long) m*m;
+		final long ll = (long) range.length*range.length;
+		// the right end, including the mirror of the left edge
+		final int xe = Math.max(w-1, hw<<1);
+		for (int y = y0; y < y1; y++) {
+			final int pos = offset+y*stride;
+			final int mirror = (hh<<1)-y;
+			if (mirror >= y0 && mirror < y) {
+				System.arraycopy(pixels, offset+mirror*stride+x0, pixels, pos+x0, x1-x0);
+			} else {
+				final long dy = (long) (hh-y)*(hh-y);
+				// squared distance and its increment, both scaled by range.length^2
+				long d = ll*dy;
+				long step = ll;
+				int idx = Math.min(last, (int) (range.length*Math.sqrt(dy)/m));
+				while (idx > 0 && idx*idx*mm > d) {
+					idx--;
+				}
+				long next = (idx+1)*(idx+1)*mm;
+				for (int x = hw; x <= xe; x++) {
+					while (d >= next && idx < last) {
+						idx++;
+						next = (idx+1)*(idx+1)*mm;
+					}
+					final int rgb = mask | range[idx];
+					if (x < x1 && x >= x0) {
+						pixels[pos+x] = rgb;
+					}
+					final int xm = (hw<<1)-x;
+					if (xm < x && xm >= x0 && xm < x1) {
+						pixels[pos+xm] = rgb;
+					}
+					d += step;
+					step += ll<<1;
+				}
+			}
+		}
+	}
+
 	protected void renderSlow(final BufferedImage image, final int w, final int h, final int[] range) {
 		final double m = w>h?w:h;
 		final int hw = w>>1;
@@ -164,4 +274,14 @@ public class CushionRectangleRenderer<N> implements IRectangleRenderer<N, Graphi
 		return (int) (r*255f)<<16 | (int) (g*255f)<<8 | (int) (b*255f);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The highlight covers the rectangle.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		return getClass() == CushionRectangleRenderer.class ? rectangle : null;
+	}
+
 }
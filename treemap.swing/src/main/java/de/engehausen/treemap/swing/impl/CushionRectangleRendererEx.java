@@ -6,6 +6,7 @@ import java.awt.Graphics2D;
 import de.engehausen.treemap.IColorProvider;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.ITreeModel;
 
 /**
@@ -26,6 +27,14 @@ public class CushionRectangleRendererEx<N> extends CushionRectangleRenderer<N> {
 		super(colorRangeSize);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public IRectangleRenderer<N, Graphics2D, Color> newInstance() {
+		return getClass() == CushionRectangleRendererEx.class ? new CushionRectangleRendererEx<N>(len) : null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -33,16 +42,38 @@ public class CushionRectangleRendererEx<N> extends CushionRectangleRenderer<N> {
 		graphics.setColor(Color.RED);
 		graphics.drawRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth()-1, rectangle.getHeight()-1);
 
+		final IRectangle<N> last = getTopmostParent(model, rectangle);
+		if (last != model.getRoot()) {
+			graphics.setColor(Color.YELLOW);
+			graphics.drawRect(last.getX(), last.getY(), last.getWidth()-1, last.getHeight()-1);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The highlight covers the topmost parent under the root node.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		return getClass() == CushionRectangleRendererEx.class ? getTopmostParent(model, rectangle) : null;
+	}
+
+	/**
+	 * Returns the topmost parent of the given rectangle under the root node.
+	 * @param model the model the rectangle belongs to
+	 * @param rectangle the rectangle to find the topmost parent of
+	 * @return the topmost parent under the root node, the rectangle itself
+	 * if it is the root or directly under it.
+	 */
+	protected IRectangle<N> getTopmostParent(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
 		final IRectangle<N> root = model.getRoot();
 		IRectangle<N> runner = rectangle, last;
 		do {
 			last = runner;
 			runner = model.getParent(runner);
 		} while (runner != root && runner != null);
-		if (last != root) {
-			graphics.setColor(Color.YELLOW);
-			graphics.drawRect(last.getX(), last.getY(), last.getWidth()-1, last.getHeight()-1);
-		}
+		return last;
 	}
 
 }
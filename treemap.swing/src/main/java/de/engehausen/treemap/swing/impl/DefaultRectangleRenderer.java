@@ -4,10 +4,12 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 
 import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.IHighlightBounds;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.swing.IParallelRenderer;
 
 /**
  * The default rectangle renderer simply renders the given
@@ -17,7 +19,7 @@ import de.engehausen.treemap.ITreeModel;
  *
  * @param <N> the type of node being operated on
  */
-public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, Graphics2D, Color> {
+public class DefaultRectangleRenderer<N> implements IParallelRenderer<N>, IHighlightBounds<N> {
 
 	private static final IRectangleRenderer<Object, Graphics2D, Color> DEFAULT = new DefaultRectangleRenderer<Object>();
 	@SuppressWarnings("unchecked")
@@ -25,6 +27,15 @@ public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, Graphi
 		return (IRectangleRenderer<R, Graphics2D, Color>) DEFAULT;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The renderer is stateless and returns itself.
+	 */
+	@Override
+	public IRectangleRenderer<N, Graphics2D, Color> newInstance() {
+		return this;
+	}
+
 	@Override
 	public void render(final Graphics2D graphics, final ITreeModel<IRectangle<N>> model,
 			final IRectangle<N> rectangle, final IColorProvider<N, Color> colorProvider,
@@ -41,4 +52,14 @@ public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, Graphi
 		graphics.drawRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The highlight frames the rectangle.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		return getClass() == DefaultRectangleRenderer.class ? rectangle : null;
+	}
+
 }
@@ -0,0 +1,276 @@
+package de.engehausen.treemap.swing.impl;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.IHighlightBounds;
+import de.engehausen.treemap.ILabelProvider;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleRenderer;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.swing.IParallelRenderer;
+import de.engehausen.treemap.swing.IRasterAware;
+
+/**
+ * Rectangle renderer producing the hierarchical cushions described by
+ * van Wijk and van de Wetering in "Cushion Treemaps". Each rectangle adds a
+ * parabolic ridge in both directions to the surface of its parent; the
+ * ridges get lower with each level, so that nesting stays visible without
+ * any borders. The surface coefficients of a rectangle are derived from those
+ * of its parent in constant time, so the renderer needs a single pass over
+ * the rectangles (parents before children, as done by the tree map) and
+ * shades each pixel of the leaves once, independent of the depth of the tree.
+ * It does not paint any labels. The renderer is not thread safe and cannot
+ * be shared between different threads.
+ *
+ * @param <N> the type of node the renderer supports
+ */
+public class HierarchicalCushionRenderer<N> implements IParallelRenderer<N>, IRasterAware, IHighlightBounds<N> {
+
+	/** the light direction (1, 2, 10), normalized */
+	private static final double LX = 0.09759, LY = 0.19518, LZ = 0.9759;
+	/** ambient and diffuse intensity */
+	private static final double IA = 40/255d, IS = 215/255d;
+
+	protected final double height;
+	protected final double factor;
+	protected final Map<IRectangle<N>, Surface> surfaces;
+	protected ITreeModel<IRectangle<N>> surfaceModel;
+	/** the target image, or {@code null} if rendering through the graphics context */
+	protected RasterTarget target;
+	/** scratch buffer for rendering through the graphics context */
+	protected BufferedImage scratch;
+	protected double[] columns;
+
+	/**
+	 * Creates the renderer with the ridge height <code>0.5</code> and
+	 * the height factor <code>0.75</code> per level.
+	 */
+	public HierarchicalCushionRenderer() {
+		this(0.5, 0.75);
+	}
+
+	/**
+	 * Creates the renderer.
+	 * @param ridgeHeight the height of the ridge of the root rectangle, must be positive
+	 * @param heightFactor the factor the ridge height is scaled with per level,
+	 * between zero and one
+	 */
+	public HierarchicalCushionRenderer(final double ridgeHeight, final double heightFactor) {
+		if (ridgeHeight <= 0 || heightFactor <= 0 || heightFactor > 1) {
+			throw new IllegalArgumentException("invalid ridge height/factor "+ridgeHeight+"/"+heightFactor);
+		}
+		height = ridgeHeight;
+		factor = heightFactor;
+		surfaces = new HashMap<IRectangle<N>, Surface>();
+		columns = new double[64];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Only images storing opaque or alpha RGB pixels in a single <code>int</code>
+	 * are painted into directly; for other images the graphics context is used.
+	 */
+	@Override
+	public void setTarget(final BufferedImage image, final Rectangle clip) {
+		target = RasterTarget.create(image, clip);
+		if (image == null) {
+			// rendering is done, drop the surfaces
+			surfaces.clear();
+			surfaceModel = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Subclasses must override this method to support concurrent rendering.
+	 */
+	@Override
+	public IRectangleRenderer<N, Graphics2D, Color> newInstance() {
+		return getClass() == HierarchicalCushionRenderer.class ? new HierarchicalCushionRenderer<N>(height, factor) : null;
+	}
+
+	@Override
+	public void render(final Graphics2D graphics, final ITreeModel<IRectangle<N>> model,
+			final IRectangle<N> rectangle, final IColorProvider<N, Color> colorProvider,
+			final ILabelProvider<N> labelProvider) {
+		if (surfaceModel != model) {
+			surfaces.clear();
+			surfaceModel = model;
+		}
+		final Surface surface = getSurface(model, rectangle);
+		if (!model.hasChildren(rectangle)) {
+			paintCushion(graphics, colorProvider.getColor(model, rectangle), rectangle, surface);
+		} else {
+			surfaces.put(rectangle, surface);
+			if (rectangle.equals(model.getRoot())) {
+				// paint the whole background black
+				graphics.setColor(Color.BLACK);
+				graphics.fillRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+			}
+		}
+	}
+
+	@Override
+	public void highlight(final Graphics2D graphics, final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle, final IColorProvider<N, Color> colorProvider, final ILabelProvider<N> labelProvider) {
+		final Composite oldComposite = graphics.getComposite();
+		try {
+			graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
+			graphics.setColor(colorProvider.getColor(model, rectangle));
+			graphics.fillRect(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+		} finally {
+			graphics.setComposite(oldComposite);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The highlight covers the rectangle.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		return getClass() == HierarchicalCushionRenderer.class ? rectangle : null;
+	}
+
+	/**
+	 * Returns the surface of the given rectangle. The surface of the parent
+	 * is normally known already; if not, it is computed and remembered.
+	 * @param model the rectangle model
+	 * @param rectangle the rectangle
+	 * @return the surface of the rectangle, never {@code null}.
+	 */
+	protected Surface getSurface(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		final IRectangle<N> parent = model.getParent(rectangle);
+		final Surface base;
+		if (parent == null) {
+			base = new Surface(height/factor);
+		} else {
+			Surface known = surfaces.get(parent);
+			if (known == null) {
+				known = getSurface(model, parent);
+				surfaces.put(parent, known);
+			}
+			base = known;
+		}
+		return base.addRidges(rectangle, factor);
+	}
+
+	protected void paintCushion(final Graphics2D graphics, final Color color, final IRectangle<N> rectangle, final Surface surface) {
+		final int rx = rectangle.getX();
+		final int ry = rectangle.getY();
+		final int w = rectangle.getWidth();
+		final int h = rectangle.getHeight();
+		final RasterTarget t = target != null ? target.restrict(graphics) : null;
+		if (t != null) {
+			// only shade the part inside of the clip area
+			final int x0 = Math.max(t.minX, rx);
+			final int x1 = Math.min(rx+w, t.maxX);
+			final int y0 = Math.max(t.minY, ry);
+			final int y1 = Math.min(ry+h, t.maxY);
+			if (x0 < x1 && y0 < y1) {
+				shade(t.pixels, t.offset, t.stride, x0, y0, x1, y1, color, surface, 0xff000000);
+			}
+		} else if (w > 0 && h > 0) {
+			if (scratch == null || scratch.getWidth() < w || scratch.getHeight() < h) {
+				scratch = new BufferedImage(Math.max(w, scratch != null ? scratch.getWidth() : 0), Math.max(h, scratch != null ? scratch.getHeight() : 0), BufferedImage.TYPE_INT_RGB);
+			}
+			// the scratch image is addressed so that its top left pixel is (rx, ry)
+			shade(((DataBufferInt) scratch.getRaster().getDataBuffer()).getData(), -ry*scratch.getWidth()-rx, scratch.getWidth(), rx, ry, rx+w, ry+h, color, surface, 0);
+			graphics.drawImage(scratch, rx, ry, rx+w, ry+h, 0, 0, w, h, null);
+		}
+	}
+
+	/**
+	 * Shades the given area using the surface. The intensity of a pixel
+	 * depends on the angle between the surface normal and the light.
+	 * @param pixels the pixels to shade
+	 * @param offset the index of pixel <code>(0, 0)</code>
+	 * @param stride the scanline stride of the pixels
+	 * @param x0 the first column to shade
+	 * @param y0 the first row to shade
+	 * @param x1 the column after the last column to shade
+	 * @param y1 the row after the last row to shade
+	 * @param color the base color
+	 * @param surface the surface
+	 * @param mask the bits to set in each pixel, e.g. an opaque alpha value
+	 */
+	protected void shade(final int[] pixels, final int offset, final int stride, final int x0, final int y0, final int x1, final int y1, final Color color, final Surface surface, final int mask) {
+		final int red = color.getRed();
+		final int green = color.getGreen();
+		final int blue = color.getBlue();
+		final int w = x1-x0;
+		if (columns.length < w) {
+			columns = new double[Math.max(w, columns.length*2)];
+		}
+		final double[] nxs = columns;
+		for (int x = 0; x < w; x++) {
+			// negated derivative of the surface in x at the pixel center
+			nxs[x] = -(2*surface.x2*(x0+x+0.5)+surface.x1);
+		}
+		for (int y = y0; y < y1; y++) {
+			final double ny = -(2*surface.y2*(y+0.5)+surface.y1);
+			final double nyl = ny*LY+LZ;
+			final double nyy = ny*ny+1;
+			final int pos = offset+y*stride+x0;
+			for (int x = 0; x < w; x++) {
+				final double nx = nxs[x];
+				final double cos = (nx*LX+nyl)/Math.sqrt(nx*nx+nyy);
+				final double intensity = cos > 0 ? IA+IS*cos : IA;
+				pixels[pos+x] = mask | (int) (red*intensity)<<16 | (int) (green*intensity)<<8 | (int) (blue*intensity);
+			}
+		}
+	}
+
+	/**
+	 * The cushion surface <code>z = x2*x*x + x1*x + y2*y*y + y1*y</code>
+	 * of a rectangle, with the ridge height for its children.
+	 */
+	protected static class Surface {
+
+		protected final double x1, x2, y1, y2;
+		protected final double height;
+
+		protected Surface(final double ridgeHeight) {
+			this(0, 0, 0, 0, ridgeHeight);
+		}
+
+		protected Surface(final double x1, final double x2, final double y1, final double y2, final double ridgeHeight) {
+			this.x1 = x1;
+			this.x2 = x2;
+			this.y1 = y1;
+			this.y2 = y2;
+			height = ridgeHeight;
+		}
+
+		/**
+		 * Returns the surface with the ridges of the given rectangle added.
+		 * @param r the rectangle, lying inside of the rectangle of this surface
+		 * @param factor the height factor per level
+		 * @return the surface of the rectangle.
+		 */
+		protected Surface addRidges(final IRectangle<?> r, final double factor) {
+			final double h = height*factor;
+			final double left = r.getX();
+			final double right = left+Math.max(1, r.getWidth());
+			final double top = r.getY();
+			final double bottom = top+Math.max(1, r.getHeight());
+			return new Surface(
+				x1+4*h*(right+left)/(right-left),
+				x2-4*h/(right-left),
+				y1+4*h*(bottom+top)/(bottom-top),
+				y2-4*h/(bottom-top),
+				h);
+		}
+
+	}
+
+}
@@ -0,0 +1,92 @@
+package de.engehausen.treemap.swing.impl;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Direct access to the pixels of an image storing opaque or alpha RGB
+ * pixels in a single <code>int</code>, restricted to a clip area.
+ * Pixel <code>(x, y)</code> is <code>pixels[offset+y*stride+x]</code>.
+ */
+public class RasterTarget {
+
+	public final int[] pixels;
+	public final int offset;
+	public final int stride;
+	/** the clip area; <code>minX</code>, <code>minY</code> inclusive, <code>maxX</code>, <code>maxY</code> exclusive */
+	public final int minX, minY, maxX, maxY;
+
+	protected RasterTarget(final int[] pixelArray, final int pixelOffset, final int scanlineStride, final int x0, final int y0, final int x1, final int y1) {
+		pixels = pixelArray;
+		offset = pixelOffset;
+		stride = scanlineStride;
+		minX = x0;
+		minY = y0;
+		maxX = x1;
+		maxY = y1;
+	}
+
+	/**
+	 * Creates the raster target for the given image, if supported.
+	 * @param image the image, may be {@code null}.
+	 * @param clip the area of the image that may be painted, {@code null} for the whole image.
+	 * @return the raster target, or {@code null} if the image is {@code null}
+	 * or does not store its pixels in a suitable form.
+	 */
+	public static RasterTarget create(final BufferedImage image, final Rectangle clip) {
+		if (image != null) {
+			final int type = image.getType();
+			final WritableRaster raster = image.getRaster();
+			if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE) &&
+				raster.getDataBuffer() instanceof DataBufferInt &&
+				raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+				final SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+				final int x0, y0, x1, y1;
+				if (clip != null) {
+					x0 = Math.max(0, clip.x);
+					y0 = Math.max(0, clip.y);
+					x1 = Math.min(image.getWidth(), clip.x+clip.width);
+					y1 = Math.min(image.getHeight(), clip.y+clip.height);
+				} else {
+					x0 = 0;
+					y0 = 0;
+					x1 = image.getWidth();
+					y1 = image.getHeight();
+				}
+				return new RasterTarget(
+					((DataBufferInt) raster.getDataBuffer()).getData(),
+					raster.getDataBuffer().getOffset()+sampleModel.getOffset(-raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY()),
+					sampleModel.getScanlineStride(),
+					x0, y0, x1, y1);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns this target restricted to the clip of the given graphics context.
+	 * User space coordinates of the graphics context are taken as image
+	 * coordinates (see {@link de.engehausen.treemap.swing.IRasterAware}).
+	 * @param graphics the graphics context the rendering call received, must not be {@code null}.
+	 * @return the restricted target, or {@code null} if the graphics context
+	 * is scaled, rotated or sheared and must be used for painting instead.
+	 */
+	public RasterTarget restrict(final Graphics2D graphics) {
+		if ((graphics.getTransform().getType() & ~AffineTransform.TYPE_TRANSLATION) != 0) {
+			return null;
+		}
+		final Rectangle clip = graphics.getClipBounds();
+		if (clip == null || (clip.x <= minX && clip.y <= minY && clip.x+clip.width >= maxX && clip.y+clip.height >= maxY)) {
+			return this;
+		}
+		return new RasterTarget(pixels, offset, stride,
+			Math.max(minX, clip.x), Math.max(minY, clip.y),
+			Math.min(maxX, clip.x+clip.width), Math.min(maxY, clip.y+clip.height));
+	}
+
+}
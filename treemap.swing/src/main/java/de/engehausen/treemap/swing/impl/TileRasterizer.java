@@ -0,0 +1,178 @@
+package de.engehausen.treemap.swing.impl;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.ILabelProvider;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleRenderer;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.impl.FIFO;
+import de.engehausen.treemap.swing.IParallelRenderer;
+import de.engehausen.treemap.swing.IRasterAware;
+
+/**
+ * Renders a tree map image concurrently. The image is partitioned into
+ * square tiles; each rectangle is assigned to the tiles it intersects,
+ * keeping the breadth-first order, and the tiles are rendered on a pool,
+ * each clipped to its area and with its own renderer instance obtained from
+ * {@link IParallelRenderer#newInstance()}. The color and label providers
+ * are shared by all tiles and must be thread safe.
+ *
+ * @param <N> the type of node the rectangles work on
+ */
+public class TileRasterizer<N> {
+
+	public static final int DEFAULT_TILE_SIZE = 128;
+
+	protected final ForkJoinPool pool;
+	protected final int tileSize;
+
+	/**
+	 * Creates the rasterizer using the common pool and the default tile size.
+	 */
+	public TileRasterizer() {
+		this(ForkJoinPool.commonPool(), DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Creates the rasterizer.
+	 * @param aPool the pool to render the tiles on, must not be {@code null}.
+	 * @param aTileSize the width and height of the tiles, must be positive.
+	 */
+	public TileRasterizer(final ForkJoinPool aPool, final int aTileSize) {
+		if (aTileSize < 1) {
+			throw new IllegalArgumentException("invalid tile size "+aTileSize);
+		}
+		pool = aPool;
+		tileSize = aTileSize;
+	}
+
+	/**
+	 * Renders the rectangles into the image, if the renderer supports
+	 * concurrent rendering.
+	 * @param image the image to render into, must not be {@code null}.
+	 * @param rects the rectangles to render, must not be {@code null}.
+	 * @param renderer the renderer, must not be {@code null}.
+	 * @param colorProvider the color provider, must not be {@code null}.
+	 * @param labelProvider the label provider, may be {@code null}.
+	 * @return <code>true</code> if the image was rendered, <code>false</code> if the
+	 * renderer does not support concurrent rendering and nothing was rendered.
+	 */
+	public boolean render(final BufferedImage image, final ITreeModel<IRectangle<N>> rects, final IRectangleRenderer<N, Graphics2D, Color> renderer, final IColorProvider<N, Color> colorProvider, final ILabelProvider<N> labelProvider) {
+		if (!(renderer instanceof IParallelRenderer<?>)) {
+			return false;
+		}
+		final IParallelRenderer<N> parallelRenderer = (IParallelRenderer<N>) renderer;
+		final int width = image.getWidth();
+		final int height = image.getHeight();
+		final int columns = (width+tileSize-1)/tileSize;
+		final int rows = (height+tileSize-1)/tileSize;
+		final List<Tile<N>> tiles = new ArrayList<Tile<N>>(columns*rows);
+		for (int y = 0; y < rows; y++) {
+			for (int x = 0; x < columns; x++) {
+				final IRectangleRenderer<N, Graphics2D, Color> tileRenderer = parallelRenderer.newInstance();
+				if (tileRenderer == null) {
+					return false;
+				}
+				final int tx = x*tileSize;
+				final int ty = y*tileSize;
+				tiles.add(new Tile<N>(image, new Rectangle(tx, ty, Math.min(tileSize, width-tx), Math.min(tileSize, height-ty)), rects, tileRenderer, colorProvider, labelProvider));
+			}
+		}
+		final IRectangle<N> root = rects.getRoot();
+		if (root != null) {
+			// assign the rectangles to the tiles in breadth-first order
+			final FIFO<IRectangle<N>> queue = new FIFO<IRectangle<N>>();
+			queue.push(root);
+			while (queue.notEmpty()) {
+				final IRectangle<N> rect = queue.pull();
+				final int x0 = Math.max(0, rect.getX());
+				final int y0 = Math.max(0, rect.getY());
+				final int x1 = Math.min(width, rect.getX()+rect.getWidth())-1;
+				final int y1 = Math.min(height, rect.getY()+rect.getHeight())-1;
+				if (x0 <= x1 && y0 <= y1) {
+					for (int y = y0/tileSize; y <= y1/tileSize; y++) {
+						for (int x = x0/tileSize; x <= x1/tileSize; x++) {
+							tiles.get(y*columns+x).rectangles.add(rect);
+						}
+					}
+				}
+				if (rects.hasChildren(rect)) {
+					for (Iterator<IRectangle<N>> i = rects.getChildren(rect); i.hasNext(); ) {
+						queue.push(i.next());
+					}
+				}
+			}
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void compute() {
+				invokeAll(tiles);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Renders the rectangles of one tile.
+	 * @param <N> the type of node the rectangles work on
+	 */
+	protected static class Tile<N> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final BufferedImage image;
+		protected final Rectangle area;
+		protected final ITreeModel<IRectangle<N>> model;
+		protected final IRectangleRenderer<N, Graphics2D, Color> renderer;
+		protected final IColorProvider<N, Color> colorProvider;
+		protected final ILabelProvider<N> labelProvider;
+		protected final List<IRectangle<N>> rectangles;
+
+		protected Tile(final BufferedImage anImage, final Rectangle anArea, final ITreeModel<IRectangle<N>> aModel, final IRectangleRenderer<N, Graphics2D, Color> aRenderer, final IColorProvider<N, Color> aColorProvider, final ILabelProvider<N> aLabelProvider) {
+			image = anImage;
+			area = anArea;
+			model = aModel;
+			renderer = aRenderer;
+			colorProvider = aColorProvider;
+			labelProvider = aLabelProvider;
+			rectangles = new ArrayList<IRectangle<N>>();
+		}
+
+		@Override
+		protected void compute() {
+			if (rectangles.isEmpty()) {
+				return;
+			}
+			// the sub image shares the pixels, but has its own surface
+			final Graphics2D g = image.getSubimage(area.x, area.y, area.width, area.height).createGraphics();
+			g.translate(-area.x, -area.y);
+			final IRasterAware rasterAware = renderer instanceof IRasterAware ? (IRasterAware) renderer : null;
+			try {
+				if (rasterAware != null) {
+					rasterAware.setTarget(image, area);
+				}
+				for (int i = 0, n = rectangles.size(); i < n; i++) {
+					renderer.render(g, model, rectangles.get(i), colorProvider, labelProvider);
+				}
+			} finally {
+				if (rasterAware != null) {
+					rasterAware.setTarget(null, null);
+				}
+				g.dispose();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,267 @@
+package de.engehausen.treemap.swing;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.engehausen.treemap.IAggregateRectangle;
+import de.engehausen.treemap.ILabelProvider;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleRenderer;
+import de.engehausen.treemap.ISelectionChangeListener;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.SyntheticTreeModel;
+import de.engehausen.treemap.impl.AggregateLabelProvider;
+import de.engehausen.treemap.impl.BorderSquarifiedLayout;
+import de.engehausen.treemap.impl.CompactRectangleModel;
+import de.engehausen.treemap.impl.FIFO;
+import de.engehausen.treemap.impl.LayoutCache;
+import de.engehausen.treemap.impl.RectangleImpl;
+import de.engehausen.treemap.impl.RectangleModelBuilder;
+import de.engehausen.treemap.impl.SquarifiedLayout;
+import de.engehausen.treemap.swing.impl.BorderRenderer;
+import de.engehausen.treemap.swing.impl.CushionRectangleRenderer;
+import de.engehausen.treemap.swing.impl.CushionRectangleRendererEx;
+import de.engehausen.treemap.swing.impl.DefaultRectangleRenderer;
+import de.engehausen.treemap.swing.impl.HierarchicalCushionRenderer;
+import de.engehausen.treemap.swing.impl.TileRasterizer;
+
+public class TreeMapTest {
+
+	private static final long TIMEOUT = 30000;
+
+	@BeforeClass
+	public static void headless() {
+		System.setProperty("java.awt.headless", "true");
+	}
+
+	/**
+	 * Tests that the tree map renders from and navigates a compact
+	 * copy of the computed layout.
+	 */
+	@Test
+	public void testCompactLayout() throws InterruptedException, InvocationTargetException {
+		check(new TreeMap<Integer>(false, false));
+	}
+
+	/**
+	 * Tests that layouts kept by a layout cache are compact as well.
+	 */
+	@Test
+	public void testCompactCachedLayout() throws InterruptedException, InvocationTargetException {
+		final TreeMap<Integer> treeMap = new TreeMap<Integer>(false, false);
+		treeMap.setLayoutCache(new LayoutCache<Integer>());
+		check(treeMap);
+	}
+
+	/**
+	 * Tests that an aggregate rectangle is labelled with its number of nodes
+	 * and that clicking it does not zoom into its heaviest node.
+	 */
+	@Test
+	public void testAggregate() throws InterruptedException, InvocationTargetException {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(20000).depth(4).build();
+		final ILabelProvider<Integer> labels = new ILabelProvider<Integer>() {
+			@Override
+			public String getLabel(final ITreeModel<IRectangle<Integer>> model, final IRectangle<Integer> rectangle) {
+				return rectangle.getNode().toString();
+			}
+		};
+		final TreeMap<Integer> treeMap = new TreeMap<Integer>(false, false);
+		treeMap.setLabelProvider(labels);
+		Assert.assertSame(labels, treeMap.getLabelProvider());
+		final AtomicReference<String> label = new AtomicReference<String>();
+		treeMap.addSelectionChangeListener(new ISelectionChangeListener<Integer>() {
+			@Override
+			public void selectionChanged(final ITreeModel<IRectangle<Integer>> model, final IRectangle<Integer> rectangle, final String text) {
+				label.set(text);
+			}
+		});
+		treeMap.setTreeMapLayout(new SquarifiedLayout<Integer>(Integer.MAX_VALUE, 64));
+		treeMap.setSize(400, 300);
+		treeMap.setTreeModel(tree);
+		final ITreeModel<IRectangle<Integer>> rectangles = await(treeMap);
+		final IAggregateRectangle<Integer> aggregate = findAggregate(rectangles);
+		Assert.assertNotNull(aggregate);
+		final int x = aggregate.getX()+aggregate.getWidth()/2;
+		final int y = aggregate.getY()+aggregate.getHeight()/2;
+		Assert.assertTrue(treeMap.selectRectangle(x, y));
+		Assert.assertEquals(aggregate, treeMap.selected);
+		Assert.assertEquals(MessageFormat.format(AggregateLabelProvider.DEFAULT_PATTERN, Integer.valueOf(aggregate.getCount())), label.get());
+
+		final TreeMapMouseController<Integer> controller = new TreeMapMouseController<Integer>(treeMap);
+		controller.mouseReleased(new MouseEvent(treeMap, MouseEvent.MOUSE_RELEASED, 0L, 0, x, y, 1, false, MouseEvent.BUTTON1));
+		Assert.assertNotEquals(aggregate.getNode(), treeMap.currentRoot);
+		Integer runner = tree.getParent(aggregate.getNode());
+		while (runner != null && !runner.equals(treeMap.currentRoot)) {
+			runner = tree.getParent(runner);
+		}
+		Assert.assertEquals("zoomed outside of the aggregate's parent", treeMap.currentRoot, runner);
+	}
+
+	/**
+	 * Tests that changing the selection repaints the highlights of the previous
+	 * and the current selection, scaled to the size of the tree map, and that
+	 * the whole tree map is repainted if the renderer does not tell the bounds.
+	 */
+	@Test
+	public void testRepaintSelection() {
+		final List<Rectangle> repainted = new ArrayList<Rectangle>();
+		final TreeMap<Integer> treeMap = new TreeMap<Integer>(false, false) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			public void repaint(final long tm, final int x, final int y, final int width, final int height) {
+				repainted.add(new Rectangle(x, y, width, height));
+			}
+		};
+		final RectangleImpl<Integer> root = new RectangleImpl<Integer>(Integer.valueOf(0), 0, 0, 100, 50);
+		final RectangleImpl<Integer> left = new RectangleImpl<Integer>(Integer.valueOf(1), 10, 5, 20, 10);
+		final RectangleImpl<Integer> right = new RectangleImpl<Integer>(Integer.valueOf(2), 60, 30, 15, 7);
+		treeMap.rectangles = new RectangleModelBuilder<Integer>(root).add(root, left).add(root, right).build();
+		treeMap.image = new BufferedImage(100, 50, BufferedImage.TYPE_INT_RGB);
+		// the image is zoomed to twice its size
+		treeMap.setSize(200, 100);
+		treeMap.selected = right;
+		repainted.clear();
+		treeMap.repaintSelection(left);
+		Assert.assertEquals(Collections.singletonList(new Rectangle(20, 10, 132, 66)), repainted);
+		treeMap.renderer = new DefaultRectangleRenderer<Integer>() { };
+		repainted.clear();
+		treeMap.repaintSelection(left);
+		Assert.assertEquals(Collections.singletonList(new Rectangle(0, 0, 200, 100)), repainted);
+	}
+
+	/**
+	 * Tests that rendering the image in tiles produces the same pixels
+	 * as rendering it sequentially, for all built-in renderers.
+	 */
+	@Test
+	public void testTiledRendering() {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(2000).depth(4).build();
+		final ITreeModel<IRectangle<Integer>> rects = new SquarifiedLayout<Integer>(Integer.MAX_VALUE).layout(tree, tree.getRoot(), 301, 203);
+		final ITreeModel<IRectangle<Integer>> bordered = new BorderSquarifiedLayout<Integer>(Integer.MAX_VALUE, 2).layout(tree, tree.getRoot(), 301, 203);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final TileRasterizer<Integer> rasterizer = new TileRasterizer<Integer>(pool, 37);
+			checkTiles(rects, new DefaultRectangleRenderer<Integer>(), rasterizer);
+			checkTiles(rects, new CushionRectangleRenderer<Integer>(32), rasterizer);
+			checkTiles(rects, new CushionRectangleRendererEx<Integer>(32), rasterizer);
+			checkTiles(rects, new HierarchicalCushionRenderer<Integer>(), rasterizer);
+			checkTiles(bordered, new BorderRenderer<Integer>(new CushionRectangleRenderer<Integer>(32)), rasterizer);
+			checkTiles(bordered, new BorderRenderer<Integer>(new HierarchicalCushionRenderer<Integer>(), true), rasterizer);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void checkTiles(final ITreeModel<IRectangle<Integer>> rects, final IRectangleRenderer<Integer, Graphics2D, Color> renderer, final TileRasterizer<Integer> rasterizer) {
+		final TreeMap<Integer> treeMap = new TreeMap<Integer>(false, false);
+		treeMap.setRectangleRenderer(renderer);
+		final BufferedImage expected = treeMap.rebuildImage(301, 203, rects);
+		treeMap.setTileRasterizer(rasterizer);
+		final BufferedImage tiled = treeMap.rebuildImage(301, 203, rects);
+		// rectangles crossing the tile edges are rendered in several tiles
+		int crossing = 0;
+		final FIFO<IRectangle<Integer>> queue = new FIFO<IRectangle<Integer>>();
+		queue.push(rects.getRoot());
+		while (queue.notEmpty()) {
+			final IRectangle<Integer> rectangle = queue.pull();
+			if (rectangle.getX()/37 != (rectangle.getX()+rectangle.getWidth()-1)/37 && rectangle.getY()/37 != (rectangle.getY()+rectangle.getHeight()-1)/37) {
+				crossing++;
+			}
+			if (rects.hasChildren(rectangle)) {
+				for (Iterator<IRectangle<Integer>> i = rects.getChildren(rectangle); i.hasNext(); ) {
+					queue.push(i.next());
+				}
+			}
+		}
+		Assert.assertTrue(crossing > 10);
+		for (int y = 0; y < 203; y++) {
+			for (int x = 0; x < 301; x++) {
+				if (expected.getRGB(x, y) != tiled.getRGB(x, y)) {
+					Assert.fail(renderer.getClass().getSimpleName()+" differs at "+x+","+y);
+				}
+			}
+		}
+	}
+
+	private IAggregateRectangle<Integer> findAggregate(final ITreeModel<IRectangle<Integer>> rectangles) {
+		final FIFO<IRectangle<Integer>> queue = new FIFO<IRectangle<Integer>>();
+		queue.push(rectangles.getRoot());
+		while (queue.notEmpty()) {
+			final IRectangle<Integer> rectangle = queue.pull();
+			if (rectangle instanceof IAggregateRectangle<?> && rectangle.getWidth() > 0 && rectangle.getHeight() > 0) {
+				return (IAggregateRectangle<Integer>) rectangle;
+			}
+			if (rectangles.hasChildren(rectangle)) {
+				for (Iterator<IRectangle<Integer>> i = rectangles.getChildren(rectangle); i.hasNext(); ) {
+					queue.push(i.next());
+				}
+			}
+		}
+		return null;
+	}
+
+	private void check(final TreeMap<Integer> treeMap) throws InterruptedException, InvocationTargetException {
+		final SyntheticTreeModel tree = new SyntheticTreeModel.Builder().nodes(5000).depth(6).build();
+		treeMap.setSize(400, 300);
+		treeMap.setTreeModel(tree);
+		final ITreeModel<IRectangle<Integer>> rectangles = await(treeMap);
+		Assert.assertTrue(rectangles instanceof CompactRectangleModel<?>);
+		Assert.assertNotNull(treeMap.image);
+		Assert.assertEquals(tree.getRoot(), rectangles.getRoot().getNode());
+		for (int y = 0; y < 300; y += 37) {
+			for (int x = 0; x < 400; x += 41) {
+				final IRectangle<Integer> found = treeMap.findRectangle(x, y);
+				Assert.assertNotNull(found);
+				Assert.assertTrue(found.contains(x, y));
+				Assert.assertFalse(rectangles.hasChildren(found));
+				IRectangle<Integer> parent = found;
+				while (rectangles.getParent(parent) != null) {
+					parent = rectangles.getParent(parent);
+				}
+				Assert.assertEquals(rectangles.getRoot(), parent);
+			}
+		}
+	}
+
+	/**
+	 * Waits until the worker has handed the layout to the tree map.
+	 * @param treeMap the tree map to wait for
+	 * @return the rectangles of the tree map
+	 */
+	private ITreeModel<IRectangle<Integer>> await(final TreeMap<Integer> treeMap) throws InterruptedException, InvocationTargetException {
+		final long end = System.currentTimeMillis()+TIMEOUT;
+		final AtomicReference<ITreeModel<IRectangle<Integer>>> result = new AtomicReference<ITreeModel<IRectangle<Integer>>>();
+		while (result.get() == null && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+			SwingUtilities.invokeAndWait(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (treeMap) {
+						result.set(treeMap.rectangles);
+					}
+				}
+			});
+		}
+		Assert.assertNotNull("no layout", result.get());
+		return result.get();
+	}
+
+}
@@ -0,0 +1,148 @@
+package de.engehausen.treemap.swing.impl;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleRenderer;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.impl.RectangleImpl;
+import de.engehausen.treemap.impl.RectangleModelBuilder;
+import de.engehausen.treemap.swing.IRasterAware;
+
+public class CushionRectangleRendererTest {
+
+	private static final int WIDTH = 101;
+	private static final int HEIGHT = 61;
+	private static final Color BACKGROUND = new Color(0x123456);
+
+	private final IRectangle<String> leaf = new RectangleImpl<String>("leaf", 3, 2, 47, 29);
+	private final ITreeModel<IRectangle<String>> model = new RectangleModelBuilder<String>(leaf).build();
+
+	/**
+	 * Tests that shading into the image honours the clip of the graphics context.
+	 */
+	@Test
+	public void testClip() {
+		final Rectangle clip = new Rectangle(10, 7, 21, 13);
+		check(new CushionRectangleRenderer<String>(32), clip, 1);
+		check(new HierarchicalCushionRenderer<String>(), clip, 1);
+		final BufferedImage image = paint(new CushionRectangleRenderer<String>(32), true, clip, 1);
+		Assert.assertEquals(BACKGROUND.getRGB(), image.getRGB(9, 10));
+		Assert.assertNotEquals(BACKGROUND.getRGB(), image.getRGB(10, 10));
+		Assert.assertEquals(BACKGROUND.getRGB(), image.getRGB(31, 10));
+	}
+
+	/**
+	 * Tests that a scaled graphics context is painted through,
+	 * instead of shading into the image.
+	 */
+	@Test
+	public void testTransform() {
+		check(new CushionRectangleRenderer<String>(32), null, 2);
+		check(new HierarchicalCushionRenderer<String>(), null, 2);
+		check(new CushionRectangleRenderer<String>(32), new Rectangle(5, 5, 30, 20), 2);
+	}
+
+	/**
+	 * Tests that shading into the image produces the same pixels
+	 * as painting through the graphics context.
+	 */
+	@Test
+	public void testSame() {
+		check(new CushionRectangleRenderer<String>(32), null, 1);
+		check(new HierarchicalCushionRenderer<String>(), null, 1);
+	}
+
+	/**
+	 * Tests that shading produces the colors of the reference formula
+	 * for odd and even sizes and for partially shaded cushions.
+	 */
+	@Test
+	public void testShade() {
+		final CushionRectangleRenderer<String> renderer = new CushionRectangleRenderer<String>(32);
+		final int[] range = renderer.getColorRange(Color.ORANGE);
+		final int[] sizes = { 1, 2, 3, 4, 5, 8, 17, 32, 101 };
+		for (int w : sizes) {
+			for (int h : sizes) {
+				final int[] expected = reference(renderer, w, h, range);
+				// all pixels
+				checkShade(renderer, expected, w, h, 0, 0, w, h, range);
+				// the lower right part, below the center row
+				checkShade(renderer, expected, w, h, w/2, h/2+1, w, h, range);
+				// an inner part
+				checkShade(renderer, expected, w, h, w/3, h/3, (2*w+2)/3, (2*h+2)/3, range);
+			}
+		}
+	}
+
+	private int[] reference(final CushionRectangleRenderer<String> renderer, final int w, final int h, final int[] range) {
+		final BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		renderer.renderSlow(image, w, h, range);
+		final int[] result = image.getRGB(0, 0, w, h, null, 0, w);
+		for (int i = 0; i < result.length; i++) {
+			result[i] &= 0xffffff;
+		}
+		return result;
+	}
+
+	private void checkShade(final CushionRectangleRenderer<String> renderer, final int[] expected, final int w, final int h, final int x0, final int y0, final int x1, final int y1, final int[] range) {
+		// the cushion is placed with a margin into a larger array
+		final int stride = w+5;
+		final int offset = 2*stride+3;
+		final int[] pixels = new int[(h+4)*stride];
+		Arrays.fill(pixels, -1);
+		renderer.shade(pixels, offset, stride, w, h, x0, y0, x1, y1, range, 0);
+		for (int y = -2; y < h+2; y++) {
+			for (int x = -3; x < w+2; x++) {
+				final int actual = pixels[offset+y*stride+x];
+				final String at = w+"x"+h+" shading "+x0+","+y0+"-"+x1+","+y1+" at "+x+","+y;
+				if (x >= x0 && x < x1 && y >= y0 && y < y1) {
+					Assert.assertEquals(at, expected[y*w+x], actual);
+				} else {
+					Assert.assertEquals(at, -1, actual);
+				}
+			}
+		}
+	}
+
+	private void check(final IRectangleRenderer<String, Graphics2D, Color> renderer, final Rectangle clip, final double scale) {
+		final BufferedImage expected = paint(renderer, false, clip, scale);
+		final BufferedImage actual = paint(renderer, true, clip, scale);
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+					Assert.fail(renderer.getClass().getSimpleName()+" differs at "+x+","+y);
+				}
+			}
+		}
+	}
+
+	private BufferedImage paint(final IRectangleRenderer<String, Graphics2D, Color> renderer, final boolean raster, final Rectangle clip, final double scale) {
+		final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		final Graphics2D g = image.createGraphics();
+		try {
+			g.setColor(BACKGROUND);
+			g.fillRect(0, 0, WIDTH, HEIGHT);
+			g.scale(scale, scale);
+			if (clip != null) {
+				g.setClip(clip);
+			}
+			if (raster) {
+				((IRasterAware) renderer).setTarget(image, null);
+			}
+			renderer.render(g, model, leaf, new MonoColorProvider<String>(), null);
+		} finally {
+			((IRasterAware) renderer).setTarget(null, null);
+			g.dispose();
+		}
+		return image;
+	}
+
+}
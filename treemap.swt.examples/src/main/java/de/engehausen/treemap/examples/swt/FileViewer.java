@@ -15,6 +15,7 @@ import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.MenuItem;
 import org.eclipse.swt.widgets.Shell;
 
+import de.engehausen.treemap.IAggregateRectangle;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.ISelectionChangeListener;
@@ -170,8 +171,9 @@ public class FileViewer implements Runnable, ISelectionChangeListener<FileInfo>,
 			selectionTitle.setText(text);
 			selectionTitle.pack();
 			selectionTitle.update();
-			final FileInfo info = rectangle.getNode();
-			treeMap.setToolTipText(info.getSize()>0?info.getSizeAsString():null);
+			// an aggregate weighs as much as all of its files, not only its heaviest one
+			final long size = rectangle instanceof IAggregateRectangle<?> ? ((IAggregateRectangle<FileInfo>) rectangle).getWeight() : rectangle.getNode().getSize();
+			treeMap.setToolTipText(size>0?FileInfo.getSizeAsString(size):null);
 		}
 	}
 
@@ -37,10 +37,12 @@ import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 
 import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.examples.FileInfo;
 import de.engehausen.treemap.examples.Messages;
+import de.engehausen.treemap.impl.RegexColorProvider;
 
 /**
  * Color dialog used in {@link FileViewer} which allows to map colors to file names and
@@ -65,6 +67,7 @@ public class FilterDialog implements IColorProvider<FileInfo, Color>, SelectionL
 	protected final Label colorLabel;
 	protected final Text input;
 	protected final List<ModelEntry> entries;
+	protected final RegexColorProvider<FileInfo, Color> colors;
 
 	/**
 	 * Creates the dialog for the given file viewer.
@@ -92,6 +95,13 @@ public class FilterDialog implements IColorProvider<FileInfo, Color>, SelectionL
 		tc.setText(Messages.getString("fv.color"));
 		tc.setWidth(70);
 		entries = createTableEntries(filters, viewer.display);
+		colors = new RegexColorProvider<FileInfo, Color>(new ILabelProvider<FileInfo>() {
+			@Override
+			public String getLabel(final ITreeModel<IRectangle<FileInfo>> treeModel, final IRectangle<FileInfo> rectangle) {
+				return rectangle.getNode().getName();
+			}
+		}, viewer.display.getSystemColor(SWT.COLOR_GRAY));
+		updateRules();
 
 		input = new Text(shell, SWT.BORDER);
 		data = new FormData();
@@ -187,6 +197,7 @@ public class FilterDialog implements IColorProvider<FileInfo, Color>, SelectionL
 			if (newEntry.isValid()) {
 				entries.add(newEntry);
 				createTableItem(filters, newEntry.expression, newEntry.getColor(viewer.display));
+				updateRules();
 			}
 		}
 
@@ -205,8 +216,13 @@ public class FilterDialog implements IColorProvider<FileInfo, Color>, SelectionL
 			if (idx != null && idx.length>0) {
 				Arrays.sort(idx);
 				filters.remove(idx);
+				final ModelEntry[] removed = new ModelEntry[idx.length];
 				for (int i = idx.length-1; i>=0; i--) {
-					final ModelEntry e = entries.remove(idx[i]);
+					removed[i] = entries.remove(idx[i]);
+				}
+				// the provider must not use the colors any more before disposing them
+				updateRules();
+				for (ModelEntry e : removed) {
 					e.dispose();
 				}
 			}
@@ -215,22 +231,21 @@ public class FilterDialog implements IColorProvider<FileInfo, Color>, SelectionL
 
 	@Override
 	public Color getColor(final ITreeModel<IRectangle<FileInfo>> treeModel, final IRectangle<FileInfo> rectangle) {
-		Color result = viewer.display.getSystemColor(SWT.COLOR_GRAY);
-		final List<ModelEntry> list = entries;
-		final int max = list.size();
-		final String name = rectangle
-		.getNode()
-		.getName();
-		for (int i = 0; i < max; i++) {
-			final ModelEntry entry = list.get(i);
-			final Matcher m = entry.matcher;
-			m.reset(name);
-			if (m.matches()) {
-				result = entry.getColor(viewer.display);
-				break;
-			}
+		return colors.getColor(treeModel, rectangle);
+	}
+
+	/**
+	 * Passes the regular expressions and colors of the table
+	 * to the color provider.
+	 */
+	protected void updateRules() {
+		final List<String> expressions = new ArrayList<String>(entries.size());
+		final List<Color> ruleColors = new ArrayList<Color>(entries.size());
+		for (ModelEntry entry : entries) {
+			expressions.add(entry.expression);
+			ruleColors.add(entry.getColor(viewer.display));
 		}
-		return result;
+		colors.setRules(expressions, ruleColors);
 	}
 
 	/**
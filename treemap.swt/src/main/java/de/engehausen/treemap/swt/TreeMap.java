@@ -23,16 +23,25 @@ import org.eclipse.swt.widgets.Event;
 import de.engehausen.treemap.IColorProvider;
 import de.engehausen.treemap.IGenericTreeMapLayout;
 import de.engehausen.treemap.IGenericWeightedTreeModel;
+import de.engehausen.treemap.IHighlightBounds;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.IRectangleIndex;
 import de.engehausen.treemap.IRectangleRenderer;
+import de.engehausen.treemap.IRegionSelectionListener;
 import de.engehausen.treemap.ISelectionChangeListener;
 import de.engehausen.treemap.ITreeMapLayout;
 import de.engehausen.treemap.ITreeModel;
 import de.engehausen.treemap.IWeightedTreeModel;
+import de.engehausen.treemap.impl.AggregateLabelProvider;
 import de.engehausen.treemap.impl.BuildControl;
+import de.engehausen.treemap.impl.CompactRectangleModel;
 import de.engehausen.treemap.impl.FIFO;
 import de.engehausen.treemap.impl.GenericSquarifiedLayout;
+import de.engehausen.treemap.impl.HighlightArea;
+import de.engehausen.treemap.impl.LayoutCache;
+import de.engehausen.treemap.impl.PixelRectangleIndex;
+import de.engehausen.treemap.impl.RegionQuery;
 import de.engehausen.treemap.impl.SquarifiedLayout;
 import de.engehausen.treemap.swt.impl.DefaultColorProvider;
 import de.engehausen.treemap.swt.impl.DefaultRectangleRenderer;
@@ -47,13 +56,19 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 
 	protected ITreeModel<N> model;
 	protected ITreeMapLayout<N> layout;
+	protected LayoutCache<N> layoutCache;
 	protected ITreeModel<IRectangle<N>> rectangles;
+	protected IRectangleIndex<N> rectangleIndex;
 	protected IRectangle<N> selected;
 	protected N currentRoot;
 	protected IRectangleRenderer<N, PaintEvent, Color> renderer = DefaultRectangleRenderer.<N>defaultInstance();
 	protected ILabelProvider<N> labelProvider;
 	protected IColorProvider<N, Color> colorProvider;
 	protected List<ISelectionChangeListener<N>> listeners;
+	protected List<IRegionSelectionListener<N>> regionListeners;
+	/** the selected area, or {@code null} */
+	protected Rectangle region;
+	protected List<IRectangle<N>> regionRectangles;
 	protected BuildControl buildControl;
 	protected Image image;
 
@@ -135,6 +150,32 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 		}
 	}
 
+	/**
+	 * Adds the given listener for region selection events. Regions are selected
+	 * by dragging the mouse if the mouse controller supports it.
+	 *
+	 * @param aListener the listener to add, must not be {@code null}
+	 * and must not already have been added.
+	 * @see TreeMapMouseController#TreeMapMouseController(TreeMap, boolean)
+	 */
+	public void addRegionSelectionListener(final IRegionSelectionListener<N> aListener) {
+		if (regionListeners == null) {
+			regionListeners = new ArrayList<IRegionSelectionListener<N>>(2);
+		}
+		regionListeners.add(aListener);
+	}
+
+	/**
+	 * Removes the given region selection listener.
+	 *
+	 * @param aListener the listener to remove
+	 */
+	public void removeRegionSelectionListener(final IRegionSelectionListener<N> aListener) {
+		if (regionListeners != null) {
+			regionListeners.remove(aListener);
+		}
+	}
+
 	/**
 	 * Sets the layout for the tree map. If this method is not called,
 	 * a default squarified layout with maximum nesting level two is used
@@ -144,6 +185,24 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 		layout = aLayout;
 	}
 
+	/**
+	 * Sets the cache for computed layouts. Zooming back to a previously
+	 * shown node then reuses its layout instead of computing it again.
+	 * Setting a model removes the layouts of the previous model from the cache.
+	 * @param aCache the layout cache to use, may be {@code null} to not cache layouts.
+	 */
+	public void setLayoutCache(final LayoutCache<N> aCache) {
+		layoutCache = aCache;
+	}
+
+	/**
+	 * Returns the cache for computed layouts.
+	 * @return the cache for computed layouts, may be {@code null}.
+	 */
+	public LayoutCache<N> getLayoutCache() {
+		return layoutCache;
+	}
+
 	/**
 	 * Sets the rectangle renderer the tree map will use. If no renderer
 	 * is set, a default will be used.
@@ -163,11 +222,12 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 
 	/**
 	 * Sets the label provider the tree map will use during rendering.
-	 * If no provider is set no labels are displayed.
+	 * If no provider is set no labels are displayed. Aggregate rectangles
+	 * are labelled with their number of nodes, see {@link AggregateLabelProvider}.
 	 * @param aProvider the label provider; may be {@code null}.
 	 */
 	public void setLabelProvider(final ILabelProvider<N> aProvider) {
-		labelProvider = aProvider;
+		labelProvider = aProvider != null ? new AggregateLabelProvider<N>(aProvider) : null;
 	}
 
 	/**
@@ -175,7 +235,7 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 	 * @return the currently active label provider of this tree map.
 	 */
 	public ILabelProvider<N> getLabelProvider() {
-		return labelProvider;
+		return labelProvider instanceof AggregateLabelProvider<?> ? ((AggregateLabelProvider<N>) labelProvider).getDelegate() : labelProvider;
 	}
 
 	/**
@@ -203,10 +263,16 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 		if (layout == null) {
 			layout = new SquarifiedLayout<N>(2);
 		}
+		if (layoutCache != null && model != null) {
+			layoutCache.invalidate(model);
+		}
 		model = aModel;
 		currentRoot = aModel.getRoot();
 		selected = null;
+		region = null;
+		regionRectangles = null;
 		rectangles = null;
+		rectangleIndex = null;
 		recalculate();
 	}
 
@@ -219,10 +285,16 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 		if (layout == null) {
 			layout = new GenericSquarifiedLayout<N, T>(2);
 		}
+		if (layoutCache != null && model != null) {
+			layoutCache.invalidate(model);
+		}
 		model = aModel;
 		currentRoot = aModel.getRoot();
 		selected = null;
+		region = null;
+		regionRectangles = null;
 		rectangles = null;
+		rectangleIndex = null;
 		recalculate();
 	}
 
@@ -277,18 +349,18 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 			// tree map image available; render it, regardless
 			// of potential sizing issues
 			event.gc.drawImage(image, 0, 0, imgBounds.width, imgBounds.height, 0, 0, bounds.width, bounds.height);
-			if (selected != null) {
+			if (selected != null || region != null) {
 				if (imgBounds.width != bounds.width || imgBounds.height != bounds.height) {
 					final Transform transform = new Transform(getDisplay());
 					transform.scale(bounds.width/(float) imgBounds.width, bounds.height/(float) imgBounds.height);
 					event.gc.setTransform(transform);
 					try {
-						renderer.highlight(event, rectangles, selected, colorProvider, labelProvider);
+						highlight(event);
 					} finally {
 						transform.dispose();
 					}
 				} else {
-					renderer.highlight(event, rectangles, selected, colorProvider, labelProvider);
+					highlight(event);
 				}
 			}
 		} else {
@@ -296,6 +368,39 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 		}
 	}
 
+	/**
+	 * Highlights the selected region or, if there is none, the selected rectangle.
+	 * @param event the paint event used for rendering.
+	 */
+	protected void highlight(final PaintEvent event) {
+		if (region != null) {
+			drawRegion(event);
+		} else {
+			renderer.highlight(event, rectangles, selected, colorProvider, labelProvider);
+		}
+	}
+
+	/**
+	 * Draws the selected region: the selected rectangles are brightened
+	 * and the selected area is outlined.
+	 * @param event the paint event used for rendering.
+	 */
+	protected void drawRegion(final PaintEvent event) {
+		final GC gc = event.gc;
+		final int alpha = gc.getAlpha();
+		gc.setAlpha(90);
+		gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+		if (regionRectangles != null) {
+			for (int i = regionRectangles.size()-1; i >= 0; i--) {
+				final IRectangle<N> rectangle = regionRectangles.get(i);
+				gc.fillRectangle(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+			}
+		}
+		gc.setAlpha(alpha);
+		gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_BLACK));
+		gc.drawRectangle(region.x, region.y, region.width-1, region.height-1);
+	}
+
 	/**
 	 * Called when the tree map is busy during rendering.
 	 * @param event the paint event used for rendering.
@@ -400,8 +505,9 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 	 */
 	protected boolean selectRectangle(final int x, final int y) {
 		if (selected == null || !selected.contains(x, y)) {
+			final IRectangle<N> previous = selected;
 			selected = findRectangle(x, y);
-			redraw();
+			redrawSelection(previous);
 			if (selected != null && listeners != null) {
 				final String label;
 				if (labelProvider != null) {
@@ -419,6 +525,55 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 		}
 	}
 
+	/**
+	 * Redraws the parts of the tree map changed by selecting another
+	 * rectangle, i.e. the highlights of the previously and the currently
+	 * selected rectangle. If the renderer does not tell the area of its
+	 * highlights (see {@link IHighlightBounds}), the whole tree map is redrawn.
+	 * @param previous the previously selected rectangle, may be {@code null}.
+	 */
+	protected void redrawSelection(final IRectangle<N> previous) {
+		int[] area = null;
+		if (image != null) {
+			// the image is scaled to the size of the tree map
+			final Rectangle bounds = getBounds();
+			final Rectangle imgBounds = image.getBounds();
+			area = HighlightArea.compute(renderer, rectangles, previous, selected, imgBounds.width, imgBounds.height, bounds.width, bounds.height);
+		}
+		if (area == null) {
+			redraw();
+		} else if (area.length > 0) {
+			redraw(area[0], area[1], area[2], area[3], false);
+		}
+	}
+
+	/**
+	 * Selects the rectangles intersecting the given area (which is relative
+	 * to the widget) and notifies the region selection listeners. Rectangles
+	 * lying completely inside of the area are selected as a whole, with the
+	 * weight of their subtree.
+	 * @param area the area to select, or {@code null} to remove the selection.
+	 */
+	protected void selectRegion(final Rectangle area) {
+		if (area == null || rectangles == null || model == null) {
+			if (region != null) {
+				region = null;
+				regionRectangles = null;
+				redraw();
+			}
+			return;
+		}
+		region = area;
+		final RegionQuery.Region<N> result = new RegionQuery<N>(rectangles, model).query(area.x, area.y, area.width, area.height);
+		regionRectangles = result.getRectangles();
+		redraw();
+		if (regionListeners != null) {
+			for (int i = regionListeners.size()-1; i >= 0; i--) {
+				regionListeners.get(i).regionSelected(rectangles, regionRectangles, result.getWeight());
+			}
+		}
+	}
+
 	/**
 	 * Find the smallest rectangle in the model containing the given
 	 * coordinates.
@@ -429,7 +584,9 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 	 */
 	protected IRectangle<N> findRectangle(final int x, final int y) {
 		IRectangle<N> result;
-		if (rectangles != null) {
+		if (rectangleIndex != null) {
+			result = rectangleIndex.find(x, y);
+		} else if (rectangles != null) {
 			result = rectangles.getRoot();
 			if (result.contains(x, y)) {
 				while (rectangles.hasChildren(result)) {
@@ -476,19 +633,36 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 		@SuppressWarnings("unchecked")
 		@Override
 		public void run() {
-			final ITreeModel<IRectangle<N>> result;
-			if (treeMap.layout instanceof IGenericTreeMapLayout) {
+			ITreeModel<IRectangle<N>> result;
+			if (treeMap.layoutCache != null) {
+				result = treeMap.layoutCache.layout(treeMap.layout, treeMap.model, treeMap.currentRoot, width, height, buildControl);
+			} else if (treeMap.layout instanceof IGenericTreeMapLayout) {
 				result = ((IGenericTreeMapLayout<N, Number>) treeMap.layout).layout((IGenericWeightedTreeModel<N, Number>) treeMap.model, treeMap.currentRoot, width, height, buildControl);
 			} else if (treeMap.layout instanceof ITreeMapLayout) {
 				result = treeMap.layout.layout((IWeightedTreeModel<N>) treeMap.model, treeMap.currentRoot, width, height, buildControl);
 			} else {
 				throw new IllegalStateException("cannot handle model with layout "+treeMap.layout);
 			}
+			if (!buildControl.isCanceled()) {
+				// a compact copy retains less memory and is navigated without hashing nodes;
+				// the computed layout is emptied while copying, so both are not held at once
+				result = CompactRectangleModel.compact(result);
+			}
+			final ITreeModel<IRectangle<N>> layout = result;
+			final IRectangleIndex<N> index;
+			if (buildControl.isCanceled()) {
+				index = null;
+			} else if (treeMap.layoutCache != null) {
+				index = treeMap.layoutCache.index(layout, buildControl);
+			} else {
+				index = new PixelRectangleIndex<N>(layout, buildControl);
+			}
 			if (!buildControl.isCanceled()) {
 				synchronized (treeMap) {
 					treeMap.buildControl = null;
-					treeMap.rectangles = result;
-					final IRectangle<N> rootNode = result.getRoot();
+					treeMap.rectangles = layout;
+					treeMap.rectangleIndex = index;
+					final IRectangle<N> rootNode = layout.getRoot();
 					if (rootNode != null) {
 						treeMap.currentRoot = rootNode.getNode();
 					}
@@ -499,14 +673,16 @@ public class TreeMap<N> extends Canvas implements PaintListener, ControlListener
 					public void run() {
 						if (!treeMap.isDisposed()) {
 							treeMap.selected = null;
-							treeMap.rebuildImage(width, height, result);
+							treeMap.region = null;
+							treeMap.regionRectangles = null;
+							treeMap.rebuildImage(width, height, layout);
 							final Display display = treeMap.getDisplay();
 							treeMap.setCursor(display.getSystemCursor(SWT.CURSOR_ARROW));
 							final Point point = display.getCursorLocation();
 							final Point position = treeMap.toDisplay(0, 0);
-							if (treeMap.selectRectangle(point.x - position.x, point.y - position.y)) {
-								treeMap.redraw();
-							}
+							treeMap.selectRectangle(point.x - position.x, point.y - position.y);
+							// the whole image has changed
+							treeMap.redraw();
 						}
 					}
 				});
@@ -1,19 +1,33 @@
 package de.engehausen.treemap.swt;
 
+import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseListener;
 import org.eclipse.swt.events.MouseMoveListener;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+
+import de.engehausen.treemap.IAggregateRectangle;
 
 /**
  * This class registers mouse and mouse motion listeners with the tree map to be able
  * to handle desired mouse events (i.e mouse move for tooltips &amp; highlighting,
- * mouse released and so on).
+ * mouse released and so on). Optionally, regions can be selected by dragging
+ * the mouse with the left button pressed.
  *
  * @param <N> the type of node of the model used for the tree map
  */
 public class TreeMapMouseController<N> implements MouseMoveListener, MouseListener {
 
+	/** the distance in pixels the mouse must be dragged to start selecting a region */
+	protected static final int DRAG_THRESHOLD = 3;
+
 	protected final TreeMap<N> treemap;
+	protected final boolean selectRegions;
+	/** the position the left button was pressed at, or {@code null} */
+	protected Point dragStart;
+	/** <code>true</code> if the pressed button removed the region selection */
+	protected boolean dismissed;
 
 	/**
 	 * Creates a controller object that will register the mouse and mouse move
@@ -21,7 +35,19 @@ public class TreeMapMouseController<N> implements MouseMoveListener, MouseListen
 	 * @param aTreeMap the tree map used by the mouse controller, must not be {@code null} 
 	 */
 	public TreeMapMouseController(final TreeMap<N> aTreeMap) {
+		this(aTreeMap, false);
+	}
+
+	/**
+	 * Creates a controller object that will register the mouse and mouse move
+	 * listeners to the treemap.
+	 * @param aTreeMap the tree map used by the mouse controller, must not be {@code null}
+	 * @param regionSelection <code>true</code> to select regions by dragging the mouse,
+	 * see {@link TreeMap#addRegionSelectionListener(de.engehausen.treemap.IRegionSelectionListener)}
+	 */
+	public TreeMapMouseController(final TreeMap<N> aTreeMap, final boolean regionSelection) {
 		treemap = aTreeMap;
+		selectRegions = regionSelection;
 
 		treemap.addMouseMoveListener(this);
 		treemap.addMouseListener(this);
@@ -34,7 +60,15 @@ public class TreeMapMouseController<N> implements MouseMoveListener, MouseListen
 			notBuilding = treemap.buildControl == null;
 		}
 		if (notBuilding) {
-			treemap.selectRectangle(event.x, event.y);
+			if (dragStart != null && (event.stateMask & SWT.BUTTON1) != 0) {
+				if (treemap.region != null || Math.abs(event.x-dragStart.x) >= DRAG_THRESHOLD || Math.abs(event.y-dragStart.y) >= DRAG_THRESHOLD) {
+					final int x = Math.min(dragStart.x, event.x);
+					final int y = Math.min(dragStart.y, event.y);
+					treemap.selectRegion(new Rectangle(x, y, Math.abs(event.x-dragStart.x)+1, Math.abs(event.y-dragStart.y)+1));
+				}
+			} else {
+				treemap.selectRectangle(event.x, event.y);
+			}
 		}
 	}
 
@@ -45,16 +79,32 @@ public class TreeMapMouseController<N> implements MouseMoveListener, MouseListen
 
 	@Override
 	public void mouseDown(final MouseEvent mouseevent) {
-		// ignore
+		if (treemap.region != null) {
+			treemap.selectRegion(null);
+			dismissed = true;
+		}
+		if (selectRegions && mouseevent.button == 1) {
+			dragStart = new Point(mouseevent.x, mouseevent.y);
+		}
 	}
 
 	@Override
 	public void mouseUp(final MouseEvent mouseevent) {
+		dragStart = null;
+		if (treemap.region != null || dismissed) {
+			// a region selection stays visible until the next click, which only removes it
+			dismissed = false;
+			return;
+		}
 		if (treemap.model != null && treemap.currentRoot != null) {
 			switch (mouseevent.button) {
 				case 1:
 					if (treemap.selected != null) {
 						N runner = treemap.selected.getNode();
+						if (treemap.selected instanceof IAggregateRectangle<?>) {
+							// the heaviest node stands in for the aggregate, zoom at most into the parent
+							runner = treemap.model.getParent(runner);
+						}
 						if (!runner.equals(treemap.currentRoot)) {
 							N last;
 							do {
@@ -5,24 +5,41 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Device;
 
 import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.IHighlightBounds;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.IRectangleRenderer;
 import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.impl.ExposedArea;
 
 /**
  * A rectangle renderer which only renders non-leaf rectangles.
  * The leafs are rendered by delegation to a renderer supporting
- * rendering leafs.
+ * rendering leafs. Optionally only the parts of non-leaf rectangles
+ * not covered by their children are painted, so that each pixel is
+ * painted once instead of once per nesting level.
  *
  * @param <N> the type of node the renderer supports.
  */
-public class BorderRenderer<N> implements IRectangleRenderer<N, PaintEvent, Color> {
+public class BorderRenderer<N> implements IRectangleRenderer<N, PaintEvent, Color>, IHighlightBounds<N> {
 
 	protected final IRectangleRenderer<N, PaintEvent, Color> leafRenderer;
+	protected final boolean exposedOnly;
 
 	public BorderRenderer(final IRectangleRenderer<N, PaintEvent, Color> aLeafRenderer) {
+		this(aLeafRenderer, false);
+	}
+
+	/**
+	 * Creates the renderer.
+	 * @param aLeafRenderer the renderer for the leafs, must not be {@code null}.
+	 * @param paintExposedOnly <code>true</code> to only paint the parts of non-leaf
+	 * rectangles not covered by their children; the leaf renderer must then paint
+	 * the whole area of the leafs.
+	 */
+	public BorderRenderer(final IRectangleRenderer<N, PaintEvent, Color> aLeafRenderer, final boolean paintExposedOnly) {
 		leafRenderer = aLeafRenderer;
+		exposedOnly = paintExposedOnly;
 	}
 
 	@Override
@@ -42,7 +59,14 @@ public class BorderRenderer<N> implements IRectangleRenderer<N, PaintEvent, Colo
 		if (model.hasChildren(rectangle)) {
 			final Color c = colorProvider.getColor(model, rectangle);
 			event.gc.setBackground(c);
-			event.gc.fillRectangle(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+			if (exposedOnly) {
+				final int[] area = ExposedArea.compute(model, rectangle);
+				for (int i = 0; i < area.length; i += 4) {
+					event.gc.fillRectangle(area[i], area[i+1], area[i+2], area[i+3]);
+				}
+			} else {
+				event.gc.fillRectangle(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
+			}
 		} else {
 			leafRenderer.render(event, model, rectangle, colorProvider, labelProvider);
 		}
@@ -56,4 +80,23 @@ public class BorderRenderer<N> implements IRectangleRenderer<N, PaintEvent, Colo
 		return result;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * For leafs the bounds are told by the leaf renderer, if it supports this.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		if (getClass() != BorderRenderer.class) {
+			return null;
+		} else if (model.hasChildren(rectangle)) {
+			return rectangle;
+		} else if (leafRenderer instanceof IHighlightBounds<?>) {
+			return ((IHighlightBounds<N>) leafRenderer).getHighlightBounds(model, rectangle);
+		} else {
+			return null;
+		}
+	}
+
 }
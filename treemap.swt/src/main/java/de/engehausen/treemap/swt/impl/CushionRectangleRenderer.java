@@ -12,6 +12,7 @@ import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.PaletteData;
 
 import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.IHighlightBounds;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.IRectangleRenderer;
@@ -24,7 +25,7 @@ import de.engehausen.treemap.ITreeModel;
  *
  * @param <N> the type of node the renderer supports
  */
-public class CushionRectangleRenderer<N> implements IRectangleRenderer<N, PaintEvent, Color> {
+public class CushionRectangleRenderer<N> implements IRectangleRenderer<N, PaintEvent, Color>, IHighlightBounds<N> {
 
 	private static PaletteData RGB_PALETTE = new PaletteData(0xff0000, 0xff00, 0xff);
 	protected final Map<Color, int[]> colorMappingRGB;
@@ -155,4 +156,14 @@ public class CushionRectangleRenderer<N> implements IRectangleRenderer<N, PaintE
 		return (int) (r*255f)<<16 | (int) (g*255f)<<8 | (int) (b*255f);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The highlight covers the rectangle.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		return getClass() == CushionRectangleRenderer.class ? rectangle : null;
+	}
+
 }
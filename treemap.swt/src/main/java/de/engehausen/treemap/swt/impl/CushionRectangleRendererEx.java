@@ -33,16 +33,38 @@ public class CushionRectangleRendererEx<N> extends CushionRectangleRenderer<N> {
 	protected void highlightParents(final PaintEvent event, final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle, final IColorProvider<N, Color> colorProvider, final ILabelProvider<N> labelProvider) {
 		event.gc.setForeground(event.display.getSystemColor(SWT.COLOR_RED));
 		event.gc.drawRectangle(rectangle.getX(), rectangle.getY(), rectangle.getWidth()-1, rectangle.getHeight()-1);
+		final IRectangle<N> last = getTopmostParent(model, rectangle);
+		if (last != model.getRoot()) {
+			event.gc.setForeground(event.display.getSystemColor(SWT.COLOR_YELLOW));
+			event.gc.drawRectangle(last.getX(), last.getY(), last.getWidth()-1, last.getHeight()-1);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * The highlight covers the topmost parent under the root node.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		return getClass() == CushionRectangleRendererEx.class ? getTopmostParent(model, rectangle) : null;
+	}
+
+	/**
+	 * Returns the topmost parent of the given rectangle under the root node.
+	 * @param model the model the rectangle belongs to
+	 * @param rectangle the rectangle to find the topmost parent of
+	 * @return the topmost parent under the root node, the rectangle itself
+	 * if it is the root or directly under it.
+	 */
+	protected IRectangle<N> getTopmostParent(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
 		final IRectangle<N> root = model.getRoot();
 		IRectangle<N> runner = rectangle, last;
 		do {
 			last = runner;
 			runner = model.getParent(runner);
 		} while (runner != root && runner != null);
-		if (last != root) {
-			event.gc.setForeground(event.display.getSystemColor(SWT.COLOR_YELLOW));
-			event.gc.drawRectangle(last.getX(), last.getY(), last.getWidth()-1, last.getHeight()-1);
-		}
+		return last;
 	}
 
 }
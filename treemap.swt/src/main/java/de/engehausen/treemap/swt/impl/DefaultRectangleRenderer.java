@@ -6,6 +6,7 @@ import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.widgets.Display;
 
 import de.engehausen.treemap.IColorProvider;
+import de.engehausen.treemap.IHighlightBounds;
 import de.engehausen.treemap.ILabelProvider;
 import de.engehausen.treemap.IRectangle;
 import de.engehausen.treemap.IRectangleRenderer;
@@ -19,7 +20,7 @@ import de.engehausen.treemap.ITreeModel;
  *
  * @param <N> the type of node being operated on
  */
-public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, PaintEvent, Color> {
+public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, PaintEvent, Color>, IHighlightBounds<N> {
 
 	private static final IRectangleRenderer<Object, PaintEvent, Color> DEFAULT = new DefaultRectangleRenderer<Object>();
 	@SuppressWarnings("unchecked")
@@ -44,4 +45,14 @@ public class DefaultRectangleRenderer<N> implements IRectangleRenderer<N, PaintE
 		event.gc.drawRectangle(rectangle.getX(), rectangle.getY(), rectangle.getWidth(), rectangle.getHeight());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * The highlight frames the rectangle.
+	 * Subclasses must override this method to tell their bounds.
+	 */
+	@Override
+	public IRectangle<N> getHighlightBounds(final ITreeModel<IRectangle<N>> model, final IRectangle<N> rectangle) {
+		return getClass() == DefaultRectangleRenderer.class ? rectangle : null;
+	}
+
 }
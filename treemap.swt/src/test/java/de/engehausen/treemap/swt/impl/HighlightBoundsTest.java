@@ -0,0 +1,67 @@
+package de.engehausen.treemap.swt.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.engehausen.treemap.IHighlightBounds;
+import de.engehausen.treemap.IRectangle;
+import de.engehausen.treemap.ITreeModel;
+import de.engehausen.treemap.impl.RectangleImpl;
+import de.engehausen.treemap.impl.RectangleModelBuilder;
+
+public class HighlightBoundsTest {
+
+	private final RectangleImpl<String> root = new RectangleImpl<String>("root", 0, 0, 100, 50);
+	private final RectangleImpl<String> top = new RectangleImpl<String>("top", 0, 0, 60, 50);
+	private final RectangleImpl<String> inner = new RectangleImpl<String>("inner", 10, 10, 40, 30);
+	private final RectangleImpl<String> leaf = new RectangleImpl<String>("leaf", 20, 15, 10, 5);
+	private final ITreeModel<IRectangle<String>> model = new RectangleModelBuilder<String>(root)
+		.add(root, top)
+		.add(top, inner)
+		.add(inner, leaf)
+		.build();
+
+	/**
+	 * Tests that the built-in renderers highlight the rectangle itself.
+	 */
+	@Test
+	public void testBuiltIn() {
+		check(leaf, new DefaultRectangleRenderer<String>());
+		check(leaf, new CushionRectangleRenderer<String>(32));
+		check(leaf, new BorderRenderer<String>(new CushionRectangleRenderer<String>(32)));
+	}
+
+	/**
+	 * Tests that the extended cushion renderer highlights the topmost
+	 * parent under the root.
+	 */
+	@Test
+	public void testTopmostParent() {
+		final CushionRectangleRendererEx<String> renderer = new CushionRectangleRendererEx<String>(32);
+		Assert.assertSame(top, renderer.getHighlightBounds(model, leaf));
+		Assert.assertSame(top, renderer.getHighlightBounds(model, inner));
+		Assert.assertSame(top, renderer.getHighlightBounds(model, top));
+		Assert.assertSame(root, renderer.getHighlightBounds(model, root));
+	}
+
+	/**
+	 * Tests that subclasses, which may highlight differently, do not
+	 * inherit the bounds of the built-in renderers.
+	 */
+	@Test
+	public void testSubclasses() {
+		check(null, new DefaultRectangleRenderer<String>() { });
+		check(null, new CushionRectangleRenderer<String>(32) { });
+		check(null, new CushionRectangleRendererEx<String>(32) { });
+		check(null, new BorderRenderer<String>(new CushionRectangleRenderer<String>(32)) { });
+		// the bounds of leafs are told by the leaf renderer
+		final BorderRenderer<String> border = new BorderRenderer<String>(new CushionRectangleRenderer<String>(32) { });
+		Assert.assertNull(border.getHighlightBounds(model, leaf));
+		Assert.assertSame(inner, border.getHighlightBounds(model, inner));
+	}
+
+	private void check(final IRectangle<String> expected, final IHighlightBounds<String> renderer) {
+		Assert.assertSame(expected, renderer.getHighlightBounds(model, leaf));
+	}
+
+}